@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -191,6 +192,15 @@ extends ParentNode implements Document  {
     /** Bypass error checking. */
     protected boolean errorChecking = true;
 
+    /** True once the document has been frozen. */
+    protected boolean fFrozen = false;
+
+    /** True if element name queries use an index. */
+    protected boolean fElementIndexing = false;
+
+    /** Index of the elements by name, built on demand. */
+    private transient ElementNameIndex fElementIndex;
+
     //Did version change at any point when the document was created ?
     //this field helps us to optimize when normalizingDocument.
     protected boolean xmlVersionChanged = false ;
@@ -717,6 +727,10 @@ extends ParentNode implements Document  {
      * @see DeepNodeListImpl
      */
     public NodeList getElementsByTagName(String tagname) {
+        if (fElementIndexing) {
+            return new ElementNameIndex.ElementList(this,
+                getElementNameIndex().getElements(tagname), null, tagname, false);
+        }
         return new DeepNodeListImpl(this,tagname);
     }
 
@@ -758,14 +772,15 @@ extends ParentNode implements Document  {
      */
 
     public void setErrorChecking(boolean check) {
-        errorChecking = check;
+        // a frozen document keeps rejecting modifications
+        errorChecking = check || fFrozen;
     }
 
     /*
      * DOM Level 3 WD - Experimental.
      */
     public void setStrictErrorChecking(boolean check) {
-        errorChecking = check;
+        errorChecking = check || fFrozen;
     }
 
     /**
@@ -782,6 +797,88 @@ extends ParentNode implements Document  {
         return errorChecking;
     }
 
+    /**
+     * NON-DOM: Freezes this document so that several threads can read it
+     * at the same time without locking.
+     * <p>
+     * Reading a node normally updates internal state: deferred nodes are
+     * expanded, attribute values and entity reference contents are turned
+     * into nodes, and child lists keep a cache of the last position read.
+     * This method performs all of these updates on the whole document,
+     * including the document type, then makes every node read-only, so
+     * that any attempt to modify the document raises a
+     * NO_MODIFICATION_ALLOWED_ERR. Error checking cannot be turned off
+     * afterwards. Child lists of frozen nodes are read without a cache;
+     * the children of nodes with many children are stored in an array,
+     * so that <code>item(int)</code> takes constant time. The node lists
+     * returned by <code>getElementsByTagName</code> are not shared: each
+     * call returns a new list, which should only be used by the calling
+     * thread. Likewise, node iterators and ranges created on a frozen
+     * document are not registered with the document, since they never
+     * have to be told about changes; each may be created by any thread,
+     * but should only be used by that thread. Event listeners must not be
+     * added or removed once the document is frozen.
+     * <p>
+     * The document must be published to the reading threads after this
+     * method returns, for example through a synchronized collection or a
+     * volatile field. Reading threads must not create nodes owned by a
+     * frozen document, either through its factory methods or by cloning
+     * its nodes; nodes should be imported into another document instead.
+     * Freezing cannot be undone.
+     */
+    public void freeze() {
+        if (fFrozen) {
+            return;
+        }
+        errorChecking = true;
+        freezeTree(this);
+        if (fElementIndexing) {
+            getElementNameIndex();
+        }
+        if (userData != null) {
+            // a weak hash map is modified when it is read
+            userData = new HashMap(userData);
+        }
+        fFrozen = true;
+    } // freeze()
+
+    /**
+     * NON-DOM: Returns true if this document has been frozen.
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return fFrozen;
+    }
+
+    /**
+     * NON-DOM: Sets whether <code>getElementsByTagName</code> and
+     * <code>getElementsByTagNameNS</code> on this document use an index
+     * of the elements by name. The index is built in one traversal of the
+     * document on the first query, after which the lists returned by
+     * these methods are read from it in time proportional to their
+     * length. Any change to the document discards the index, which is
+     * built again on the next query, so indexing only pays off when the
+     * document is queried repeatedly between changes.
+     * <p>
+     * The index is not used for queries with a namespace URI other
+     * than "*" and the local name "*", and for queries on elements.
+     * By default, the elements are not indexed.
+     */
+    public void setElementIndexing(boolean indexing) {
+        fElementIndexing = indexing;
+        if (!indexing) {
+            fElementIndex = null;
+        }
+    }
+
+    /**
+     * NON-DOM: Returns true if element name queries use an index.
+     * @see #setElementIndexing(boolean)
+     */
+    public boolean getElementIndexing() {
+        return fElementIndexing;
+    }
+
 
     /**
      * DOM Level 3 CR - Experimental. (Was getActualEncoding)
@@ -1135,6 +1232,10 @@ extends ParentNode implements Document  {
         if (isNormalized() && !isNormalizeDocRequired()) {
             return;
         }
+        if (fFrozen) {
+            String msg = DOMMessageFormatter.formatMessage(DOMMessageFormatter.DOM_DOMAIN, "NO_MODIFICATION_ALLOWED_ERR", null);
+            throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, msg);
+        }
         if (needsSyncChildren()) {
             synchronizeChildren();
         }
@@ -1447,7 +1548,7 @@ extends ParentNode implements Document  {
     /** NON-DOM:  Get the number associated with this document.   Used to
      * order documents in the implementation.
      */
-    protected int getNodeNumber() {
+    protected synchronized int getNodeNumber() {
         if (documentNumber==0) {
 
             CoreDOMImplementationImpl cd = (CoreDOMImplementationImpl)CoreDOMImplementationImpl.getDOMImplementation();
@@ -1461,7 +1562,7 @@ extends ParentNode implements Document  {
      * to this document.   Needed for compareDocumentPosition when nodes
      * are disconnected.  This is only used on demand.
      */
-    protected int getNodeNumber(Node node) {
+    protected synchronized int getNodeNumber(Node node) {
 
         // Check if the node is already in the hash
         // If so, retrieve the node number
@@ -1952,6 +2053,80 @@ extends ParentNode implements Document  {
         }
     }
     
+    /**
+     * Prepares the given node and its descendants for concurrent reads,
+     * and makes them read-only.
+     */
+    private void freezeTree(Node node) {
+
+        Node top = node;
+
+        while (node != null) {
+
+            NodeImpl nodeImpl = (NodeImpl) node;
+            if (nodeImpl.needsSyncData()) {
+                nodeImpl.synchronizeData();
+            }
+
+            // create the attribute maps and the children of the attributes
+            NamedNodeMap attributes = node.getAttributes();
+            if (attributes != null) {
+                int length = attributes.getLength();
+                for (int i = 0; i < length; ++i) {
+                    freezeTree(attributes.item(i));
+                }
+                ((NamedNodeMapImpl) attributes).isReadOnly(true);
+            }
+            if (node instanceof DocumentTypeImpl) {
+                DocumentTypeImpl doctype = (DocumentTypeImpl) node;
+                freezeMap(doctype.entities);
+                freezeMap(doctype.notations);
+                freezeMap(doctype.elements);
+            }
+
+            Node nextNode = node.getFirstChild();
+            if (node instanceof ParentNode) {
+                ParentNode parent = (ParentNode) node;
+                parent.fNodeListCache = null;
+                parent.buildChildArray();
+            }
+            nodeImpl.isReadOnly(true);
+
+            while (nextNode == null) {
+
+                if (node == top)
+                    break;
+
+                nextNode = node.getNextSibling();
+
+                if (nextNode == null) {
+                    node = node.getParentNode();
+
+                    if (node == null || node == top) {
+                        nextNode = null;
+                        break;
+                    }
+                }
+            }
+
+            node = nextNode;
+        }
+    } // freezeTree(Node)
+
+    /**
+     * Prepares the nodes of the given map for concurrent reads, and makes
+     * the map and its nodes read-only.
+     */
+    private void freezeMap(NamedNodeMapImpl map) {
+        if (map != null) {
+            int length = map.getLength();
+            for (int i = 0; i < length; ++i) {
+                freezeTree(map.item(i));
+            }
+            map.isReadOnly(true);
+        }
+    } // freezeMap(NamedNodeMapImpl)
+
     // identifier maintenence
     /**
      * Introduced in DOM Level 2
@@ -2186,6 +2361,14 @@ extends ParentNode implements Document  {
      */
     public NodeList getElementsByTagNameNS(String namespaceURI,
     String localName) {
+        if (fElementIndexing) {
+            ArrayList elements =
+                getElementNameIndex().getElements(namespaceURI, localName);
+            if (elements != null) {
+                return new ElementNameIndex.ElementList(this, elements,
+                    namespaceURI, localName, true);
+            }
+        }
         return new DeepNodeListImpl(this, namespaceURI, localName);
     }
 
@@ -2198,6 +2381,7 @@ extends ParentNode implements Document  {
         CoreDocumentImpl newdoc = (CoreDocumentImpl) super.clone();
         newdoc.docType = null;
         newdoc.docElement = null;
+        newdoc.fElementIndex = null;
         return newdoc;
     }
 
@@ -2769,6 +2953,27 @@ extends ParentNode implements Document  {
      */
     void renamedElement(Element oldEl, Element newEl) {
     }
+
+    /**
+     * A method to be called when the name of an element changes.
+     */
+    void changedElementName() {
+        // renaming does not otherwise count as a change, but live lists of
+        // elements by name, indexed or not, must see it
+        fElementIndex = null;
+        changed();
+    }
+
+    /**
+     * Returns the index of the elements by name, building it if the
+     * document changed since it was last built.
+     */
+    ElementNameIndex getElementNameIndex() {
+        if (fElementIndex == null || fElementIndex.fChanges != changes) {
+            fElementIndex = new ElementNameIndex(this);
+        }
+        return fElementIndex;
+    }
     
     /**
      * The serialized forms of the user data and node table
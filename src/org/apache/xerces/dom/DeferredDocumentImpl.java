@@ -18,6 +18,7 @@
 package org.apache.xerces.dom;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Element;
@@ -76,6 +77,15 @@ public class DeferredDocumentImpl
     /** Initial chunk size. */
     protected static final int INITIAL_CHUNK_COUNT = (1 << (16 - CHUNK_SHIFT));   // 2^16 = 64k
 
+    /** Initial size of the first chunk, which grows up to the chunk size. */
+    protected static final int INITIAL_FIRST_CHUNK_SIZE = (1 << 6);   // 64
+
+    /** Initial size of the text arena. */
+    private static final int INITIAL_TEXT_ARENA_SIZE = 256;
+
+    /** Maximum length of the text values shared through the text pool. */
+    private static final int MAX_POOLED_TEXT_LENGTH = 32;
+
     //
     // Data
     //
@@ -111,6 +121,13 @@ public class DeferredDocumentImpl
     /** Extra data. */
     protected transient int fNodeExtra[][];
 
+    /**
+     * Size of the first chunk. Small documents only use part of a
+     * chunk, so the first chunk starts small and is enlarged as nodes
+     * are created, until it reaches the chunk size.
+     */
+    protected transient int fFirstChunkSize;
+
     /** Identifier count. */
     protected transient int fIdCount;
 
@@ -132,6 +149,28 @@ public class DeferredDocumentImpl
     private transient final StringBuffer fBufferStr = new StringBuffer();
     private transient final ArrayList fStrChunks = new ArrayList();
 
+    // The characters of the text nodes appended with appendDeferredText
+    // are stored one after the other in the text arena. For such a text
+    // node, fNodeLastChild holds the offset of its characters in the
+    // arena and fNodeExtra holds their length shifted left by one bit,
+    // the low bit being the ignorable whitespace flag. The value string
+    // is only created when the node is synchronized.
+
+    /** Text arena. */
+    private transient char[] fTextArena;
+
+    /** Number of characters used in the text arena. */
+    private transient int fTextArenaLength;
+
+    /** Number of text nodes whose value is still in the text arena. */
+    private transient int fTextArenaNodeCount;
+
+    /** Last text node appended to the text arena. */
+    private transient int fLastTextNode = -1;
+
+    /** Pool of short text values, shared by the nodes created from the arena. */
+    private transient HashMap fTextPool;
+
     //
     // Constructors
     //
@@ -559,6 +598,66 @@ public class DeferredDocumentImpl
 
     } // createDeferredTextNode(String,boolean):int
 
+    /**
+     * Appends text to the specified parent in the table. The characters
+     * are copied to the text arena. If the last child of the parent is
+     * a text node whose characters end the arena, and which has the same
+     * ignorable whitespace flag, the characters are added to that node
+     * instead of creating a new one.
+     *
+     * @return Returns the index of the text node.
+     */
+    public int appendDeferredText(int parentIndex, char[] ch, int offset,
+                                  int length, boolean ignorableWhitespace) {
+
+        int flag = ignorableWhitespace ? 1 : 0;
+
+        // extend the last text node, if possible
+        int lastIndex = fLastTextNode;
+        if (lastIndex != -1 && getLastChild(parentIndex, false) == lastIndex) {
+            int chunk = lastIndex >> CHUNK_SHIFT;
+            int index = lastIndex & CHUNK_MASK;
+            int start = getChunkIndex(fNodeLastChild, chunk, index);
+            int extra = getChunkIndex(fNodeExtra, chunk, index);
+            if (start != -1 && (extra & 1) == flag
+                    && start + (extra >> 1) == fTextArenaLength) {
+                appendText(ch, offset, length);
+                setChunkIndex(fNodeExtra, extra + (length << 1), chunk, index);
+                return lastIndex;
+            }
+        }
+
+        // create node
+        int nodeIndex = createNode(Node.TEXT_NODE);
+        int chunk = nodeIndex >> CHUNK_SHIFT;
+        int index = nodeIndex & CHUNK_MASK;
+        setChunkIndex(fNodeLastChild, fTextArenaLength, chunk, index);
+        setChunkIndex(fNodeExtra, (length << 1) | flag, chunk, index);
+        appendText(ch, offset, length);
+        fTextArenaNodeCount++;
+        fLastTextNode = nodeIndex;
+        appendChild(parentIndex, nodeIndex);
+
+        // return node index
+        return nodeIndex;
+
+    } // appendDeferredText(int,char[],int,int,boolean):int
+
+    /**
+     * Releases the unused capacity of the tables and of the text arena.
+     * The parser calls this method once the document has been built.
+     */
+    public void trimToSize() {
+        if (fNodeCount > 0 && fNodeCount < fFirstChunkSize) {
+            resizeFirstChunk(fNodeCount);
+        }
+        if (fTextArena != null && fTextArenaLength < fTextArena.length) {
+            char[] newArena = new char[fTextArenaLength];
+            System.arraycopy(fTextArena, 0, newArena, 0, fTextArenaLength);
+            fTextArena = newArena;
+        }
+    } // trimToSize()
+
     /** Creates a CDATA section node in the table. */
     public int createDeferredCDATASection(String data) {
 
@@ -622,9 +721,17 @@ public class DeferredDocumentImpl
             }
             setChunkIndex(fNodeExtra, extraIndex, cchunk, cindex);
         }
+        if (nodeType == Node.TEXT_NODE) {
+            // share the characters in the text arena, if any
+            int start = getChunkIndex(fNodeLastChild, nchunk, nindex);
+            if (start != -1) {
+                setChunkIndex(fNodeLastChild, start, cchunk, cindex);
+                fTextArenaNodeCount++;
+            }
+        }
 
         // clone and attach children
-        if (deep) {
+        if (deep && nodeType != Node.TEXT_NODE) {
             int prevIndex = -1;
             int childIndex = getLastChild(nodeIndex, false);
             while (childIndex != -1) {
@@ -1145,11 +1252,17 @@ public class DeferredDocumentImpl
         int index = nodeIndex & CHUNK_MASK;
         String value = free ? clearChunkValue(fNodeValue, chunk, index)
                             : getChunkValue(fNodeValue, chunk, index);
+        int type  = getChunkIndex(fNodeType, chunk, index);
         if (value == null) {
-            return null;
+            if (type != Node.TEXT_NODE) {
+                return null;
+            }
+            value = getArenaText(chunk, index, free);
+            if (value == null) {
+                return null;
+            }
         }
         
-        int type  = getChunkIndex(fNodeType, chunk, index);
         if (type == Node.TEXT_NODE) {
             int prevSib = getRealPrevSibling(nodeIndex);
             if (prevSib != -1 &&
@@ -1164,6 +1277,11 @@ public class DeferredDocumentImpl
                     chunk = prevSib >> CHUNK_SHIFT;
                     index = prevSib & CHUNK_MASK;
                     value = getChunkValue(fNodeValue, chunk, index);
+                    if (value == null) {
+                        // the previous siblings are never expanded, so
+                        // their characters are released with this node's
+                        value = getArenaText(chunk, index, free);
+                    }
                     fStrChunks.add(value);
                     prevSib = getChunkIndex(fNodePrevSib, chunk, index);
                     if (prevSib == -1) {
@@ -1239,7 +1357,7 @@ public class DeferredDocumentImpl
         Object value = fNodeValue[chunk] != null ? fNodeValue[chunk][index] : null;
         if (value != null) {
             fNodeValue[chunk][index] = null;
-            RefCount c = (RefCount) fNodeValue[chunk][CHUNK_SIZE];
+            RefCount c = (RefCount) fNodeValue[chunk][fNodeValue[chunk].length - 1];
             c.fCount--;
             if (c.fCount == 0) {
                 fNodeValue[chunk] = null;
@@ -1260,8 +1378,13 @@ public class DeferredDocumentImpl
 
         int chunk = nodeIndex >> CHUNK_SHIFT;
         int index = nodeIndex & CHUNK_MASK;
-        return free ? clearChunkValue(fNodeValue, chunk, index)
-                    : getChunkValue(fNodeValue, chunk, index);
+        String value = free ? clearChunkValue(fNodeValue, chunk, index)
+                            : getChunkValue(fNodeValue, chunk, index);
+        if (value == null
+                && getChunkIndex(fNodeType, chunk, index) == Node.TEXT_NODE) {
+            value = getArenaText(chunk, index, free);
+        }
+        return value;
 
     } // getNodeValue(int,boolean):String
 
@@ -1421,7 +1544,7 @@ public class DeferredDocumentImpl
                     // ref count
                     System.out.print(i);
                     System.out.print('\t');
-                    switch (fNodeType[i][CHUNK_SIZE]) {
+                    switch (fNodeType[i][fNodeType[i].length - 1]) {
                         case DocumentImpl.ELEMENT_DEFINITION_NODE: { System.out.print("EDef"); break; }
                         case Node.DOCUMENT_NODE: { System.out.print("Doc"); break; }
                         case Node.DOCUMENT_TYPE_NODE: { System.out.print("DType"); break; }
@@ -1433,22 +1556,22 @@ public class DeferredDocumentImpl
                         case Node.TEXT_NODE: { System.out.print("Text"); break; }
                         case Node.ATTRIBUTE_NODE: { System.out.print("Attr"); break; }
                         case DeferredNode.TYPE_NODE: { System.out.print("TypeInfo"); break; }
-                        default: { System.out.print("?"+fNodeType[i][CHUNK_SIZE]); }
+                        default: { System.out.print("?"+fNodeType[i][fNodeType[i].length - 1]); }
                     }
                     System.out.print('\t');
-                    System.out.print(fNodeName[i][CHUNK_SIZE]);
+                    System.out.print(fNodeName[i][fNodeName[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodeValue[i][CHUNK_SIZE]);
+                    System.out.print(fNodeValue[i][fNodeValue[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodeURI[i][CHUNK_SIZE]);
+                    System.out.print(fNodeURI[i][fNodeURI[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodeParent[i][CHUNK_SIZE]);
+                    System.out.print(fNodeParent[i][fNodeParent[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodeLastChild[i][CHUNK_SIZE]);
+                    System.out.print(fNodeLastChild[i][fNodeLastChild[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodePrevSib[i][CHUNK_SIZE]);
+                    System.out.print(fNodePrevSib[i][fNodePrevSib[i].length - 1]);
                     System.out.print('\t');
-                    System.out.print(fNodeExtra[i][CHUNK_SIZE]);
+                    System.out.print(fNodeExtra[i][fNodeExtra[i].length - 1]);
                     System.out.println();
                 }
             }
@@ -1777,19 +1900,20 @@ public class DeferredDocumentImpl
     /** Ensures that the internal tables are large enough. */
     protected void ensureCapacity(int chunk) {
         if (fNodeType == null) {
-            // create buffers
-            fNodeType       = new int[INITIAL_CHUNK_COUNT][];
-            fNodeName       = new Object[INITIAL_CHUNK_COUNT][];
-            fNodeValue      = new Object[INITIAL_CHUNK_COUNT][];
-            fNodeParent     = new int[INITIAL_CHUNK_COUNT][];
-            fNodeLastChild  = new int[INITIAL_CHUNK_COUNT][];
-            fNodePrevSib    = new int[INITIAL_CHUNK_COUNT][];
-            fNodeURI        = new Object[INITIAL_CHUNK_COUNT][];
-            fNodeExtra      = new int[INITIAL_CHUNK_COUNT][];
+            // create buffers; a single chunk is enough for small documents
+            fNodeType       = new int[1][];
+            fNodeName       = new Object[1][];
+            fNodeValue      = new Object[1][];
+            fNodeParent     = new int[1][];
+            fNodeLastChild  = new int[1][];
+            fNodePrevSib    = new int[1][];
+            fNodeURI        = new Object[1][];
+            fNodeExtra      = new int[1][];
+            fFirstChunkSize = INITIAL_FIRST_CHUNK_SIZE;
         }
         else if (fNodeType.length <= chunk) {
             // resize the tables
-            int newsize = chunk * 2;
+            int newsize = Math.max(chunk * 2, INITIAL_CHUNK_COUNT);
 
             int[][] newArray = new int[newsize][];
             System.arraycopy(fNodeType, 0, newArray, 0, chunk);
@@ -1849,6 +1973,11 @@ public class DeferredDocumentImpl
         int chunk = fNodeCount >> CHUNK_SHIFT;
         int index = fNodeCount & CHUNK_MASK;
         ensureCapacity(chunk);
+        if (chunk == 0 && index >= fFirstChunkSize) {
+            resizeFirstChunk(Math.min(Math.max(fFirstChunkSize << 1,
+                                               INITIAL_FIRST_CHUNK_SIZE),
+                                      CHUNK_SIZE));
+        }
 
         // initialize node
         setChunkIndex(fNodeType, nodeType, chunk, index);
@@ -1927,10 +2056,14 @@ public class DeferredDocumentImpl
             INIT_ARRAY[i] = -1;
         }
     }
-    /** Creates the specified chunk in the given array of chunks. */
+    /**
+     * Creates the specified chunk in the given array of chunks. The
+     * reference count of the chunk is stored after its last entry.
+     */
     private final void createChunk(int data[][], int chunk) {
-        data[chunk] = new int[CHUNK_SIZE + 1];
-        System.arraycopy(INIT_ARRAY, 0, data[chunk], 0, CHUNK_SIZE);
+        int size = chunk == 0 ? fFirstChunkSize : CHUNK_SIZE;
+        data[chunk] = new int[size + 1];
+        System.arraycopy(INIT_ARRAY, 0, data[chunk], 0, size);
     }
 
     static final class RefCount {
@@ -1938,8 +2071,95 @@ public class DeferredDocumentImpl
     }
 
     private final void createChunk(Object data[][], int chunk) {
-        data[chunk] = new Object[CHUNK_SIZE + 1];
-        data[chunk][CHUNK_SIZE] = new RefCount();
+        int size = chunk == 0 ? fFirstChunkSize : CHUNK_SIZE;
+        data[chunk] = new Object[size + 1];
+        data[chunk][size] = new RefCount();
+    }
+
+    /** Resizes the first chunk of all the tables. */
+    private final void resizeFirstChunk(int size) {
+        fFirstChunkSize = size;
+        resizeFirstChunk(fNodeType, size);
+        resizeFirstChunk(fNodeName, size);
+        resizeFirstChunk(fNodeValue, size);
+        resizeFirstChunk(fNodeParent, size);
+        resizeFirstChunk(fNodeLastChild, size);
+        resizeFirstChunk(fNodePrevSib, size);
+        resizeFirstChunk(fNodeURI, size);
+        resizeFirstChunk(fNodeExtra, size);
+    }
+
+    private static void resizeFirstChunk(int data[][], int size) {
+        int[] chunk = data[0];
+        if (chunk != null) {
+            int length = Math.min(chunk.length - 1, size);
+            int[] newChunk = new int[size + 1];
+            System.arraycopy(chunk, 0, newChunk, 0, length);
+            System.arraycopy(INIT_ARRAY, length, newChunk, length, size - length);
+            newChunk[size] = chunk[chunk.length - 1];
+            data[0] = newChunk;
+        }
+    }
+
+    private static void resizeFirstChunk(Object data[][], int size) {
+        Object[] chunk = data[0];
+        if (chunk != null) {
+            int length = Math.min(chunk.length - 1, size);
+            Object[] newChunk = new Object[size + 1];
+            System.arraycopy(chunk, 0, newChunk, 0, length);
+            newChunk[size] = chunk[chunk.length - 1];
+            data[0] = newChunk;
+        }
+    }
+
+    /** Appends characters to the text arena. */
+    private final void appendText(char[] ch, int offset, int length) {
+        int newLength = fTextArenaLength + length;
+        if (fTextArena == null || newLength > fTextArena.length) {
+            int size = fTextArena == null
+                     ? INITIAL_TEXT_ARENA_SIZE : fTextArena.length << 1;
+            char[] newArena = new char[Math.max(size, newLength)];
+            if (fTextArena != null) {
+                System.arraycopy(fTextArena, 0, newArena, 0, fTextArenaLength);
+            }
+            fTextArena = newArena;
+        }
+        System.arraycopy(ch, offset, fTextArena, fTextArenaLength, length);
+        fTextArenaLength = newLength;
+    }
+
+    /**
+     * Returns the value of a text node whose characters are stored in
+     * the text arena, or null if they are not. Short values are shared
+     * through the text pool. The arena is released once the values of
+     * all of its text nodes have been freed.
+     */
+    private final String getArenaText(int chunk, int index, boolean free) {
+        int start = free ? clearChunkIndex(fNodeLastChild, chunk, index)
+                         : getChunkIndex(fNodeLastChild, chunk, index);
+        if (start == -1) {
+            return null;
+        }
+        int length = getChunkIndex(fNodeExtra, chunk, index) >> 1;
+        String value = new String(fTextArena, start, length);
+        if (length <= MAX_POOLED_TEXT_LENGTH) {
+            if (fTextPool == null) {
+                fTextPool = new HashMap();
+            }
+            String pooled = (String) fTextPool.get(value);
+            if (pooled == null) {
+                fTextPool.put(value, value);
+            }
+            else {
+                value = pooled;
+            }
+        }
+        if (free && --fTextArenaNodeCount == 0) {
+            fTextArena = null;
+            fTextArenaLength = 0;
+            fTextPool = null;
+        }
+        return value;
     }
 
     /**
@@ -1960,7 +2180,7 @@ public class DeferredDocumentImpl
         }
         int ovalue = dataChunk[index];
         if (ovalue == -1) {
-            dataChunk[CHUNK_SIZE]++;
+            dataChunk[dataChunk.length - 1]++;
         }
         dataChunk[index] = value;
         return ovalue;
@@ -1978,7 +2198,7 @@ public class DeferredDocumentImpl
         }
         String ovalue = (String) dataChunk[index];
         if (ovalue == null) {
-            RefCount c = (RefCount) dataChunk[CHUNK_SIZE];
+            RefCount c = (RefCount) dataChunk[dataChunk.length - 1];
             c.fCount++;
         }
         dataChunk[index] = value;
@@ -2017,11 +2237,11 @@ public class DeferredDocumentImpl
      * @return Returns the old value.
      */
     private final int clearChunkIndex(int data[][], int chunk, int index) {
-        int value = data[chunk] != null ? data[chunk][index] : -1;
+        int[] dataChunk = data[chunk];
+        int value = dataChunk != null ? dataChunk[index] : -1;
         if (value != -1) {
-            data[chunk][CHUNK_SIZE]--;
-            data[chunk][index] = -1;
-            if (data[chunk][CHUNK_SIZE] == 0) {
+            dataChunk[index] = -1;
+            if (--dataChunk[dataChunk.length - 1] == 0) {
                 data[chunk] = null;
             }
         }
@@ -2032,7 +2252,7 @@ public class DeferredDocumentImpl
         String value = data[chunk] != null ? (String)data[chunk][index] : null;
         if (value != null) {
             data[chunk][index] = null;
-            RefCount c = (RefCount) data[chunk][CHUNK_SIZE];
+            RefCount c = (RefCount) data[chunk][data[chunk].length - 1];
             c.fCount--;
             if (c.fCount == 0) {
                 data[chunk] = null;
@@ -97,8 +97,9 @@ public class DeferredTextImpl
         //       This code has moved to the DeferredDocumentImpl
         //       getNodeValueString() method. -Ac
 
-        // ignorable whitespace
-        isIgnorableWhitespace(ownerDocument.getNodeExtra(fNodeIndex) == 1);
+        // ignorable whitespace, in the low bit of the extra data
+        int extra = ownerDocument.getNodeExtra(fNodeIndex);
+        isIgnorableWhitespace(extra != -1 && (extra & 1) == 1);
 
     } // synchronizeData()
 
@@ -236,6 +236,11 @@ public class DocumentImpl
                                                      whatToShow,
                                                      filter,
                                                      entityReferenceExpansion);
+        if (fFrozen) {
+            // a frozen document never changes, so the iterator does not
+            // need to be notified of removals
+            return iterator;
+        }
         if (iterators == null) {
             iterators = new LinkedList();
             iteratorReferenceQueue = new ReferenceQueue();
@@ -298,7 +303,7 @@ public class DocumentImpl
     void removeNodeIterator(NodeIterator nodeIterator) {
 
         if (nodeIterator == null) return;
-        if (iterators == null) return;
+        if (iterators == null || fFrozen) return;
 
         removeStaleIteratorReferences();
         Iterator i = iterators.iterator();
@@ -353,6 +358,11 @@ public class DocumentImpl
      */
     public Range createRange() {
 
+        if (fFrozen) {
+            // a frozen document never changes, so the range does not
+            // need to be notified of changes
+            return new RangeImpl(this);
+        }
         if (ranges == null) {
             ranges = new LinkedList();
             rangeReferenceQueue = new ReferenceQueue();
@@ -374,7 +384,7 @@ public class DocumentImpl
     void removeRange(Range range) {
 
         if (range == null) return;
-        if (ranges == null) return;
+        if (ranges == null || fFrozen) return;
 
         removeStaleRangeReferences();
         Iterator i = ranges.iterator();
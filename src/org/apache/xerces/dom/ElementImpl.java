@@ -117,6 +117,7 @@ public class ElementImpl
         }
         this.name = name;
         reconcileDefaultAttributes();
+        ownerDocument.changedElementName();
     }
 
     //
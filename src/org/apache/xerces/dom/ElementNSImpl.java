@@ -183,6 +183,7 @@ public class ElementNSImpl
 		this.name = qualifiedName;
         setName(namespaceURI, qualifiedName);
         reconcileDefaultAttributes();
+        ownerDocument.changedElementName();
     }
 
     //
@@ -288,6 +289,7 @@ public class ElementNSImpl
         else {
             name = localName;
         }
+        ownerDocument.changedElementName();
     }
 
     /**
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The elements of a document grouped by name, in document order. The
+ * index is built by CoreDocumentImpl in a single traversal of the
+ * document, and answers the document's <code>getElementsByTagName</code>
+ * and <code>getElementsByTagNameNS</code> queries until the document
+ * changes. It is never updated; a new index replaces it.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class ElementNameIndex {
+
+    /** The elements of an empty result. */
+    private static final ArrayList EMPTY = new ArrayList(0);
+
+    /** Number of changes to the document when the index was built. */
+    final int fChanges;
+
+    /** All the elements. */
+    private final ArrayList fElements;
+
+    /** Elements by tag name. */
+    private final HashMap fByTagName = new HashMap();
+
+    /** Elements by local name, whatever their namespace. */
+    private final HashMap fByLocalName = new HashMap();
+
+    /**
+     * Elements by local name, then namespace URI. Elements without a
+     * namespace are stored under the empty string.
+     */
+    private final HashMap fByName = new HashMap();
+
+    /** Builds the index of the elements of the given document. */
+    ElementNameIndex(CoreDocumentImpl document) {
+        // walk the tree the same way as the lists which are not indexed
+        DeepNodeListImpl all = new DeepNodeListImpl(document, "*");
+        all.getLength();
+        fElements = all.nodes;
+        fChanges = document.changes();
+        final int length = fElements.size();
+        for (int i = 0; i < length; ++i) {
+            ElementImpl element = (ElementImpl) fElements.get(i);
+            add(fByTagName, element.getTagName(), element);
+            String localName = element.getLocalName();
+            if (localName != null) {
+                add(fByLocalName, localName, element);
+                HashMap byNamespace = (HashMap) fByName.get(localName);
+                if (byNamespace == null) {
+                    byNamespace = new HashMap();
+                    fByName.put(localName, byNamespace);
+                }
+                String namespaceURI = element.getNamespaceURI();
+                add(byNamespace, namespaceURI != null ? namespaceURI : "", element);
+            }
+        }
+    } // <init>(CoreDocumentImpl)
+
+    /**
+     * Returns the elements with the given tag name. The list must not be
+     * modified.
+     */
+    ArrayList getElements(String tagName) {
+        if (tagName.equals("*")) {
+            return fElements;
+        }
+        return result(fByTagName.get(tagName));
+    } // getElements(String):ArrayList
+
+    /**
+     * Returns the elements with the given namespace URI and local name,
+     * or <code>null</code> if the index cannot answer the query. The list
+     * must not be modified.
+     */
+    ArrayList getElements(String namespaceURI, String localName) {
+        boolean anyNamespace = "*".equals(namespaceURI);
+        if (localName.equals("*")) {
+            return anyNamespace ? fElements : null;
+        }
+        if (anyNamespace) {
+            return result(fByLocalName.get(localName));
+        }
+        HashMap byNamespace = (HashMap) fByName.get(localName);
+        if (byNamespace == null) {
+            return EMPTY;
+        }
+        return result(byNamespace.get(namespaceURI != null ? namespaceURI : ""));
+    } // getElements(String,String):ArrayList
+
+    private static void add(HashMap map, String key, ElementImpl element) {
+        ArrayList elements = (ArrayList) map.get(key);
+        if (elements == null) {
+            elements = new ArrayList(4);
+            map.put(key, elements);
+        }
+        elements.add(element);
+    } // add(HashMap,String,ElementImpl)
+
+    private static ArrayList result(Object elements) {
+        return elements != null ? (ArrayList) elements : EMPTY;
+    } // result(Object):ArrayList
+
+    /**
+     * A live list of the elements of a document with a given name, which
+     * is read from the index of the document.
+     */
+    static final class ElementList implements NodeList {
+
+        /** The document. */
+        private final CoreDocumentImpl fDocument;
+
+        /** Namespace URI, if the list was requested with one. */
+        private final String fNamespaceURI;
+
+        /** Tag name or local name. */
+        private final String fName;
+
+        /** True if the list was requested with a namespace URI. */
+        private final boolean fNamespaces;
+
+        /** The elements, as of <code>fChanges</code>. */
+        private ArrayList fElements;
+
+        /** Number of changes to the document when the list was read. */
+        private int fChanges;
+
+        ElementList(CoreDocumentImpl document, ArrayList elements,
+                    String namespaceURI, String name, boolean namespaces) {
+            fDocument = document;
+            fElements = elements;
+            fChanges = document.changes();
+            fNamespaceURI = namespaceURI;
+            fName = name;
+            fNamespaces = namespaces;
+        } // <init>(CoreDocumentImpl,ArrayList,String,String,boolean)
+
+        public int getLength() {
+            return elements().size();
+        } // getLength():int
+
+        public Node item(int index) {
+            ArrayList elements = elements();
+            return (index >= 0 && index < elements.size()) ?
+                (Node) elements.get(index) : null;
+        } // item(int):Node
+
+        /** Returns the elements, reading them again if the document changed. */
+        private ArrayList elements() {
+            if (fChanges != fDocument.changes()) {
+                ElementNameIndex index = fDocument.getElementNameIndex();
+                fElements = fNamespaces ?
+                    index.getElements(fNamespaceURI, fName) :
+                    index.getElements(fName);
+                fChanges = index.fChanges;
+            }
+            return fElements;
+        } // elements():ArrayList
+
+    } // class ElementList
+
+} // class ElementNameIndex
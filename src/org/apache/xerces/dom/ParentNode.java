@@ -73,6 +73,13 @@ public abstract class ParentNode
     /** Serialization version. */
     static final long serialVersionUID = 2815829867152120872L;
 
+    /**
+     * Number of siblings which <code>item(int)</code> walks at most
+     * before storing the children in an array. Only nodes with more
+     * children than this have an array.
+     */
+    static final int CHILD_ARRAY_THRESHOLD = 32;
+
     /** Owner document. */
     protected CoreDocumentImpl ownerDocument;
 
@@ -84,6 +91,12 @@ public abstract class ParentNode
     /** NodeList cache */
     protected transient NodeListCache fNodeListCache = null;
 
+    /**
+     * Children of a node which has many children, built on demand by
+     * <code>item(int)</code> and discarded when the children change.
+     */
+    protected transient ChildNode[] fChildArray = null;
+
     //
     // Constructors
     //
@@ -137,6 +150,7 @@ public abstract class ParentNode
 
         // invalidate cache for children NodeList
         newnode.fNodeListCache = null;
+        newnode.fChildArray = null;
 
         // Then, if deep, clone the kids too.
     	if (deep) {
@@ -433,6 +447,8 @@ public abstract class ParentNode
 
         changed();
 
+        fChildArray = null;
+
         // update cached length if we have any
         if (fNodeListCache != null) {
             if (fNodeListCache.fLength != -1) {
@@ -506,6 +522,8 @@ public abstract class ParentNode
         // Save previous sibling for normalization checking.
         final ChildNode oldPreviousSibling = oldInternal.previousSibling();
 
+        fChildArray = null;
+
         // update cached length if we have any
         if (fNodeListCache != null) {
             if (fNodeListCache.fLength != -1) {
@@ -672,6 +690,20 @@ public abstract class ParentNode
      */
     private int nodeListGetLength() {
 
+        if (fChildArray != null) {
+            return fChildArray.length;
+        }
+        if (ownerDocument.fFrozen) {
+            // a frozen document is read without using the shared cache
+            if (needsSyncChildren()) {
+                synchronizeChildren();
+            }
+            int l = 0;
+            for (ChildNode n = firstChild; n != null; n = n.nextSibling) {
+                l++;
+            }
+            return l;
+        }
         if (fNodeListCache == null) {
             if (needsSyncChildren()) {
                 synchronizeChildren();
@@ -724,6 +756,24 @@ public abstract class ParentNode
      */
     private Node nodeListItem(int index) {
 
+        if (fChildArray != null) {
+            return (index >= 0 && index < fChildArray.length) ?
+                fChildArray[index] : null;
+        }
+        if (ownerDocument.fFrozen) {
+            // a frozen document is read without using the shared cache
+            if (needsSyncChildren()) {
+                synchronizeChildren();
+            }
+            if (index < 0) {
+                return null;
+            }
+            ChildNode n = firstChild;
+            for (int i = 0; i < index && n != null; i++) {
+                n = n.nextSibling;
+            }
+            return n;
+        }
         if (fNodeListCache == null) {
             if (needsSyncChildren()) {
                 synchronizeChildren();
@@ -738,6 +788,13 @@ public abstract class ParentNode
         int i = fNodeListCache.fChildIndex;
         ChildNode n = fNodeListCache.fChild;
         boolean firstAccess = true;
+        // index the children rather than walking a long way
+        int distance = (i != -1 && n != null) ? i - index : index;
+        if ((distance > CHILD_ARRAY_THRESHOLD ||
+             distance < -CHILD_ARRAY_THRESHOLD) && buildChildArray()) {
+            return (index >= 0 && index < fChildArray.length) ?
+                fChildArray[index] : null;
+        }
         // short way
         if (i != -1 && n != null) {
             firstAccess = false;
@@ -784,6 +841,28 @@ public abstract class ParentNode
 
     } // nodeListItem(int):Node
 
+    /**
+     * Stores the children of this node in an array if there are more than
+     * <code>CHILD_ARRAY_THRESHOLD</code> of them.
+     * @return true if the children are stored in an array
+     */
+    final boolean buildChildArray() {
+        int length = 0;
+        for (ChildNode n = firstChild; n != null; n = n.nextSibling) {
+            length++;
+        }
+        if (length <= CHILD_ARRAY_THRESHOLD) {
+            return false;
+        }
+        ChildNode[] children = new ChildNode[length];
+        length = 0;
+        for (ChildNode n = firstChild; n != null; n = n.nextSibling) {
+            children[length++] = n;
+        }
+        fChildArray = children;
+        return true;
+    } // buildChildArray():boolean
+
     /**
      * NodeList method: Return the Nth immediate child of this node, or
      * null if the index is out of bounds.
@@ -268,6 +268,9 @@ public final class Constants {
     /** Notify built-in (&amp;amp;, etc.) references feature (scanner/notify-builtin-refs"). */
     public static final String NOTIFY_BUILTIN_REFS_FEATURE = "scanner/notify-builtin-refs";
     
+    /** Coalesce characters feature ("scanner/coalesce-characters"). */
+    public static final String COALESCE_CHARACTERS_FEATURE = "scanner/coalesce-characters";
+    
     /** Standard URI conformant feature ("standard-uri-conformant"). */
     public static final String STANDARD_URI_CONFORMANT_FEATURE = "standard-uri-conformant";
     
@@ -298,6 +301,9 @@ public final class Constants {
     /** XInclude fixup language feature ("xinclude/fixup-language"). */
     public static final String XINCLUDE_FIXUP_LANGUAGE_FEATURE = "xinclude/fixup-language";    
     
+    /** XInclude stop after fragment feature ("xinclude/stop-after-fragment"). */
+    public static final String XINCLUDE_STOP_AFTER_FRAGMENT_FEATURE = "xinclude/stop-after-fragment";
+    
     /**
      * Feature to ignore xsi:type attributes on elements during validation,
      * until a global element declaration is found. ("validation/schema/ignore-xsi-type-until-elemdecl")
@@ -431,6 +437,12 @@ public final class Constants {
     /** Schema element declaration for the root element in a document ("validation/schema/root-element-declaration"). */
     public static final String ROOT_ELEMENT_DECLARATION_PROPERTY = "validation/schema/root-element-declaration";
     
+    /** Number of threads parsing referenced schema documents ("validation/schema/loading-threads"). */
+    public static final String SCHEMA_LOADING_THREADS_PROPERTY = "validation/schema/loading-threads";
+    
+    /** Cache of the documents included with XInclude ("xinclude/document-cache"). */
+    public static final String XINCLUDE_DOCUMENT_CACHE_PROPERTY = "xinclude/document-cache";
+    
     /** Schema element declaration for the root element in a document ("internal/validation/schema/dv-factory"). */
     public static final String SCHEMA_DV_FACTORY_PROPERTY = "internal/validation/schema/dv-factory";
     
@@ -517,6 +529,7 @@ public final class Constants {
             BALANCE_SYNTAX_TREES,
             NOTIFY_CHAR_REFS_FEATURE,
             NOTIFY_BUILTIN_REFS_FEATURE,
+            COALESCE_CHARACTERS_FEATURE,
             DISALLOW_DOCTYPE_DECL_FEATURE,
             STANDARD_URI_CONFORMANT_FEATURE,
             GENERATE_SYNTHETIC_ANNOTATIONS_FEATURE,
@@ -525,6 +538,7 @@ public final class Constants {
             XINCLUDE_FEATURE,
             XINCLUDE_FIXUP_BASE_URIS_FEATURE,
             XINCLUDE_FIXUP_LANGUAGE_FEATURE,
+            XINCLUDE_STOP_AFTER_FRAGMENT_FEATURE,
             IGNORE_XSI_TYPE_FEATURE,
             ID_IDREF_CHECKING_FEATURE,
             IDC_CHECKING_FEATURE,
@@ -556,6 +570,8 @@ public final class Constants {
             LOCALE_PROPERTY,
             ROOT_TYPE_DEFINITION_PROPERTY,
             ROOT_ELEMENT_DECLARATION_PROPERTY,
+            SCHEMA_LOADING_THREADS_PROPERTY,
+            XINCLUDE_DOCUMENT_CACHE_PROPERTY,
             SCHEMA_DV_FACTORY_PROPERTY,
     };
     
@@ -118,6 +118,10 @@ public class XMLDocumentFragmentScannerImpl
     /** Feature identifier: notify built-in refereces. */
     protected static final String NOTIFY_BUILTIN_REFS =
         Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_BUILTIN_REFS_FEATURE;
+
+    /** Feature identifier: coalesce characters. */
+    protected static final String COALESCE_CHARACTERS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.COALESCE_CHARACTERS_FEATURE;
         
     // property identifiers
     
@@ -133,6 +137,7 @@ public class XMLDocumentFragmentScannerImpl
         VALIDATION, 
         NOTIFY_BUILTIN_REFS,
         NOTIFY_CHAR_REFS, 
+        COALESCE_CHARACTERS,
     };
 
     /** Feature defaults. */
@@ -141,6 +146,7 @@ public class XMLDocumentFragmentScannerImpl
         null,
         Boolean.FALSE,
         Boolean.FALSE,
+        Boolean.FALSE,
     };
 
     /** Recognized properties. */
@@ -223,6 +229,9 @@ public class XMLDocumentFragmentScannerImpl
     /** Notify built-in references. */
     protected boolean fNotifyBuiltInRefs = false;
 
+    /** Coalesce character data between markup into a single event. */
+    protected boolean fCoalesceCharacters = false;
+
     // dispatchers
 
     /** Active dispatcher. */
@@ -383,6 +392,11 @@ public class XMLDocumentFragmentScannerImpl
             } catch (XMLConfigurationException e) {
                 fNotifyBuiltInRefs = false;
             }
+            try {
+                fCoalesceCharacters = componentManager.getFeature(COALESCE_CHARACTERS);
+            } catch (XMLConfigurationException e) {
+                fCoalesceCharacters = false;
+            }
             
             // xerces properties
             try {
@@ -433,6 +447,10 @@ public class XMLDocumentFragmentScannerImpl
                 featureId.endsWith(Constants.NOTIFY_BUILTIN_REFS_FEATURE)) {
                 fNotifyBuiltInRefs = state;
             }
+            else if (suffixLength == Constants.COALESCE_CHARACTERS_FEATURE.length() && 
+                featureId.endsWith(Constants.COALESCE_CHARACTERS_FEATURE)) {
+                fCoalesceCharacters = state;
+            }
         }
 
     } // setFeature(String,boolean)
@@ -1000,7 +1018,8 @@ public class XMLDocumentFragmentScannerImpl
     protected int scanContent() throws IOException, XNIException {
 
         XMLString content = fTempString;
-        int c = fEntityScanner.scanContent(content);
+        int c = fCoalesceCharacters ?
+                fEntityScanner.scanCoalescedContent(content) : fEntityScanner.scanContent(content);
         if (c == '\r') {
             // happens when there is the character reference &#13;
             fEntityScanner.scanChar();
@@ -44,6 +44,13 @@ public class XMLEntityScanner implements XMLLocator {
     // constants
     private static final boolean DEBUG_ENCODINGS = false;
     private static final boolean DEBUG_BUFFER = false;
+
+    /**
+     * Length of a coalesced run of character data which is returned
+     * when it reaches the end of the buffer, rather than moved to the
+     * start of the buffer and continued.
+     */
+    private static final int MAX_COALESCED_LENGTH = 0x10000;
     
     /**
      * To signal the end of the document entity, this exception will be thrown.
@@ -777,6 +784,146 @@ public class XMLEntityScanner implements XMLLocator {
 
     } // scanContent(XMLString):int
 
+    /**
+     * Scans a range of parsed character data, setting the fields of the
+     * XMLString structure, appropriately.
+     * <p>
+     * Unlike <code>scanContent</code>, this method returns the longest
+     * run of parsed character data in the current entity: it does not
+     * return at line ends, at a single ']' within the entity, at a
+     * surrogate pair or at the end of the input buffer. When the run
+     * reaches the end of the buffer, the characters of the run are moved
+     * to the start of the buffer, which is enlarged if needed, before
+     * more characters are read. A run of more than 64K characters is
+     * returned when it next reaches the end of the buffer, so that the
+     * buffer stays bounded; the rest of the run is returned by the next
+     * call.
+     * <p>
+     * <strong>Note:</strong> The characters are consumed.
+     * <p>
+     * <strong>Note:</strong> The fields contained in the XMLString
+     * structure are not guaranteed to remain valid upon subsequent calls
+     * to the entity scanner. Therefore, the caller is responsible for
+     * immediately using the returned character data or making a copy of
+     * the character data.
+     *
+     * @param content The content structure to fill.
+     *
+     * @return Returns the next character on the input, if known. This
+     *         value is -1 at the end of the entity.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public int scanCoalescedContent(XMLString content) throws IOException {
+        if (DEBUG_BUFFER) {
+            System.out.print("(scanCoalescedContent: ");
+            XMLEntityManager.print(fCurrentEntity);
+            System.out.println();
+        }
+
+        // load more characters, if needed
+        if (fCurrentEntity.position == fCurrentEntity.count) {
+            load(0, true);
+        }
+
+        final boolean external = fCurrentEntity.isExternal();
+        char[] ch = fCurrentEntity.ch;
+        int count = fCurrentEntity.count;
+        // the run is ch[offset..write); ch[read..count) is still to be scanned
+        int offset = fCurrentEntity.position;
+        int read = offset;
+        int write = offset;
+        // length of the run before the current line
+        int lineStart = 0;
+        int columnNumber = fCurrentEntity.columnNumber;
+        boolean endOfEntity = false;
+        int c;
+        while (true) {
+            if (write == read) {
+                while (read < count && XMLChar.isContent(ch[read])) {
+                    read++;
+                }
+                write = read;
+            }
+            else {
+                // a line end has been normalized; shift the rest of the run
+                while (read < count && XMLChar.isContent(c = ch[read])) {
+                    ch[write++] = (char) c;
+                    read++;
+                }
+            }
+            if (read == count || (!endOfEntity && read + 1 >= count
+                    && (ch[read] == '\r' || ch[read] == ']' || XMLChar.isHighSurrogate(ch[read])))) {
+                if (endOfEntity || write - offset >= MAX_COALESCED_LENGTH) {
+                    c = -1;
+                    break;
+                }
+                // keep the run and the characters which have not been
+                // scanned yet, and read more characters after them
+                final int length = write - offset;
+                final int remaining = count - read;
+                fCurrentEntity.position = read;
+                if (length + remaining == ch.length) {
+                    resizeBuffer(offset, length);
+                    System.arraycopy(ch, read, fCurrentEntity.ch, length, remaining);
+                    ch = fCurrentEntity.ch;
+                }
+                else if (offset > 0 || write != read) {
+                    System.arraycopy(ch, offset, ch, 0, length);
+                    System.arraycopy(ch, read, ch, length, remaining);
+                }
+                endOfEntity = load(length + remaining, false);
+                fCurrentEntity.position = length;
+                fCurrentEntity.startPosition = length;
+                count = fCurrentEntity.count;
+                offset = 0;
+                read = length;
+                write = length;
+                continue;
+            }
+            c = ch[read];
+            if (c == '\n' || (c == '\r' && external)) {
+                if (c == '\r' && read + 1 < count && ch[read + 1] == '\n') {
+                    read++;
+                }
+                ch[write++] = '\n';
+                read++;
+                fCurrentEntity.lineNumber++;
+                columnNumber = 1;
+                lineStart = write - offset;
+            }
+            else if (c == ']' && read + 1 < count && ch[read + 1] != ']') {
+                // runs of ']' and a ']' at the end of the entity are
+                // returned, so that the caller checks them for "]]>"
+                // as it does without coalescing
+                ch[write++] = ']';
+                read++;
+            }
+            else if (XMLChar.isHighSurrogate(c) && read + 1 < count
+                    && XMLChar.isLowSurrogate(ch[read + 1])) {
+                ch[write++] = (char) c;
+                ch[write++] = ch[read + 1];
+                read += 2;
+            }
+            else {
+                // markup, reference or invalid character
+                break;
+            }
+        }
+
+        fCurrentEntity.position = read;
+        fCurrentEntity.columnNumber = columnNumber + (write - offset) - lineStart;
+        content.setValues(ch, offset, write - offset);
+        if (DEBUG_BUFFER) {
+            System.out.print(")scanCoalescedContent: ");
+            XMLEntityManager.print(fCurrentEntity);
+            System.out.println(" -> '"+(char)c+"'");
+        }
+        return c;
+
+    } // scanCoalescedContent(XMLString):int
+
     /**
      * Scans a range of attribute value data, setting the fields of the
      * XMLString structure, appropriately.
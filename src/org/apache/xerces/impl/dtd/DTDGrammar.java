@@ -18,7 +18,7 @@
 package org.apache.xerces.impl.dtd;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Random;
 
 import org.apache.xerces.impl.dtd.models.CMAny;
@@ -216,6 +216,9 @@ public class DTDGrammar
     /** Notation index mapping table. */
     private QNameHashtable fNotationIndexMap = new QNameHashtable();
 
+    /** Attribute index mapping table, keyed by element index and attribute name. */
+    private QNameHashtable fAttributeIndexMap = new QNameHashtable();
+
     // temp variables
 
     /** Mixed. */
@@ -248,7 +251,7 @@ public class DTDGrammar
     private XMLContentSpec fContentSpec = new XMLContentSpec();
 
     /** table of XMLElementDecl   */
-    Hashtable   fElementDeclTab     = new Hashtable();
+    HashMap     fElementDeclTab     = new HashMap();
 
     /** Children content model operation stack. */
     private short[] fOpStack = null;
@@ -341,17 +344,7 @@ public class DTDGrammar
         if (elementDeclIndex == -1) {
             return -1;
         }
-        int attDefIndex = getFirstAttributeDeclIndex(elementDeclIndex);
-        while (attDefIndex != -1) {
-            getAttributeDecl(attDefIndex, fAttributeDecl);
-
-            if (fAttributeDecl.name.rawname == attributeDeclName
-                || attributeDeclName.equals(fAttributeDecl.name.rawname) ) {
-                return attDefIndex;
-            }
-            attDefIndex = getNextAttributeDeclIndex(attDefIndex);
-        }
-        return -1;
+        return fAttributeIndexMap.get(elementDeclIndex, attributeDeclName);
     } // getAttributeDeclIndex (int,QName)
 
     //
@@ -1865,6 +1858,10 @@ public class DTDGrammar
             fAttributeDeclNextAttributeDeclIndex[attrChunk][attrIndex] = attributeDeclIndex;
          }
          fElementDeclLastAttributeDeclIndex[elemChunk][elemIndex] = attributeDeclIndex;
+         // the first declaration of an attribute is binding
+         if (fAttributeIndexMap.get(elementDeclIndex, attributeDecl.name.rawname) == -1) {
+            fAttributeIndexMap.put(elementDeclIndex, attributeDecl.name.rawname, attributeDeclIndex);
+         }
       }
    }
 
@@ -2631,8 +2628,11 @@ public class DTDGrammar
     //
 
     /**
-     * A simple Hashtable implementation that takes a tuple (String, String)
-     * as the key and a int as value.
+     * An open addressing hash table which maps a name, optionally paired
+     * with an int scope such as an element declaration index, to an int.
+     * Keys and values are held in primitive arrays, so that neither are
+     * boxed. Names are compared by identity first, which makes lookups
+     * of symbols from the grammar's symbol table cheap.
      * 
      * @xerces.internal
      *
@@ -2670,15 +2670,13 @@ public class DTDGrammar
         // Constants
         //
     
-        /** Initial bucket size (4). */
-        private static final int INITIAL_BUCKET_SIZE = 4;
-
-        // NOTE: Changed previous hashtable size from 512 to 101 so
-        //       that we get a better distribution for hashing. -Ac
-        /** Hashtable size (101). */
-        private static final int HASHTABLE_SIZE = 101;
+        /** Initial capacity (64). Must be a power of two. */
+        private static final int INITIAL_CAPACITY = 64;
+        
+        /** Scope of names which are not paired with a scope. */
+        private static final int NO_SCOPE = -1;
         
-        /** Maximum hash collisions per bucket for a table with load factor == 1. */
+        /** Maximum number of slots probed on insertion before a new hash function is selected. */
         private static final int MAX_HASH_COLLISIONS = 40;
         
         private static final int MULTIPLIERS_SIZE = 1 << 5;
@@ -2687,10 +2685,21 @@ public class DTDGrammar
         //
         // Data
         //
-        private Object[][] fHashTable = new Object[HASHTABLE_SIZE][];
         
-        /** actual table size **/
-        private int fTableSize = HASHTABLE_SIZE;
+        /** Names, or null for empty slots. */
+        private String[] fKeys;
+        
+        /** Scopes. */
+        private int[] fScopes;
+        
+        /** Hash codes of the name and scope. */
+        private int[] fHashes;
+        
+        /** Values. */
+        private int[] fValues;
+        
+        /** Capacity - 1. */
+        private int fMask;
 
         /** The total number of entries in the hash table. */
         private int fCount = 0;
@@ -2700,96 +2709,86 @@ public class DTDGrammar
          * if the default String.hashCode() function should be used.
          */
         private int[] fHashMultipliers;
+        
+        //
+        // Constructors
+        //
+        
+        public QNameHashtable() {
+            allocate(INITIAL_CAPACITY);
+        }
 
         //
         // Public methods
         //
-        /** Associates the given value with the specified key tuple. */
+        
+        /** Associates the given value with the specified key. */
         public void put(String key, int value) {
-
-            int hash = (hash(key) & 0x7FFFFFFF) % fTableSize;
-            Object[] bucket = fHashTable[hash];
-
-            if (bucket == null) {
-                bucket = new Object[1 + 2*INITIAL_BUCKET_SIZE];
-                bucket[0] = new int[]{1};
-                bucket[1] = key;
-                bucket[2] = new int[]{value};
-                fHashTable[hash] = bucket;
-                if (++fCount > fTableSize) {
-                    // Rehash the table if the number of entries
-                    // would exceed the number of buckets.
-                    rehash();
-                }
-            } else {
-                int count = ((int[])bucket[0])[0];
-                int offset = 1 + 2*count;
-                if (offset == bucket.length) {
-                    int newSize = count + INITIAL_BUCKET_SIZE;
-                    Object[] newBucket = new Object[1 + 2*newSize];
-                    System.arraycopy(bucket, 0, newBucket, 0, offset);
-                    bucket = newBucket;
-                    fHashTable[hash] = bucket;
-                }
-                boolean found = false;
-                int j=1;
-                for (int i=0; i<count; i++){
-                    if ((String)bucket[j] == key) {
-                        ((int[])bucket[j+1])[0] = value;
-                        found = true;
-                        break;
-                    }
-                    j += 2;
-                }
-                if (!found) {
-                    bucket[offset++] = key;
-                    bucket[offset]= new int[]{value};
-                    ((int[])bucket[0])[0] = ++count;
-                    if (++fCount > fTableSize) {
-                        // Rehash the table if the number of entries
-                        // would exceed the number of buckets.
-                        rehash();
+            put(NO_SCOPE, key, value);
+        } // put(String,int)
+        
+        /** Returns the value associated with the specified key, or -1. */
+        public int get(String key) {
+            return get(NO_SCOPE, key);
+        } // get(String):int
+        
+        /** Associates the given value with the specified scope and key. */
+        public void put(int scope, String key, int value) {
+            final int hash = hash(scope, key);
+            int probes = 0;
+            for (int i = hash & fMask;; i = (i + 1) & fMask) {
+                final String k = fKeys[i];
+                if (k == null) {
+                    fKeys[i] = key;
+                    fScopes[i] = scope;
+                    fHashes[i] = hash;
+                    fValues[i] = value;
+                    if (++fCount > (fKeys.length >> 1)) {
+                        // Keep at least half of the slots empty.
+                        rehash(fKeys.length << 1);
                     }
-                    else if (count > MAX_HASH_COLLISIONS) {
+                    else if (probes > MAX_HASH_COLLISIONS) {
                         // Select a new hash function and rehash the table if
                         // MAX_HASH_COLLISIONS is exceeded.
                         rebalance();
                     }
+                    return;
                 }
-
-            }
-            //System.out.println("put("+key+" -> "+value+')');
-            //System.out.println("get("+key+") -> "+get(key));
-
-        } // put(int,String,String,int)
-
-        /** Returns the value associated with the specified key tuple. */
-        public int get(String key) {
-            int hash = (hash(key) & 0x7FFFFFFF) % fTableSize;
-            Object[] bucket = fHashTable[hash];
-
-            if (bucket == null) {
-                return -1;
+                if (fHashes[i] == hash && fScopes[i] == scope && (k == key || k.equals(key))) {
+                    fValues[i] = value;
+                    return;
+                }
+                ++probes;
             }
-            int count = ((int[])bucket[0])[0];
-
-            int j=1;
-            for (int i=0; i<count; i++){
-                if ((String)bucket[j] == key) {
-                    return ((int[])bucket[j+1])[0];
+        } // put(int,String,int)
+
+        /** Returns the value associated with the specified scope and key, or -1. */
+        public int get(int scope, String key) {
+            final int hash = hash(scope, key);
+            for (int i = hash & fMask;; i = (i + 1) & fMask) {
+                final String k = fKeys[i];
+                if (k == null) {
+                    return -1;
+                }
+                if (fScopes[i] == scope && (k == key || (fHashes[i] == hash && k.equals(key)))) {
+                    return fValues[i];
                 }
-                j += 2;
             }
-            return -1;
-
-        } // get(int,String,String)
+        } // get(int,String):int
         
-        public int hash(String symbol) {
-            if (fHashMultipliers == null) {
-                return symbol.hashCode();
-            }
-            return hash0(symbol);
-        } // hash(String):int
+        //
+        // Private methods
+        //
+        
+        private int hash(int scope, String symbol) {
+            int code = (fHashMultipliers == null) ? symbol.hashCode() : hash0(symbol);
+            // Spread the bits, so that names paired with consecutive
+            // scopes do not fill runs of adjacent slots.
+            code += scope * 0x9E3779B9;
+            code ^= code >>> 16;
+            code *= 0x85EBCA6B;
+            return code ^ (code >>> 13);
+        } // hash(int,String):int
         
         private int hash0(String symbol) {
             int code = 0;
@@ -2801,75 +2800,42 @@ public class DTDGrammar
             return code;
         } // hash0(String):int
         
-        private void rehash() {
-            rehashCommon(fHashTable.length * 2 + 1);
-        } // rehash()
+        private void allocate(int capacity) {
+            fKeys = new String[capacity];
+            fScopes = new int[capacity];
+            fHashes = new int[capacity];
+            fValues = new int[capacity];
+            fMask = capacity - 1;
+        } // allocate(int)
         
         private void rebalance() {
             if (fHashMultipliers == null) {
                 fHashMultipliers = new int[MULTIPLIERS_SIZE];
             }
             PrimeNumberSequenceGenerator.generateSequence(fHashMultipliers);
-            rehashCommon(fHashTable.length);
+            rehash(fKeys.length);
         } // rebalance()
         
-        private void rehashCommon(final int newCapacity) {
-            
-            final int oldCapacity = fHashTable.length;
-            final Object[][] oldTable = fHashTable;
-
-            final Object[][] newTable = new Object[newCapacity][];
-            
-            fHashTable = newTable;
-            fTableSize = fHashTable.length;
-            
-            for (int i = 0; i < oldCapacity; ++i) {
-                final Object[] oldBucket = oldTable[i];
-                if (oldBucket != null) {
-                    final int oldCount = ((int[]) oldBucket[0])[0];
-                    boolean oldBucketReused = false;
-                    int k = 1;
-                    for (int j = 0; j < oldCount; ++j) {
-                        final String key = (String) oldBucket[k];
-                        final Object value = oldBucket[k+1];
-                        
-                        final int hash = (hash(key) & 0x7FFFFFFF) % fTableSize;
-                        Object[] bucket = fHashTable[hash];
-                        
-                        if (bucket == null) {
-                            if (oldBucketReused) {
-                                bucket = new Object[1 + 2*INITIAL_BUCKET_SIZE];
-                                bucket[0] = new int[]{1};
-                            }
-                            else {
-                                bucket = oldBucket;
-                                ((int[])bucket[0])[0] = 1;
-                                oldBucketReused = true;
-                            }
-                            bucket[1] = key;
-                            bucket[2] = value;
-                            fHashTable[hash] = bucket;
-                        }
-                        else {
-                            int count = ((int[])bucket[0])[0];
-                            int offset = 1 + 2*count;
-                            if (offset == bucket.length) {
-                                int newSize = count + INITIAL_BUCKET_SIZE;
-                                Object[] newBucket = new Object[1 + 2*newSize];
-                                System.arraycopy(bucket, 0, newBucket, 0, offset);
-                                bucket = newBucket;
-                                fHashTable[hash] = bucket;
-                            }
-                            bucket[offset++] = key;
-                            bucket[offset]= value;
-                            ((int[])bucket[0])[0] = ++count;
-                        }
-                        k += 2;
+        private void rehash(int newCapacity) {
+            final String[] oldKeys = fKeys;
+            final int[] oldScopes = fScopes;
+            final int[] oldValues = fValues;
+            allocate(newCapacity);
+            for (int j = 0; j < oldKeys.length; ++j) {
+                final String key = oldKeys[j];
+                if (key != null) {
+                    final int hash = hash(oldScopes[j], key);
+                    int i = hash & fMask;
+                    while (fKeys[i] != null) {
+                        i = (i + 1) & fMask;
                     }
-                } 
+                    fKeys[i] = key;
+                    fScopes[i] = oldScopes[j];
+                    fHashes[i] = hash;
+                    fValues[i] = oldValues[j];
+                }
             }
-            
-        } // rehashCommon(int)
+        } // rehash(int)
 
     }  // class QNameHashtable
 
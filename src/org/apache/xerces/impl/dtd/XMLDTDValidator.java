@@ -1278,18 +1278,11 @@ public class XMLDTDValidator
                     }
                 }
             }
-            int attDefIndex = -1;
-            int position =
-            fDTDGrammar.getFirstAttributeDeclIndex(elementIndex);
-            while (position != -1) {
-                fDTDGrammar.getAttributeDecl(position, fTempAttDecl);
-                if (fTempAttDecl.name.rawname == attrRawName) {
-                    // found the match att decl, 
-                    attDefIndex = position;
-                    declared = true;
-                    break;
-                }
-                position = fDTDGrammar.getNextAttributeDeclIndex(position);
+            int attDefIndex = fDTDGrammar.getAttributeDeclIndex(elementIndex, attrRawName);
+            if (attDefIndex != -1) {
+                // found the match att decl, 
+                fDTDGrammar.getAttributeDecl(attDefIndex, fTempAttDecl);
+                declared = true;
             }
             if (!declared) {
                 if (fPerformValidation) {
@@ -1321,7 +1314,7 @@ public class XMLDTDValidator
                 attrValue = attributes.getValue(i);
                 if (fPerformValidation && fGrammarBucket.getStandalone()
                     && changedByNormalization 
-                    && fDTDGrammar.getAttributeDeclIsExternal(position)
+                    && fDTDGrammar.getAttributeDeclIsExternal(attDefIndex)
                    ) {
                     // check VC: Standalone Document Declaration
                     fErrorReporter.reportError(XMLMessageFormatter.XML_DOMAIN,
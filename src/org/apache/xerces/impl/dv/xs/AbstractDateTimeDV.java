@@ -17,6 +17,11 @@
 
 package org.apache.xerces.impl.dv.xs;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 import javax.xml.datatype.DatatypeFactory;
@@ -909,7 +914,10 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
 	/**
 	 * Represents date time data
 	 */
-	static final class DateTimeData implements XSDateTime {
+	static final class DateTimeData implements XSDateTime, Serializable {
+
+		private static final long serialVersionUID = -6678805261808272576L;
+
 		int year, month, day, hour, minute, utc;
 		double second;
 		int timezoneHr, timezoneMin;
@@ -929,7 +937,8 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
 		// a pointer to the type that was used go generate this data
 		// note that this is not the actual simple type, but one of the
 		// statically created XXXDV objects, so this won't cause any GC problem.
-		final AbstractDateTimeDV type;
+		// It is serialized as the index of that object.
+		transient AbstractDateTimeDV type;
 		private String canonical;
 		public DateTimeData(String originalValue, AbstractDateTimeDV type) {
             this.originalValue = originalValue;
@@ -952,6 +961,22 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
 				return false;
 			return type.compareDates(this, (DateTimeData)obj, true)==0;
 		}
+		public int hashCode() {
+			if (type instanceof DurationDV) {
+				// durations are equal if they have the same number of months
+				// and the same number of seconds, however these are spread
+				// across the fields
+				double seconds = ((day * 24.0 + hour) * 60.0 + minute) * 60.0 + second;
+				return (year * 12 + month) * 31 + (int) Math.floor(seconds);
+			}
+			int hash = utc;
+			if (position < 1)
+				hash = hash * 31 + year;
+			if (position < 2)
+				hash = hash * 31 + month;
+			hash = ((hash * 31 + day) * 31 + hour) * 31 + minute;
+			return hash * 31 + (int) Math.floor(second);
+		}
 		public synchronized String toString() {
 			if (canonical == null) {
 				canonical = type.dateToString(this);
@@ -1050,6 +1075,20 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
             return normalized;
         }
         
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            int index = XSSimpleTypeDecl.getDVIndex(type);
+            if (index < 0) {
+                throw new NotSerializableException(type.getClass().getName());
+            }
+            out.defaultWriteObject();
+            out.writeInt(index);
+        }
+        
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            type = (AbstractDateTimeDV)XSSimpleTypeDecl.getDV(in.readInt());
+        }
+        
         public Object clone() {
             DateTimeData dt = new DateTimeData(this.year, this.month, this.day, this.hour, 
                         this.minute, this.second, this.utc, this.originalValue, this.normalized, this.type);
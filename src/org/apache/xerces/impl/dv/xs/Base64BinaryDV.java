@@ -56,6 +56,8 @@ public class Base64BinaryDV extends TypeValidator {
      */
     private static final class XBase64 extends ByteListImpl {
 
+        private static final long serialVersionUID = -8735852076922340188L;
+
         public XBase64(byte[] data) {
             super(data);
         }
@@ -53,6 +53,8 @@ public class HexBinaryDV extends TypeValidator {
 
     private static final class XHex extends ByteListImpl {
 
+        private static final long serialVersionUID = -187800593266817059L;
+
         public XHex(byte[] data) {
             super(data);
         }
@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.dv.xs;
 
+import java.io.Serializable;
 import java.util.AbstractList;
 
 import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
@@ -50,7 +51,10 @@ public class ListDV extends TypeValidator{
         return ((ListData)value).getLength();
     }
 
-    final static class ListData extends AbstractList implements ObjectList {
+    final static class ListData extends AbstractList implements ObjectList, Serializable {
+
+        private static final long serialVersionUID = -6445571538632006387L;
+
         final Object[] data;
         private String canonical;
         public ListData(Object[] data) {
@@ -17,6 +17,8 @@
 
 package org.apache.xerces.impl.dv.xs;
 
+import java.io.Serializable;
+
 import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
 import org.apache.xerces.impl.dv.ValidationContext;
 
@@ -31,7 +33,9 @@ import org.apache.xerces.impl.dv.ValidationContext;
  */
 class PrecisionDecimalDV extends TypeValidator {
     
-    static class XPrecisionDecimal {
+    static class XPrecisionDecimal implements Serializable {
+
+        private static final long serialVersionUID = -8591180091616891400L;
         
         // sign: 0 for absent; 1 for positive values; -1 for negative values (except in case of INF, -INF)
         int sign = 1;
@@ -155,6 +159,19 @@ class PrecisionDecimalDV extends TypeValidator {
             return this.compareTo(oval) == EQUAL;
         }
         
+        // Equal values have the same sign and the same significant digits,
+        // whatever their exponent, so only these contribute to the hash.
+        public int hashCode() {
+            String digits = ivalue + fvalue;
+            int start = 0;
+            int end = digits.length();
+            while (start < end && digits.charAt(start) == '0')
+                start++;
+            while (end > start && digits.charAt(end - 1) == '0')
+                end--;
+            return sign * 31 + digits.substring(start, end).hashCode();
+        }
+        
         /**
          * @return
          */
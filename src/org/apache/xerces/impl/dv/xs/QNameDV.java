@@ -82,6 +82,9 @@ public class QNameDV extends TypeValidator {
      * represent QName data
      */
     private static final class XQName extends QName implements XSQName {
+
+        private static final long serialVersionUID = -3217476352873630609L;
+
         /** Constructs a QName with the specified values. */
         public XQName(String prefix, String localpart, String rawname, String uri) {
             setValues(prefix, localpart, rawname, uri);
@@ -96,6 +99,11 @@ public class QNameDV extends TypeValidator {
             return false;
         } // equals(Object):boolean
 
+        /** Returns the hash code of this QName, consistent with equals. */
+        public int hashCode() {
+            return ((uri != null) ? uri.hashCode() : 0) + localpart.hashCode();
+        } // hashCode():int
+
         public String toString() {
             return rawname;
         }
@@ -17,6 +17,9 @@
 
 package org.apache.xerces.impl.dv.xs;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.AbstractList;
 import java.util.Locale;
@@ -32,6 +35,7 @@ import org.apache.xerces.impl.dv.ValidationContext;
 import org.apache.xerces.impl.dv.XSFacets;
 import org.apache.xerces.impl.dv.XSSimpleType;
 import org.apache.xerces.impl.xpath.regex.RegularExpression;
+import org.apache.xerces.impl.xpath.regex.REUtil;
 import org.apache.xerces.impl.xs.SchemaSymbols;
 import org.apache.xerces.impl.xs.util.ObjectListImpl;
 import org.apache.xerces.impl.xs.util.ShortListImpl;
@@ -61,7 +65,9 @@ import org.w3c.dom.TypeInfo;
  *
  * @version $Id$
  */
-public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
+public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo, Serializable {
+
+    private static final long serialVersionUID = -5875310559069852035L;
 
     protected static final short DV_STRING        = PRIMITIVE_STRING;
     protected static final short DV_BOOLEAN       = PRIMITIVE_BOOLEAN;
@@ -233,10 +239,29 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
     protected static TypeValidator[] getGDVs() {
         return (TypeValidator[])gDVs.clone();
     }
-    private TypeValidator[] fDVs = gDVs;
+    private transient TypeValidator[] fDVs = gDVs;
     protected void setDVs(TypeValidator[] dvs) {
         fDVs = dvs;
     }
+
+    // the validators are stateless and shared by all simple types, so
+    // they are not serialized: values which refer to one of them record
+    // its index instead.
+    static int getDVIndex(TypeValidator dv) {
+        for (int i = 0; i < gDVs.length; i++) {
+            if (gDVs[i] == dv) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    static TypeValidator getDV(int index) {
+        return gDVs[index];
+    }
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        fDVs = gDVs;
+    }
     
     // this will be true if this is a static XSSimpleTypeDecl
     // and hence must remain immutable (i.e., applyFacets
@@ -269,11 +294,11 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
     private Vector fPatternStr;
     private ValidatedInfo[] fEnumeration;
     private int fEnumerationSize;
-    private ShortList fEnumerationTypeList;
-    private ObjectList fEnumerationItemTypeList;
-    private StringList fLexicalPattern;
-    private StringList fLexicalEnumeration;
-    private ObjectList fActualEnumeration;
+    private transient ShortList fEnumerationTypeList;
+    private transient ObjectList fEnumerationItemTypeList;
+    private transient StringList fLexicalPattern;
+    private transient StringList fLexicalEnumeration;
+    private transient ObjectList fActualEnumeration;
     private Object fMaxInclusive;
     private Object fMaxExclusive;
     private Object fMinExclusive;
@@ -294,10 +319,10 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
     public XSAnnotation minExclusiveAnnotation;
 
     // facets as objects
-    private XSObjectListImpl fFacets;
+    private transient XSObjectListImpl fFacets;
 
     // enumeration and pattern facets
-    private XSObjectListImpl fMultiValueFacets;
+    private transient XSObjectListImpl fMultiValueFacets;
 
     // simpleType annotations
     private XSObjectList fAnnotations = null;
@@ -837,7 +862,9 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
                 patternAnnotations = facets.patternAnnotations;
                 RegularExpression regex = null;
                 try {
-                    regex = new RegularExpression(facets.pattern, "X", context.getLocale());
+                    // shared by all simple types, so that a pattern which is
+                    // used by many types is only compiled once
+                    regex = REUtil.createRegex(facets.pattern, "X", context.getLocale());
                 } catch (Exception e) {
                     reportError("InvalidRegex", new Object[]{facets.pattern, e.getLocalizedMessage()});
                 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>An input stream which reads from a <code>ByteBuffer</code> or from
+ * a <code>FileChannel</code> mapped into memory.</p>
+ *
+ * <p>Reads are served by bulk copies out of the buffer, so there are no
+ * system calls once a region of a file has been mapped. Files larger
+ * than the maximum size of a single buffer are mapped in successive
+ * read-only regions as the stream advances. The stream supports
+ * <code>mark</code> and <code>reset</code> at any position.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class ByteBufferInputStream
+    extends InputStream {
+
+    //
+    // Constants
+    //
+
+    /** Default size of a mapped file region (64 MB). */
+    public static final int DEFAULT_REGION_SIZE = 1 << 26;
+
+    //
+    // Data
+    //
+
+    /** The current buffer or mapped region. */
+    private ByteBuffer fBuffer;
+
+    /** The file channel, or null if reading from a buffer. */
+    private FileChannel fChannel;
+
+    /** The position in the channel at which the current region begins. */
+    private long fRegionStart;
+
+    /** The position in the channel at which the stream ends. */
+    private final long fEnd;
+
+    /** The size of the regions mapped from the channel. */
+    private final int fRegionSize;
+
+    /** The marked position, relative to the start of the stream. */
+    private long fMark;
+
+    /** The position at which the stream begins. */
+    private final long fStart;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs an input stream which reads the remaining content
+     * of the given buffer. The position and limit of the buffer
+     * passed in are not modified.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        fBuffer = buffer.duplicate();
+        fChannel = null;
+        fRegionStart = 0;
+        fStart = fBuffer.position();
+        fEnd = fBuffer.limit();
+        fRegionSize = fBuffer.capacity();
+        fMark = 0;
+    } // <init>(ByteBuffer)
+
+    /**
+     * Constructs an input stream which maps and reads the content
+     * of the given channel from its current position to its end.
+     *
+     * @param channel The file channel to read from.
+     * @throws IOException if the size or position of the channel
+     *                     cannot be determined.
+     */
+    public ByteBufferInputStream(FileChannel channel) throws IOException {
+        this(channel, channel.position(), channel.size() - channel.position(), DEFAULT_REGION_SIZE);
+    } // <init>(FileChannel)
+
+    /**
+     * Constructs an input stream which maps and reads the given range
+     * of a file channel in regions of the given size.
+     *
+     * @param channel    The file channel to read from.
+     * @param position   The position within the file at which to start.
+     * @param size       The number of bytes to read.
+     * @param regionSize The maximum number of bytes mapped at a time.
+     */
+    public ByteBufferInputStream(FileChannel channel, long position, long size, int regionSize) {
+        if (position < 0 || size < 0) {
+            throw new IllegalArgumentException();
+        }
+        fChannel = channel;
+        fBuffer = null;
+        fRegionStart = position;
+        fStart = position;
+        fEnd = position + size;
+        fRegionSize = (regionSize > 0) ? regionSize : DEFAULT_REGION_SIZE;
+        fMark = 0;
+    } // <init>(FileChannel,long,long,int)
+
+    //
+    // InputStream methods
+    //
+
+    /** Reads a single byte. */
+    public int read() throws IOException {
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        return fBuffer.get() & 0xFF;
+    } // read():int
+
+    /** Reads bytes into a portion of an array. */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len <= 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        final int count = Math.min(len, fBuffer.remaining());
+        fBuffer.get(b, off, count);
+        return count;
+    } // read(byte[],int,int):int
+
+    /** Skips the given number of bytes. */
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        final long position = position();
+        final long skipped = Math.min(n, fEnd - position);
+        seek(position + skipped);
+        return skipped;
+    } // skip(long):long
+
+    /** Returns the number of bytes which may be read without blocking. */
+    public int available() throws IOException {
+        final long remaining = fEnd - position();
+        return (remaining > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) remaining;
+    } // available():int
+
+    /** Marks the current position. */
+    public void mark(int readlimit) {
+        fMark = position() - fStart;
+    } // mark(int)
+
+    /** Returns to the marked position. */
+    public void reset() throws IOException {
+        seek(fStart + fMark);
+    } // reset()
+
+    /** Marking is supported. */
+    public boolean markSupported() {
+        return true;
+    } // markSupported():boolean
+
+    /** Closes the stream and the underlying channel, if any. */
+    public void close() throws IOException {
+        fBuffer = null;
+        if (fChannel != null) {
+            fChannel.close();
+            fChannel = null;
+        }
+    } // close()
+
+    //
+    // Private methods
+    //
+
+    /** Returns the absolute position of the stream. */
+    private long position() {
+        if (fBuffer == null) {
+            return fRegionStart;
+        }
+        return fRegionStart + fBuffer.position();
+    } // position():long
+
+    /** Moves the stream to the given absolute position. */
+    private void seek(long position) throws IOException {
+        if (fChannel == null) {
+            if (fBuffer != null) {
+                fBuffer.position((int) position);
+            }
+        }
+        else if (fBuffer != null && position >= fRegionStart &&
+                position <= fRegionStart + fBuffer.limit()) {
+            fBuffer.position((int) (position - fRegionStart));
+        }
+        else {
+            // the region containing the position is mapped on the next read
+            fBuffer = null;
+            fRegionStart = position;
+        }
+    } // seek(long)
+
+    /**
+     * Ensures that the current buffer has content remaining, mapping
+     * the next region of the channel if necessary. Returns false at
+     * the end of the stream.
+     */
+    private boolean ensureRemaining() throws IOException {
+        if (fBuffer != null && fBuffer.hasRemaining()) {
+            return true;
+        }
+        if (fChannel == null) {
+            return false;
+        }
+        final long position = position();
+        if (position >= fEnd) {
+            return false;
+        }
+        final long size = Math.min(fRegionSize, fEnd - position);
+        fBuffer = fChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        fRegionStart = position;
+        return true;
+    } // ensureRemaining():boolean
+
+} // class ByteBufferInputStream
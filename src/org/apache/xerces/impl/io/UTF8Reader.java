@@ -327,15 +327,8 @@ public final class UTF8Reader
         int in;
         byte byte1;
         final byte byte0 = 0;
-        for (in = 0; in < total; in++) {
-            byte1 = fBuffer[in];
-            if (byte1 >= byte0) {
-                ch[out++] = (char)byte1;
-            }
-            else   {
-                break;
-            }
-        }
+        in = widenASCII(ch, out, 0, total);
+        out += in;
         for ( ; in < total; in++) {
             byte1 = fBuffer[in];
 
@@ -343,7 +336,14 @@ public final class UTF8Reader
             // Unicode: [0000 0000] [0xxx xxxx]
             if (byte1 >= byte0) {
                 ch[out++] = (char)byte1;
-                continue;
+                // copy the rest of the run without going around the
+                // outer loop; a non-ASCII byte falls through below
+                while (++in < total && (byte1 = fBuffer[in]) >= byte0) {
+                    ch[out++] = (char)byte1;
+                }
+                if (in == total) {
+                    break;
+                }
             }
 
             // UTF-8:   [110y yyyy] [10xx xxxx]
@@ -675,6 +675,47 @@ public final class UTF8Reader
     // Private methods
     //
 
+    /**
+     * Widens the run of ASCII bytes starting at <code>in</code> in the
+     * byte buffer into the character array. Eight bytes at a time are
+     * tested for a set high bit by combining them into a single word,
+     * so that runs of ASCII are copied without a branch per byte.
+     *
+     * @param ch  The destination character array.
+     * @param out The offset into the character array.
+     * @param in  The offset into the byte buffer.
+     * @param end The end of the valid bytes in the byte buffer.
+     *
+     * @return The number of bytes (and characters) which were copied.
+     */
+    private int widenASCII(char[] ch, int out, int in, int end) {
+        final byte[] buffer = fBuffer;
+        int i = in;
+        final int limit = end - 8;
+        while (i <= limit) {
+            if ((buffer[i] | buffer[i + 1] | buffer[i + 2] | buffer[i + 3] |
+                 buffer[i + 4] | buffer[i + 5] | buffer[i + 6] | buffer[i + 7]) < 0) {
+                break;
+            }
+            ch[out] = (char) buffer[i];
+            ch[out + 1] = (char) buffer[i + 1];
+            ch[out + 2] = (char) buffer[i + 2];
+            ch[out + 3] = (char) buffer[i + 3];
+            ch[out + 4] = (char) buffer[i + 4];
+            ch[out + 5] = (char) buffer[i + 5];
+            ch[out + 6] = (char) buffer[i + 6];
+            ch[out + 7] = (char) buffer[i + 7];
+            i += 8;
+            out += 8;
+        }
+        byte b;
+        while (i < end && (b = buffer[i]) >= 0) {
+            ch[out++] = (char) b;
+            ++i;
+        }
+        return i - in;
+    } // widenASCII(char[],int,int,int):int
+
     /** Throws an exception for expected byte. */
     private void expectedByte(int position, int count)
         throws MalformedByteSequenceException {
@@ -0,0 +1,701 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.xpath.regex;
+
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * A deterministic automaton which decides whether a whole string
+ * matches a regular expression, in time linear in the length of the
+ * string. It is used for <code>matches()</code> in XML Schema mode in
+ * place of the backtracking matcher, which is exponential for some
+ * patterns.
+ * <p>
+ * The automaton is built from the token tree by the position (Glushkov)
+ * construction. The characters are partitioned into classes which no
+ * character class of the expression distinguishes, and the states of
+ * the automaton are only created when a string first reaches them.
+ * The number of states kept is bounded; when the bound is reached the
+ * states are discarded and built again. Matching is thread-safe and
+ * takes no lock once the states it visits exist.
+ * <p>
+ * Only expressions without anchors, back references, look-around,
+ * case folding and other extensions are supported, which includes all
+ * expressions accepted by the XML Schema parser.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class DFAMatcher {
+
+    //
+    // Constants
+    //
+
+    /** The string matches the expression. */
+    static final int MATCH = 1;
+
+    /** The string does not match the expression. */
+    static final int NO_MATCH = 0;
+
+    /**
+     * The string contains a high surrogate followed by a character
+     * which is not a low surrogate, and must be matched by the
+     * backtracking matcher.
+     */
+    static final int UNDECIDED = -1;
+
+    /** Maximum number of positions, after expanding counted repeats. */
+    private static final int MAX_POSITIONS = 1024;
+
+    /** Maximum number of tokens visited while building the positions. */
+    private static final int MAX_VISITS = 16 * MAX_POSITIONS;
+
+    /** Bound on the number of transitions kept by all states. */
+    private static final int MAX_CELLS = 1 << 18;
+
+    /** Minimum number of states kept, regardless of the number of classes. */
+    private static final int MIN_STATES = 64;
+
+    /** The line terminators which the period does not match. */
+    private static final int[] EOL_CHARS = { 0x000A, 0x000D, 0x2028, 0x2029 };
+
+    //
+    // Data
+    //
+
+    /** Number of character classes. */
+    private final int fClassCount;
+
+    /** First character of each interval, in ascending order. */
+    private final int[] fBoundaries;
+
+    /** Character class of each interval. */
+    private final int[] fIntervalClasses;
+
+    /** Character class of each ASCII character. */
+    private final int[] fAsciiClasses;
+
+    /** Character classes matched by each position. */
+    private final BitSet[] fPositionClasses;
+
+    /** Positions which may follow each position. */
+    private final BitSet[] fFollow;
+
+    /** The accepting position, which follows the last positions. */
+    private final int fEnd;
+
+    /** Positions of the start state. */
+    private final BitSet fStartPositions;
+
+    /** Maximum number of states kept. */
+    private final int fMaxStates;
+
+    /** Map from positions to states. */
+    private final HashMap fStates = new HashMap();
+
+    /** The start state of the current states. */
+    private volatile State fStart;
+
+    //
+    // Constructors
+    //
+
+    private DFAMatcher(Builder builder, Fragment root) {
+
+        final int positionCount = builder.fPositionCount;
+        fEnd = positionCount;
+        fFollow = new BitSet[positionCount];
+        builder.fFollow.toArray(fFollow);
+        for (int p = root.last.nextSetBit(0); p >= 0; p = root.last.nextSetBit(p + 1)) {
+            fFollow[p].set(fEnd);
+        }
+        fStartPositions = root.first;
+        if (root.nullable) {
+            fStartPositions.set(fEnd);
+        }
+
+        // partition the characters into intervals on which each
+        // matcher is constant, then merge the intervals which no
+        // matcher distinguishes into classes
+        fBoundaries = builder.getBoundaries();
+        final int intervalCount = fBoundaries.length;
+        final int matcherCount = builder.fMatchers.size();
+        BitSet[] matched = new BitSet[matcherCount];
+        for (int m = 0; m < matcherCount; ++m) {
+            matched[m] = builder.matchIntervals(m, fBoundaries);
+        }
+        fIntervalClasses = new int[intervalCount];
+        HashMap signatures = new HashMap();
+        ArrayList classMatchers = new ArrayList();
+        for (int i = 0; i < intervalCount; ++i) {
+            BitSet signature = new BitSet(matcherCount);
+            for (int m = 0; m < matcherCount; ++m) {
+                if (matched[m].get(i)) {
+                    signature.set(m);
+                }
+            }
+            Integer cls = (Integer) signatures.get(signature);
+            if (cls == null) {
+                cls = new Integer(classMatchers.size());
+                signatures.put(signature, cls);
+                classMatchers.add(signature);
+            }
+            fIntervalClasses[i] = cls.intValue();
+        }
+        fClassCount = classMatchers.size();
+        BitSet[] matcherClasses = new BitSet[matcherCount];
+        for (int m = 0; m < matcherCount; ++m) {
+            matcherClasses[m] = new BitSet(fClassCount);
+        }
+        for (int c = 0; c < fClassCount; ++c) {
+            BitSet signature = (BitSet) classMatchers.get(c);
+            for (int m = signature.nextSetBit(0); m >= 0; m = signature.nextSetBit(m + 1)) {
+                matcherClasses[m].set(c);
+            }
+        }
+        fPositionClasses = new BitSet[positionCount];
+        for (int p = 0; p < positionCount; ++p) {
+            fPositionClasses[p] = matcherClasses[builder.fPositionMatchers[p]];
+        }
+        fAsciiClasses = new int[0x80];
+        for (int ch = 0; ch < 0x80; ++ch) {
+            fAsciiClasses[ch] = fIntervalClasses[findInterval(ch)];
+        }
+
+        fMaxStates = Math.max(MIN_STATES, MAX_CELLS / fClassCount);
+        fStart = createState(fStartPositions);
+
+    } // <init>(Builder,Fragment)
+
+    //
+    // Static methods
+    //
+
+    /**
+     * Returns an automaton for the given token tree, or null if the
+     * tree uses a construct which is not supported or is too large.
+     *
+     * @param tree    The token tree of a regular expression.
+     * @param options The options of the regular expression.
+     */
+    static DFAMatcher create(Token tree, int options) {
+        if ((options & RegularExpression.IGNORE_CASE) != 0) {
+            return null;
+        }
+        Builder builder = new Builder((options & RegularExpression.SINGLE_LINE) != 0);
+        Fragment root = builder.build(tree);
+        return (root != null) ? new DFAMatcher(builder, root) : null;
+    } // create(Token,int):DFAMatcher
+
+    //
+    // Package methods
+    //
+
+    /**
+     * Matches the whole of the given range of a string.
+     *
+     * @return {@link #MATCH}, {@link #NO_MATCH} or {@link #UNDECIDED}.
+     */
+    int match(String target, int start, int end) {
+        State state = fStart;
+        int offset = start;
+        while (offset < end) {
+            if (state.dead) {
+                return NO_MATCH;
+            }
+            int ch = target.charAt(offset++);
+            if (REUtil.isHighSurrogate(ch) && offset < end) {
+                int low = target.charAt(offset++);
+                if (!REUtil.isLowSurrogate(low)) {
+                    return UNDECIDED;
+                }
+                ch = REUtil.composeFromSurrogates(ch, low);
+            }
+            int cls = (ch < 0x80) ? fAsciiClasses[ch] : fIntervalClasses[findInterval(ch)];
+            State next = state.next[cls];
+            state = (next != null) ? next : computeNext(state, cls);
+        }
+        return state.accept ? MATCH : NO_MATCH;
+    } // match(String,int,int):int
+
+    /**
+     * Matches the whole of the given range of a character array.
+     *
+     * @return {@link #MATCH}, {@link #NO_MATCH} or {@link #UNDECIDED}.
+     */
+    int match(char[] target, int start, int end) {
+        State state = fStart;
+        int offset = start;
+        while (offset < end) {
+            if (state.dead) {
+                return NO_MATCH;
+            }
+            int ch = target[offset++];
+            if (REUtil.isHighSurrogate(ch) && offset < end) {
+                int low = target[offset++];
+                if (!REUtil.isLowSurrogate(low)) {
+                    return UNDECIDED;
+                }
+                ch = REUtil.composeFromSurrogates(ch, low);
+            }
+            int cls = (ch < 0x80) ? fAsciiClasses[ch] : fIntervalClasses[findInterval(ch)];
+            State next = state.next[cls];
+            state = (next != null) ? next : computeNext(state, cls);
+        }
+        return state.accept ? MATCH : NO_MATCH;
+    } // match(char[],int,int):int
+
+    /**
+     * Matches the whole of the given range of a character iterator.
+     *
+     * @return {@link #MATCH}, {@link #NO_MATCH} or {@link #UNDECIDED}.
+     */
+    int match(CharacterIterator target, int start, int end) {
+        State state = fStart;
+        int offset = start;
+        while (offset < end) {
+            if (state.dead) {
+                return NO_MATCH;
+            }
+            int ch = target.setIndex(offset++);
+            if (REUtil.isHighSurrogate(ch) && offset < end) {
+                int low = target.setIndex(offset++);
+                if (!REUtil.isLowSurrogate(low)) {
+                    return UNDECIDED;
+                }
+                ch = REUtil.composeFromSurrogates(ch, low);
+            }
+            int cls = (ch < 0x80) ? fAsciiClasses[ch] : fIntervalClasses[findInterval(ch)];
+            State next = state.next[cls];
+            state = (next != null) ? next : computeNext(state, cls);
+        }
+        return state.accept ? MATCH : NO_MATCH;
+    } // match(CharacterIterator,int,int):int
+
+    //
+    // Private methods
+    //
+
+    /** Returns the index of the interval containing the character. */
+    private int findInterval(int ch) {
+        int low = 0;
+        int high = fBoundaries.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fBoundaries[mid] <= ch) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    } // findInterval(int):int
+
+    /** Computes, and records, the transition of a state on a character class. */
+    private synchronized State computeNext(State state, int cls) {
+        State next = state.next[cls];
+        if (next != null) {
+            return next;
+        }
+        BitSet positions = new BitSet(fEnd + 1);
+        BitSet current = state.positions;
+        for (int p = current.nextSetBit(0); p >= 0 && p < fEnd; p = current.nextSetBit(p + 1)) {
+            if (fPositionClasses[p].get(cls)) {
+                positions.or(fFollow[p]);
+            }
+        }
+        next = (State) fStates.get(positions);
+        if (next == null) {
+            if (fStates.size() >= fMaxStates) {
+                // start afresh; matches in progress keep the states
+                // they hold, which are still correct
+                fStates.clear();
+                fStart = createState(fStartPositions);
+                next = (State) fStates.get(positions);
+                if (next == null) {
+                    next = createState(positions);
+                }
+                return next;
+            }
+            next = createState(positions);
+        }
+        state.next[cls] = next;
+        return next;
+    } // computeNext(State,int):State
+
+    /** Creates and registers the state of the given positions. */
+    private State createState(BitSet positions) {
+        State state = new State(positions, positions.get(fEnd), fClassCount);
+        fStates.put(positions, state);
+        return state;
+    } // createState(BitSet):State
+
+    //
+    // Classes
+    //
+
+    /**
+     * A state of the automaton. The transitions are filled in under
+     * the lock of the automaton but may be read without it; a state
+     * is only published once its final fields are set.
+     */
+    private static final class State {
+
+        /** Positions which may match the next character. */
+        final BitSet positions;
+
+        /** True if the end of the string may follow. */
+        final boolean accept;
+
+        /** True if no string is accepted from this state. */
+        final boolean dead;
+
+        /** Transitions by character class; null if not yet computed. */
+        final State[] next;
+
+        State(BitSet positions, boolean accept, int classCount) {
+            this.positions = positions;
+            this.accept = accept;
+            this.dead = positions.isEmpty();
+            this.next = new State[classCount];
+        }
+
+    } // class State
+
+    /** The first and last positions of a subexpression. */
+    private static final class Fragment {
+
+        final BitSet first = new BitSet();
+        final BitSet last = new BitSet();
+        boolean nullable;
+
+        Fragment(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+    } // class Fragment
+
+    /** Builds the positions and follow sets of a token tree. */
+    private static final class Builder {
+
+        /** True if the period matches line terminators. */
+        private final boolean fSingleLine;
+
+        /** Follow sets of the positions built so far. */
+        final ArrayList fFollow = new ArrayList();
+
+        /** Matcher of each position. */
+        int[] fPositionMatchers = new int[16];
+
+        /** Number of positions built so far. */
+        int fPositionCount;
+
+        /** Distinct matchers: an Integer for a character, a RangeToken, or null for the period. */
+        final ArrayList fMatchers = new ArrayList();
+
+        /** Map from matcher to its index. */
+        private final HashMap fCharMatchers = new HashMap();
+        private final IdentityHashMap fRangeMatchers = new IdentityHashMap();
+        private int fDotMatcher = -1;
+
+        /** Number of tokens visited. */
+        private int fVisits;
+
+        Builder(boolean singleLine) {
+            fSingleLine = singleLine;
+        }
+
+        /** Returns the fragment of the token, or null if not supported. */
+        Fragment build(Token tok) {
+            if (++fVisits > MAX_VISITS) {
+                return null;
+            }
+            switch (tok.type) {
+                case Token.CHAR: {
+                    int ch = tok.getChar();
+                    if (ch >= 0x10000 || REUtil.isHighSurrogate(ch) || REUtil.isLowSurrogate(ch)) {
+                        // the backtracking matcher compares single units
+                        return null;
+                    }
+                    return position(charMatcher(ch));
+                }
+                case Token.DOT: {
+                    if (fDotMatcher < 0) {
+                        fDotMatcher = addMatcher(null);
+                    }
+                    return position(fDotMatcher);
+                }
+                case Token.RANGE:
+                case Token.NRANGE: {
+                    Integer matcher = (Integer) fRangeMatchers.get(tok);
+                    if (matcher == null) {
+                        matcher = new Integer(addMatcher(tok));
+                        fRangeMatchers.put(tok, matcher);
+                    }
+                    return position(matcher.intValue());
+                }
+                case Token.STRING: {
+                    String literal = tok.getString();
+                    Fragment fragment = new Fragment(true);
+                    for (int i = 0; i < literal.length(); ++i) {
+                        int ch = literal.charAt(i);
+                        if (REUtil.isHighSurrogate(ch) && i + 1 < literal.length()
+                            && REUtil.isLowSurrogate(literal.charAt(i + 1))) {
+                            ch = REUtil.composeFromSurrogates(ch, literal.charAt(++i));
+                        }
+                        else if (REUtil.isHighSurrogate(ch) || REUtil.isLowSurrogate(ch)) {
+                            return null;
+                        }
+                        Fragment next = position(charMatcher(ch));
+                        if (next == null) {
+                            return null;
+                        }
+                        fragment = concat(fragment, next);
+                    }
+                    return fragment;
+                }
+                case Token.EMPTY:
+                    return new Fragment(true);
+                case Token.PAREN:
+                    return build(tok.getChild(0));
+                case Token.CONCAT: {
+                    Fragment fragment = new Fragment(true);
+                    for (int i = 0; i < tok.size(); ++i) {
+                        Fragment next = build(tok.getChild(i));
+                        if (next == null) {
+                            return null;
+                        }
+                        fragment = concat(fragment, next);
+                    }
+                    return fragment;
+                }
+                case Token.UNION: {
+                    Fragment fragment = new Fragment(false);
+                    for (int i = 0; i < tok.size(); ++i) {
+                        Fragment next = build(tok.getChild(i));
+                        if (next == null) {
+                            return null;
+                        }
+                        fragment.first.or(next.first);
+                        fragment.last.or(next.last);
+                        fragment.nullable |= next.nullable;
+                    }
+                    return fragment;
+                }
+                case Token.CLOSURE:
+                case Token.NONGREEDYCLOSURE: {
+                    // expand counted repeats as RegularExpression.compile() does
+                    Token child = tok.getChild(0);
+                    int min = tok.getMin();
+                    int max = tok.getMax();
+                    if (min >= 0 && min == max) {
+                        return repeat(child, min);
+                    }
+                    if (min > 0 && max > 0) {
+                        max -= min;
+                    }
+                    Fragment fragment = repeat(child, min);
+                    if (fragment == null) {
+                        return null;
+                    }
+                    if (max > 0) {
+                        for (int i = 0; i < max; ++i) {
+                            Fragment next = build(child);
+                            if (next == null) {
+                                return null;
+                            }
+                            next.nullable = true;
+                            fragment = concat(fragment, next);
+                        }
+                    }
+                    else {
+                        Fragment next = build(child);
+                        if (next == null) {
+                            return null;
+                        }
+                        for (int p = next.last.nextSetBit(0); p >= 0; p = next.last.nextSetBit(p + 1)) {
+                            ((BitSet) fFollow.get(p)).or(next.first);
+                        }
+                        next.nullable = true;
+                        fragment = concat(fragment, next);
+                    }
+                    return fragment;
+                }
+                default:
+                    // anchors, back references, look-around, ...
+                    return null;
+            }
+        } // build(Token):Fragment
+
+        /** Returns the boundaries of the intervals of all matchers. */
+        int[] getBoundaries() {
+            int[] boundaries = new int[16];
+            int count = 0;
+            boundaries[count++] = 0;
+            for (int m = 0; m < fMatchers.size(); ++m) {
+                Object matcher = fMatchers.get(m);
+                int[] ranges;
+                if (matcher instanceof Integer) {
+                    int ch = ((Integer) matcher).intValue();
+                    ranges = new int[] { ch, ch };
+                }
+                else if (matcher == null) {
+                    ranges = new int[EOL_CHARS.length * 2];
+                    for (int i = 0; i < EOL_CHARS.length; ++i) {
+                        ranges[2 * i] = ranges[2 * i + 1] = EOL_CHARS[i];
+                    }
+                }
+                else {
+                    ranges = ((RangeToken) matcher).ranges;
+                    if (ranges == null) {
+                        continue;
+                    }
+                }
+                if (count + ranges.length > boundaries.length) {
+                    int[] newBoundaries = new int[Math.max(boundaries.length * 2, count + ranges.length)];
+                    System.arraycopy(boundaries, 0, newBoundaries, 0, count);
+                    boundaries = newBoundaries;
+                }
+                for (int i = 0; i + 1 < ranges.length; i += 2) {
+                    boundaries[count++] = ranges[i];
+                    boundaries[count++] = ranges[i + 1] + 1;
+                }
+            }
+            Arrays.sort(boundaries, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; ++i) {
+                if (boundaries[i] >= 0 && (unique == 0 || boundaries[i] != boundaries[unique - 1])) {
+                    boundaries[unique++] = boundaries[i];
+                }
+            }
+            int[] result = new int[unique];
+            System.arraycopy(boundaries, 0, result, 0, unique);
+            return result;
+        } // getBoundaries():int[]
+
+        /** Returns the intervals matched by the given matcher. */
+        BitSet matchIntervals(int m, int[] boundaries) {
+            Object matcher = fMatchers.get(m);
+            BitSet matched = new BitSet(boundaries.length);
+            for (int i = 0; i < boundaries.length; ++i) {
+                int ch = boundaries[i];
+                boolean match;
+                if (matcher instanceof Integer) {
+                    match = ch == ((Integer) matcher).intValue();
+                }
+                else if (matcher == null) {
+                    match = fSingleLine || !isEOLChar(ch);
+                }
+                else {
+                    RangeToken range = (RangeToken) matcher;
+                    match = (range.ranges != null) ? range.match(ch) : range.type == Token.NRANGE;
+                }
+                if (match) {
+                    matched.set(i);
+                }
+            }
+            return matched;
+        } // matchIntervals(int,int[]):BitSet
+
+        //
+        // Private methods
+        //
+
+        private Fragment repeat(Token child, int count) {
+            Fragment fragment = new Fragment(true);
+            for (int i = 0; i < count; ++i) {
+                Fragment next = build(child);
+                if (next == null) {
+                    return null;
+                }
+                fragment = concat(fragment, next);
+            }
+            return fragment;
+        } // repeat(Token,int):Fragment
+
+        private Fragment concat(Fragment left, Fragment right) {
+            for (int p = left.last.nextSetBit(0); p >= 0; p = left.last.nextSetBit(p + 1)) {
+                ((BitSet) fFollow.get(p)).or(right.first);
+            }
+            if (left.nullable) {
+                left.first.or(right.first);
+            }
+            if (right.nullable) {
+                left.last.or(right.last);
+            }
+            else {
+                left.last.clear();
+                left.last.or(right.last);
+            }
+            left.nullable &= right.nullable;
+            return left;
+        } // concat(Fragment,Fragment):Fragment
+
+        private Fragment position(int matcher) {
+            if (fPositionCount == MAX_POSITIONS) {
+                return null;
+            }
+            if (fPositionCount == fPositionMatchers.length) {
+                int[] newMatchers = new int[fPositionCount * 2];
+                System.arraycopy(fPositionMatchers, 0, newMatchers, 0, fPositionCount);
+                fPositionMatchers = newMatchers;
+            }
+            int p = fPositionCount++;
+            fPositionMatchers[p] = matcher;
+            fFollow.add(new BitSet());
+            Fragment fragment = new Fragment(false);
+            fragment.first.set(p);
+            fragment.last.set(p);
+            return fragment;
+        } // position(int):Fragment
+
+        private int charMatcher(int ch) {
+            Integer key = new Integer(ch);
+            Integer matcher = (Integer) fCharMatchers.get(key);
+            if (matcher == null) {
+                matcher = new Integer(addMatcher(key));
+                fCharMatchers.put(key, matcher);
+            }
+            return matcher.intValue();
+        } // charMatcher(int):int
+
+        private int addMatcher(Object matcher) {
+            fMatchers.add(matcher);
+            return fMatchers.size() - 1;
+        } // addMatcher(Object):int
+
+        private static boolean isEOLChar(int ch) {
+            for (int i = 0; i < EOL_CHARS.length; ++i) {
+                if (EOL_CHARS[i] == ch) {
+                    return true;
+                }
+            }
+            return false;
+        } // isEOLChar(int):boolean
+
+    } // class Builder
+
+} // class DFAMatcher
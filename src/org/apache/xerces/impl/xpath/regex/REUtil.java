@@ -18,6 +18,7 @@
 package org.apache.xerces.impl.xpath.regex;
 
 import java.text.CharacterIterator;
+import java.util.Locale;
 
 /**
  * @xerces.internal
@@ -273,8 +274,9 @@ public final class REUtil {
         }
     }
 
-    static final int CACHESIZE = 20;
-    static final RegularExpression[] regexCache = new RegularExpression[CACHESIZE];
+    /** Compiled expressions returned by createRegex. */
+    static final RegularExpressionCache regexCache = new RegularExpressionCache();
+
     /**
      * Creates a RegularExpression instance.
      * This method caches created instances.
@@ -283,33 +285,19 @@ public final class REUtil {
      */
     public static RegularExpression createRegex(String pattern, String options)
         throws ParseException {
-        RegularExpression re = null;
-        int intOptions = REUtil.parseOptions(options);
-        synchronized (REUtil.regexCache) {
-            int i;
-            for (i = 0;  i < REUtil.CACHESIZE;  i ++) {
-                RegularExpression cached = REUtil.regexCache[i];
-                if (cached == null) {
-                    i = -1;
-                    break;
-                }
-                if (cached.equals(pattern, intOptions)) {
-                    re = cached;
-                    break;
-                }
-            }
-            if (re != null) {
-                if (i != 0) {
-                    System.arraycopy(REUtil.regexCache, 0, REUtil.regexCache, 1, i);
-                    REUtil.regexCache[0] = re;
-                }
-            } else {
-                re = new RegularExpression(pattern, options);
-                System.arraycopy(REUtil.regexCache, 0, REUtil.regexCache, 1, REUtil.CACHESIZE-1);
-                REUtil.regexCache[0] = re;
-            }
-        }
-        return re;
+        return REUtil.createRegex(pattern, options, Locale.getDefault());
+    }
+
+    /**
+     * Creates a RegularExpression instance, reporting parse errors in
+     * the given locale. This method caches created instances; patterns
+     * which fail to parse are not cached.
+     *
+     * @see RegularExpression#RegularExpression(java.lang.String, java.lang.String, java.util.Locale)
+     */
+    public static RegularExpression createRegex(String pattern, String options, Locale locale)
+        throws ParseException {
+        return REUtil.regexCache.getRegularExpression(pattern, options, locale);
     }
 
     /**
@@ -708,6 +708,12 @@ public class RegularExpression implements java.io.Serializable {
             if (this.context == null)
                 this.context = new Context();
         }
+        if (match == null && this.dfa != null) {
+            int result = this.dfa.match(target, start, end);
+            if (result != DFAMatcher.UNDECIDED) {
+                return result == DFAMatcher.MATCH;
+            }
+        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -893,6 +899,12 @@ public class RegularExpression implements java.io.Serializable {
             if (this.context == null)
                 this.context = new Context();
         }
+        if (match == null && this.dfa != null) {
+            int result = this.dfa.match(target, start, end);
+            if (result != DFAMatcher.UNDECIDED) {
+                return result == DFAMatcher.MATCH;
+            }
+        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -1572,6 +1584,12 @@ public class RegularExpression implements java.io.Serializable {
             if (this.context == null)
                 this.context = new Context();
         }
+        if (match == null && this.dfa != null) {
+            int result = this.dfa.match(target, start, end);
+            if (result != DFAMatcher.UNDECIDED) {
+                return result == DFAMatcher.MATCH;
+            }
+        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -1745,6 +1763,13 @@ public class RegularExpression implements java.io.Serializable {
     transient BMPattern fixedStringTable = null;
     transient boolean fixedStringOnly = false;
 
+    /**
+     * The automaton used by matches() in XML Schema mode, or null.
+     * Like the compiled operations it is built by prepare(), so an
+     * expression read from a stream builds it again on its first match.
+     */
+    transient DFAMatcher dfa = null;
+
     static abstract class ExpressionTarget {
         abstract char charAt(int index);
         abstract boolean regionMatches(boolean ignoreCase, int offset, int limit, String part, int partlen);
@@ -2153,6 +2178,15 @@ public class RegularExpression implements java.io.Serializable {
                 }
             }
         }
+
+        // In XML Schema mode a string either matches as a whole or not
+        // at all, which a DFA decides in linear time.
+        this.dfa = null;
+        if (isSet(this.options, XMLSCHEMA_MODE)) {
+            this.dfa = DFAMatcher.create(this.tokentree, this.options);
+            if (DEBUG && this.dfa == null)
+                System.err.println("DEBUG: The pattern is not compiled into a DFA.");
+        }
     }
 
     /**
@@ -2293,6 +2327,7 @@ public class RegularExpression implements java.io.Serializable {
 
         this.operations = null;
         this.context = null;
+        this.dfa = null;
     }
     /**
      *
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.xpath.regex;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * A bounded, thread-safe cache of compiled regular expressions keyed
+ * by pattern and options. When the cache is full the least recently
+ * used expression is evicted. Options are compared by value, so that
+ * "iX" and "Xi" share an entry.
+ * <p>
+ * Matching with a <code>RegularExpression</code> is thread-safe, so
+ * the cached instances may be shared. Callers must not change the
+ * pattern of a cached instance.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class RegularExpressionCache {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of cached expressions. */
+    public static final int DEFAULT_SIZE = 256;
+
+    //
+    // Data
+    //
+
+    /** Maximum number of cached expressions. */
+    private final int fMaxSize;
+
+    /** Map from key to entry. */
+    private final HashMap fEntries;
+
+    /** Sentinel of the list of entries in order of use, most recent first. */
+    private final Entry fHead;
+
+    /** Number of lookups which found a cached expression. */
+    private long fHits;
+
+    /** Number of lookups which compiled a new expression. */
+    private long fMisses;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cache of the default size. */
+    public RegularExpressionCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs a cache holding at most the given number of
+     * expressions.
+     */
+    public RegularExpressionCache(int maxSize) {
+        fMaxSize = (maxSize > 0) ? maxSize : DEFAULT_SIZE;
+        fEntries = new HashMap(fMaxSize * 4 / 3 + 1);
+        fHead = new Entry(null, null);
+        fHead.prev = fHead;
+        fHead.next = fHead;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns a compiled regular expression for the given pattern and
+     * options, compiling and caching it if necessary.
+     *
+     * @param pattern The regular expression.
+     * @param options The options, as accepted by <code>RegularExpression</code>.
+     * @param locale  The locale used for the messages of parse errors.
+     * @throws ParseException if the pattern is not a valid regular expression.
+     *                        Invalid patterns are not cached.
+     */
+    public RegularExpression getRegularExpression(String pattern, String options, Locale locale)
+        throws ParseException {
+        final String key = REUtil.parseOptions(options) + "/" + pattern;
+        synchronized (this) {
+            Entry entry = (Entry) fEntries.get(key);
+            if (entry != null) {
+                ++fHits;
+                unlink(entry);
+                linkFirst(entry);
+                return entry.regex;
+            }
+            ++fMisses;
+        }
+        // compile outside of the lock; if another thread compiles the
+        // same pattern concurrently the first one cached wins
+        RegularExpression regex = new RegularExpression(pattern, options, locale);
+        synchronized (this) {
+            Entry entry = (Entry) fEntries.get(key);
+            if (entry != null) {
+                return entry.regex;
+            }
+            entry = new Entry(key, regex);
+            fEntries.put(key, entry);
+            linkFirst(entry);
+            if (fEntries.size() > fMaxSize) {
+                Entry eldest = fHead.prev;
+                unlink(eldest);
+                fEntries.remove(eldest.key);
+            }
+        }
+        return regex;
+    } // getRegularExpression(String,String,Locale):RegularExpression
+
+    /** Returns the number of cached expressions. */
+    public synchronized int size() {
+        return fEntries.size();
+    }
+
+    /** Returns the number of lookups which found a cached expression. */
+    public synchronized long getHitCount() {
+        return fHits;
+    }
+
+    /** Returns the number of lookups which compiled a new expression. */
+    public synchronized long getMissCount() {
+        return fMisses;
+    }
+
+    /** Removes all cached expressions. */
+    public synchronized void clear() {
+        fEntries.clear();
+        fHead.prev = fHead;
+        fHead.next = fHead;
+    }
+
+    //
+    // Private methods
+    //
+
+    private void linkFirst(Entry entry) {
+        entry.next = fHead.next;
+        entry.prev = fHead;
+        fHead.next.prev = entry;
+        fHead.next = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+    }
+
+    //
+    // Classes
+    //
+
+    /** A cached expression, linked in order of use. */
+    private static final class Entry {
+        final String key;
+        final RegularExpression regex;
+        Entry prev;
+        Entry next;
+        Entry(String key, RegularExpression regex) {
+            this.key = key;
+            this.regex = regex;
+        }
+    }
+
+} // class RegularExpressionCache
@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.xs;
 
+import java.io.Serializable;
 import java.lang.ref.SoftReference;
 import java.util.Vector;
 
@@ -75,7 +76,9 @@ import org.xml.sax.SAXException;
  * @version $Id$
  */
 
-public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
+public class SchemaGrammar implements XSGrammar, XSNamespaceItem, Serializable {
+
+    private static final long serialVersionUID = -253385808168919088L;
 
     // the target namespace of grammar
     String fTargetNamespace;
@@ -114,10 +117,10 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
     int fNumAnnotations;
 
     // symbol table for constructing parsers (annotation support)
-    private SymbolTable fSymbolTable = null;
+    private transient SymbolTable fSymbolTable = null;
     // parsers for annotation support
-    private SoftReference fSAXParser = null;
-    private SoftReference fDOMParser = null;
+    private transient SoftReference fSAXParser = null;
+    private transient SoftReference fDOMParser = null;
     
     // is this grammar immutable?  (fully constructed and not changeable)
     private boolean fIsImmutable = false;
@@ -266,6 +269,8 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
     // are immutable.
     public static class BuiltinSchemaGrammar extends SchemaGrammar {
 
+        private static final long serialVersionUID = -8446774917285055814L;
+
         private static final String EXTENDED_SCHEMA_FACTORY_CLASS = "org.apache.xerces.impl.dv.xs.ExtendedSchemaDVFactoryImpl";
 
         /**
@@ -484,6 +489,8 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
      * @author Michael Glavassevich, IBM
      */
     public static final class Schema4Annotations extends SchemaGrammar {
+
+        private static final long serialVersionUID = 8440856148296473906L;
         
         /**
          * Singleton instance.
@@ -1173,6 +1180,9 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
     // we need direct access to these two types
     public final static XSComplexTypeDecl fAnyType = new XSAnyType();
     private static class XSAnyType extends XSComplexTypeDecl {
+
+        private static final long serialVersionUID = -2697506547255388663L;
+
         public XSAnyType () {
             fName = SchemaSymbols.ATTVAL_ANYTYPE;
             super.fTargetNamespace = SchemaSymbols.URI_SCHEMAFORSCHEMA;
@@ -1255,6 +1265,9 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
         }
     }
     private static class BuiltinAttrDecl extends XSAttributeDecl {
+
+        private static final long serialVersionUID = 1219178853528301119L;
+
         public BuiltinAttrDecl(String name, String tns, 
                 XSSimpleType type, short scope) {
             fName = name;
@@ -1349,8 +1362,8 @@ public class SchemaGrammar implements XSGrammar, XSNamespaceItem {
                                                  };
                                                  
     // store a certain kind of components from all namespaces
-    private XSNamedMap[] fComponents = null;
-    private ObjectList[] fComponentsExt = null;
+    private transient XSNamedMap[] fComponents = null;
+    private transient ObjectList[] fComponentsExt = null;
 
     // store the documents and their locations contributing to this namespace
     // REVISIT: use StringList and XSObjectList for there fields.
@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.xs;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.Version;
+import org.apache.xerces.impl.xs.models.CMBuilder;
+import org.apache.xerces.impl.xs.models.CMNodeFactory;
+import org.apache.xerces.impl.xs.util.ObjectListImpl;
+import org.apache.xerces.impl.xs.util.ShortListImpl;
+import org.apache.xerces.impl.xs.util.StringListImpl;
+import org.apache.xerces.impl.xs.util.XSObjectListImpl;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xs.StringList;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSNamedMap;
+import org.apache.xerces.xs.XSObject;
+
+/**
+ * Writes schema grammars to a binary snapshot and reads them back, so
+ * that a grammar pool can be populated without parsing and traversing
+ * the schema documents again.
+ * <p>
+ * A snapshot starts with the location and a CRC-32 checksum of every
+ * schema document which contributed to the grammars. When a snapshot is
+ * read, the checksums are computed again and a snapshot whose documents
+ * have changed (or which was written by a different version of Xerces)
+ * is rejected, in which case the grammars must be rebuilt from the
+ * schema documents.
+ * <p>
+ * The grammars themselves are written with Java serialization. Only
+ * classes of Xerces and the few classes of the Java platform which
+ * grammars are made of are read back; a snapshot which contains any
+ * other class is not read at all. The
+ * content models of the complex types are compiled before they are
+ * written, components of the built-in grammars are written as references
+ * to the built-in grammars of the reading virtual machine, and all
+ * strings are interned when they are read, since the validator compares
+ * names by reference.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class SchemaGrammarSnapshot {
+
+    //
+    // Constants
+    //
+
+    /** Magic number at the start of a snapshot ("XSGS"). */
+    private static final int MAGIC = 0x58534753;
+
+    /** Version of the snapshot format. */
+    private static final int VERSION = 2;
+
+    /** Checksum recorded for a document which could not be read. */
+    private static final long UNREADABLE = -1;
+
+    /**
+     * Classes outside of Xerces which may be read from a snapshot,
+     * besides arrays of these classes and of primitive types.
+     */
+    private static final String[] PLATFORM_CLASSES = {
+        "java.lang.Boolean",
+        "java.lang.Byte",
+        "java.lang.Character",
+        "java.lang.Double",
+        "java.lang.Float",
+        "java.lang.Integer",
+        "java.lang.Long",
+        "java.lang.Number",
+        "java.lang.Object",
+        "java.lang.Short",
+        "java.lang.String",
+        "java.util.ArrayList",
+        "java.util.HashMap",
+        "java.util.Hashtable",
+        "java.util.Vector",
+    };
+
+    /** The kinds of global components of a grammar. */
+    private static final short[] COMPONENT_TYPES = {
+        XSConstants.TYPE_DEFINITION,
+        XSConstants.ATTRIBUTE_DECLARATION,
+        XSConstants.ELEMENT_DECLARATION,
+        XSConstants.ATTRIBUTE_GROUP,
+        XSConstants.MODEL_GROUP_DEFINITION,
+        XSConstants.NOTATION_DECLARATION,
+        XSConstants.IDENTITY_CONSTRAINT,
+    };
+
+    //
+    // Data
+    //
+
+    /** Built-in objects, mapped to their keys. */
+    private static final Map fBuiltinKeys = new IdentityHashMap();
+
+    /** Keys, mapped to the built-in objects. */
+    private static final Map fBuiltins = new HashMap();
+
+    /** Names of the classes outside of Xerces which may be read. */
+    private static final Set fPlatformClasses = new HashSet();
+
+    static {
+        for (int i = 0; i < PLATFORM_CLASSES.length; i++) {
+            fPlatformClasses.add(PLATFORM_CLASSES[i]);
+        }
+        addBuiltin("xs", SchemaGrammar.SG_SchemaNS);
+        addBuiltin("xs-ext", SchemaGrammar.getS4SGrammar(Constants.SCHEMA_VERSION_1_0_EXTENDED));
+        addBuiltin("xsi", SchemaGrammar.SG_XSI);
+        addBuiltin("s4a", SchemaGrammar.Schema4Annotations.INSTANCE);
+        addBuiltin("anyType", SchemaGrammar.fAnyType);
+        addBuiltin("XSObjectList", XSObjectListImpl.EMPTY_LIST);
+        addBuiltin("StringList", StringListImpl.EMPTY_LIST);
+        addBuiltin("ShortList", ShortListImpl.EMPTY_LIST);
+        addBuiltin("ObjectList", ObjectListImpl.EMPTY_LIST);
+    }
+
+    //
+    // Constructors
+    //
+
+    private SchemaGrammarSnapshot() {}
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Writes a snapshot of the schema grammars in a grammar pool.
+     *
+     * @param pool The grammar pool.
+     * @param out  The stream to write to. It is not closed.
+     */
+    public static void write(XMLGrammarPool pool, OutputStream out) throws IOException {
+        Grammar[] grammars = pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+        Vector schemaGrammars = new Vector();
+        for (int i = 0; grammars != null && i < grammars.length; i++) {
+            if (grammars[i] instanceof SchemaGrammar) {
+                schemaGrammars.addElement(grammars[i]);
+            }
+        }
+        SchemaGrammar[] array = new SchemaGrammar[schemaGrammars.size()];
+        schemaGrammars.copyInto(array);
+        write(array, out);
+    } // write(XMLGrammarPool,OutputStream)
+
+    /**
+     * Writes a snapshot of schema grammars. Grammars which are referenced
+     * by the given grammars (through imports, for instance) are written as
+     * well.
+     *
+     * @param grammars The grammars.
+     * @param out      The stream to write to. It is not closed.
+     */
+    public static void write(SchemaGrammar[] grammars, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(Version.getVersion());
+        String[] locations = getDocumentLocations(grammars);
+        data.writeInt(locations.length);
+        for (int i = 0; i < locations.length; i++) {
+            data.writeUTF(locations[i]);
+            data.writeLong(checksum(locations[i]));
+        }
+        SnapshotOutputStream objects = new SnapshotOutputStream(data);
+        objects.writeObject(grammars);
+        objects.flush();
+    } // write(SchemaGrammar[],OutputStream)
+
+    /**
+     * Reads the grammars of a snapshot, after checking that the schema
+     * documents they were built from have not changed.
+     *
+     * @param in The stream to read from. It is not closed.
+     *
+     * @return The grammars, or null if the snapshot is stale.
+     *
+     * @throws IOException Thrown if the snapshot cannot be read.
+     */
+    public static SchemaGrammar[] read(InputStream in) throws IOException {
+        return read(in, true);
+    } // read(InputStream):SchemaGrammar[]
+
+    /**
+     * Reads the grammars of a snapshot.
+     *
+     * @param in             The stream to read from. It is not closed.
+     * @param checkDocuments Whether to check that the schema documents
+     *                       the grammars were built from have not changed.
+     *                       When the documents are only reachable through
+     *                       an entity resolver, they cannot be checked.
+     *
+     * @return The grammars, or null if the snapshot is stale.
+     *
+     * @throws IOException Thrown if the snapshot cannot be read, or
+     *                     if it contains a class which may not be part
+     *                     of a grammar.
+     */
+    public static SchemaGrammar[] read(InputStream in, boolean checkDocuments) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a schema grammar snapshot.");
+        }
+        if (data.readInt() != VERSION || !Version.getVersion().equals(data.readUTF())) {
+            return null;
+        }
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            String location = data.readUTF();
+            long checksum = data.readLong();
+            if (checkDocuments && checksum(location) != checksum) {
+                return null;
+            }
+        }
+        SnapshotInputStream objects = new SnapshotInputStream(data);
+        try {
+            return (SchemaGrammar[])objects.readObject();
+        }
+        catch (ObjectStreamException e) {
+            // classes which have changed since the snapshot was written
+            // make it stale, classes which are not allowed do not
+            if (objects.fRejected) {
+                throw e;
+            }
+            return null;
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+        catch (ClassCastException e) {
+            throw new IOException(e.getMessage());
+        }
+    } // read(InputStream,boolean):SchemaGrammar[]
+
+    /**
+     * Reads the grammars of a snapshot into a grammar pool, after
+     * checking that the schema documents they were built from have not
+     * changed. Grammars are not added to a locked pool.
+     *
+     * @param in   The stream to read from. It is not closed.
+     * @param pool The grammar pool.
+     *
+     * @return False if the snapshot is stale.
+     *
+     * @throws IOException Thrown if the snapshot cannot be read.
+     */
+    public static boolean load(InputStream in, XMLGrammarPool pool) throws IOException {
+        SchemaGrammar[] grammars = read(in, true);
+        if (grammars == null) {
+            return false;
+        }
+        pool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, grammars);
+        return true;
+    } // load(InputStream,XMLGrammarPool):boolean
+
+    //
+    // Private static methods
+    //
+
+    /** Registers a built-in object and, for grammars, its global components. */
+    private static void addBuiltin(String key, Object builtin) {
+        if (!fBuiltinKeys.containsKey(builtin)) {
+            fBuiltinKeys.put(builtin, key);
+        }
+        fBuiltins.put(key, builtin);
+        if (builtin instanceof SchemaGrammar) {
+            SchemaGrammar grammar = (SchemaGrammar)builtin;
+            for (int i = 0; i < COMPONENT_TYPES.length; i++) {
+                XSNamedMap components = grammar.getComponents(COMPONENT_TYPES[i]);
+                for (int j = 0; j < components.getLength(); j++) {
+                    XSObject component = components.item(j);
+                    addBuiltin(key + ':' + COMPONENT_TYPES[i] + ':' + component.getName(), component);
+                }
+            }
+        }
+    } // addBuiltin(String,Object)
+
+    /** Returns the locations of the documents of the given grammars. */
+    private static String[] getDocumentLocations(SchemaGrammar[] grammars) {
+        Vector locations = new Vector();
+        for (int i = 0; i < grammars.length; i++) {
+            StringList list = grammars[i].getDocumentLocations();
+            for (int j = 0; j < list.getLength(); j++) {
+                String location = list.item(j);
+                if (location != null && !locations.contains(location)) {
+                    locations.addElement(location);
+                }
+            }
+        }
+        String[] array = new String[locations.size()];
+        locations.copyInto(array);
+        return array;
+    } // getDocumentLocations(SchemaGrammar[]):String[]
+
+    /** Returns the checksum of the document at the given location. */
+    private static long checksum(String location) {
+        try {
+            InputStream stream;
+            try {
+                stream = new URL(location).openStream();
+            }
+            catch (MalformedURLException e) {
+                stream = new FileInputStream(location);
+            }
+            try {
+                CRC32 crc = new CRC32();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = stream.read(buffer)) != -1) {
+                    crc.update(buffer, 0, count);
+                }
+                return crc.getValue();
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException e) {
+            return UNREADABLE;
+        }
+    } // checksum(String):long
+
+    //
+    // Classes
+    //
+
+    /** A reference to a built-in object. */
+    private static final class BuiltinReference implements Serializable {
+
+        private static final long serialVersionUID = -78656534898165950L;
+
+        final String fKey;
+
+        BuiltinReference(String key) {
+            fKey = key;
+        }
+
+    } // class BuiltinReference
+
+    /**
+     * Replaces built-in objects by references, and compiles content
+     * models before complex types are written.
+     */
+    private static final class SnapshotOutputStream extends ObjectOutputStream {
+
+        private final CMBuilder fCMBuilder = new CMBuilder(new CMNodeFactory());
+
+        SnapshotOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        protected Object replaceObject(Object obj) throws IOException {
+            String key = (String)fBuiltinKeys.get(obj);
+            if (key != null) {
+                return new BuiltinReference(key);
+            }
+            if (obj instanceof XSComplexTypeDecl) {
+                ((XSComplexTypeDecl)obj).getContentModel(fCMBuilder);
+            }
+            return obj;
+        }
+
+    } // class SnapshotOutputStream
+
+    /**
+     * Resolves references to built-in objects, interns strings, and
+     * rejects classes which may not be part of a grammar.
+     */
+    private static final class SnapshotInputStream extends ObjectInputStream {
+
+        /** Whether a class was rejected. */
+        boolean fRejected;
+
+        SnapshotInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        protected Class resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            int dimensions = 0;
+            while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            String element = name.substring(dimensions);
+            if (dimensions > 0) {
+                // primitive element types are a single character
+                element = element.length() > 2 && element.charAt(0) == 'L'
+                    ? element.substring(1, element.length() - 1) : null;
+            }
+            if (element != null && !element.startsWith("org.apache.xerces.") &&
+                !fPlatformClasses.contains(element)) {
+                fRejected = true;
+                throw new InvalidClassException(name, "Not allowed in a schema grammar snapshot.");
+            }
+            return super.resolveClass(desc);
+        }
+
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                return ((String)obj).intern();
+            }
+            if (obj instanceof BuiltinReference) {
+                Object builtin = fBuiltins.get(((BuiltinReference)obj).fKey);
+                if (builtin == null) {
+                    throw new InvalidObjectException(((BuiltinReference)obj).fKey);
+                }
+                return builtin;
+            }
+            return obj;
+        }
+
+    } // class SnapshotInputStream
+
+} // class SchemaGrammarSnapshot
@@ -48,6 +48,7 @@ import org.apache.xerces.util.DOMErrorHandlerWrapper;
 import org.apache.xerces.util.DefaultErrorHandler;
 import org.apache.xerces.util.MessageFormatter;
 import org.apache.xerces.util.ParserConfigurationSettings;
+import org.apache.xerces.util.SingleFlightXMLGrammarPool;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLSymbols;
 import org.apache.xerces.util.URI.MalformedURIException;
@@ -150,6 +151,10 @@ XSLoader, DOMConfiguration {
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
     
+    /** Property identifier: schema loading threads. */
+    protected static final String SCHEMA_LOADING_THREADS = 
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_LOADING_THREADS_PROPERTY;
+    
     // recognized features:
     private static final String[] RECOGNIZED_FEATURES = {
         SCHEMA_FULL_CHECKING,
@@ -222,7 +227,8 @@ XSLoader, DOMConfiguration {
         JAXP_SCHEMA_SOURCE,
         SECURITY_MANAGER,
         LOCALE,
-        SCHEMA_DV_FACTORY
+        SCHEMA_DV_FACTORY,
+        SCHEMA_LOADING_THREADS
     };
     
     // Data
@@ -544,14 +550,23 @@ XSLoader, DOMConfiguration {
         // to check whether the values are valid URI.
         processExternalHints(fExternalSchemas, fExternalNoNSSchema,
                 locationPairs, fErrorReporter);
-        SchemaGrammar grammar = loadSchema(desc, source, locationPairs);
+        SchemaGrammar grammar = null;
+        try {
+            grammar = loadSchema(desc, source, locationPairs);
         
-        if(grammar != null && fGrammarPool != null) {
-            fGrammarPool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, fGrammarBucket.getGrammars());
-            // NOTE: we only need to verify full checking in case the schema was not provided via JAXP
-            // since full checking already verified for all JAXP schemas
-            if(fIsCheckedFully && fJAXPCache.get(grammar) != grammar) {
-                XSConstraints.fullSchemaChecking(fGrammarBucket, fSubGroupHandler, fCMBuilder, fErrorReporter);
+            if(grammar != null && fGrammarPool != null) {
+                fGrammarPool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, fGrammarBucket.getGrammars());
+                // NOTE: we only need to verify full checking in case the schema was not provided via JAXP
+                // since full checking already verified for all JAXP schemas
+                if(fIsCheckedFully && fJAXPCache.get(grammar) != grammar) {
+                    XSConstraints.fullSchemaChecking(fGrammarBucket, fSubGroupHandler, fCMBuilder, fErrorReporter);
+                }
+            }
+        }
+        finally {
+            // release the grammars this thread was asked to load but did not provide
+            if (fGrammarPool instanceof SingleFlightXMLGrammarPool) {
+                ((SingleFlightXMLGrammarPool) fGrammarPool).endLoading();
             }
         }
         return grammar;
@@ -1225,7 +1240,8 @@ XSLoader, DOMConfiguration {
             name.equals(SCHEMA_LOCATION) ||
             name.equals(SCHEMA_NONS_LOCATION) ||
             name.equals(JAXP_SCHEMA_SOURCE) ||
-            name.equals(SCHEMA_DV_FACTORY)) {
+            name.equals(SCHEMA_DV_FACTORY) ||
+            name.equals(SCHEMA_LOADING_THREADS)) {
             return true;
         }
         return false;
@@ -1288,6 +1304,7 @@ XSLoader, DOMConfiguration {
             v.add(HONOUR_ALL_SCHEMALOCATIONS);
             v.add(NAMESPACE_GROWTH);
             v.add(TOLERATE_DUPLICATES);
+            v.add(SCHEMA_LOADING_THREADS);
             fRecognizedParameters = new DOMStringListImpl(v);      	
         }
         return fRecognizedParameters;
@@ -54,6 +54,7 @@ import org.apache.xerces.impl.xs.models.XSCMValidator;
 import org.apache.xerces.impl.xs.util.XS10TypeHelper;
 import org.apache.xerces.util.AugmentationsImpl;
 import org.apache.xerces.util.IntStack;
+import org.apache.xerces.util.SingleFlightXMLGrammarPool;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLAttributesImpl;
 import org.apache.xerces.util.XMLChar;
@@ -253,6 +254,10 @@ public class XMLSchemaValidator
     /** Property identifier: Schema DV Factory */
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
+
+    /** Property identifier: schema loading threads. */
+    protected static final String SCHEMA_LOADING_THREADS = 
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_LOADING_THREADS_PROPERTY;
     
     // recognized features and properties
 
@@ -323,11 +328,12 @@ public class XMLSchemaValidator
             ROOT_TYPE_DEF,
             ROOT_ELEMENT_DECL,
             SCHEMA_DV_FACTORY,
+            SCHEMA_LOADING_THREADS,
         };
 
     /** Property defaults. */
     private static final Object[] PROPERTY_DEFAULTS =
-        { null, null, null, null, null, null, null, null, null, null, null};
+        { null, null, null, null, null, null, null, null, null, null, null, null};
 
     // this is the number of valuestores of each kind
     // we expect an element to have.  It's almost
@@ -2641,6 +2647,24 @@ public class XMLSchemaValidator
     //the local pool, if not in local pool, it gives chance to application to be able to retrieve the grammar, then it
     //tries to parse the grammar using location hints from the give namespace.
     SchemaGrammar findSchemaGrammar(
+        short contextType,
+        String namespace,
+        QName enclosingElement,
+        QName triggeringComponent,
+        XMLAttributes attributes) {
+        try {
+            return findSchemaGrammar0(contextType, namespace, enclosingElement, triggeringComponent, attributes);
+        }
+        finally {
+            if (fGrammarPool instanceof SingleFlightXMLGrammarPool) {
+                endGrammarLoading((SingleFlightXMLGrammarPool) fGrammarPool);
+            }
+        }
+    } //findSchemaGrammar
+
+    // the lookup itself, unchanged; findSchemaGrammar provides what it
+    // loaded to validators waiting on a single-flight grammar pool
+    private SchemaGrammar findSchemaGrammar0(
         short contextType,
         String namespace,
         QName enclosingElement,
@@ -2735,7 +2759,22 @@ public class XMLSchemaValidator
 
         return grammar;
 
-    } //findSchemaGrammar
+    } //findSchemaGrammar0
+
+    /**
+     * Provides the grammars loaded by this thread to other validators
+     * sharing the grammar pool, and releases those it failed to load.
+     */
+    private void endGrammarLoading(SingleFlightXMLGrammarPool grammarPool) {
+        if (grammarPool.isLoading()) {
+            SchemaGrammar[] grammars = fGrammarBucket.getGrammars();
+            for (int k = 0; k < grammars.length; k++) {
+                grammars[k].setImmutable(true);
+            }
+            grammarPool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, grammars);
+            grammarPool.endLoading();
+        }
+    } // endGrammarLoading(SingleFlightXMLGrammarPool)
     
     private boolean hasSchemaComponent(SchemaGrammar grammar, short contextType, QName triggeringComponent) {
         if (grammar != null && triggeringComponent != null) {
@@ -3728,6 +3767,17 @@ public class XMLSchemaValidator
         private int fItemValueTypesLength = 0;
         private ShortList fItemValueType = null;
 
+        /**
+         * Hash index over the value tuples in fValues. Each bucket holds
+         * the number of the most recently indexed tuple whose values hash
+         * to the bucket, or -1; fTupleNext chains to the previous one.
+         */
+        private int[] fTupleBuckets = null;
+        private int[] fTupleNext = null;
+
+        /** The number of tuples in fValues which have been indexed. */
+        private int fIndexedTupleCount = 0;
+
         /** buffer for error messages */
         final StringBuffer fTempBuffer = new StringBuffer();
 
@@ -3769,6 +3819,9 @@ public class XMLSchemaValidator
             if (fItemValueTypes != null) {
                 fItemValueTypes.setSize(0);
             }
+            fTupleBuckets = null;
+            fTupleNext = null;
+            fIndexedTupleCount = 0;
         } // end clear():void
 
         // appends the contents of one ValueStore to those of us.
@@ -3900,30 +3953,30 @@ public class XMLSchemaValidator
          * Returns true if this value store contains the locally scoped value stores
          */
         public boolean contains() {
-            // REVISIT: we can improve performance by using hash codes, instead of
-            // traversing global vector that could be quite large.
-            int next = 0;
-            final int size = fValues.size();
-            LOOP : for (int i = 0; i < size; i = next) {
-                next = i + fFieldCount;
-                for (int j = 0; j < fFieldCount; j++) {
+            updateTupleIndex();
+            for (int tuple = fTupleBuckets[hashTuple(fLocalValues) & (fTupleBuckets.length - 1)];
+                tuple != -1; tuple = fTupleNext[tuple]) {
+                int i = tuple * fFieldCount;
+                int j = 0;
+                for (; j < fFieldCount; j++, i++) {
                     Object value1 = fLocalValues[j];
                     Object value2 = fValues.elementAt(i);
                     short valueType1 = fLocalValueTypes[j];
                     short valueType2 = getValueTypeAt(i);
                     if (value1 == null || value2 == null || valueType1 != valueType2 || !(value1.equals(value2))) {
-                        continue LOOP;
+                        break;
                     }
                     else if(valueType1 == XSConstants.LIST_DT || valueType1 == XSConstants.LISTOFUNION_DT) {
                         ShortList list1 = fLocalItemValueTypes[j];
                         ShortList list2 = getItemValueTypeAt(i);
                         if(list1 == null || list2 == null || !list1.equals(list2))
-                            continue LOOP;
+                            break;
                     }
-                    i++;
                 }
-                // found it
-                return true;
+                if (j == fFieldCount) {
+                    // found it
+                    return true;
+                }
             }
             // didn't find it
             return false;
@@ -3938,10 +3991,11 @@ public class XMLSchemaValidator
             
             final Vector values = vsb.fValues;         
             final int size1 = values.size();
+            updateTupleIndex();
             if (fFieldCount <= 1) {
                 for (int i = 0; i < size1; ++i) {
                     short val = vsb.getValueTypeAt(i);
-                    if (!valueTypeContains(val) || !fValues.contains(values.elementAt(i))) {
+                    if (!valueTypeContains(val) || !containsValue(values.elementAt(i))) {
                         return i;
                     }
                     else if(val == XSConstants.LIST_DT || val == XSConstants.LISTOFUNION_DT) {
@@ -3954,13 +4008,18 @@ public class XMLSchemaValidator
             }
             /** Handle n-tuples. **/
             else {
-                final int size2 = fValues.size();
+                final Object[] tuple1 = new Object[fFieldCount];
                 /** Iterate over each set of fields. **/
                 OUTER: for (int i = 0; i < size1; i += fFieldCount) {
+                    for (int k = 0; k < fFieldCount; ++k) {
+                        tuple1[k] = values.elementAt(i+k);
+                    }
                     /** Check whether this set is contained in the value store. **/
-                    INNER: for (int j = 0; j < size2; j += fFieldCount) {
+                    INNER: for (int tuple = fTupleBuckets[hashTuple(tuple1) & (fTupleBuckets.length - 1)];
+                        tuple != -1; tuple = fTupleNext[tuple]) {
+                        final int j = tuple * fFieldCount;
                         for (int k = 0; k < fFieldCount; ++k) {
-                            final Object value1 = values.elementAt(i+k);
+                            final Object value1 = tuple1[k];
                             final Object value2 = fValues.elementAt(j+k);
                             final short valueType1 = vsb.getValueTypeAt(i+k);
                             final short valueType2 = getValueTypeAt(j+k);
@@ -4129,6 +4188,72 @@ public class XMLSchemaValidator
                 (fItemValueType != null && fItemValueType.equals(value));
         }
 
+        /**
+         * Returns the hash code of a tuple of field values. Actual values
+         * hash consistently with the equality of their value space, so
+         * equal tuples hash alike.
+         */
+        private int hashTuple(Object[] values) {
+            int hash = 0;
+            for (int i = 0; i < fFieldCount; i++) {
+                hash = hash * 31 + hashValue(values[i]);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private int hashValue(Object value) {
+            return (value != null) ? value.hashCode() : 0;
+        }
+
+        /**
+         * Adds the tuples appended to fValues since the last call to the
+         * hash index, growing the index as required.
+         */
+        private void updateTupleIndex() {
+            final int tupleCount = fValues.size() / fFieldCount;
+            if (fTupleBuckets == null || tupleCount > fTupleBuckets.length) {
+                int size = 16;
+                while (size < tupleCount) {
+                    size <<= 1;
+                }
+                fTupleBuckets = new int[size * 2];
+                fTupleNext = new int[size * 2];
+                for (int i = 0; i < fTupleBuckets.length; i++) {
+                    fTupleBuckets[i] = -1;
+                }
+                fIndexedTupleCount = 0;
+            }
+            if (fIndexedTupleCount < tupleCount) {
+                final Object[] tuple = new Object[fFieldCount];
+                final int mask = fTupleBuckets.length - 1;
+                for (int t = fIndexedTupleCount; t < tupleCount; t++) {
+                    for (int i = 0; i < fFieldCount; i++) {
+                        tuple[i] = fValues.elementAt(t * fFieldCount + i);
+                    }
+                    final int bucket = hashTuple(tuple) & mask;
+                    fTupleNext[t] = fTupleBuckets[bucket];
+                    fTupleBuckets[bucket] = t;
+                }
+                fIndexedTupleCount = tupleCount;
+            }
+        }
+
+        /**
+         * Returns true if fValues contains a value equal to the given one.
+         * Only used by value stores with a single field.
+         */
+        private boolean containsValue(Object value) {
+            int hash = hashValue(value);
+            for (int tuple = fTupleBuckets[(hash ^ (hash >>> 16)) & (fTupleBuckets.length - 1)];
+                tuple != -1; tuple = fTupleNext[tuple]) {
+                Object value2 = fValues.elementAt(tuple);
+                if (value == null ? value2 == null : value.equals(value2)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
     } // class ValueStoreBase
 
     /**
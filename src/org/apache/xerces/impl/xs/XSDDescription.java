@@ -17,6 +17,11 @@
 
 package org.apache.xerces.impl.xs;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
 import org.apache.xerces.util.XMLResourceIdentifierImpl;
 import org.apache.xerces.xni.QName;
 import org.apache.xerces.xni.XMLAttributes;
@@ -34,7 +39,10 @@ import org.apache.xerces.xni.grammars.XMLSchemaDescription;
  * @version $Id$
  */
 public class XSDDescription extends XMLResourceIdentifierImpl 
-                implements XMLSchemaDescription {
+                implements XMLSchemaDescription, Serializable {
+
+    private static final long serialVersionUID = 825983115132119001L;
+
     // used to indicate what triggered the call
     /**
      * Indicate that this description was just initialized. 
@@ -96,7 +104,7 @@ public class XSDDescription extends XMLResourceIdentifierImpl
     protected String [] fLocationHints ;
     protected QName fTriggeringComponent;
     protected QName fEnclosedElementName;
-    protected XMLAttributes  fAttributes;
+    protected transient XMLAttributes  fAttributes;
         
     /**
      * the type of the grammar (e.g., DTD or XSD);
@@ -257,4 +265,24 @@ public class XSDDescription extends XMLResourceIdentifierImpl
         return desc;
     }
     
+    // the resource identifier fields are declared by a class which is
+    // not serializable, so they are written explicitly
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(fPublicId);
+        out.writeObject(fLiteralSystemId);
+        out.writeObject(fBaseSystemId);
+        out.writeObject(fExpandedSystemId);
+        out.writeObject(fNamespace);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        fPublicId = (String)in.readObject();
+        fLiteralSystemId = (String)in.readObject();
+        fBaseSystemId = (String)in.readObject();
+        fExpandedSystemId = (String)in.readObject();
+        fNamespace = (String)in.readObject();
+    }
+    
 } // XSDDescription
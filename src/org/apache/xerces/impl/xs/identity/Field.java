@@ -17,6 +17,8 @@
 
 package org.apache.xerces.impl.xs.identity;
 
+import java.io.Serializable;
+
 import org.apache.xerces.impl.xpath.XPathException;
 import org.apache.xerces.impl.xs.util.ShortListImpl;
 import org.apache.xerces.util.SymbolTable;
@@ -35,7 +37,9 @@ import org.apache.xerces.xs.XSTypeDefinition;
  * @author Andy Clark, IBM
  * @version $Id$
  */
-public class Field {
+public class Field implements Serializable {
+
+    private static final long serialVersionUID = -6763626172556145924L;
 
     //
     // Data
@@ -101,6 +105,8 @@ public class Field {
     public static class XPath
         extends org.apache.xerces.impl.xpath.XPath {
 
+        private static final long serialVersionUID = 3599864892213301486L;
+
         //
         // Constructors
         //
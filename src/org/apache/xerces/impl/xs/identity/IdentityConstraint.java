@@ -17,6 +17,8 @@
 
 package org.apache.xerces.impl.xs.identity;
 
+import java.io.Serializable;
+
 import org.apache.xerces.impl.xs.XSAnnotationImpl;
 import org.apache.xerces.impl.xs.util.StringListImpl;
 import org.apache.xerces.impl.xs.util.XSObjectListImpl;
@@ -34,7 +36,9 @@ import org.apache.xerces.xs.XSObjectList;
  * @author Andy Clark, IBM
  * @version $Id$
  */
-public abstract class IdentityConstraint implements XSIDCDefinition {
+public abstract class IdentityConstraint implements XSIDCDefinition, Serializable {
+
+    private static final long serialVersionUID = 4794321827892124814L;
 
     //
     // Data
@@ -30,6 +30,8 @@ import org.apache.xerces.xs.XSIDCDefinition;
 public class KeyRef
     extends IdentityConstraint {
 
+    private static final long serialVersionUID = 7873220112447984293L;
+
     //
     // Data
     //
@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.xs.models;
 
+import java.io.Serializable;
 import java.util.Vector;
 
 import org.apache.xerces.impl.xs.SubstitutionGroupHandler;
@@ -33,7 +34,9 @@ import org.apache.xerces.xni.QName;
  * @author Pavani Mukthipudi, Sun Microsystems Inc.
  * @version $Id$
  */
-public class XSAllCM implements XSCMValidator {
+public class XSAllCM implements XSCMValidator, Serializable {
+
+    private static final long serialVersionUID = -3410346635490250382L;
 
     //
     // Constants
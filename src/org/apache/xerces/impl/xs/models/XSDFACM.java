@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.xs.models;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Vector;
 
@@ -31,6 +32,7 @@ import org.apache.xerces.impl.xs.XSModelGroupImpl;
 import org.apache.xerces.impl.xs.XSParticleDecl;
 import org.apache.xerces.impl.xs.XSWildcardDecl;
 import org.apache.xerces.xni.QName;
+import org.apache.xerces.xs.XSConstants;
 
 /**
  * DFAContentModel is the implementation of XSCMValidator that does
@@ -44,7 +46,9 @@ import org.apache.xerces.xni.QName;
  * @version $Id$
  */
 public class XSDFACM
-    implements XSCMValidator {
+    implements XSCMValidator, Serializable {
+
+    private static final long serialVersionUID = 643594772224094383L;
 
     //
     // Constants
@@ -58,6 +62,12 @@ public class XSDFACM
     /** Set to true to debug content model validation. */
     private static final boolean DEBUG_VALIDATE_CONTENT = false;
 
+    /**
+     * The minimum number of input symbols for which a name index is
+     * built. Smaller content models are matched by a linear scan.
+     */
+    private static final int NAME_INDEX_THRESHOLD = 8;
+
     //
     // Data
     //
@@ -97,7 +107,7 @@ public class XSDFACM
      * non-epsilon leaf node.) This is only used during the building of
      * the DFA, and is let go afterwards.
      */
-    private CMStateSet fFollowList[] = null;
+    private transient CMStateSet fFollowList[] = null;
 
     /**
      * This is the head node of our intermediate representation. It is
@@ -105,7 +115,7 @@ public class XSDFACM
      * does not have to be passed all around.) Once the DFA is built,
      * this is no longer required so its nulled out.
      */
-    private CMNode fHeadNode = null;
+    private transient CMNode fHeadNode = null;
 
     /**
      * The count of leaf nodes. This is an important number that set some
@@ -117,10 +127,10 @@ public class XSDFACM
      * An array of non-epsilon leaf nodes, which is used during the DFA
      * build operation, then dropped.
      */
-    private XSCMLeaf fLeafList[] = null;
+    private transient XSCMLeaf fLeafList[] = null;
 
     /** Array mapping ANY types to the leaf list. */
-    private int fLeafListType[] = null;
+    private transient int fLeafListType[] = null;
 
     /**
      * This is the transition table that is the main by product of all
@@ -141,7 +151,10 @@ public class XSDFACM
      * which use counters to check minOccurs/maxOccurs.
      */
     private Occurence [] fCountingStates = null;
-    static final class Occurence {
+    static final class Occurence implements Serializable {
+
+        private static final long serialVersionUID = -160300608262350401L;
+
         final int minOccurs;
         final int maxOccurs;
         final int elemIndex;
@@ -165,6 +178,31 @@ public class XSDFACM
     private int fTransTableSize = 0;
 
     private boolean fIsCompactedForUPA;
+
+    /**
+     * Hash buckets of the name index, or null if the content model is
+     * too small to be indexed. Each bucket holds the lowest index into
+     * fElemMap of an element declaration whose (uri, localpart) hashes
+     * to the bucket, or -1. The transition table is shared by all states,
+     * so one index serves every state of the DFA.
+     */
+    private int fNameBuckets[] = null;
+
+    /**
+     * The next element map index in the same bucket, in ascending
+     * order, or -1. Wildcards are never chained.
+     */
+    private int fNameNext[] = null;
+
+    /** The indices of the wildcards in fElemMap, in ascending order. */
+    private int fWildcardIndices[] = null;
+
+    /**
+     * Whether the element map contains a global element declaration
+     * which does not block substitution, i.e. one which may be matched
+     * by a member of its substitution group.
+     */
+    private boolean fHasSubstitutableDecls;
     
     // temp variables
 
@@ -263,21 +301,32 @@ public class XSDFACM
         int elemIndex = 0;
         Object matchingDecl = null;
 
-        for (; elemIndex < fElemMapSize; elemIndex++) {
-            nextState = fTransTable[curState][elemIndex];
-            if (nextState == -1)
-                continue;
-            int type = fElemMapType[elemIndex] ;
-            if (type == XSParticleDecl.PARTICLE_ELEMENT) {
-                matchingDecl = subGroupHandler.getMatchingElemDecl(curElem, (XSElementDecl)fElemMap[elemIndex]);
-                if (matchingDecl != null) {
-                    break;
-                }
+        if (fNameBuckets != null) {
+            elemIndex = findTransition(curElem, fTransTable[curState], subGroupHandler);
+            if (elemIndex < fElemMapSize) {
+                nextState = fTransTable[curState][elemIndex];
+                matchingDecl = (fElemMapType[elemIndex] == XSParticleDecl.PARTICLE_ELEMENT) ?
+                        subGroupHandler.getMatchingElemDecl(curElem, (XSElementDecl)fElemMap[elemIndex]) :
+                        fElemMap[elemIndex];
             }
-            else if (type == XSParticleDecl.PARTICLE_WILDCARD) {
-                if (((XSWildcardDecl)fElemMap[elemIndex]).allowNamespace(curElem.uri)) {
-                    matchingDecl = fElemMap[elemIndex];
-                    break;
+        }
+        else {
+            for (; elemIndex < fElemMapSize; elemIndex++) {
+                nextState = fTransTable[curState][elemIndex];
+                if (nextState == -1)
+                    continue;
+                int type = fElemMapType[elemIndex] ;
+                if (type == XSParticleDecl.PARTICLE_ELEMENT) {
+                    matchingDecl = subGroupHandler.getMatchingElemDecl(curElem, (XSElementDecl)fElemMap[elemIndex]);
+                    if (matchingDecl != null) {
+                        break;
+                    }
+                }
+                else if (type == XSParticleDecl.PARTICLE_WILDCARD) {
+                    if (((XSWildcardDecl)fElemMap[elemIndex]).allowNamespace(curElem.uri)) {
+                        matchingDecl = fElemMap[elemIndex];
+                        break;
+                    }
                 }
             }
         }
@@ -354,6 +403,65 @@ public class XSDFACM
         return matchingDecl;
     } // oneTransition(QName, int[], SubstitutionGroupHandler):  Object
 
+    /**
+     * Returns the lowest index into the element map which has a transition
+     * in the given row of the transition table and which matches the
+     * element, or fElemMapSize if there is none. This yields the same
+     * result as a linear scan of the element map, using the name index.
+     * An element declaration can only match an element with a different
+     * name if it is the head of a substitution group containing the
+     * element, so besides the element's own name only the names along
+     * its chain of substitution group affiliations need to be looked up.
+     */
+    private int findTransition(QName curElem, int[] transitions, SubstitutionGroupHandler subGroupHandler) {
+        int elemIndex = lookupName(curElem.uri, curElem.localpart, transitions, fElemMapSize, null, null);
+        if (fHasSubstitutableDecls) {
+            XSElementDecl decl = subGroupHandler.getGlobalElementDecl(curElem);
+            if (decl != null) {
+                for (XSElementDecl head = decl.fSubGroup; head != null; head = head.fSubGroup) {
+                    elemIndex = lookupName(head.fTargetNamespace, head.fName, transitions, elemIndex, curElem, subGroupHandler);
+                }
+            }
+        }
+        final int[] wildcards = fWildcardIndices;
+        for (int i = 0; i < wildcards.length && wildcards[i] < elemIndex; i++) {
+            if (transitions[wildcards[i]] != -1 &&
+                ((XSWildcardDecl)fElemMap[wildcards[i]]).allowNamespace(curElem.uri)) {
+                return wildcards[i];
+            }
+        }
+        return elemIndex;
+    } // findTransition(QName, int[], SubstitutionGroupHandler): int
+
+    /**
+     * Returns the lowest index below the given limit of an element
+     * declaration with the given name which has a transition in the given
+     * row of the transition table, or the limit if there is none. If a
+     * substitution group handler is given, the declaration must also be
+     * matched by the element through its substitution group.
+     */
+    private int lookupName(String uri, String localpart, int[] transitions, int limit,
+            QName curElem, SubstitutionGroupHandler subGroupHandler) {
+        for (int elemIndex = fNameBuckets[hash(uri, localpart) & (fNameBuckets.length - 1)];
+            elemIndex != -1 && elemIndex < limit; elemIndex = fNameNext[elemIndex]) {
+            XSElementDecl decl = (XSElementDecl)fElemMap[elemIndex];
+            if (decl.fName == localpart && decl.fTargetNamespace == uri &&
+                transitions[elemIndex] != -1 &&
+                (subGroupHandler == null || subGroupHandler.getMatchingElemDecl(curElem, decl) != null)) {
+                return elemIndex;
+            }
+        }
+        return limit;
+    } // lookupName(String, String, int[], int, QName, SubstitutionGroupHandler): int
+
+    private static int hash(String uri, String localpart) {
+        int code = localpart.hashCode();
+        if (uri != null) {
+            code = code * 31 + uri.hashCode();
+        }
+        return code ^ (code >>> 16);
+    } // hash(String, String): int
+
     Object findMatchingDecl(QName curElem, SubstitutionGroupHandler subGroupHandler) {
         Object matchingDecl = null;
 
@@ -820,6 +928,50 @@ public class XSDFACM
         fFollowList = null;
         fLeafListType = null;
         fElemMapId = null;
+
+        if (fElemMapSize >= NAME_INDEX_THRESHOLD) {
+            buildNameIndex();
+        }
+    }
+
+    /**
+     * Builds the name index over the element map. Buckets are chained in
+     * ascending order of element map index so that a lookup finds the
+     * same declaration as a linear scan would.
+     */
+    private void buildNameIndex() {
+        int size = 1;
+        while (size < fElemMapSize * 2) {
+            size <<= 1;
+        }
+        fNameBuckets = new int[size];
+        for (int i = 0; i < size; i++) {
+            fNameBuckets[i] = -1;
+        }
+        fNameNext = new int[fElemMapSize];
+        int wildcardCount = 0;
+        for (int elemIndex = fElemMapSize - 1; elemIndex >= 0; elemIndex--) {
+            fNameNext[elemIndex] = -1;
+            if (fElemMapType[elemIndex] == XSParticleDecl.PARTICLE_ELEMENT) {
+                XSElementDecl decl = (XSElementDecl)fElemMap[elemIndex];
+                int bucket = hash(decl.fTargetNamespace, decl.fName) & (size - 1);
+                fNameNext[elemIndex] = fNameBuckets[bucket];
+                fNameBuckets[bucket] = elemIndex;
+                if (decl.fScope == XSConstants.SCOPE_GLOBAL &&
+                    (decl.fBlock & XSConstants.DERIVATION_SUBSTITUTION) == 0) {
+                    fHasSubstitutableDecls = true;
+                }
+            }
+            else if (fElemMapType[elemIndex] == XSParticleDecl.PARTICLE_WILDCARD) {
+                wildcardCount++;
+            }
+        }
+        fWildcardIndices = new int[wildcardCount];
+        for (int elemIndex = 0, i = 0; elemIndex < fElemMapSize; elemIndex++) {
+            if (fElemMapType[elemIndex] == XSParticleDecl.PARTICLE_WILDCARD) {
+                fWildcardIndices[i++] = elemIndex;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,590 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.xs.traversers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedList;
+
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.impl.xs.SchemaSymbols;
+import org.apache.xerces.impl.xs.XMLSchemaLoader;
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.impl.xs.opti.SchemaDOMParser;
+import org.apache.xerces.impl.xs.opti.SchemaParsingConfig;
+import org.apache.xerces.util.DOMUtil;
+import org.apache.xerces.util.DefaultErrorHandler;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLEntityResolver;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Parses the schema documents of an import/include/redefine graph
+ * ahead of the XSDHandler on a bounded set of loader threads.
+ * <p>
+ * Whenever a document has been parsed, the documents referenced by
+ * its &lt;import&gt;, &lt;include&gt; and &lt;redefine&gt; children are
+ * resolved and queued, so the whole graph is fetched and parsed
+ * concurrently while the handler constructs its trees one document
+ * at a time. A prefetched tree is handed out at most once; later
+ * requests for the same document parse it again, as the sequential
+ * handler does.
+ * <p>
+ * Errors reported while parsing a document are recorded and only
+ * replayed to the application's error handler when the handler asks
+ * for that document, so the errors reported, and their order, do not
+ * depend on the number of threads. Documents which are parsed
+ * speculatively but never asked for report nothing.
+ * <p>
+ * The entity resolver is never called concurrently, but it may be
+ * called from a loader thread, and may be called for documents which
+ * are never used.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class SchemaDocumentPrefetcher {
+
+    //
+    // Constants
+    //
+
+    /** Features copied from the handler's schema parser. */
+    private static final String[] FEATURES = {
+        XSDHandler.CONTINUE_AFTER_FATAL_ERROR,
+        XSDHandler.ALLOW_JAVA_ENCODINGS,
+        XSDHandler.STANDARD_URI_CONFORMANT_FEATURE,
+        XSDHandler.DISALLOW_DOCTYPE,
+        XSDHandler.GENERATE_SYNTHETIC_ANNOTATIONS,
+    };
+
+    /** Properties copied from the handler's schema parser. */
+    private static final String[] PROPERTIES = {
+        XSDHandler.LOCALE,
+        XSDHandler.SECURITY_MANAGER,
+    };
+
+    /** Location hints used for includes and redefines. */
+    private static final Hashtable EMPTY_TABLE = new Hashtable();
+
+    // task states
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    // error severities
+    private static final short WARNING = 0;
+    private static final short ERROR = 1;
+    private static final short FATAL_ERROR = 2;
+
+    //
+    // Data
+    //
+
+    /** Maximum number of loader threads. */
+    private final int fMaxThreads;
+
+    /** Resolver for referenced schema documents. */
+    private final XMLEntityResolver fDocumentResolver;
+
+    /** Location hints from the schema location properties. */
+    private final Hashtable fLocationPairs;
+
+    /** Feature values copied from the handler's schema parser. */
+    private final boolean[] fFeatureValues = new boolean[FEATURES.length];
+
+    /** Property values copied from the handler's schema parser. */
+    private final Object[] fPropertyValues = new Object[PROPERTIES.length];
+
+    /** The entity resolver of the parsers, serialized with the document resolver. */
+    private final XMLEntityResolver fEntityResolver;
+
+    /** The application's error handler, to which errors are replayed. */
+    private final XMLErrorHandler fErrorHandler;
+
+    /** Lock serializing the calls to the entity resolvers. */
+    private final Object fResolverLock = new Object();
+
+    /** Tasks waiting for a loader thread. */
+    private final LinkedList fQueue = new LinkedList();
+
+    /** Map from expanded system id to the task not yet handed out. */
+    private final HashMap fTasks = new HashMap();
+
+    /** Expanded system ids of every document queued so far. */
+    private final HashSet fQueued = new HashSet();
+
+    /** Number of loader threads started. */
+    private int fThreadCount;
+
+    /** Number of loader threads waiting for a task. */
+    private int fIdleCount;
+
+    /** True once the prefetcher has been shut down. */
+    private boolean fShutdown;
+
+    /** Parser used for the tasks run by the handler's own thread. */
+    private SchemaDOMParser fCallerParser;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a prefetcher whose parsers are configured like the
+     * given schema parser.
+     *
+     * @param schemaParser     The handler's schema parser.
+     * @param documentResolver The resolver for referenced schema documents.
+     * @param locationPairs    The location hints from the schema location
+     *                         properties.
+     * @param maxThreads       The maximum number of loader threads.
+     */
+    SchemaDocumentPrefetcher(SchemaDOMParser schemaParser, XMLEntityResolver documentResolver,
+            Hashtable locationPairs, int maxThreads) {
+        fMaxThreads = maxThreads;
+        fDocumentResolver = documentResolver;
+        fLocationPairs = (locationPairs != null) ? locationPairs : EMPTY_TABLE;
+        for (int i = 0; i < FEATURES.length; ++i) {
+            try {
+                fFeatureValues[i] = schemaParser.getFeature(FEATURES[i]);
+            }
+            catch (XMLConfigurationException e) {}
+        }
+        for (int i = 0; i < PROPERTIES.length; ++i) {
+            try {
+                fPropertyValues[i] = schemaParser.getProperty(PROPERTIES[i]);
+            }
+            catch (XMLConfigurationException e) {}
+        }
+        XMLEntityResolver entityResolver = null;
+        XMLErrorHandler errorHandler = null;
+        try {
+            entityResolver = (XMLEntityResolver) schemaParser.getProperty(XSDHandler.ENTITY_RESOLVER);
+        }
+        catch (XMLConfigurationException e) {}
+        try {
+            errorHandler = (XMLErrorHandler) schemaParser.getProperty(XSDHandler.ERROR_HANDLER);
+        }
+        catch (XMLConfigurationException e) {}
+        fEntityResolver = (entityResolver != null) ? new SerializedEntityResolver(entityResolver) : null;
+        fErrorHandler = (errorHandler != null) ? errorHandler : new DefaultErrorHandler();
+    } // <init>(SchemaDOMParser,XMLEntityResolver,Hashtable,int)
+
+    //
+    // Methods
+    //
+
+    /**
+     * Resolves a referenced schema document. Calls to the entity
+     * resolver are serialized with those made by the loader threads.
+     */
+    XMLInputSource resolveDocument(XSDDescription desc, Hashtable locationPairs)
+        throws IOException {
+        synchronized (fResolverLock) {
+            return XMLSchemaLoader.resolveDocument(desc, locationPairs, fDocumentResolver);
+        }
+    } // resolveDocument(XSDDescription,Hashtable):XMLInputSource
+
+    /**
+     * Returns the schema document read from the given input source,
+     * waiting for a loader thread to finish parsing it or parsing it
+     * on the calling thread. The errors reported while parsing the
+     * document are replayed to the error handler before returning.
+     *
+     * @throws IOException if the document could not be read.
+     */
+    Document parse(XMLInputSource source) throws IOException {
+        String systemId = getSystemId(source);
+        Task task = null;
+        boolean run = false;
+        synchronized (this) {
+            if (systemId != null) {
+                task = (Task) fTasks.remove(systemId);
+                fQueued.add(systemId);
+            }
+            if (task == null) {
+                task = new Task(source, systemId);
+                run = true;
+            }
+            else if (task.state == QUEUED) {
+                fQueue.remove(task);
+                run = true;
+            }
+            if (run) {
+                task.state = RUNNING;
+            }
+        }
+        if (run) {
+            // nobody started this document yet; don't wait for a thread
+            if (fCallerParser == null) {
+                fCallerParser = createParser();
+            }
+            execute(task, fCallerParser);
+        }
+        else {
+            boolean interrupted = false;
+            synchronized (this) {
+                while (task.state != DONE) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        // the loader threads don't depend on this thread,
+                        // so the task will complete
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return task.replay(fErrorHandler);
+    } // parse(XMLInputSource):Document
+
+    /**
+     * Stops the loader threads once their current task is done and
+     * discards the documents which have not been handed out.
+     */
+    synchronized void shutdown() {
+        fShutdown = true;
+        fQueue.clear();
+        fTasks.clear();
+        notifyAll();
+    } // shutdown()
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Returns the key of the given input source, or null if the source
+     * can't be shared between the resolver's answers, i.e. it supplies
+     * its own stream or encoding.
+     */
+    private static String getSystemId(XMLInputSource source) {
+        if (source.getSystemId() == null || source.getByteStream() != null ||
+                source.getCharacterStream() != null || source.getEncoding() != null) {
+            return null;
+        }
+        try {
+            return XMLEntityManager.expandSystemId(source.getSystemId(), source.getBaseSystemId(), false);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    } // getSystemId(XMLInputSource):String
+
+    /** Creates a schema parser configured like the handler's parser. */
+    private SchemaDOMParser createParser() {
+        SchemaDOMParser parser = new SchemaDOMParser(new SchemaParsingConfig());
+        for (int i = 0; i < FEATURES.length; ++i) {
+            try {
+                parser.setFeature(FEATURES[i], fFeatureValues[i]);
+            }
+            catch (XMLConfigurationException e) {}
+        }
+        for (int i = 0; i < PROPERTIES.length; ++i) {
+            if (fPropertyValues[i] != null) {
+                try {
+                    parser.setProperty(PROPERTIES[i], fPropertyValues[i]);
+                }
+                catch (XMLConfigurationException e) {}
+            }
+        }
+        if (fEntityResolver != null) {
+            parser.setEntityResolver(fEntityResolver);
+        }
+        return parser;
+    } // createParser():SchemaDOMParser
+
+    /**
+     * Parses the document of the given task, recording its errors, and
+     * queues the documents it references.
+     */
+    private void execute(Task task, SchemaDOMParser parser) {
+        parser.setProperty(XSDHandler.ERROR_HANDLER, task);
+        try {
+            parser.parse(task.source);
+            task.document = parser.getDocument();
+        }
+        catch (Throwable e) {
+            task.exception = e;
+        }
+        synchronized (this) {
+            task.state = DONE;
+            notifyAll();
+        }
+        if (task.exception == null && task.document != null) {
+            Element root = DOMUtil.getRoot(task.document);
+            if (root != null) {
+                String base = (task.systemId != null) ? task.systemId : task.source.getSystemId();
+                queueReferences(root, base);
+            }
+        }
+    } // execute(Task,SchemaDOMParser)
+
+    /** Resolves and queues the documents referenced by the given schema. */
+    private void queueReferences(Element root, String base) {
+        for (Element child = DOMUtil.getFirstChildElement(root);
+        child != null;
+        child = DOMUtil.getNextSiblingElement(child)) {
+            String localName = DOMUtil.getLocalName(child);
+            short referType;
+            if (localName.equals(SchemaSymbols.ELT_IMPORT)) {
+                referType = XSDDescription.CONTEXT_IMPORT;
+            }
+            else if (localName.equals(SchemaSymbols.ELT_INCLUDE)) {
+                referType = XSDDescription.CONTEXT_INCLUDE;
+            }
+            else if (localName.equals(SchemaSymbols.ELT_REDEFINE)) {
+                referType = XSDDescription.CONTEXT_REDEFINE;
+            }
+            else if (localName.equals(SchemaSymbols.ELT_ANNOTATION)) {
+                continue;
+            }
+            else {
+                // references precede all other declarations
+                break;
+            }
+            String hint = DOMUtil.getAttrValue(child, SchemaSymbols.ATT_SCHEMALOCATION).trim();
+            Attr namespace = DOMUtil.getAttr(child, SchemaSymbols.ATT_NAMESPACE);
+            if (hint.length() == 0 && (referType != XSDDescription.CONTEXT_IMPORT || namespace == null)) {
+                continue;
+            }
+            XSDDescription desc = new XSDDescription();
+            desc.setContextType(referType);
+            desc.setBaseSystemId(base);
+            desc.setLiteralSystemId(hint);
+            desc.setLocationHints(new String[] {hint});
+            if (referType == XSDDescription.CONTEXT_IMPORT && namespace != null) {
+                desc.setTargetNamespace(namespace.getValue());
+            }
+            XMLInputSource source = null;
+            try {
+                source = resolveDocument(desc, (referType == XSDDescription.CONTEXT_IMPORT) ? fLocationPairs : EMPTY_TABLE);
+            }
+            catch (Exception e) {
+                // the handler reports it when it resolves the reference
+            }
+            if (source == null || source.getClass() != XMLInputSource.class) {
+                continue;
+            }
+            String systemId = getSystemId(source);
+            if (systemId == null) {
+                // can't be shared with the handler's own resolution
+                close(source);
+                continue;
+            }
+            synchronized (this) {
+                if (fShutdown || !fQueued.add(systemId)) {
+                    continue;
+                }
+                Task task = new Task(source, systemId);
+                fTasks.put(systemId, task);
+                fQueue.addLast(task);
+                if (fIdleCount == 0 && fThreadCount < fMaxThreads) {
+                    Worker worker = new Worker(++fThreadCount);
+                    worker.start();
+                }
+                else {
+                    notify();
+                }
+            }
+        }
+    } // queueReferences(Element,String)
+
+    /** Closes the streams of an input source which won't be read. */
+    private static void close(XMLInputSource source) {
+        try {
+            InputStream stream = source.getByteStream();
+            if (stream != null) {
+                stream.close();
+            }
+            Reader reader = source.getCharacterStream();
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        catch (IOException e) {}
+    } // close(XMLInputSource)
+
+    //
+    // Classes
+    //
+
+    /**
+     * A schema document to parse, which records the errors reported
+     * while parsing it.
+     */
+    private static final class Task implements XMLErrorHandler {
+
+        /** The input source of the document. */
+        final XMLInputSource source;
+
+        /** The expanded system id of the document, if it can be shared. */
+        final String systemId;
+
+        /** The state of the task; guarded by the prefetcher. */
+        int state = QUEUED;
+
+        /** The parsed document. */
+        Document document;
+
+        /** The exception which stopped the parse. */
+        Throwable exception;
+
+        /** The recorded severities, domains, keys and exceptions. */
+        private final ArrayList fErrors = new ArrayList();
+
+        Task(XMLInputSource source, String systemId) {
+            this.source = source;
+            this.systemId = systemId;
+        }
+
+        /**
+         * Reports the recorded errors to the given error handler and
+         * returns the document, or throws the exception which stopped
+         * the parse, just as parsing on this thread would have.
+         */
+        Document replay(XMLErrorHandler errorHandler) throws IOException {
+            for (int i = 0; i < fErrors.size(); i += 4) {
+                short severity = ((Short) fErrors.get(i)).shortValue();
+                String domain = (String) fErrors.get(i + 1);
+                String key = (String) fErrors.get(i + 2);
+                XMLParseException e = (XMLParseException) fErrors.get(i + 3);
+                if (severity == WARNING) {
+                    errorHandler.warning(domain, key, e);
+                }
+                else if (severity == ERROR) {
+                    errorHandler.error(domain, key, e);
+                }
+                else {
+                    errorHandler.fatalError(domain, key, e);
+                }
+            }
+            if (exception instanceof IOException) {
+                throw (IOException) exception;
+            }
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            }
+            if (exception instanceof Error) {
+                throw (Error) exception;
+            }
+            return document;
+        } // replay(XMLErrorHandler):Document
+
+        //
+        // XMLErrorHandler methods
+        //
+
+        public void warning(String domain, String key, XMLParseException e)
+            throws XNIException {
+            record(WARNING, domain, key, e);
+        }
+
+        public void error(String domain, String key, XMLParseException e)
+            throws XNIException {
+            record(ERROR, domain, key, e);
+        }
+
+        public void fatalError(String domain, String key, XMLParseException e)
+            throws XNIException {
+            record(FATAL_ERROR, domain, key, e);
+        }
+
+        private void record(short severity, String domain, String key, XMLParseException e) {
+            fErrors.add(new Short(severity));
+            fErrors.add(domain);
+            fErrors.add(key);
+            fErrors.add(e);
+        }
+
+    } // class Task
+
+    /** A loader thread, parsing queued documents with its own parser. */
+    private final class Worker extends Thread {
+
+        Worker(int number) {
+            super("Xerces schema loader " + number);
+            setDaemon(true);
+        }
+
+        public void run() {
+            SchemaDOMParser parser = createParser();
+            while (true) {
+                Task task;
+                synchronized (SchemaDocumentPrefetcher.this) {
+                    while (!fShutdown && fQueue.isEmpty()) {
+                        ++fIdleCount;
+                        try {
+                            SchemaDocumentPrefetcher.this.wait();
+                        }
+                        catch (InterruptedException e) {
+                            --fIdleCount;
+                            --fThreadCount;
+                            return;
+                        }
+                        --fIdleCount;
+                    }
+                    if (fShutdown) {
+                        return;
+                    }
+                    task = (Task) fQueue.removeFirst();
+                    task.state = RUNNING;
+                }
+                execute(task, parser);
+            }
+        } // run()
+
+    } // class Worker
+
+    /** Serializes the calls to an entity resolver with the document resolver. */
+    private final class SerializedEntityResolver implements XMLEntityResolver {
+
+        private final XMLEntityResolver fResolver;
+
+        SerializedEntityResolver(XMLEntityResolver resolver) {
+            fResolver = resolver;
+        }
+
+        public XMLInputSource resolveEntity(XMLResourceIdentifier resourceIdentifier)
+            throws XNIException, IOException {
+            synchronized (fResolverLock) {
+                return fResolver.resolveEntity(resourceIdentifier);
+            }
+        }
+
+    } // class SerializedEntityResolver
+
+} // class SchemaDocumentPrefetcher
@@ -214,6 +214,10 @@ public class XSDHandler {
     protected static final String LOCALE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.LOCALE_PROPERTY;
     
+    /** Property identifier: schema loading threads. */
+    protected static final String SCHEMA_LOADING_THREADS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_LOADING_THREADS_PROPERTY;
+    
     protected static final boolean DEBUG_NODE_POOL = false;
     
     // Data
@@ -374,6 +378,13 @@ public class XSDHandler {
     
     // handle tolerate duplicates feature
     boolean fTolerateDuplicates = false;
+    
+    // the number of threads parsing referenced schema documents;
+    // documents are parsed one at a time if less than 2
+    private int fLoadingThreads = 0;
+    
+    // parses referenced schema documents ahead of constructTrees
+    private SchemaDocumentPrefetcher fPrefetcher = null;
 
     // the XMLErrorReporter
     private XMLErrorReporter fErrorReporter;
@@ -534,6 +545,26 @@ public class XSDHandler {
         // parsing schemas
         prepareForParse();       
         
+        if (fLoadingThreads > 1) {
+            fPrefetcher = new SchemaDocumentPrefetcher(fSchemaParser, fEntityResolver,
+                    fLocationPairs, fLoadingThreads);
+        }
+        try {
+            return parseSchema0(is, desc, referType, schemaNamespace, grammar);
+        }
+        finally {
+            if (fPrefetcher != null) {
+                fPrefetcher.shutdown();
+                fPrefetcher = null;
+            }
+        }
+    } // end parseSchema
+
+    // constructs the trees of the schema documents and traverses them;
+    // called by parseSchema, which stops the prefetcher afterwards
+    private SchemaGrammar parseSchema0(XMLInputSource is, XSDDescription desc,
+            short referType, String schemaNamespace, SchemaGrammar grammar)
+    throws IOException {
         Element schemaRoot = null;
         // first phase:  construct trees.
         if (is instanceof DOMInputSource) {
@@ -674,7 +705,7 @@ public class XSDHandler {
 
         // and return.
         return fGrammarBucket.getGrammar(fRoot.fTargetNamespace);
-    } // end parseSchema
+    } // parseSchema0(XMLInputSource,XSDDescription,short,String,SchemaGrammar):SchemaGrammar
     
     private void validateAnnotations(ArrayList annotationInfo) {
         if (fAnnotationValidator == null) {
@@ -2051,7 +2082,8 @@ public class XSDHandler {
         XMLInputSource schemaSource = null;
         try {
             Hashtable pairs = usePairs ? fLocationPairs : EMPTY_TABLE;
-            schemaSource = XMLSchemaLoader.resolveDocument(desc, pairs, fEntityResolver);
+            schemaSource = (fPrefetcher != null) ? fPrefetcher.resolveDocument(desc, pairs) :
+                XMLSchemaLoader.resolveDocument(desc, pairs, fEntityResolver);
         }
         catch (IOException ex) {
             if (mustResolve) {
@@ -2104,7 +2136,8 @@ public class XSDHandler {
         XMLInputSource schemaSource = null;
         try {
             Hashtable pairs = usePairs ? fLocationPairs : EMPTY_TABLE;
-            schemaSource = XMLSchemaLoader.resolveDocument(desc, pairs, fEntityResolver);
+            schemaSource = (fPrefetcher != null) ? fPrefetcher.resolveDocument(desc, pairs) :
+                XMLSchemaLoader.resolveDocument(desc, pairs, fEntityResolver);
         }
         catch (IOException ex) {
             if (mustResolve) {
@@ -2165,8 +2198,14 @@ public class XSDHandler {
                     }
                 }
                 
-                fSchemaParser.parse(schemaSource);
-                Document schemaDocument = fSchemaParser.getDocument();
+                Document schemaDocument;
+                if (fPrefetcher != null) {
+                    schemaDocument = fPrefetcher.parse(schemaSource);
+                }
+                else {
+                    fSchemaParser.parse(schemaSource);
+                    schemaDocument = fSchemaParser.getDocument();
+                }
                 schemaElement = schemaDocument != null ? DOMUtil.getRoot(schemaDocument) : null;
                 return getSchemaDocument0(key, schemaId, schemaElement);
             }
@@ -3561,6 +3600,13 @@ public class XSDHandler {
         } catch (XMLConfigurationException e) {
             fTolerateDuplicates = false;
         }
+        
+        try {
+            Integer threads = (Integer) componentManager.getProperty(SCHEMA_LOADING_THREADS);
+            fLoadingThreads = (threads != null) ? threads.intValue() : 0;
+        } catch (XMLConfigurationException e) {
+            fLoadingThreads = 0;
+        }
 
         try {
             fSchemaParser.setFeature(
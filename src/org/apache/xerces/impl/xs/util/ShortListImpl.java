@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.xs.util;
 
+import java.io.Serializable;
 import java.util.AbstractList;
 
 import org.apache.xerces.xs.ShortList;
@@ -31,7 +32,9 @@ import org.apache.xerces.xs.XSException;
  *
  * @version $Id$
  */
-public final class ShortListImpl extends AbstractList implements ShortList {
+public final class ShortListImpl extends AbstractList implements ShortList, Serializable {
+
+    private static final long serialVersionUID = 8585037323130775559L;
 
     /**
      * An immutable empty list.
@@ -1226,10 +1226,8 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
                     return;
                 }
 
-                String value = text.toString ();
-                int txt = fDeferredDocumentImpl.
-                createDeferredTextNode (value, false);
-                fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
+                fDeferredDocumentImpl.appendDeferredText (fCurrentNodeIndex,
+                        text.ch, text.offset, text.length, false);
 
             }
         }
@@ -1271,9 +1269,8 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         else {
             // The Text normalization is taken care of within the DOM in the
             // deferred case.
-            int txt = fDeferredDocumentImpl.
-            createDeferredTextNode (text.toString (), true);
-            fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
+            fDeferredDocumentImpl.appendDeferredText (fCurrentNodeIndex,
+                    text.ch, text.offset, text.length, true);
         }
 
     } // ignorableWhitespace(XMLString)
@@ -1491,6 +1488,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             if (fLocator != null) {
                 fDeferredDocumentImpl.setInputEncoding (fLocator.getEncoding());
             }
+            fDeferredDocumentImpl.trimToSize ();
             fCurrentNodeIndex = -1;
         }
 
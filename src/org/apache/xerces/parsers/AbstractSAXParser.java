@@ -27,6 +27,7 @@ import org.apache.xerces.util.EntityResolverWrapper;
 import org.apache.xerces.util.ErrorHandlerWrapper;
 import org.apache.xerces.util.SAXMessageFormatter;
 import org.apache.xerces.util.SymbolHash;
+import org.apache.xerces.util.XMLStringBuffer;
 import org.apache.xerces.util.XMLSymbols;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.NamespaceContext;
@@ -192,6 +193,15 @@ public abstract class AbstractSAXParser
     // track the version of the document being parsed
     protected String fVersion;
 
+    /** Number of character events issued for the current document. */
+    protected int fCharactersCount;
+
+    /**
+     * Number of character events issued for the current document whose
+     * characters were copied to an intermediate buffer.
+     */
+    protected int fCharactersCopyCount;
+
     // temp vars
     private final AttributesProxy fAttributesProxy = new AttributesProxy();
     private Augmentations fAugmentations = null;
@@ -521,6 +531,13 @@ public abstract class AbstractSAXParser
             return;
         }
 
+        fCharactersCount++;
+        // a heuristic: the scanners copy characters into an
+        // XMLStringBuffer, and pass slices of their own buffers as
+        // plain XMLStrings; copies made in other ways are not counted
+        if (text instanceof XMLStringBuffer) {
+            fCharactersCopyCount++;
+        }
 
         try {
             // SAX1
@@ -661,7 +678,7 @@ public abstract class AbstractSAXParser
         try {
             // SAX2 extension
             if (fLexicalHandler != null) {
-                fLexicalHandler.comment(text.ch, 0, text.length);
+                fLexicalHandler.comment(text.ch, text.offset, text.length);
             }
         }
         catch (SAXException e) {
@@ -2057,6 +2074,33 @@ public abstract class AbstractSAXParser
 
     } // getProperty(String):Object
 
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns the number of <code>characters</code> events issued for
+     * the document being parsed, or last parsed.
+     */
+    public int getCharactersCount() {
+        return fCharactersCount;
+    } // getCharactersCount():int
+
+    /**
+     * Returns the number of <code>characters</code> events issued for
+     * the document being parsed, or last parsed, whose characters were
+     * copied to an intermediate buffer, rather than passed as a slice
+     * of the buffer the document was read into.
+     * <p>
+     * This is a heuristic: an event is counted when its text arrives
+     * as an <code>XMLStringBuffer</code>, which is what the scanners
+     * copy characters into. Copies which components in the pipeline
+     * make into other <code>XMLString</code>s are not counted.
+     */
+    public int getCharactersCopyCount() {
+        return fCharactersCopyCount;
+    } // getCharactersCopyCount():int
+
     //
     // Protected methods
     //
@@ -2185,6 +2229,8 @@ public abstract class AbstractSAXParser
         fNamespaces = fConfiguration.getFeature(NAMESPACES);
         fAugmentations = null;
         fDeclaredAttrs = null;
+        fCharactersCount = 0;
+        fCharactersCopyCount = 0;
         
     } // reset()
 
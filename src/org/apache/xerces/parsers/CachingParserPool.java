@@ -17,6 +17,8 @@
 
 package org.apache.xerces.parsers;
 
+import org.apache.xerces.util.ConcurrentSymbolTable;
+import org.apache.xerces.util.ConcurrentXMLGrammarPool;
 import org.apache.xerces.util.ShadowedSymbolTable;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.SynchronizedSymbolTable;
@@ -38,7 +40,10 @@ import org.apache.xerces.xni.grammars.XMLGrammarPool;
  * <strong>Note:</strong> There is a performance penalty for using
  * a caching parser pool due to thread safety. Access to the symbol 
  * table and grammar pool must be synchronized to ensure the safe
- * operation of the symbol table and grammar pool.
+ * operation of the symbol table and grammar pool. Constructing the
+ * pool with a <code>ConcurrentSymbolTable</code> and a
+ * <code>ConcurrentXMLGrammarPool</code> avoids serializing all of
+ * the parsers on the locks of these structures.
  * <p>
  * <strong>Note:</strong> If performance is critical, then another
  * mechanism needs to be used instead of the caching parser pool.
@@ -75,14 +80,18 @@ public class CachingParserPool {
     /** 
      * Symbol table. The symbol table that the caching parser pool is
      * constructed with is automatically wrapped in a synchronized
-     * version for thread-safety.
+     * version for thread-safety, unless it is a 
+     * <code>ConcurrentSymbolTable</code> which is already safe for
+     * use by multiple threads.
      */
     protected SymbolTable fSynchronizedSymbolTable;
 
     /** 
      * Grammar pool. The grammar pool that the caching parser pool is
      * constructed with is automatically wrapped in a synchronized
-     * version for thread-safety.
+     * version for thread-safety, unless it is a
+     * <code>ConcurrentXMLGrammarPool</code> which is already safe for
+     * use by multiple threads.
      */
     protected XMLGrammarPool fSynchronizedGrammarPool;
 
@@ -110,7 +119,7 @@ public class CachingParserPool {
 
     /** Default constructor. */
     public CachingParserPool() {
-        this(new SymbolTable(), new XMLGrammarPoolImpl());
+        this(new ConcurrentSymbolTable(), new ConcurrentXMLGrammarPool());
     } // <init>()
 
     /**
@@ -121,8 +130,12 @@ public class CachingParserPool {
      * @param grammarPool The grammar pool.
      */
     public CachingParserPool(SymbolTable symbolTable, XMLGrammarPool grammarPool) {
-        fSynchronizedSymbolTable = new SynchronizedSymbolTable(symbolTable);
-        fSynchronizedGrammarPool = new SynchronizedGrammarPool(grammarPool);
+        fSynchronizedSymbolTable = (symbolTable instanceof ConcurrentSymbolTable)
+                                 ? symbolTable
+                                 : new SynchronizedSymbolTable(symbolTable);
+        fSynchronizedGrammarPool = (grammarPool instanceof ConcurrentXMLGrammarPool)
+                                 ? grammarPool
+                                 : new SynchronizedGrammarPool(grammarPool);
     } // <init>(SymbolTable,XMLGrammarPool)
 
     //
@@ -51,6 +51,10 @@ public class XIncludeAwareParserConfiguration extends XML11Configuration {
     protected static final String XINCLUDE_FIXUP_LANGUAGE =
         Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_FIXUP_LANGUAGE_FEATURE;
     
+    /** Feature identifier: stop after the fragment an XPointer identifies. */
+    protected static final String XINCLUDE_STOP_AFTER_FRAGMENT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_STOP_AFTER_FRAGMENT_FEATURE;
+    
     /** Feature identifier: XInclude processing */
     protected static final String XINCLUDE_FEATURE = 
         Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_FEATURE;
@@ -59,6 +63,10 @@ public class XIncludeAwareParserConfiguration extends XML11Configuration {
     protected static final String XINCLUDE_HANDLER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.XINCLUDE_HANDLER_PROPERTY;
     
+    /** Property identifier: XInclude document cache. */
+    protected static final String XINCLUDE_DOCUMENT_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XINCLUDE_DOCUMENT_CACHE_PROPERTY;
+    
     /** Property identifier: error reporter. */
     protected static final String NAMESPACE_CONTEXT =
         Constants.XERCES_PROPERTY_PREFIX + Constants.NAMESPACE_CONTEXT_PROPERTY;
@@ -128,18 +136,20 @@ public class XIncludeAwareParserConfiguration extends XML11Configuration {
         final String[] recognizedFeatures = {
                 ALLOW_UE_AND_NOTATION_EVENTS,
                 XINCLUDE_FIXUP_BASE_URIS,
-                XINCLUDE_FIXUP_LANGUAGE
+                XINCLUDE_FIXUP_LANGUAGE,
+                XINCLUDE_STOP_AFTER_FRAGMENT
         };
         addRecognizedFeatures(recognizedFeatures);
         
         // add default recognized properties
         final String[] recognizedProperties =
-        { XINCLUDE_HANDLER, NAMESPACE_CONTEXT };
+        { XINCLUDE_HANDLER, XINCLUDE_DOCUMENT_CACHE, NAMESPACE_CONTEXT };
         addRecognizedProperties(recognizedProperties);
         
         setFeature(ALLOW_UE_AND_NOTATION_EVENTS, true);
         setFeature(XINCLUDE_FIXUP_BASE_URIS, true);
         setFeature(XINCLUDE_FIXUP_LANGUAGE, true);
+        setFeature(XINCLUDE_STOP_AFTER_FRAGMENT, false);
         
         fNonXIncludeNSContext = new NamespaceSupport();
         fCurrentNSContext = fNonXIncludeNSContext;
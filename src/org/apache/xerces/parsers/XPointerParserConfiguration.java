@@ -53,6 +53,10 @@ public class XPointerParserConfiguration extends XML11Configuration {
     /** Feature identifier: fixup language. */
     protected static final String XINCLUDE_FIXUP_LANGUAGE =
         Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_FIXUP_LANGUAGE_FEATURE;
+    
+    /** Feature identifier: stop after the fragment an XPointer identifies. */
+    protected static final String XINCLUDE_STOP_AFTER_FRAGMENT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_STOP_AFTER_FRAGMENT_FEATURE;
 
     /** Property identifier: error reporter. */
     protected static final String XPOINTER_HANDLER =
@@ -118,7 +122,8 @@ public class XPointerParserConfiguration extends XML11Configuration {
         final String[] recognizedFeatures = {
             ALLOW_UE_AND_NOTATION_EVENTS,
             XINCLUDE_FIXUP_BASE_URIS,
-            XINCLUDE_FIXUP_LANGUAGE
+            XINCLUDE_FIXUP_LANGUAGE,
+            XINCLUDE_STOP_AFTER_FRAGMENT
         };
         addRecognizedFeatures(recognizedFeatures);
 
@@ -130,6 +135,7 @@ public class XPointerParserConfiguration extends XML11Configuration {
         setFeature(ALLOW_UE_AND_NOTATION_EVENTS, true);
         setFeature(XINCLUDE_FIXUP_BASE_URIS, true);
         setFeature(XINCLUDE_FIXUP_LANGUAGE, true);
+        setFeature(XINCLUDE_STOP_AFTER_FRAGMENT, false);
         
         setProperty(XINCLUDE_HANDLER, fXIncludeHandler);
         setProperty(XPOINTER_HANDLER, fXPointerHandler);
@@ -0,0 +1,889 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.stax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.XMLChar;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.apache.xerces.xni.parser.XMLPullParserConfiguration;
+
+/**
+ * <p>A StAX <code>XMLStreamReader</code> which pulls the document from
+ * a Xerces parser configuration, one scanner step at a time, using
+ * <code>XMLPullParserConfiguration.parse(boolean)</code>. Because the
+ * events pass through the configuration's pipeline, the reader honours
+ * its features and properties, including validation and a grammar pool.</p>
+ *
+ * <p>The document handler events of each step are queued until they are
+ * read. Character data is copied into a buffer owned by the reader, which
+ * is reused from event to event, so reading text through
+ * <code>getTextCharacters()</code>, <code>getTextStart()</code> and
+ * <code>getTextLength()</code> does not create a string. The scanner's
+ * own buffer cannot be exposed instead because it may be refilled before
+ * the event is read.</p>
+ *
+ * <p>Entity references are always replaced, adjacent character events
+ * are not coalesced, and the text of a <code>DTD</code> event is the
+ * document type declaration without its internal subset.</p>
+ *
+ * @version $Id$
+ */
+public final class XMLStreamReaderImpl implements XMLStreamReader, XMLDocumentHandler {
+
+    //
+    // Constants
+    //
+
+    /** Feature identifier: namespaces. */
+    private static final String NAMESPACES =
+        Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE;
+
+    /** Feature identifier: validation. */
+    private static final String VALIDATION =
+        Constants.SAX_FEATURE_PREFIX + Constants.VALIDATION_FEATURE;
+
+    /** Initial size of the event queue and of the attribute arrays. */
+    private static final int INITIAL_SIZE = 8;
+
+    //
+    // Data
+    //
+
+    /** The parser configuration. */
+    private final XMLPullParserConfiguration fConfiguration;
+
+    /** Queued events; fHead is the index of the next event to read. */
+    private Event[] fEvents = new Event[INITIAL_SIZE];
+    private int fHead;
+    private int fCount;
+
+    /** The current event. */
+    private Event fCurrent;
+
+    /** The type of the current event. */
+    private int fEventType = START_DOCUMENT;
+
+    /** Character data of the queued events. */
+    private char[] fText = new char[256];
+    private int fTextLength;
+
+    /** True while inside a CDATA section. */
+    private boolean fInCDATA;
+
+    /** True once the end of the document has been queued or parsing failed. */
+    private boolean fDone;
+
+    /** True if the reader has been closed. */
+    private boolean fClosed;
+
+    /** Namespace bindings in scope at the current event. */
+    private final NamespaceSupport fNamespaceSupport = new NamespaceSupport();
+
+    /** JAXP view of the namespace bindings. */
+    private final javax.xml.namespace.NamespaceContext fNamespaceContext = new NamespaceContextImpl();
+
+    /** Locator of the scanner. */
+    private XMLLocator fLocator;
+
+    /** StAX view of the locator. */
+    private final Location fLocation = new LocationImpl();
+
+    /** Document information. */
+    private String fInputEncoding;
+    private String fVersion;
+    private String fEncoding;
+    private String fStandalone;
+
+    /** Document source. */
+    private XMLDocumentSource fDocumentSource;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a reader of the given input source with a default
+     * parser configuration.
+     *
+     * @param inputSource The document to read.
+     * @throws XMLStreamException if the document cannot be opened, or
+     *                            its first event cannot be read.
+     */
+    public XMLStreamReaderImpl(XMLInputSource inputSource) throws XMLStreamException {
+        this(new XML11Configuration(), inputSource);
+    } // <init>(XMLInputSource)
+
+    /**
+     * Constructs a reader of the given input source with the given
+     * parser configuration. The configuration's document handler is
+     * replaced by this reader; its other handlers, features and
+     * properties are left as they are.
+     *
+     * @param configuration The parser configuration.
+     * @param inputSource   The document to read.
+     * @throws XMLStreamException if the document cannot be opened, or
+     *                            its first event cannot be read.
+     */
+    public XMLStreamReaderImpl(XMLPullParserConfiguration configuration,
+            XMLInputSource inputSource) throws XMLStreamException {
+        fConfiguration = configuration;
+        fConfiguration.setDocumentHandler(this);
+        try {
+            // setting a feature marks the settings as changed, so that
+            // the components of a new configuration are fully reset
+            // before the first scan, as the parsers do
+            fConfiguration.setFeature(NAMESPACES, fConfiguration.getFeature(NAMESPACES));
+            fConfiguration.setInputSource(inputSource);
+        }
+        catch (XMLConfigurationException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+        catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        // read ahead to the first event after the start of the document
+        // so that the XML declaration is known
+        fill();
+    } // <init>(XMLPullParserConfiguration,XMLInputSource)
+
+    //
+    // XMLStreamReader methods
+    //
+
+    public Object getProperty(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Property name cannot be null.");
+        }
+        if (XMLInputFactory.IS_NAMESPACE_AWARE.equals(name)) {
+            return getFeature(NAMESPACES) ? Boolean.TRUE : Boolean.FALSE;
+        }
+        if (XMLInputFactory.IS_VALIDATING.equals(name)) {
+            return getFeature(VALIDATION) ? Boolean.TRUE : Boolean.FALSE;
+        }
+        if (XMLInputFactory.IS_COALESCING.equals(name)) {
+            return Boolean.FALSE;
+        }
+        if (XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES.equals(name)) {
+            return Boolean.TRUE;
+        }
+        try {
+            return fConfiguration.getProperty(name);
+        }
+        catch (XMLConfigurationException e) {
+            return null;
+        }
+    } // getProperty(String):Object
+
+    public int next() throws XMLStreamException {
+        if (fEventType == END_DOCUMENT || fClosed) {
+            throw new NoSuchElementException();
+        }
+        if (fEventType == END_ELEMENT) {
+            fNamespaceSupport.popContext();
+        }
+        while (fHead == fCount) {
+            fill();
+        }
+        fCurrent = fEvents[fHead++];
+        fEventType = fCurrent.type;
+        if (fEventType == START_ELEMENT) {
+            fNamespaceSupport.pushContext();
+            for (int i = 0; i < fCurrent.namespaceCount; ++i) {
+                String uri = fCurrent.namespaceURIs[i];
+                fNamespaceSupport.declarePrefix(fCurrent.namespacePrefixes[i],
+                        (uri.length() > 0) ? uri.intern() : null);
+            }
+        }
+        return fEventType;
+    } // next():int
+
+    public void require(int type, String namespaceURI, String localName)
+        throws XMLStreamException {
+        if (type != fEventType) {
+            throw new XMLStreamException("Expected event type " + type +
+                    " but the current event type is " + fEventType + ".", fLocation);
+        }
+        if (namespaceURI != null) {
+            String uri = getNamespaceURI();
+            if (!namespaceURI.equals(uri != null ? uri : XMLConstants.NULL_NS_URI)) {
+                throw new XMLStreamException("Expected namespace URI '" + namespaceURI +
+                        "' but the current namespace URI is '" + uri + "'.", fLocation);
+            }
+        }
+        if (localName != null && !localName.equals(getLocalName())) {
+            throw new XMLStreamException("Expected local name '" + localName +
+                    "' but the current local name is '" + getLocalName() + "'.", fLocation);
+        }
+    } // require(int,String,String)
+
+    public String getElementText() throws XMLStreamException {
+        if (fEventType != START_ELEMENT) {
+            throw new XMLStreamException("The current event is not a start element.", fLocation);
+        }
+        StringBuffer buffer = new StringBuffer();
+        int type = next();
+        while (type != END_ELEMENT) {
+            if (type == CHARACTERS || type == CDATA || type == SPACE || type == ENTITY_REFERENCE) {
+                buffer.append(fText, fCurrent.textOffset, fCurrent.textLength);
+            }
+            else if (type == START_ELEMENT) {
+                throw new XMLStreamException("Element text cannot contain an element.", fLocation);
+            }
+            else if (type == END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected end of document.", fLocation);
+            }
+            type = next();
+        }
+        return buffer.toString();
+    } // getElementText():String
+
+    public int nextTag() throws XMLStreamException {
+        int type = next();
+        while ((type == CHARACTERS || type == CDATA || type == SPACE) && isWhiteSpace()
+                || type == COMMENT || type == PROCESSING_INSTRUCTION) {
+            type = next();
+        }
+        if (type != START_ELEMENT && type != END_ELEMENT) {
+            throw new XMLStreamException("Expected a start or end element.", fLocation);
+        }
+        return type;
+    } // nextTag():int
+
+    public boolean hasNext() throws XMLStreamException {
+        return fEventType != END_DOCUMENT && !fClosed;
+    } // hasNext():boolean
+
+    public void close() throws XMLStreamException {
+        if (!fClosed) {
+            fClosed = true;
+            fConfiguration.cleanup();
+        }
+    } // close()
+
+    public String getNamespaceURI(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null.");
+        }
+        return fNamespaceSupport.getURI(prefix.intern());
+    } // getNamespaceURI(String):String
+
+    public boolean isStartElement() {
+        return fEventType == START_ELEMENT;
+    }
+
+    public boolean isEndElement() {
+        return fEventType == END_ELEMENT;
+    }
+
+    public boolean isCharacters() {
+        return fEventType == CHARACTERS;
+    }
+
+    public boolean isWhiteSpace() {
+        if (fEventType == SPACE) {
+            return true;
+        }
+        if (fEventType == CHARACTERS || fEventType == CDATA) {
+            final int end = fCurrent.textOffset + fCurrent.textLength;
+            for (int i = fCurrent.textOffset; i < end; ++i) {
+                if (!XMLChar.isSpace(fText[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    } // isWhiteSpace():boolean
+
+    public String getAttributeValue(String namespaceURI, String localName) {
+        checkAttributes();
+        for (int i = 0; i < fCurrent.attributeCount; ++i) {
+            QName name = fCurrent.attributeNames[i];
+            if (name.localpart.equals(localName) && (namespaceURI == null ||
+                    namespaceURI.equals(name.uri != null ? name.uri : XMLConstants.NULL_NS_URI))) {
+                return fCurrent.attributeValues[i];
+            }
+        }
+        return null;
+    } // getAttributeValue(String,String):String
+
+    public int getAttributeCount() {
+        checkAttributes();
+        return fCurrent.attributeCount;
+    }
+
+    public javax.xml.namespace.QName getAttributeName(int index) {
+        return toQName(getAttribute(index));
+    }
+
+    public String getAttributeNamespace(int index) {
+        return getAttribute(index).uri;
+    }
+
+    public String getAttributeLocalName(int index) {
+        return getAttribute(index).localpart;
+    }
+
+    public String getAttributePrefix(int index) {
+        return getAttribute(index).prefix;
+    }
+
+    public String getAttributeType(int index) {
+        getAttribute(index);
+        return fCurrent.attributeTypes[index];
+    }
+
+    public String getAttributeValue(int index) {
+        getAttribute(index);
+        return fCurrent.attributeValues[index];
+    }
+
+    public boolean isAttributeSpecified(int index) {
+        getAttribute(index);
+        return fCurrent.attributeSpecified[index];
+    }
+
+    public int getNamespaceCount() {
+        checkElement();
+        return fNamespaceSupport.getDeclaredPrefixCount();
+    }
+
+    public String getNamespacePrefix(int index) {
+        String prefix = getDeclaredPrefix(index);
+        return (prefix != XMLSymbols.EMPTY_STRING) ? prefix : null;
+    }
+
+    public String getNamespaceURI(int index) {
+        String uri = fNamespaceSupport.getURI(getDeclaredPrefix(index));
+        return (uri != null) ? uri : XMLConstants.NULL_NS_URI;
+    }
+
+    public javax.xml.namespace.NamespaceContext getNamespaceContext() {
+        return fNamespaceContext;
+    }
+
+    public int getEventType() {
+        return fEventType;
+    }
+
+    public String getText() {
+        if (fEventType == DTD) {
+            return fCurrent.text;
+        }
+        checkText();
+        return new String(fText, fCurrent.textOffset, fCurrent.textLength);
+    } // getText():String
+
+    public char[] getTextCharacters() {
+        checkText();
+        return fText;
+    }
+
+    public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length)
+        throws XMLStreamException {
+        checkText();
+        if (target == null) {
+            throw new NullPointerException();
+        }
+        if (sourceStart < 0 || targetStart < 0 || length < 0 ||
+                targetStart + length > target.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int count = Math.min(length, fCurrent.textLength - sourceStart);
+        if (count <= 0) {
+            return 0;
+        }
+        System.arraycopy(fText, fCurrent.textOffset + sourceStart, target, targetStart, count);
+        return count;
+    } // getTextCharacters(int,char[],int,int):int
+
+    public int getTextStart() {
+        checkText();
+        return fCurrent.textOffset;
+    }
+
+    public int getTextLength() {
+        checkText();
+        return fCurrent.textLength;
+    }
+
+    public String getEncoding() {
+        return fInputEncoding;
+    }
+
+    public boolean hasText() {
+        return fEventType == CHARACTERS || fEventType == CDATA || fEventType == SPACE
+            || fEventType == COMMENT || fEventType == DTD;
+    }
+
+    public Location getLocation() {
+        return fLocation;
+    }
+
+    public javax.xml.namespace.QName getName() {
+        checkElement();
+        return toQName(fCurrent.name);
+    }
+
+    public String getLocalName() {
+        checkElement();
+        return fCurrent.name.localpart;
+    }
+
+    public boolean hasName() {
+        return fEventType == START_ELEMENT || fEventType == END_ELEMENT;
+    }
+
+    public String getNamespaceURI() {
+        return hasName() ? fCurrent.name.uri : null;
+    }
+
+    public String getPrefix() {
+        return hasName() ? fCurrent.name.prefix : null;
+    }
+
+    public String getVersion() {
+        return fVersion;
+    }
+
+    public boolean isStandalone() {
+        return "yes".equals(fStandalone);
+    }
+
+    public boolean standaloneSet() {
+        return fStandalone != null;
+    }
+
+    public String getCharacterEncodingScheme() {
+        return fEncoding;
+    }
+
+    public String getPITarget() {
+        return (fEventType == PROCESSING_INSTRUCTION) ? fCurrent.text : null;
+    }
+
+    public String getPIData() {
+        return (fEventType == PROCESSING_INSTRUCTION)
+            ? new String(fText, fCurrent.textOffset, fCurrent.textLength) : null;
+    }
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    public void startDocument(XMLLocator locator, String encoding,
+            NamespaceContext namespaceContext, Augmentations augs) throws XNIException {
+        fLocator = locator;
+        fInputEncoding = encoding;
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    public void xmlDecl(String version, String encoding, String standalone,
+            Augmentations augs) throws XNIException {
+        fVersion = version;
+        fEncoding = encoding;
+        fStandalone = standalone;
+    } // xmlDecl(String,String,String,Augmentations)
+
+    public void doctypeDecl(String rootElement, String publicId, String systemId,
+            Augmentations augs) throws XNIException {
+        StringBuffer buffer = new StringBuffer("<!DOCTYPE ");
+        buffer.append(rootElement);
+        if (publicId != null) {
+            buffer.append(" PUBLIC \"").append(publicId).append("\" \"").append(systemId).append('"');
+        }
+        else if (systemId != null) {
+            buffer.append(" SYSTEM \"").append(systemId).append('"');
+        }
+        buffer.append('>');
+        addEvent(DTD).text = buffer.toString();
+    } // doctypeDecl(String,String,String,Augmentations)
+
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        addText(addEvent(COMMENT), text);
+    } // comment(XMLString,Augmentations)
+
+    public void processingInstruction(String target, XMLString data,
+            Augmentations augs) throws XNIException {
+        Event event = addEvent(PROCESSING_INSTRUCTION);
+        event.text = target;
+        addText(event, data);
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    public void startElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        Event event = addEvent(START_ELEMENT);
+        event.name.setValues(element);
+        event.setAttributes(attributes);
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    public void emptyElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        startElement(element, attributes, augs);
+        endElement(element, augs);
+    } // emptyElement(QName,XMLAttributes,Augmentations)
+
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+            String encoding, Augmentations augs) throws XNIException {}
+
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {}
+
+    public void endGeneralEntity(String name, Augmentations augs) throws XNIException {}
+
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        if (text.length > 0) {
+            addCharacters(fInCDATA ? CDATA : CHARACTERS, text);
+        }
+    } // characters(XMLString,Augmentations)
+
+    public void ignorableWhitespace(XMLString text, Augmentations augs)
+        throws XNIException {
+        if (text.length > 0) {
+            addCharacters(SPACE, text);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        addEvent(END_ELEMENT).name.setValues(element);
+    } // endElement(QName,Augmentations)
+
+    public void startCDATA(Augmentations augs) throws XNIException {
+        fInCDATA = true;
+    }
+
+    public void endCDATA(Augmentations augs) throws XNIException {
+        fInCDATA = false;
+    }
+
+    public void endDocument(Augmentations augs) throws XNIException {
+        addEvent(END_DOCUMENT);
+        fDone = true;
+    } // endDocument(Augmentations)
+
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    }
+
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Runs the scanner until at least one event is queued. */
+    private void fill() throws XMLStreamException {
+        // the current event has been read, so the queue and the
+        // character data can be reused
+        fHead = 0;
+        fCount = 0;
+        fTextLength = 0;
+        try {
+            while (fCount == 0) {
+                if (fDone || !fConfiguration.parse(false)) {
+                    if (!fDone) {
+                        addEvent(END_DOCUMENT);
+                        fDone = true;
+                    }
+                    break;
+                }
+            }
+        }
+        catch (XMLParseException e) {
+            fDone = true;
+            fConfiguration.cleanup();
+            Exception ex = e.getException();
+            Location location = new ImmutableLocation(-1, e.getColumnNumber(),
+                    e.getLineNumber(), e.getPublicId(), e.getExpandedSystemId());
+            throw (ex == null) ? new XMLStreamException(e.getMessage(), location)
+                               : new XMLStreamException(e.getMessage(), location, ex);
+        }
+        catch (XNIException e) {
+            fDone = true;
+            fConfiguration.cleanup();
+            Exception ex = e.getException();
+            throw new XMLStreamException(e.getMessage(), (ex != null) ? ex : e);
+        }
+        catch (IOException e) {
+            fDone = true;
+            fConfiguration.cleanup();
+            throw new XMLStreamException(e);
+        }
+    } // fill()
+
+    /** Appends an event of the given type to the queue. */
+    private Event addEvent(int type) {
+        if (fCount == fEvents.length) {
+            Event[] events = new Event[fCount * 2];
+            System.arraycopy(fEvents, 0, events, 0, fCount);
+            fEvents = events;
+        }
+        Event event = fEvents[fCount];
+        if (event == null) {
+            event = new Event();
+            fEvents[fCount] = event;
+        }
+        ++fCount;
+        event.type = type;
+        event.text = null;
+        event.textOffset = 0;
+        event.textLength = 0;
+        event.attributeCount = 0;
+        event.namespaceCount = 0;
+        return event;
+    } // addEvent(int):Event
+
+    /** Queues character data, appending to the last event if it has the same type. */
+    private void addCharacters(int type, XMLString text) {
+        if (fCount > fHead && fEvents[fCount - 1].type == type) {
+            Event event = fEvents[fCount - 1];
+            if (event.textOffset + event.textLength == fTextLength) {
+                addText(event, text);
+                return;
+            }
+        }
+        addText(addEvent(type), text);
+    } // addCharacters(int,XMLString)
+
+    /** Appends the text to the character data of the event. */
+    private void addText(Event event, XMLString text) {
+        if (event.textLength == 0) {
+            event.textOffset = fTextLength;
+        }
+        if (fTextLength + text.length > fText.length) {
+            char[] newText = new char[Math.max(fText.length * 2, fTextLength + text.length)];
+            System.arraycopy(fText, 0, newText, 0, fTextLength);
+            fText = newText;
+        }
+        System.arraycopy(text.ch, text.offset, fText, fTextLength, text.length);
+        fTextLength += text.length;
+        event.textLength += text.length;
+    } // addText(Event,XMLString)
+
+    private boolean getFeature(String featureId) {
+        try {
+            return fConfiguration.getFeature(featureId);
+        }
+        catch (XMLConfigurationException e) {
+            return false;
+        }
+    } // getFeature(String):boolean
+
+    private QName getAttribute(int index) {
+        checkAttributes();
+        if (index < 0 || index >= fCurrent.attributeCount) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return fCurrent.attributeNames[index];
+    } // getAttribute(int):QName
+
+    private String getDeclaredPrefix(int index) {
+        checkElement();
+        if (index < 0 || index >= fNamespaceSupport.getDeclaredPrefixCount()) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return fNamespaceSupport.getDeclaredPrefixAt(index);
+    } // getDeclaredPrefix(int):String
+
+    private void checkAttributes() {
+        if (fEventType != START_ELEMENT) {
+            throw new IllegalStateException("The current event is not a start element.");
+        }
+    }
+
+    private void checkElement() {
+        if (fEventType != START_ELEMENT && fEventType != END_ELEMENT) {
+            throw new IllegalStateException("The current event is not a start or end element.");
+        }
+    }
+
+    private void checkText() {
+        if (fEventType != CHARACTERS && fEventType != CDATA && fEventType != SPACE
+                && fEventType != COMMENT) {
+            throw new IllegalStateException("The current event has no text.");
+        }
+    }
+
+    private static javax.xml.namespace.QName toQName(QName name) {
+        return new javax.xml.namespace.QName(
+                (name.uri != null) ? name.uri : XMLConstants.NULL_NS_URI, name.localpart,
+                (name.prefix != null) ? name.prefix : XMLConstants.DEFAULT_NS_PREFIX);
+    } // toQName(QName):javax.xml.namespace.QName
+
+    //
+    // Classes
+    //
+
+    /** A queued event. */
+    private static final class Event {
+
+        /** The event type. */
+        int type;
+
+        /** The element name. */
+        final QName name = new QName();
+
+        /** The PI target or the DTD text. */
+        String text;
+
+        /** Character data of the event in the text buffer. */
+        int textOffset;
+        int textLength;
+
+        /** Attributes, other than namespace declarations. */
+        int attributeCount;
+        QName[] attributeNames = new QName[0];
+        String[] attributeTypes = new String[0];
+        String[] attributeValues = new String[0];
+        boolean[] attributeSpecified = new boolean[0];
+
+        /** Namespace declarations. */
+        int namespaceCount;
+        String[] namespacePrefixes = new String[0];
+        String[] namespaceURIs = new String[0];
+
+        /** Copies the attributes, separating the namespace declarations. */
+        void setAttributes(XMLAttributes attributes) {
+            final int length = attributes.getLength();
+            if (attributeNames.length < length) {
+                int size = Math.max(length, INITIAL_SIZE);
+                QName[] names = new QName[size];
+                System.arraycopy(attributeNames, 0, names, 0, attributeNames.length);
+                for (int i = attributeNames.length; i < size; ++i) {
+                    names[i] = new QName();
+                }
+                attributeNames = names;
+                attributeTypes = new String[size];
+                attributeValues = new String[size];
+                attributeSpecified = new boolean[size];
+                namespacePrefixes = new String[size];
+                namespaceURIs = new String[size];
+            }
+            for (int i = 0; i < length; ++i) {
+                QName name = attributeNames[attributeCount];
+                attributes.getName(i, name);
+                if (name.uri == NamespaceContext.XMLNS_URI) {
+                    namespacePrefixes[namespaceCount] = (name.prefix == XMLSymbols.PREFIX_XMLNS)
+                        ? name.localpart : XMLSymbols.EMPTY_STRING;
+                    namespaceURIs[namespaceCount++] = attributes.getValue(i);
+                    continue;
+                }
+                attributeTypes[attributeCount] = attributes.getType(i);
+                attributeValues[attributeCount] = attributes.getValue(i);
+                attributeSpecified[attributeCount++] = attributes.isSpecified(i);
+            }
+        } // setAttributes(XMLAttributes)
+
+    } // class Event
+
+    /** JAXP view of the namespace bindings in scope. */
+    private final class NamespaceContextImpl implements javax.xml.namespace.NamespaceContext {
+
+        public String getNamespaceURI(String prefix) {
+            if (prefix == null) {
+                throw new IllegalArgumentException("Prefix cannot be null.");
+            }
+            if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+                return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            String uri = fNamespaceSupport.getURI(prefix.intern());
+            return (uri != null) ? uri : XMLConstants.NULL_NS_URI;
+        } // getNamespaceURI(String):String
+
+        public String getPrefix(String namespaceURI) {
+            Iterator prefixes = getPrefixes(namespaceURI);
+            return prefixes.hasNext() ? (String) prefixes.next() : null;
+        } // getPrefix(String):String
+
+        public Iterator getPrefixes(String namespaceURI) {
+            if (namespaceURI == null) {
+                throw new IllegalArgumentException("Namespace URI cannot be null.");
+            }
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+                return Collections.singletonList(XMLConstants.XMLNS_ATTRIBUTE).iterator();
+            }
+            ArrayList prefixes = new ArrayList();
+            Enumeration all = fNamespaceSupport.getAllPrefixes();
+            while (all.hasMoreElements()) {
+                String prefix = (String) all.nextElement();
+                String uri = fNamespaceSupport.getURI(prefix);
+                if (namespaceURI.equals(uri != null ? uri : XMLConstants.NULL_NS_URI)
+                        && !prefixes.contains(prefix)) {
+                    prefixes.add(prefix);
+                }
+            }
+            return Collections.unmodifiableList(prefixes).iterator();
+        } // getPrefixes(String):Iterator
+
+    } // class NamespaceContextImpl
+
+    /** StAX view of the scanner's locator. */
+    private final class LocationImpl implements Location {
+
+        public int getLineNumber() {
+            return (fLocator != null) ? fLocator.getLineNumber() : -1;
+        }
+
+        public int getColumnNumber() {
+            return (fLocator != null) ? fLocator.getColumnNumber() : -1;
+        }
+
+        public int getCharacterOffset() {
+            return (fLocator != null) ? fLocator.getCharacterOffset() : -1;
+        }
+
+        public String getPublicId() {
+            return (fLocator != null) ? fLocator.getPublicId() : null;
+        }
+
+        public String getSystemId() {
+            return (fLocator != null) ? fLocator.getExpandedSystemId() : null;
+        }
+
+    } // class LocationImpl
+
+} // class XMLStreamReaderImpl
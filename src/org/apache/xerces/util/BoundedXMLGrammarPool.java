@@ -0,0 +1,545 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.util.Vector;
+
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSNamespaceItem;
+
+/**
+ * A grammar pool with a bounded capacity. Like
+ * <code>XMLGrammarPoolImpl</code>, grammars are keyed by the root
+ * element name for DTD grammars and by the target namespace for
+ * Schema grammars.
+ * <p>
+ * The pool holds at most a given number of grammars and at most a
+ * given total estimated size. When adding a grammar would exceed either
+ * bound, the least recently used grammars are evicted. A grammar is
+ * used when it is retrieved from the pool; retrieving a schema grammar
+ * also uses the grammars it imports, so that they are not evicted
+ * before the grammars which refer to them.
+ * <p>
+ * Like <code>SoftReferenceGrammarPool</code>, this pool does not
+ * return any grammars from <code>retrieveInitialGrammarSet</code>, so
+ * that validators retrieve every grammar they need individually and
+ * the order of use reflects the documents being validated.
+ * <p>
+ * The numbers of hits, misses and evictions are counted for
+ * monitoring. The pool is safe for use by multiple threads.
+ *
+ * @see XMLGrammarPoolImpl
+ *
+ * @version $Id$
+ */
+public class BoundedXMLGrammarPool implements XMLGrammarPool {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of grammars. */
+    public static final int DEFAULT_MAX_GRAMMARS = 64;
+
+    /** Default size. */
+    protected static final int TABLE_SIZE = 11;
+
+    /** Estimated size of a grammar, other than its schema components. */
+    protected static final long GRAMMAR_SIZE = 16 * 1024;
+
+    /** Estimated size of a global schema component and its content. */
+    protected static final long COMPONENT_SIZE = 1024;
+
+    /** Zero length grammar array. */
+    private static final Grammar [] ZERO_LENGTH_GRAMMAR_ARRAY = new Grammar [0];
+
+    /** The kinds of global schema components. */
+    private static final short[] COMPONENT_TYPES = {
+        XSConstants.TYPE_DEFINITION,
+        XSConstants.ATTRIBUTE_DECLARATION,
+        XSConstants.ELEMENT_DECLARATION,
+        XSConstants.ATTRIBUTE_GROUP,
+        XSConstants.MODEL_GROUP_DEFINITION,
+        XSConstants.NOTATION_DECLARATION,
+        XSConstants.IDENTITY_CONSTRAINT,
+    };
+
+    //
+    // Data
+    //
+
+    /** Maximum number of grammars. */
+    private final int fMaxGrammars;
+
+    /** Maximum total estimated size of the grammars. */
+    private final long fMaxSize;
+
+    /** Grammars. */
+    private Entry[] fGrammars;
+
+    /** Sentinel of the list of entries in order of use, most recent first. */
+    private final Entry fHead;
+
+    /** Flag indicating whether this pool is locked. */
+    private boolean fPoolIsLocked;
+
+    /** The number of grammars in the pool. */
+    private int fGrammarCount = 0;
+
+    /** The total estimated size of the grammars in the pool. */
+    private long fSize = 0;
+
+    /** Number of lookups which found a grammar. */
+    private long fHits;
+
+    /** Number of lookups which did not find a grammar. */
+    private long fMisses;
+
+    /** Number of grammars evicted to stay within the bounds. */
+    private long fEvictions;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a grammar pool holding a default number of grammars. */
+    public BoundedXMLGrammarPool() {
+        this(DEFAULT_MAX_GRAMMARS, Long.MAX_VALUE);
+    } // <init>()
+
+    /** Constructs a grammar pool holding at most the given number of grammars. */
+    public BoundedXMLGrammarPool(int maxGrammars) {
+        this(maxGrammars, Long.MAX_VALUE);
+    } // <init>(int)
+
+    /**
+     * Constructs a grammar pool holding at most the given number of
+     * grammars, whose estimated sizes add up to at most the given size.
+     *
+     * @param maxGrammars The maximum number of grammars.
+     * @param maxSize     The maximum total estimated size, in bytes.
+     *
+     * @see #estimateSize(Grammar)
+     */
+    public BoundedXMLGrammarPool(int maxGrammars, long maxSize) {
+        fMaxGrammars = (maxGrammars > 0) ? maxGrammars : DEFAULT_MAX_GRAMMARS;
+        fMaxSize = (maxSize > 0) ? maxSize : Long.MAX_VALUE;
+        fGrammars = new Entry[TABLE_SIZE];
+        fHead = new Entry(0, null, null, 0, null);
+        fHead.before = fHead;
+        fHead.after = fHead;
+        fPoolIsLocked = false;
+    } // <init>(int,long)
+
+    //
+    // XMLGrammarPool methods
+    //
+
+    /* <p> Retrieve the initial known set of grammars. This method is
+     * called by a validator before the validation starts. The application
+     * can provide an initial set of grammars available to the current
+     * validation attempt. </p>
+     *
+     * @param grammarType The type of the grammar, from the
+     *  		  <code>org.apache.xerces.xni.grammars.XMLGrammarDescription</code>
+     *  		  interface.
+     * @return 		  The set of grammars the validator may put in its "bucket"
+     */
+    public Grammar [] retrieveInitialGrammarSet (String grammarType) {
+        // Return no grammars, so that every grammar used by the validator
+        // is retrieved, and its use recorded, individually.
+        return ZERO_LENGTH_GRAMMAR_ARRAY;
+    } // retrieveInitialGrammarSet (String): Grammar[]
+
+    /* <p> Return the final set of grammars that the validator ended up
+     * with. This method is called after the validation finishes. The
+     * application may then choose to cache some of the returned grammars.</p>
+     * <p>In this implementation, we make our choice based on whether this object
+     * is "locked"--that is, whether the application has instructed
+     * us not to accept any new grammars.</p>
+     *
+     * @param grammarType The type of the grammars being returned;
+     * @param grammars 	  An array containing the set of grammars being
+     *  		  returned; order is not significant.
+     */
+    public void cacheGrammars(String grammarType, Grammar[] grammars) {
+        if (!fPoolIsLocked) {
+            for (int i = 0; i < grammars.length; ++i) {
+                putGrammar(grammars[i]);
+            }
+        }
+    } // cacheGrammars(String, Grammar[]);
+
+    /* <p> This method requests that the application retrieve a grammar
+     * corresponding to the given GrammarIdentifier from its cache.
+     * If it cannot do so it must return null; the parser will then
+     * call the EntityResolver. </p>
+     * <strong>An application must not call its EntityResolver itself
+     * from this method; this may result in infinite recursions.</strong>
+     *
+     * @param desc The description of the Grammar being requested.
+     * @return     The Grammar corresponding to this description or null if
+     *  	   no such Grammar is known.
+     */
+    public Grammar retrieveGrammar(XMLGrammarDescription desc) {
+        return getGrammar(desc);
+    } // retrieveGrammar(XMLGrammarDescription):  Grammar
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Puts the specified grammar into the grammar pool and associates it to
+     * its root element name or its target namespace. Grammars are evicted
+     * from the pool if it would otherwise exceed its bounds; a grammar
+     * which alone exceeds the maximum size is not kept.
+     *
+     * @param grammar The Grammar.
+     */
+    public void putGrammar(Grammar grammar) {
+        final long size = estimateSize(grammar);
+        synchronized (this) {
+            if (fPoolIsLocked) {
+                return;
+            }
+            final XMLGrammarDescription desc = grammar.getGrammarDescription();
+            final int hash = hashCode(desc);
+            final int index = (hash & 0x7FFFFFFF) % fGrammars.length;
+            for (Entry entry = fGrammars[index]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && equals(entry.desc, desc)) {
+                    if (entry.grammar != grammar) {
+                        entry.grammar = grammar;
+                        fSize += size - entry.size;
+                        entry.size = size;
+                    }
+                    unlink(entry);
+                    linkFirst(entry);
+                    evict();
+                    return;
+                }
+            }
+            // create a new entry
+            if (fGrammarCount >= fGrammars.length - (fGrammars.length >> 2)) {
+                rehash();
+            }
+            final int newIndex = (hash & 0x7FFFFFFF) % fGrammars.length;
+            final Entry entry = new Entry(hash, desc, grammar, size, fGrammars[newIndex]);
+            fGrammars[newIndex] = entry;
+            linkFirst(entry);
+            ++fGrammarCount;
+            fSize += size;
+            evict();
+        }
+    } // putGrammar(Grammar)
+
+    /**
+     * Returns the grammar associated to the specified grammar description,
+     * and records its use. Currently, the root element name is used as the
+     * key for DTD grammars and the target namespace is used as the key for
+     * Schema grammars.
+     *
+     * @param desc The Grammar Description.
+     */
+    public synchronized Grammar getGrammar(XMLGrammarDescription desc) {
+        final Entry entry = lookup(desc);
+        if (entry == null) {
+            ++fMisses;
+            return null;
+        }
+        ++fHits;
+        unlink(entry);
+        linkFirst(entry);
+        if (entry.grammar instanceof SchemaGrammar) {
+            useImportedGrammars((SchemaGrammar) entry.grammar);
+        }
+        return entry.grammar;
+    } // getGrammar(XMLGrammarDescription):Grammar
+
+    /**
+     * Removes the grammar associated to the specified grammar description from the
+     * grammar pool and returns the removed grammar. Currently, the root element name
+     * is used as the key for DTD grammars and the target namespace  is used
+     * as the key for Schema grammars.
+     *
+     * @param desc The Grammar Description.
+     * @return     The removed grammar.
+     */
+    public synchronized Grammar removeGrammar(XMLGrammarDescription desc) {
+        final Entry entry = lookup(desc);
+        if (entry == null) {
+            return null;
+        }
+        removeEntry(entry);
+        return entry.grammar;
+    } // removeGrammar(XMLGrammarDescription):Grammar
+
+    /**
+     * Returns true if the grammar pool contains a grammar associated
+     * to the specified grammar description. Currently, the root element name
+     * is used as the key for DTD grammars and the target namespace  is used
+     * as the key for Schema grammars. This does not count as a use of
+     * the grammar.
+     *
+     * @param desc The Grammar Description.
+     */
+    public synchronized boolean containsGrammar(XMLGrammarDescription desc) {
+        return lookup(desc) != null;
+    } // containsGrammar(XMLGrammarDescription):boolean
+
+    /* <p> Sets this grammar pool to a "locked" state--i.e.,
+     * no new grammars will be added until it is "unlocked".
+     */
+    public synchronized void lockPool() {
+        fPoolIsLocked = true;
+    } // lockPool()
+
+    /* <p> Sets this grammar pool to an "unlocked" state--i.e.,
+     * new grammars will be added when putGrammar or cacheGrammars
+     * are called.
+     */
+    public synchronized void unlockPool() {
+        fPoolIsLocked = false;
+    } // unlockPool()
+
+    /*
+     * <p>This method clears the pool-i.e., removes references
+     * to all the grammars in it.</p>
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < fGrammars.length; ++i) {
+            fGrammars[i] = null;
+        }
+        fHead.before = fHead;
+        fHead.after = fHead;
+        fGrammarCount = 0;
+        fSize = 0;
+    } // clear()
+
+    /**
+     * This method checks whether two grammars are the same. Currently, we compare
+     * the root element names for DTD grammars and the target namespaces for Schema grammars.
+     * The application can override this behaviour and add its own logic.
+     *
+     * @param desc1 The grammar description
+     * @param desc2 The grammar description of the grammar to be compared to
+     * @return      True if the grammars are equal, otherwise false
+     */
+    public boolean equals(XMLGrammarDescription desc1, XMLGrammarDescription desc2) {
+        return desc1.equals(desc2);
+    }
+
+    /**
+     * Returns the hash code value for the given grammar description.
+     *
+     * @param desc The grammar description
+     * @return     The hash code value
+     */
+    public int hashCode(XMLGrammarDescription desc) {
+        return desc.hashCode();
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by a grammar. The
+     * estimate of a schema grammar grows with its number of global
+     * components; other grammars are given a fixed estimate. The
+     * application can override this method to provide its own estimate.
+     *
+     * @param grammar The grammar
+     * @return        The estimated size of the grammar
+     */
+    public long estimateSize(Grammar grammar) {
+        long size = GRAMMAR_SIZE;
+        if (grammar instanceof XSNamespaceItem) {
+            final XSNamespaceItem namespaceItem = (XSNamespaceItem) grammar;
+            for (int i = 0; i < COMPONENT_TYPES.length; ++i) {
+                size += namespaceItem.getComponents(COMPONENT_TYPES[i]).getLength() * COMPONENT_SIZE;
+            }
+        }
+        return size;
+    } // estimateSize(Grammar):long
+
+    /** Returns the maximum number of grammars. */
+    public int getMaxGrammars() {
+        return fMaxGrammars;
+    }
+
+    /** Returns the maximum total estimated size of the grammars. */
+    public long getMaxSize() {
+        return fMaxSize;
+    }
+
+    /** Returns the number of grammars in the pool. */
+    public synchronized int getGrammarCount() {
+        return fGrammarCount;
+    }
+
+    /** Returns the total estimated size of the grammars in the pool. */
+    public synchronized long getEstimatedSize() {
+        return fSize;
+    }
+
+    /** Returns the number of lookups which found a grammar. */
+    public synchronized long getHitCount() {
+        return fHits;
+    }
+
+    /** Returns the number of lookups which did not find a grammar. */
+    public synchronized long getMissCount() {
+        return fMisses;
+    }
+
+    /** Returns the number of grammars evicted to stay within the bounds. */
+    public synchronized long getEvictionCount() {
+        return fEvictions;
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the entry for the given description or null. */
+    private Entry lookup(XMLGrammarDescription desc) {
+        final int hash = hashCode(desc);
+        final int index = (hash & 0x7FFFFFFF) % fGrammars.length;
+        for (Entry entry = fGrammars[index]; entry != null; entry = entry.next) {
+            if ((entry.hash == hash) && equals(entry.desc, desc)) {
+                return entry;
+            }
+        }
+        return null;
+    } // lookup(XMLGrammarDescription):Entry
+
+    /**
+     * Records the use of the grammars imported, directly or indirectly,
+     * by the given schema grammar, so that they are evicted after it.
+     */
+    private void useImportedGrammars(SchemaGrammar grammar) {
+        Vector pending = grammar.getImportedGrammars();
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        pending = (Vector) pending.clone();
+        final Vector seen = new Vector();
+        seen.addElement(grammar);
+        while (!pending.isEmpty()) {
+            final SchemaGrammar imported = (SchemaGrammar) pending.remove(pending.size() - 1);
+            if (seen.contains(imported)) {
+                continue;
+            }
+            seen.addElement(imported);
+            final Entry entry = lookup(imported.getGrammarDescription());
+            if (entry != null && entry.grammar == imported) {
+                unlink(entry);
+                linkFirst(entry);
+            }
+            final Vector next = imported.getImportedGrammars();
+            if (next != null) {
+                pending.addAll(next);
+            }
+        }
+    } // useImportedGrammars(SchemaGrammar)
+
+    /** Evicts the least recently used grammars until the pool is within its bounds. */
+    private void evict() {
+        while ((fGrammarCount > fMaxGrammars || fSize > fMaxSize) && fHead.before != fHead) {
+            removeEntry(fHead.before);
+            ++fEvictions;
+        }
+    } // evict()
+
+    /** Removes the given entry from the pool. */
+    private void removeEntry(Entry entry) {
+        final int index = (entry.hash & 0x7FFFFFFF) % fGrammars.length;
+        Entry prev = null;
+        for (Entry e = fGrammars[index]; e != null; prev = e, e = e.next) {
+            if (e == entry) {
+                if (prev == null) {
+                    fGrammars[index] = e.next;
+                }
+                else {
+                    prev.next = e.next;
+                }
+                break;
+            }
+        }
+        unlink(entry);
+        --fGrammarCount;
+        fSize -= entry.size;
+    } // removeEntry(Entry)
+
+    /** Doubles the number of buckets. */
+    private void rehash() {
+        final Entry[] oldGrammars = fGrammars;
+        final Entry[] newGrammars = new Entry[oldGrammars.length * 2 + 1];
+        for (int i = oldGrammars.length; i-- > 0;) {
+            for (Entry e = oldGrammars[i]; e != null;) {
+                final Entry next = e.next;
+                final int index = (e.hash & 0x7FFFFFFF) % newGrammars.length;
+                e.next = newGrammars[index];
+                newGrammars[index] = e;
+                e = next;
+            }
+        }
+        fGrammars = newGrammars;
+    } // rehash()
+
+    private void linkFirst(Entry entry) {
+        entry.after = fHead.after;
+        entry.before = fHead;
+        fHead.after.before = entry;
+        fHead.after = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.before.after = entry.after;
+        entry.after.before = entry.before;
+    }
+
+    //
+    // Classes
+    //
+
+    /**
+     * This class is a grammar pool entry. Each entry is a node in the
+     * linked list of its bucket, and in the list of entries in order of
+     * use.
+     */
+    private static final class Entry {
+        final int hash;
+        final XMLGrammarDescription desc;
+        Grammar grammar;
+        long size;
+        Entry next;
+        Entry before;
+        Entry after;
+
+        Entry(int hash, XMLGrammarDescription desc, Grammar grammar, long size, Entry next) {
+            this.hash = hash;
+            this.desc = desc;
+            this.grammar = grammar;
+            this.size = size;
+            this.next = next;
+        }
+    } // class Entry
+
+} // class BoundedXMLGrammarPool
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.xerces.impl.io.ByteBufferInputStream;
+import org.apache.xerces.xni.parser.XMLInputSource;
+
+/**
+ * This class represents an input source for an XML resource whose
+ * bytes are available in a <code>java.nio.ByteBuffer</code> or
+ * can be read from a local file through a <code>FileChannel</code>.
+ * <p>
+ * A file channel is mapped into memory in large read-only regions
+ * as the document is scanned, so that very large local documents
+ * are read without a system call per block and without an
+ * intermediate buffered stream. The byte stream of this input
+ * source is set to a stream over the buffer or channel, so the
+ * input source can be passed anywhere an <code>XMLInputSource</code>
+ * with a byte stream is accepted. As with other byte streams, the
+ * channel is closed by the parser once the document has been read.
+ * <p>
+ * The stream is created when the buffer or channel is set, so like any
+ * input source with a byte stream, this input source can be parsed only
+ * once. To parse the same buffer again, call {@link #setByteBuffer}
+ * again or construct another input source; the buffer itself is left
+ * untouched by the parser.
+ *
+ * @version $Id$
+ */
+public final class ByteBufferInputSource extends XMLInputSource {
+
+    //
+    // Data
+    //
+
+    /** The byte buffer, or null if reading from a channel. */
+    private ByteBuffer fByteBuffer;
+
+    /** The file channel, or null if reading from a byte buffer. */
+    private FileChannel fFileChannel;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs an input source from a byte buffer. The content of
+     * the buffer from its position to its limit is read. The position
+     * and limit of the buffer are not modified.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should
+     *                     always be set, if possible, and can be
+     *                     relative or absolute. If the system identifier
+     *                     is relative, then the base system identifier
+     *                     should be set.
+     * @param baseSystemId The base system identifier. This value should
+     *                     always be set to the fully expanded URI of the
+     *                     base system identifier, if possible.
+     * @param byteBuffer   The byte buffer.
+     * @param encoding     The encoding of the byte buffer, if known.
+     */
+    public ByteBufferInputSource(String publicId, String systemId,
+            String baseSystemId, ByteBuffer byteBuffer, String encoding) {
+        super(publicId, systemId, baseSystemId);
+        fEncoding = encoding;
+        setByteBuffer(byteBuffer);
+    } // <init>(String,String,String,ByteBuffer,String)
+
+    /**
+     * Constructs an input source from a file channel. The content of
+     * the channel from its current position to its end is read.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should
+     *                     always be set, if possible, and can be
+     *                     relative or absolute. If the system identifier
+     *                     is relative, then the base system identifier
+     *                     should be set.
+     * @param baseSystemId The base system identifier. This value should
+     *                     always be set to the fully expanded URI of the
+     *                     base system identifier, if possible.
+     * @param fileChannel  The file channel.
+     * @param encoding     The encoding of the file, if known.
+     * @throws IOException if the size or position of the channel
+     *                     cannot be determined.
+     */
+    public ByteBufferInputSource(String publicId, String systemId,
+            String baseSystemId, FileChannel fileChannel, String encoding)
+        throws IOException {
+        super(publicId, systemId, baseSystemId);
+        fEncoding = encoding;
+        setFileChannel(fileChannel);
+    } // <init>(String,String,String,FileChannel,String)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the byte buffer to read from. This replaces the byte stream
+     * and file channel of this input source.
+     *
+     * @param byteBuffer The new byte buffer.
+     */
+    public void setByteBuffer(ByteBuffer byteBuffer) {
+        fByteBuffer = byteBuffer;
+        fFileChannel = null;
+        fByteStream = (byteBuffer != null) ? new ByteBufferInputStream(byteBuffer) : null;
+    } // setByteBuffer(ByteBuffer)
+
+    /** Returns the byte buffer, or null if reading from a file channel. */
+    public ByteBuffer getByteBuffer() {
+        return fByteBuffer;
+    } // getByteBuffer():ByteBuffer
+
+    /**
+     * Sets the file channel to read from. This replaces the byte stream
+     * and byte buffer of this input source.
+     *
+     * @param fileChannel The new file channel.
+     * @throws IOException if the size or position of the channel
+     *                     cannot be determined.
+     */
+    public void setFileChannel(FileChannel fileChannel) throws IOException {
+        fFileChannel = fileChannel;
+        fByteBuffer = null;
+        fByteStream = (fileChannel != null) ? new ByteBufferInputStream(fileChannel) : null;
+    } // setFileChannel(FileChannel)
+
+    /** Returns the file channel, or null if reading from a byte buffer. */
+    public FileChannel getFileChannel() {
+        return fFileChannel;
+    } // getFileChannel():FileChannel
+
+} // class ByteBufferInputSource
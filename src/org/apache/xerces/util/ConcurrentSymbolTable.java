@@ -0,0 +1,481 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+/**
+ * A thread-safe symbol table which may be shared by many parser
+ * instances without serializing them on a single monitor.
+ * <p>
+ * The table is divided into a fixed number of segments, each of which
+ * is an independent hash table guarded by its own lock. Lookups of
+ * symbols which are already present in the table never acquire a lock:
+ * the entries of a segment are immutable and the segment's bucket array
+ * is published through a volatile field, so a reader always observes a
+ * consistent (if possibly slightly stale) chain. Only when a lookup
+ * misses is the segment locked, the lookup repeated and the new symbol
+ * added. Since every symbol is also interned, references returned by
+ * this table may be compared with <code>==</code> exactly like those
+ * returned by {@link SymbolTable}.
+ * <p>
+ * Like {@link SymbolTable}, each segment selects a new hash function
+ * and reorganizes itself when the number of collisions in one of its
+ * buckets exceeds a threshold.
+ *
+ * @see SymbolTable
+ * @see SynchronizedSymbolTable
+ *
+ * @version $Id$
+ */
+public final class ConcurrentSymbolTable extends SymbolTable {
+
+    //
+    // Constants
+    //
+
+    /** Default number of segments. */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** Maximum number of segments. */
+    private static final int MAX_SEGMENTS = 1 << 12;
+
+    //
+    // Data
+    //
+
+    /** Segments. */
+    private final Segment[] fSegments;
+
+    /** Shift applied to the symbol hash to select a segment. */
+    private final int fSegmentShift;
+
+    /** Mask applied to the symbol hash to select a segment. */
+    private final int fSegmentMask;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a new, empty ConcurrentSymbolTable with the specified
+     * initial capacity, load factor and concurrency level.
+     *
+     * @param      initialCapacity   the initial capacity of the SymbolTable.
+     * @param      loadFactor        the load factor of the SymbolTable.
+     * @param      concurrencyLevel  the estimated number of threads adding
+     *                               new symbols concurrently.
+     * @throws     IllegalArgumentException  if the initial capacity is less
+     *             than zero, if the load factor is nonpositive or if the
+     *             concurrency level is not positive.
+     */
+    public ConcurrentSymbolTable(int initialCapacity, float loadFactor, int concurrencyLevel) {
+        /*
+         * The Entry buckets in the base class are not used by this class.
+         * We call super() with 1 as the initial capacity to minimize the
+         * memory used by the field in the base class.
+         */
+        super(1, loadFactor);
+
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal Concurrency Level: " + concurrencyLevel);
+        }
+        if (concurrencyLevel > MAX_SEGMENTS) {
+            concurrencyLevel = MAX_SEGMENTS;
+        }
+
+        // round the number of segments up to a power of two
+        int shift = 0;
+        int segments = 1;
+        while (segments < concurrencyLevel) {
+            ++shift;
+            segments <<= 1;
+        }
+        fSegmentShift = 32 - shift;
+        fSegmentMask = segments - 1;
+
+        int segmentCapacity = initialCapacity / segments;
+        if (segmentCapacity * segments < initialCapacity) {
+            ++segmentCapacity;
+        }
+        // keep the bucket count odd, like the other symbol tables
+        segmentCapacity |= 1;
+
+        fSegments = new Segment[segments];
+        for (int i = 0; i < segments; ++i) {
+            fSegments[i] = new Segment(segmentCapacity, loadFactor, fCollisionThreshold);
+        }
+    }
+
+    /**
+     * Constructs a new, empty ConcurrentSymbolTable with the specified
+     * initial capacity, the default load factor, which is <tt>0.75</tt>,
+     * and the default concurrency level, which is <tt>16</tt>.
+     *
+     * @param     initialCapacity   the initial capacity of the hashtable.
+     * @throws    IllegalArgumentException if the initial capacity is less
+     *            than zero.
+     */
+    public ConcurrentSymbolTable(int initialCapacity) {
+        this(initialCapacity, 0.75f, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a new, empty ConcurrentSymbolTable with a default initial
+     * capacity (101), load factor (<tt>0.75</tt>) and concurrency level
+     * (<tt>16</tt>).
+     */
+    public ConcurrentSymbolTable() {
+        this(TABLE_SIZE, 0.75f, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    //
+    // SymbolTable methods
+    //
+
+    /**
+     * Adds the specified symbol to the symbol table and returns a
+     * reference to the unique symbol. If the symbol already exists,
+     * the previous symbol reference is returned instead, in order
+     * guarantee that symbol references remain unique.
+     *
+     * @param symbol The new symbol.
+     */
+    public String addSymbol(String symbol) {
+        final int hash = symbol.hashCode();
+        final Segment segment = fSegments[segmentFor(hash)];
+        final String existing = segment.get(symbol);
+        if (existing != null) {
+            return existing;
+        }
+        return segment.put(symbol);
+    } // addSymbol(String):String
+
+    /**
+     * Adds the specified symbol to the symbol table and returns a
+     * reference to the unique symbol. If the symbol already exists,
+     * the previous symbol reference is returned instead, in order
+     * guarantee that symbol references remain unique.
+     *
+     * @param buffer The buffer containing the new symbol.
+     * @param offset The offset into the buffer of the new symbol.
+     * @param length The length of the new symbol in the buffer.
+     */
+    public String addSymbol(char[] buffer, int offset, int length) {
+        final int hash = defaultHash(buffer, offset, length);
+        final Segment segment = fSegments[segmentFor(hash)];
+        final String existing = segment.get(buffer, offset, length, hash);
+        if (existing != null) {
+            return existing;
+        }
+        return segment.put(buffer, offset, length, hash);
+    } // addSymbol(char[],int,int):String
+
+    /**
+     * Returns true if the symbol table already contains the specified
+     * symbol.
+     *
+     * @param symbol The symbol to look for.
+     */
+    public boolean containsSymbol(String symbol) {
+        return fSegments[segmentFor(symbol.hashCode())].get(symbol) != null;
+    } // containsSymbol(String):boolean
+
+    /**
+     * Returns true if the symbol table already contains the specified
+     * symbol.
+     *
+     * @param buffer The buffer containing the symbol to look for.
+     * @param offset The offset into the buffer.
+     * @param length The length of the symbol in the buffer.
+     */
+    public boolean containsSymbol(char[] buffer, int offset, int length) {
+        final int hash = defaultHash(buffer, offset, length);
+        return fSegments[segmentFor(hash)].get(buffer, offset, length, hash) != null;
+    } // containsSymbol(char[],int,int):boolean
+
+    //
+    // Private methods
+    //
+
+    /** Returns the index of the segment for the given hash code. */
+    private int segmentFor(int hash) {
+        // spread the bits so that the high bits of the hash take part
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        return (hash >>> fSegmentShift) & fSegmentMask;
+    } // segmentFor(int):int
+
+    /** Computes String.hashCode() for the given characters. */
+    private static int defaultHash(char[] buffer, int offset, int length) {
+        int code = 0;
+        for (int i = 0; i < length; ++i) {
+            code = code * 31 + buffer[offset + i];
+        }
+        return code;
+    } // defaultHash(char[],int,int):int
+
+    //
+    // Classes
+    //
+
+    /**
+     * A segment of the concurrent symbol table. Writers synchronize
+     * on the segment; readers only read the volatile table reference.
+     */
+    private static final class Segment {
+
+        //
+        // Data
+        //
+
+        /** The current table. Replaced as a whole on rehash. */
+        private volatile Table fTable;
+
+        /** The number of entries in the segment. Guarded by this. */
+        private int fCount;
+
+        /** The load factor for the segment. */
+        private final float fLoadFactor;
+
+        /** Maximum hash collisions per bucket before rebalancing. */
+        private final int fCollisionThreshold;
+
+        //
+        // Constructors
+        //
+
+        Segment(int capacity, float loadFactor, int collisionThreshold) {
+            fLoadFactor = loadFactor;
+            fCollisionThreshold = collisionThreshold;
+            fTable = new Table(new CEntry[capacity], null);
+        }
+
+        //
+        // Methods
+        //
+
+        /** Returns the symbol equal to the given string or null. */
+        String get(String symbol) {
+            final Table table = fTable;
+            final CEntry[] buckets = table.buckets;
+            final int bucket = table.hash(symbol) % buckets.length;
+            for (CEntry entry = buckets[bucket]; entry != null; entry = entry.next) {
+                if (entry.symbol.equals(symbol)) {
+                    return entry.symbol;
+                }
+            }
+            return null;
+        } // get(String):String
+
+        /**
+         * Returns the symbol equal to the given characters or null.
+         * The hash is the String.hashCode() of the characters.
+         */
+        String get(char[] buffer, int offset, int length, int hash) {
+            final Table table = fTable;
+            final CEntry[] buckets = table.buckets;
+            final int bucket = table.hash(buffer, offset, length, hash) % buckets.length;
+            OUTER: for (CEntry entry = buckets[bucket]; entry != null; entry = entry.next) {
+                if (length == entry.characters.length) {
+                    for (int i = 0; i < length; i++) {
+                        if (buffer[offset + i] != entry.characters[i]) {
+                            continue OUTER;
+                        }
+                    }
+                    return entry.symbol;
+                }
+            }
+            return null;
+        } // get(char[],int,int,int):String
+
+        /** Adds the given symbol, unless another thread has already added it. */
+        synchronized String put(String symbol) {
+            Table table = fTable;
+            int bucket = table.hash(symbol) % table.buckets.length;
+            int collisionCount = 0;
+            for (CEntry entry = table.buckets[bucket]; entry != null; entry = entry.next) {
+                if (entry.symbol.equals(symbol)) {
+                    return entry.symbol;
+                }
+                ++collisionCount;
+            }
+            table = ensureCapacity(table, collisionCount);
+            bucket = table.hash(symbol) % table.buckets.length;
+            final char[] characters = symbol.toCharArray();
+            final CEntry entry = new CEntry(symbol.intern(), characters, table.buckets[bucket]);
+            publish(table, bucket, entry);
+            return entry.symbol;
+        } // put(String):String
+
+        /** Adds the given symbol, unless another thread has already added it. */
+        synchronized String put(char[] buffer, int offset, int length, int hash) {
+            Table table = fTable;
+            int bucket = table.hash(buffer, offset, length, hash) % table.buckets.length;
+            int collisionCount = 0;
+            OUTER: for (CEntry entry = table.buckets[bucket]; entry != null; entry = entry.next) {
+                if (length == entry.characters.length) {
+                    for (int i = 0; i < length; i++) {
+                        if (buffer[offset + i] != entry.characters[i]) {
+                            ++collisionCount;
+                            continue OUTER;
+                        }
+                    }
+                    return entry.symbol;
+                }
+                ++collisionCount;
+            }
+            table = ensureCapacity(table, collisionCount);
+            bucket = table.hash(buffer, offset, length, hash) % table.buckets.length;
+            final char[] characters = new char[length];
+            System.arraycopy(buffer, offset, characters, 0, length);
+            final CEntry entry = new CEntry(new String(characters).intern(), characters, table.buckets[bucket]);
+            publish(table, bucket, entry);
+            return entry.symbol;
+        } // put(char[],int,int,int):String
+
+        /**
+         * Stores the entry in the bucket and republishes the table so
+         * that readers which subsequently read the volatile field see
+         * the new entry. Readers which miss it fall back to put().
+         */
+        private void publish(Table table, int bucket, CEntry entry) {
+            table.buckets[bucket] = entry;
+            ++fCount;
+            fTable = table;
+        } // publish(Table,int,CEntry)
+
+        /**
+         * Grows or rebalances the segment if required and returns
+         * the table into which the next entry should be added.
+         */
+        private Table ensureCapacity(Table table, int collisionCount) {
+            final int capacity = table.buckets.length;
+            if (fCount >= (int) (capacity * fLoadFactor)) {
+                // Rehash the segment if the threshold is exceeded
+                table = rehash(table, capacity * 2 + 1, table.multipliers);
+            }
+            else if (collisionCount >= fCollisionThreshold) {
+                // Select a new hash function and rehash the segment if
+                // the collision threshold is exceeded.
+                int[] multipliers = new int[MULTIPLIERS_SIZE];
+                PrimeNumberSequenceGenerator.generateSequence(multipliers);
+                table = rehash(table, capacity, multipliers);
+            }
+            return table;
+        } // ensureCapacity(Table,int):Table
+
+        /**
+         * Copies the entries of the given table into a new table. Entries
+         * are never relinked in place since concurrent readers may still
+         * be traversing the old chains.
+         */
+        private Table rehash(Table oldTable, int newCapacity, int[] multipliers) {
+            final CEntry[] oldBuckets = oldTable.buckets;
+            final Table newTable = new Table(new CEntry[newCapacity], multipliers);
+            final CEntry[] newBuckets = newTable.buckets;
+            for (int i = oldBuckets.length; i-- > 0;) {
+                for (CEntry e = oldBuckets[i]; e != null; e = e.next) {
+                    int index = newTable.hash(e.symbol) % newCapacity;
+                    newBuckets[index] = new CEntry(e.symbol, e.characters, newBuckets[index]);
+                }
+            }
+            fTable = newTable;
+            return newTable;
+        } // rehash(Table,int,int[]):Table
+
+    } // class Segment
+
+    /**
+     * The bucket array of a segment along with the hash function
+     * used to index it. A rebalanced segment gets a new table.
+     */
+    private static final class Table {
+
+        /** Buckets. */
+        final CEntry[] buckets;
+
+        /**
+         * Array of randomly selected hash function multipliers or <code>null</code>
+         * if the default String.hashCode() function should be used.
+         */
+        final int[] multipliers;
+
+        Table(CEntry[] buckets, int[] multipliers) {
+            this.buckets = buckets;
+            this.multipliers = multipliers;
+        }
+
+        int hash(String symbol) {
+            if (multipliers == null) {
+                return symbol.hashCode() & 0x7FFFFFFF;
+            }
+            int code = 0;
+            final int length = symbol.length();
+            for (int i = 0; i < length; ++i) {
+                code = code * multipliers[i & MULTIPLIERS_MASK] + symbol.charAt(i);
+            }
+            return code & 0x7FFFFFFF;
+        } // hash(String):int
+
+        /**
+         * Returns the hash of the given characters, whose String.hashCode()
+         * has already been computed by the caller to select the segment.
+         */
+        int hash(char[] buffer, int offset, int length, int defaultHash) {
+            if (multipliers == null) {
+                return defaultHash & 0x7FFFFFFF;
+            }
+            int code = 0;
+            for (int i = 0; i < length; ++i) {
+                code = code * multipliers[i & MULTIPLIERS_MASK] + buffer[offset + i];
+            }
+            return code & 0x7FFFFFFF;
+        } // hash(char[],int,int,int):int
+
+    } // class Table
+
+    /**
+     * An immutable symbol table entry. Since all of its fields are
+     * final, an entry is safely visible to any thread which obtains
+     * a reference to it.
+     */
+    private static final class CEntry {
+
+        /** Symbol. */
+        final String symbol;
+
+        /**
+         * Symbol characters. This information is duplicated here for
+         * comparison performance.
+         */
+        final char[] characters;
+
+        /** The next entry. */
+        final CEntry next;
+
+        CEntry(String symbol, char[] characters, CEntry next) {
+            this.symbol = symbol;
+            this.characters = characters;
+            this.next = next;
+        }
+
+    } // class CEntry
+
+} // class ConcurrentSymbolTable
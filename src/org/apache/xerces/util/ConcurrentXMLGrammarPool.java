@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+
+/**
+ * A grammar pool optimized for concurrent reads. Like
+ * <code>XMLGrammarPoolImpl</code>, grammars are keyed by the root
+ * element name for DTD grammars and by the target namespace for
+ * Schema grammars.
+ * <p>
+ * The pool is a copy-on-write hash table: its bucket array and entries
+ * are never modified once published. Retrieving grammars only reads a
+ * volatile reference and never acquires a monitor, so any number of
+ * validators may consult the pool concurrently without contention.
+ * Adding or removing a grammar copies the bucket array under a lock
+ * which is never taken by readers. This trade-off suits the common
+ * case of a pool which is populated once and then read for every
+ * document validated.
+ * <p>
+ * The pool is safe for use by multiple threads and need not be
+ * wrapped in a synchronized grammar pool.
+ *
+ * @see XMLGrammarPoolImpl
+ *
+ * @version $Id$
+ */
+public class ConcurrentXMLGrammarPool implements XMLGrammarPool {
+
+    //
+    // Constants
+    //
+
+    /** Default size. */
+    protected static final int TABLE_SIZE = 11;
+
+    /** Zero length grammar array. */
+    private static final Grammar [] ZERO_LENGTH_GRAMMAR_ARRAY = new Grammar [0];
+
+    //
+    // Data
+    //
+
+    /** Grammars. Replaced as a whole whenever the pool is modified. */
+    private volatile Entry[] fGrammars;
+
+    /** Flag indicating whether this pool is locked. */
+    private volatile boolean fPoolIsLocked;
+
+    /** The number of grammars in the pool. Guarded by fWriteLock. */
+    private int fGrammarCount = 0;
+
+    /** Lock held while the pool is modified. */
+    private final Object fWriteLock = new Object();
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a grammar pool with a default number of buckets. */
+    public ConcurrentXMLGrammarPool() {
+        this(TABLE_SIZE);
+    } // <init>()
+
+    /** Constructs a grammar pool with a specified number of buckets. */
+    public ConcurrentXMLGrammarPool(int initialCapacity) {
+        fGrammars = new Entry[initialCapacity > 0 ? initialCapacity : 1];
+        fPoolIsLocked = false;
+    } // <init>(int)
+
+    //
+    // XMLGrammarPool methods
+    //
+
+    /* <p> Retrieve the initial known set of grammars. This method is
+     * called by a validator before the validation starts. The application
+     * can provide an initial set of grammars available to the current
+     * validation attempt. </p>
+     *
+     * @param grammarType The type of the grammar, from the
+     *  		  <code>org.apache.xerces.xni.grammars.XMLGrammarDescription</code>
+     *  		  interface.
+     * @return 		  The set of grammars the validator may put in its "bucket"
+     */
+    public Grammar [] retrieveInitialGrammarSet (String grammarType) {
+        final Entry[] grammars = fGrammars;
+        int count = 0;
+        for (int i = 0; i < grammars.length; ++i) {
+            for (Entry e = grammars[i]; e != null; e = e.next) {
+                if (e.desc.getGrammarType().equals(grammarType)) {
+                    ++count;
+                }
+            }
+        }
+        if (count == 0) {
+            return ZERO_LENGTH_GRAMMAR_ARRAY;
+        }
+        Grammar[] toReturn = new Grammar[count];
+        int pos = 0;
+        for (int i = 0; i < grammars.length; ++i) {
+            for (Entry e = grammars[i]; e != null; e = e.next) {
+                if (e.desc.getGrammarType().equals(grammarType)) {
+                    toReturn[pos++] = e.grammar;
+                }
+            }
+        }
+        return toReturn;
+    } // retrieveInitialGrammarSet (String): Grammar[]
+
+    /* <p> Return the final set of grammars that the validator ended up
+     * with. This method is called after the validation finishes. The
+     * application may then choose to cache some of the returned grammars.</p>
+     * <p>In this implementation, we make our choice based on whether this object
+     * is "locked"--that is, whether the application has instructed
+     * us not to accept any new grammars.</p>
+     *
+     * @param grammarType The type of the grammars being returned;
+     * @param grammars 	  An array containing the set of grammars being
+     *  		  returned; order is not significant.
+     */
+    public void cacheGrammars(String grammarType, Grammar[] grammars) {
+        if (!fPoolIsLocked) {
+            for (int i = 0; i < grammars.length; ++i) {
+                putGrammar(grammars[i]);
+            }
+        }
+    } // cacheGrammars(String, Grammar[]);
+
+    /* <p> This method requests that the application retrieve a grammar
+     * corresponding to the given GrammarIdentifier from its cache.
+     * If it cannot do so it must return null; the parser will then
+     * call the EntityResolver. </p>
+     * <strong>An application must not call its EntityResolver itself
+     * from this method; this may result in infinite recursions.</strong>
+     *
+     * @param desc The description of the Grammar being requested.
+     * @return     The Grammar corresponding to this description or null if
+     *  	   no such Grammar is known.
+     */
+    public Grammar retrieveGrammar(XMLGrammarDescription desc) {
+        return getGrammar(desc);
+    } // retrieveGrammar(XMLGrammarDescription):  Grammar
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Puts the specified grammar into the grammar pool and associates it to
+     * its root element name or its target namespace.
+     *
+     * @param grammar The Grammar.
+     */
+    public void putGrammar(Grammar grammar) {
+        if (!fPoolIsLocked) {
+            synchronized (fWriteLock) {
+                // re-check: the pool may have been locked while we waited
+                if (fPoolIsLocked) {
+                    return;
+                }
+                final XMLGrammarDescription desc = grammar.getGrammarDescription();
+                final int hash = hashCode(desc);
+                Entry[] grammars = fGrammars;
+                final int index = (hash & 0x7FFFFFFF) % grammars.length;
+                final Entry head = grammars[index];
+                for (Entry entry = head; entry != null; entry = entry.next) {
+                    if (entry.hash == hash && equals(entry.desc, desc)) {
+                        grammars = (Entry[]) grammars.clone();
+                        grammars[index] = replace(head, entry, new Entry(hash, desc, grammar, entry.next));
+                        fGrammars = grammars;
+                        return;
+                    }
+                }
+                // create a new entry
+                if (fGrammarCount >= grammars.length - (grammars.length >> 2)) {
+                    grammars = rehash(grammars, grammars.length * 2 + 1);
+                }
+                else {
+                    grammars = (Entry[]) grammars.clone();
+                }
+                final int newIndex = (hash & 0x7FFFFFFF) % grammars.length;
+                grammars[newIndex] = new Entry(hash, desc, grammar, grammars[newIndex]);
+                ++fGrammarCount;
+                fGrammars = grammars;
+            }
+        }
+    } // putGrammar(Grammar)
+
+    /**
+     * Returns the grammar associated to the specified grammar description.
+     * Currently, the root element name is used as the key for DTD grammars
+     * and the target namespace  is used as the key for Schema grammars.
+     *
+     * @param desc The Grammar Description.
+     */
+    public Grammar getGrammar(XMLGrammarDescription desc) {
+        final Entry entry = lookup(fGrammars, desc);
+        return (entry != null) ? entry.grammar : null;
+    } // getGrammar(XMLGrammarDescription):Grammar
+
+    /**
+     * Removes the grammar associated to the specified grammar description from the
+     * grammar pool and returns the removed grammar. Currently, the root element name
+     * is used as the key for DTD grammars and the target namespace  is used
+     * as the key for Schema grammars.
+     *
+     * @param desc The Grammar Description.
+     * @return     The removed grammar.
+     */
+    public Grammar removeGrammar(XMLGrammarDescription desc) {
+        synchronized (fWriteLock) {
+            Entry[] grammars = fGrammars;
+            final Entry entry = lookup(grammars, desc);
+            if (entry == null) {
+                return null;
+            }
+            final int index = (entry.hash & 0x7FFFFFFF) % grammars.length;
+            grammars = (Entry[]) grammars.clone();
+            grammars[index] = replace(grammars[index], entry, entry.next);
+            --fGrammarCount;
+            fGrammars = grammars;
+            return entry.grammar;
+        }
+    } // removeGrammar(XMLGrammarDescription):Grammar
+
+    /**
+     * Returns true if the grammar pool contains a grammar associated
+     * to the specified grammar description. Currently, the root element name
+     * is used as the key for DTD grammars and the target namespace  is used
+     * as the key for Schema grammars.
+     *
+     * @param desc The Grammar Description.
+     */
+    public boolean containsGrammar(XMLGrammarDescription desc) {
+        return lookup(fGrammars, desc) != null;
+    } // containsGrammar(XMLGrammarDescription):boolean
+
+    /* <p> Sets this grammar pool to a "locked" state--i.e.,
+     * no new grammars will be added until it is "unlocked".
+     */
+    public void lockPool() {
+        synchronized (fWriteLock) {
+            fPoolIsLocked = true;
+        }
+    } // lockPool()
+
+    /* <p> Sets this grammar pool to an "unlocked" state--i.e.,
+     * new grammars will be added when putGrammar or cacheGrammars
+     * are called.
+     */
+    public void unlockPool() {
+        synchronized (fWriteLock) {
+            fPoolIsLocked = false;
+        }
+    } // unlockPool()
+
+    /*
+     * <p>This method clears the pool-i.e., removes references
+     * to all the grammars in it.</p>
+     */
+    public void clear() {
+        synchronized (fWriteLock) {
+            fGrammars = new Entry[fGrammars.length];
+            fGrammarCount = 0;
+        }
+    } // clear()
+
+    /**
+     * This method checks whether two grammars are the same. Currently, we compare
+     * the root element names for DTD grammars and the target namespaces for Schema grammars.
+     * The application can override this behaviour and add its own logic.
+     *
+     * @param desc1 The grammar description
+     * @param desc2 The grammar description of the grammar to be compared to
+     * @return      True if the grammars are equal, otherwise false
+     */
+    public boolean equals(XMLGrammarDescription desc1, XMLGrammarDescription desc2) {
+        return desc1.equals(desc2);
+    }
+
+    /**
+     * Returns the hash code value for the given grammar description.
+     *
+     * @param desc The grammar description
+     * @return     The hash code value
+     */
+    public int hashCode(XMLGrammarDescription desc) {
+        return desc.hashCode();
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the entry for the given description in the given table or null. */
+    private Entry lookup(Entry[] grammars, XMLGrammarDescription desc) {
+        final int hash = hashCode(desc);
+        final int index = (hash & 0x7FFFFFFF) % grammars.length;
+        for (Entry entry = grammars[index]; entry != null; entry = entry.next) {
+            if ((entry.hash == hash) && equals(entry.desc, desc)) {
+                return entry;
+            }
+        }
+        return null;
+    } // lookup(Entry[],XMLGrammarDescription):Entry
+
+    /**
+     * Returns a copy of the chain starting at <code>head</code> in which
+     * <code>target</code> and all of its followers are replaced by
+     * <code>replacement</code>. The entries in front of the target are
+     * copied since entries are immutable.
+     */
+    private static Entry replace(Entry head, Entry target, Entry replacement) {
+        if (head == target) {
+            return replacement;
+        }
+        return new Entry(head.hash, head.desc, head.grammar, replace(head.next, target, replacement));
+    } // replace(Entry,Entry,Entry):Entry
+
+    /** Returns a new table of the given capacity holding copies of all entries. */
+    private static Entry[] rehash(Entry[] oldGrammars, int newCapacity) {
+        final Entry[] newGrammars = new Entry[newCapacity];
+        for (int i = oldGrammars.length; i-- > 0;) {
+            for (Entry e = oldGrammars[i]; e != null; e = e.next) {
+                int index = (e.hash & 0x7FFFFFFF) % newCapacity;
+                newGrammars[index] = new Entry(e.hash, e.desc, e.grammar, newGrammars[index]);
+            }
+        }
+        return newGrammars;
+    } // rehash(Entry[],int):Entry[]
+
+    //
+    // Classes
+    //
+
+    /**
+     * This class is an immutable grammar pool entry. Each entry acts
+     * as a node in a linked list.
+     */
+    private static final class Entry {
+        final int hash;
+        final XMLGrammarDescription desc;
+        final Grammar grammar;
+        final Entry next;
+
+        Entry(int hash, XMLGrammarDescription desc, Grammar grammar, Entry next) {
+            this.hash = hash;
+            this.desc = desc;
+            this.grammar = grammar;
+            this.next = next;
+        }
+    } // class Entry
+
+} // class ConcurrentXMLGrammarPool
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+
+/**
+ * A grammar pool which prevents concurrent validators from loading the
+ * same schema grammar more than once. It wraps another grammar pool,
+ * which stores the grammars.
+ * <p>
+ * When a schema grammar is not found in the underlying pool, the first
+ * thread asking for it is given <code>null</code> and is expected to load
+ * the grammar. Other threads asking for a grammar with the same target
+ * namespace wait until that thread passes the grammar to
+ * <code>cacheGrammars</code>, and then share it.
+ * If the loading thread calls <code>endLoading</code> without having
+ * provided the grammar, one of the waiting threads loads it instead.
+ * The schema validator and loader of Xerces provide the grammars they
+ * load, and call <code>endLoading</code>, as soon as they have finished
+ * loading them.
+ * <p>
+ * A thread never waits for a grammar which is being loaded by a thread
+ * which is, directly or indirectly, waiting for it. It waits no longer
+ * than the timeout given to the constructor, after which it loads the
+ * grammar itself.
+ * <p>
+ * Grammars other than schema grammars are looked up in the underlying
+ * pool without any coordination.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class SingleFlightXMLGrammarPool implements XMLGrammarPool {
+
+    //
+    // Constants
+    //
+
+    /** Default timeout, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 60000;
+
+    //
+    // Data
+    //
+
+    /** The underlying grammar pool. */
+    protected final XMLGrammarPool fGrammarPool;
+
+    /** Time to wait for a grammar loaded by another thread, in milliseconds. */
+    private final long fTimeout;
+
+    /** Grammars being loaded, keyed by description. */
+    private final Hashtable fLoads = new Hashtable();
+
+    /** Grammars being waited for, keyed by waiting thread. */
+    private final Hashtable fWaiting = new Hashtable();
+
+    /** Number of grammars which threads were asked to load. */
+    private long fLoadCount;
+
+    /** Number of grammars shared with waiting threads. */
+    private long fSharedCount;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a grammar pool wrapping the given grammar pool. */
+    public SingleFlightXMLGrammarPool(XMLGrammarPool grammarPool) {
+        this(grammarPool, DEFAULT_TIMEOUT);
+    } // <init>(XMLGrammarPool)
+
+    /**
+     * Constructs a grammar pool wrapping the given grammar pool.
+     *
+     * @param grammarPool The underlying grammar pool.
+     * @param timeout     The maximum time to wait for a grammar loaded
+     *                    by another thread, in milliseconds, or 0 to
+     *                    wait until it is loaded.
+     */
+    public SingleFlightXMLGrammarPool(XMLGrammarPool grammarPool, long timeout) {
+        if (grammarPool == null) {
+            throw new NullPointerException();
+        }
+        fGrammarPool = grammarPool;
+        fTimeout = timeout;
+    } // <init>(XMLGrammarPool,long)
+
+    //
+    // XMLGrammarPool methods
+    //
+
+    public Grammar[] retrieveInitialGrammarSet(String grammarType) {
+        return fGrammarPool.retrieveInitialGrammarSet(grammarType);
+    } // retrieveInitialGrammarSet(String):Grammar[]
+
+    /**
+     * Provides grammars to the underlying pool, and to the threads
+     * waiting for them.
+     */
+    public void cacheGrammars(String grammarType, Grammar[] grammars) {
+        fGrammarPool.cacheGrammars(grammarType, grammars);
+        if (XMLGrammarDescription.XML_SCHEMA.equals(grammarType)) {
+            synchronized (fLoads) {
+                for (int i = 0; i < grammars.length; ++i) {
+                    complete(grammars[i].getGrammarDescription(), grammars[i]);
+                }
+            }
+        }
+    } // cacheGrammars(String,Grammar[])
+
+    /**
+     * Returns the grammar for the given description from the underlying
+     * pool. If the underlying pool does not have a schema grammar which
+     * another thread is loading, waits for that grammar. Otherwise, if
+     * the grammar is not found, the current thread is expected to load
+     * it, and <code>null</code> is returned.
+     */
+    public Grammar retrieveGrammar(XMLGrammarDescription desc) {
+        Grammar grammar = fGrammarPool.retrieveGrammar(desc);
+        if (grammar != null || !(desc instanceof XSDDescription)) {
+            return grammar;
+        }
+        final Thread current = Thread.currentThread();
+        final long deadline = (fTimeout > 0) ? System.currentTimeMillis() + fTimeout : 0;
+        synchronized (fLoads) {
+            while (true) {
+                final Load load = (Load) fLoads.get(desc);
+                if (load == null) {
+                    // The grammar may have been provided since the first lookup.
+                    grammar = fGrammarPool.retrieveGrammar(desc);
+                    if (grammar == null) {
+                        fLoads.put(((XSDDescription) desc).makeClone(), new Load(current));
+                        ++fLoadCount;
+                    }
+                    return grammar;
+                }
+                if (isWaitingFor(load.owner, current)) {
+                    // The current thread is loading this grammar, or
+                    // waiting would never end.
+                    return null;
+                }
+                long wait = 0;
+                if (deadline != 0) {
+                    wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return null;
+                    }
+                }
+                fWaiting.put(current, load);
+                try {
+                    fLoads.wait(wait);
+                }
+                catch (InterruptedException e) {
+                    current.interrupt();
+                    return null;
+                }
+                finally {
+                    fWaiting.remove(current);
+                }
+                if (load.grammar != null) {
+                    ++fSharedCount;
+                    return load.grammar;
+                }
+            }
+        }
+    } // retrieveGrammar(XMLGrammarDescription):Grammar
+
+    public void lockPool() {
+        fGrammarPool.lockPool();
+    } // lockPool()
+
+    public void unlockPool() {
+        fGrammarPool.unlockPool();
+    } // unlockPool()
+
+    public void clear() {
+        fGrammarPool.clear();
+    } // clear()
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns true if the current thread has been asked to load
+     * grammars which it has neither provided nor released yet.
+     */
+    public boolean isLoading() {
+        final Thread current = Thread.currentThread();
+        synchronized (fLoads) {
+            for (Enumeration e = fLoads.elements(); e.hasMoreElements();) {
+                if (((Load) e.nextElement()).owner == current) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    } // isLoading():boolean
+
+    /**
+     * Releases the grammars which the current thread has been asked to
+     * load, and has not provided. The threads waiting for one of these
+     * grammars look it up again; one of them will load it.
+     */
+    public void endLoading() {
+        final Thread current = Thread.currentThread();
+        synchronized (fLoads) {
+            boolean released = false;
+            for (Enumeration e = fLoads.keys(); e.hasMoreElements();) {
+                final Object key = e.nextElement();
+                if (((Load) fLoads.get(key)).owner == current) {
+                    fLoads.remove(key);
+                    released = true;
+                }
+            }
+            if (released) {
+                fLoads.notifyAll();
+            }
+        }
+    } // endLoading()
+
+    /** Returns the underlying grammar pool. */
+    public XMLGrammarPool getGrammarPool() {
+        return fGrammarPool;
+    } // getGrammarPool():XMLGrammarPool
+
+    /** Returns the number of grammars which threads were asked to load. */
+    public long getLoadCount() {
+        synchronized (fLoads) {
+            return fLoadCount;
+        }
+    } // getLoadCount():long
+
+    /** Returns the number of times a thread received a grammar loaded by another thread. */
+    public long getSharedCount() {
+        synchronized (fLoads) {
+            return fSharedCount;
+        }
+    } // getSharedCount():long
+
+    //
+    // Private methods
+    //
+
+    /** Completes the load of the given grammar, if any. */
+    private void complete(XMLGrammarDescription desc, Grammar grammar) {
+        if (desc instanceof XSDDescription) {
+            final Load load = (Load) fLoads.remove(desc);
+            if (load != null) {
+                load.grammar = grammar;
+                fLoads.notifyAll();
+            }
+        }
+    } // complete(XMLGrammarDescription,Grammar)
+
+    /**
+     * Returns true if the given thread is the current thread, or is
+     * waiting for a grammar which the current thread, or a thread
+     * waiting for it, is loading.
+     */
+    private boolean isWaitingFor(Thread thread, Thread current) {
+        // Each thread waits for at most one grammar, so the chain of
+        // waiting threads is followed until it ends or loops.
+        for (int i = fWaiting.size(); thread != null && i >= 0; --i) {
+            if (thread == current) {
+                return true;
+            }
+            final Load load = (Load) fWaiting.get(thread);
+            thread = (load != null) ? load.owner : null;
+        }
+        return false;
+    } // isWaitingFor(Thread,Thread):boolean
+
+    //
+    // Classes
+    //
+
+    /** A grammar being loaded. */
+    private static final class Load {
+        final Thread owner;
+        Grammar grammar;
+
+        Load(Thread owner) {
+            this.owner = owner;
+        }
+    } // class Load
+
+} // class SingleFlightXMLGrammarPool
@@ -17,6 +17,8 @@
 
 package org.apache.xerces.util;
 
+import java.io.Serializable;
+
 /**
  * This class is an unsynchronized hash table primary used for String
  * to Object mapping.
@@ -26,7 +28,9 @@ package org.apache.xerces.util;
  * @author Elena Litani
  * @version $Id$
  */
-public class SymbolHash {
+public class SymbolHash implements Serializable {
+
+    private static final long serialVersionUID = -18753683439244442L;
 
     //
     // Constants
@@ -293,7 +297,10 @@ public class SymbolHash {
      * This class is a key table entry. Each entry acts as a node
      * in a linked list.
      */
-    protected static final class Entry {
+    protected static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = -6724152009732385655L;
+
         // key/value
         public Object key;
         public Object value;
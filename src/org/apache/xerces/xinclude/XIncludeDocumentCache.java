@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.xinclude;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+
+import org.apache.xerces.xni.parser.XMLInputSource;
+
+/**
+ * A bounded cache of the documents included with parse="xml", which
+ * may be shared by parsers so that a document included over and over
+ * is parsed once and replayed from a compact record of its XNI events
+ * afterwards. The cache is set on a parser with the property
+ * <code>http://apache.org/xml/properties/xinclude/document-cache</code>.
+ * <p>
+ * Each entry is tagged with the version of the document it was recorded
+ * from, and is only replayed while the document has the same version.
+ * By default the version of a local file is its modification time and
+ * length, and the version of a document retrieved over HTTP is its
+ * <code>ETag</code> or <code>Last-Modified</code> header, obtained with a
+ * <code>HEAD</code> request. Documents without a version, for instance
+ * those returned as streams by an entity resolver, are not cached.
+ * Applications which know better, such as an entity resolver reading
+ * documents from a repository, can override {@link #getVersion}.
+ * <p>
+ * Only the included documents of non-validating parsers are cached,
+ * and only documents read from a single entity: a document with an
+ * external DTD subset or a reference to an external entity is parsed
+ * every time. Documents included with an <code>xpointer</code> attribute
+ * are parsed every time as well. The recorded events are those of the
+ * document as it was scanned; the nested includes, base URI and language
+ * fixup of a replayed document are processed again each time it is included.
+ * <p>
+ * The cache holds at most a given number of documents and at most a
+ * given total estimated size. When adding a document would exceed either
+ * bound, the least recently used documents are evicted. No single document
+ * larger than a quarter of the maximum size is cached. The cache is safe
+ * for use by multiple threads.
+ *
+ * @version $Id$
+ */
+public class XIncludeDocumentCache {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of cached documents. */
+    public static final int DEFAULT_MAX_DOCUMENTS = 256;
+
+    /** Default maximum total estimated size of the cached documents. */
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    //
+    // Data
+    //
+
+    /** Maximum number of cached documents. */
+    private final int fMaxDocuments;
+
+    /** Maximum total estimated size of the cached documents. */
+    private final long fMaxSize;
+
+    /** Map from key to entry. */
+    private final HashMap fEntries;
+
+    /** Sentinel of the list of entries in order of use, most recent first. */
+    private final Entry fHead;
+
+    /** The total estimated size of the cached documents. */
+    private long fSize;
+
+    /** Number of lookups which found a current document. */
+    private long fHits;
+
+    /** Number of lookups which did not find a current document. */
+    private long fMisses;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cache of the default size. */
+    public XIncludeDocumentCache() {
+        this(DEFAULT_MAX_DOCUMENTS, DEFAULT_MAX_SIZE);
+    } // <init>()
+
+    /**
+     * Constructs a cache holding at most the given number of documents,
+     * whose estimated sizes add up to at most the given size.
+     *
+     * @param maxDocuments The maximum number of documents.
+     * @param maxSize      The maximum total estimated size, in bytes.
+     */
+    public XIncludeDocumentCache(int maxDocuments, long maxSize) {
+        fMaxDocuments = (maxDocuments > 0) ? maxDocuments : DEFAULT_MAX_DOCUMENTS;
+        fMaxSize = (maxSize > 0) ? maxSize : DEFAULT_MAX_SIZE;
+        fEntries = new HashMap();
+        fHead = new Entry(null);
+        fHead.prev = fHead;
+        fHead.next = fHead;
+    } // <init>(int,long)
+
+    //
+    // Public methods
+    //
+
+    /** Returns the number of cached documents. */
+    public synchronized int size() {
+        return fEntries.size();
+    }
+
+    /** Returns the total estimated size of the cached documents, in bytes. */
+    public synchronized long getSize() {
+        return fSize;
+    }
+
+    /** Returns the number of includes which replayed a cached document. */
+    public synchronized long getHitCount() {
+        return fHits;
+    }
+
+    /** Returns the number of includes of cacheable documents which were parsed. */
+    public synchronized long getMissCount() {
+        return fMisses;
+    }
+
+    /** Removes all cached documents. */
+    public synchronized void clear() {
+        fEntries.clear();
+        fHead.prev = fHead;
+        fHead.next = fHead;
+        fSize = 0;
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Returns the current version of the document to be read from the
+     * given source, or null if the document should not be cached. Two
+     * versions are compared with <code>equals</code>; a cached document
+     * is replayed only if its version is the same as the current version.
+     * <p>
+     * This implementation returns null for sources which supply a byte
+     * or character stream. Otherwise it returns the modification time
+     * and length of a file, or the entity tag or modification time of
+     * an HTTP resource, and null for other kinds of URL.
+     *
+     * @param source           The source of the document, as returned by
+     *                         the entity resolver.
+     * @param expandedSystemId The expanded system identifier of the source.
+     *
+     * @throws IOException if the version cannot be determined. The
+     *                     document is then parsed and not cached.
+     */
+    protected String getVersion(XMLInputSource source, String expandedSystemId)
+        throws IOException {
+        if (source.getByteStream() != null || source.getCharacterStream() != null) {
+            return null;
+        }
+        URL url = new URL(expandedSystemId);
+        String protocol = url.getProtocol();
+        if (protocol.equals("file")) {
+            File file;
+            try {
+                file = new File(new URI(url.toExternalForm()));
+            }
+            catch (URISyntaxException e) {
+                return null;
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+            return file.isFile() ? file.lastModified() + "/" + file.length() : null;
+        }
+        if (protocol.equals("http") || protocol.equals("https")) {
+            URLConnection connection = url.openConnection();
+            if (!(connection instanceof HttpURLConnection)) {
+                return null;
+            }
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            try {
+                httpConnection.setRequestMethod("HEAD");
+                if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                String tag = httpConnection.getHeaderField("ETag");
+                if (tag != null) {
+                    return tag;
+                }
+                long lastModified = httpConnection.getLastModified();
+                return (lastModified != 0) ? String.valueOf(lastModified) : null;
+            }
+            finally {
+                httpConnection.disconnect();
+            }
+        }
+        return null;
+    } // getVersion(XMLInputSource,String):String
+
+    //
+    // Package methods
+    //
+
+    /**
+     * Returns the cached events of the document with the given key if
+     * they were recorded from the given version of the document, or null.
+     * An entry recorded from another version is removed.
+     */
+    synchronized XIncludeEventBuffer get(String key, String version) {
+        Entry entry = (Entry) fEntries.get(key);
+        if (entry != null) {
+            unlink(entry);
+            if (version.equals(entry.buffer.getVersion())) {
+                ++fHits;
+                linkFirst(entry);
+                return entry.buffer;
+            }
+            fEntries.remove(key);
+            fSize -= entry.size;
+        }
+        ++fMisses;
+        return null;
+    } // get(String,String):XIncludeEventBuffer
+
+    /**
+     * Caches the events of a document, evicting the least recently used
+     * documents as needed.
+     */
+    synchronized void put(XIncludeEventBuffer buffer) {
+        Entry entry = new Entry(buffer);
+        if (entry.size > getMaxDocumentSize()) {
+            return;
+        }
+        Entry previous = (Entry) fEntries.put(buffer.getKey(), entry);
+        if (previous != null) {
+            unlink(previous);
+            fSize -= previous.size;
+        }
+        linkFirst(entry);
+        fSize += entry.size;
+        while (fEntries.size() > fMaxDocuments || fSize > fMaxSize) {
+            Entry eldest = fHead.prev;
+            unlink(eldest);
+            fEntries.remove(eldest.buffer.getKey());
+            fSize -= eldest.size;
+        }
+    } // put(XIncludeEventBuffer)
+
+    /** Returns the maximum estimated size of a cached document. */
+    long getMaxDocumentSize() {
+        return fMaxSize / 4;
+    }
+
+    //
+    // Private methods
+    //
+
+    private void linkFirst(Entry entry) {
+        entry.next = fHead.next;
+        entry.prev = fHead;
+        fHead.next.prev = entry;
+        fHead.next = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+    }
+
+    //
+    // Classes
+    //
+
+    /** A cached document, linked in order of use. */
+    private static final class Entry {
+        final XIncludeEventBuffer buffer;
+        final long size;
+        Entry prev;
+        Entry next;
+        Entry(XIncludeEventBuffer buffer) {
+            this.buffer = buffer;
+            this.size = (buffer != null) ? buffer.getSize() : 0;
+        }
+    }
+
+} // class XIncludeDocumentCache
@@ -0,0 +1,760 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.xinclude;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+
+import org.apache.xerces.util.AugmentationsImpl;
+import org.apache.xerces.util.XMLAttributesImpl;
+import org.apache.xerces.util.XMLResourceIdentifierImpl;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLInputSource;
+
+/**
+ * A compact record of the events received by the XInclude handler of an
+ * included document, which can be replayed into the handler of a later
+ * include of the same document instead of parsing the document again.
+ * <p>
+ * The events are kept in parallel arrays: a code for each event, the
+ * location and the character data offsets of the events as integers,
+ * the character data of all the events in one array, and the names,
+ * attributes and other values of the events as objects. The namespace
+ * declarations of each element are recorded with it, so that they can
+ * be pushed onto the namespace context as the scanner does. The line
+ * and column of each event are recorded for the messages of errors
+ * reported while a document is replayed, but not its character offset.
+ * <p>
+ * A document is recorded only if it is read from a single entity: the
+ * recording is abandoned if the document has an external DTD subset or
+ * refers to an external entity, or if it grows beyond the given size.
+ * Once it is complete a buffer is never modified, so it may be replayed
+ * by several parsers at the same time.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class XIncludeEventBuffer {
+
+    //
+    // Constants
+    //
+
+    // event codes
+    private static final byte START_DOCUMENT = 0;
+    private static final byte XML_DECL = 1;
+    private static final byte DOCTYPE_DECL = 2;
+    private static final byte COMMENT = 3;
+    private static final byte PROCESSING_INSTRUCTION = 4;
+    private static final byte START_ELEMENT = 5;
+    private static final byte EMPTY_ELEMENT = 6;
+    private static final byte END_ELEMENT = 7;
+    private static final byte START_GENERAL_ENTITY = 8;
+    private static final byte TEXT_DECL = 9;
+    private static final byte END_GENERAL_ENTITY = 10;
+    private static final byte CHARACTERS = 11;
+    private static final byte IGNORABLE_WHITESPACE = 12;
+    private static final byte START_CDATA = 13;
+    private static final byte END_CDATA = 14;
+    private static final byte END_DOCUMENT = 15;
+    private static final byte NOTATION_DECL = 16;
+    private static final byte UNPARSED_ENTITY_DECL = 17;
+
+    /** Estimated size of a reference in the object array. */
+    private static final int REFERENCE_SIZE = 8;
+
+    /** Estimated size of an object created for the record. */
+    private static final int OBJECT_SIZE = 48;
+
+    //
+    // Data
+    //
+
+    /** The key of the document in the document cache. */
+    private final String fKey;
+
+    /** The version of the document when it was recorded. */
+    private final String fVersion;
+
+    /** The maximum estimated size of the buffer. */
+    private final long fLimit;
+
+    /** The event codes. */
+    private byte[] fEvents = new byte[64];
+    private int fEventCount;
+
+    /** The lines and columns of the events, and offsets and counts of their data. */
+    private int[] fInts = new int[256];
+    private int fIntCount;
+
+    /** The character data of the events. */
+    private char[] fChars = new char[1024];
+    private int fCharCount;
+
+    /** The names, attributes and other values of the events. */
+    private Object[] fObjects = new Object[256];
+    private int fObjectCount;
+
+    /** The estimated size of the objects created for the record. */
+    private long fObjectSize;
+
+    /** The names recorded, by raw name, so that equal names are shared. */
+    private HashMap fNames = new HashMap();
+
+    /** The encoding and XML version of the document. */
+    private String fEncoding;
+    private String fXMLVersion;
+
+    /** The locator of the document while it is recorded. */
+    private XMLLocator fLocator;
+
+    /** True once the end of the document has been recorded. */
+    private boolean fComplete;
+
+    /** Temporary name of an attribute. */
+    private final QName fAttributeName = new QName();
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a buffer for the document with the given key and
+     * version, which is abandoned if its estimated size exceeds the
+     * given limit.
+     */
+    XIncludeEventBuffer(String key, String version, long limit) {
+        fKey = key;
+        fVersion = version;
+        fLimit = limit;
+    }
+
+    //
+    // Recording methods
+    //
+
+    void startDocument(XMLLocator locator, String encoding, Augmentations augs) {
+        fLocator = locator;
+        if (addEvent(START_DOCUMENT)) {
+            addObject(encoding);
+            addAugmentations(augs);
+        }
+    }
+
+    void xmlDecl(String version, String encoding, String standalone, Augmentations augs) {
+        if (addEvent(XML_DECL)) {
+            addObject(version);
+            addObject(encoding);
+            addObject(standalone);
+            addAugmentations(augs);
+        }
+    }
+
+    void doctypeDecl(String rootElement, String publicId, String systemId, Augmentations augs) {
+        // declarations read from an external subset could change
+        // without the document changing
+        if (systemId != null) {
+            abandon();
+        }
+        else if (addEvent(DOCTYPE_DECL)) {
+            addObject(rootElement);
+            addObject(publicId);
+            addAugmentations(augs);
+        }
+    }
+
+    void comment(XMLString text, Augmentations augs) {
+        if (addEvent(COMMENT)) {
+            addString(text);
+            addAugmentations(augs);
+        }
+    }
+
+    void processingInstruction(String target, XMLString data, Augmentations augs) {
+        if (addEvent(PROCESSING_INSTRUCTION)) {
+            addObject(target);
+            addString(data);
+            addAugmentations(augs);
+        }
+    }
+
+    void startElement(QName element, XMLAttributes attributes,
+            NamespaceContext namespaceContext, Augmentations augs) {
+        if (addEvent(START_ELEMENT)) {
+            addElement(element, attributes, namespaceContext, augs);
+        }
+    }
+
+    void emptyElement(QName element, XMLAttributes attributes,
+            NamespaceContext namespaceContext, Augmentations augs) {
+        if (addEvent(EMPTY_ELEMENT)) {
+            addElement(element, attributes, namespaceContext, augs);
+        }
+    }
+
+    void endElement(QName element, Augmentations augs) {
+        if (addEvent(END_ELEMENT)) {
+            addObject(getName(element));
+            addAugmentations(augs);
+        }
+    }
+
+    void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+            String encoding, Augmentations augs) {
+        if (isExternal(identifier)) {
+            abandon();
+        }
+        else if (addEvent(START_GENERAL_ENTITY)) {
+            addObject(name);
+            addObject(identifier != null ? copyIdentifier(identifier) : null);
+            addObject(encoding);
+            addAugmentations(augs);
+        }
+    }
+
+    void textDecl(String version, String encoding, Augmentations augs) {
+        if (addEvent(TEXT_DECL)) {
+            addObject(version);
+            addObject(encoding);
+            addAugmentations(augs);
+        }
+    }
+
+    void endGeneralEntity(String name, Augmentations augs) {
+        if (addEvent(END_GENERAL_ENTITY)) {
+            addObject(name);
+            addAugmentations(augs);
+        }
+    }
+
+    void characters(XMLString text, Augmentations augs) {
+        if (addEvent(CHARACTERS)) {
+            addString(text);
+            addAugmentations(augs);
+        }
+    }
+
+    void ignorableWhitespace(XMLString text, Augmentations augs) {
+        if (addEvent(IGNORABLE_WHITESPACE)) {
+            addString(text);
+            addAugmentations(augs);
+        }
+    }
+
+    void startCDATA(Augmentations augs) {
+        if (addEvent(START_CDATA)) {
+            addAugmentations(augs);
+        }
+    }
+
+    void endCDATA(Augmentations augs) {
+        if (addEvent(END_CDATA)) {
+            addAugmentations(augs);
+        }
+    }
+
+    void endDocument(Augmentations augs) {
+        if (addEvent(END_DOCUMENT)) {
+            addAugmentations(augs);
+            fEncoding = fLocator.getEncoding();
+            fXMLVersion = fLocator.getXMLVersion();
+            fComplete = true;
+        }
+        fLocator = null;
+        fNames = null;
+    }
+
+    void startParameterEntity(XMLResourceIdentifier identifier) {
+        if (isExternal(identifier)) {
+            abandon();
+        }
+    }
+
+    void notationDecl(String name, XMLResourceIdentifier identifier, Augmentations augs) {
+        if (addEvent(NOTATION_DECL)) {
+            addObject(name);
+            addObject(copyIdentifier(identifier));
+            addAugmentations(augs);
+        }
+    }
+
+    void unparsedEntityDecl(String name, XMLResourceIdentifier identifier,
+            String notation, Augmentations augs) {
+        if (addEvent(UNPARSED_ENTITY_DECL)) {
+            addObject(name);
+            addObject(copyIdentifier(identifier));
+            addObject(notation);
+            addAugmentations(augs);
+        }
+    }
+
+    //
+    // Package methods
+    //
+
+    /** Returns the key of the document in the document cache. */
+    String getKey() {
+        return fKey;
+    }
+
+    /** Returns the version of the document when it was recorded. */
+    String getVersion() {
+        return fVersion;
+    }
+
+    /**
+     * Returns true if the whole document was recorded, in which case
+     * the arrays of the buffer are trimmed to their contents.
+     */
+    boolean isComplete() {
+        if (fComplete && fEvents.length != fEventCount) {
+            byte[] events = new byte[fEventCount];
+            System.arraycopy(fEvents, 0, events, 0, fEventCount);
+            fEvents = events;
+            int[] ints = new int[fIntCount];
+            System.arraycopy(fInts, 0, ints, 0, fIntCount);
+            fInts = ints;
+            char[] chars = new char[fCharCount];
+            System.arraycopy(fChars, 0, chars, 0, fCharCount);
+            fChars = chars;
+            Object[] objects = new Object[fObjectCount];
+            System.arraycopy(fObjects, 0, objects, 0, fObjectCount);
+            fObjects = objects;
+        }
+        return fComplete;
+    }
+
+    /** Returns the estimated size of the buffer in bytes. */
+    long getSize() {
+        return fEventCount + ((long) fIntCount << 2) + ((long) fCharCount << 1)
+            + (long) fObjectCount * REFERENCE_SIZE + fObjectSize;
+    }
+
+    /**
+     * Replays the events of the document into the given handler, as if
+     * the document was parsed from the given source.
+     *
+     * @param handler          The XInclude handler of the included document.
+     * @param source           The source of the included document.
+     * @param expandedSystemId The expanded system identifier of the source.
+     * @param namespaceContext The namespace context of the pipeline.
+     */
+    void replay(XIncludeHandler handler, XMLInputSource source,
+            String expandedSystemId, NamespaceContext namespaceContext)
+        throws XNIException {
+
+        final byte[] events = fEvents;
+        final int[] ints = fInts;
+        final char[] chars = fChars;
+        final Object[] objects = fObjects;
+        final Locator locator = new Locator(source.getPublicId(), source.getSystemId(),
+            source.getBaseSystemId(), expandedSystemId, fEncoding, fXMLVersion);
+        final QName element = new QName();
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        final XMLString text = new XMLString();
+
+        int i = 0;
+        int o = 0;
+        for (int e = 0; e < fEventCount; ++e) {
+            locator.fLineNumber = ints[i++];
+            locator.fColumnNumber = ints[i++];
+            switch (events[e]) {
+                case START_DOCUMENT: {
+                    String encoding = (String) objects[o++];
+                    handler.startDocument(locator, encoding, namespaceContext,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+                case XML_DECL: {
+                    String version = (String) objects[o++];
+                    String encoding = (String) objects[o++];
+                    String standalone = (String) objects[o++];
+                    handler.xmlDecl(version, encoding, standalone,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+                case DOCTYPE_DECL: {
+                    String rootElement = (String) objects[o++];
+                    String publicId = (String) objects[o++];
+                    handler.doctypeDecl(rootElement, publicId, null,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+                case COMMENT: {
+                    text.setValues(chars, ints[i], ints[i + 1]);
+                    i += 2;
+                    handler.comment(text, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case PROCESSING_INSTRUCTION: {
+                    String target = (String) objects[o++];
+                    text.setValues(chars, ints[i], ints[i + 1]);
+                    i += 2;
+                    handler.processingInstruction(target, text,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+                case START_ELEMENT:
+                case EMPTY_ELEMENT: {
+                    element.setValues((QName) objects[o++]);
+                    attributes.removeAllAttributes();
+                    int length = ints[i++];
+                    for (int a = 0; a < length; ++a) {
+                        QName name = (QName) objects[o++];
+                        String type = (String) objects[o++];
+                        String value = (String) objects[o++];
+                        attributes.addAttributeNS(name, type, value);
+                        attributes.setNonNormalizedValue(a, (String) objects[o++]);
+                        attributes.setSpecified(a, objects[o++] == Boolean.TRUE);
+                        Object augs = objects[o++];
+                        if (augs != null) {
+                            copyItems((Augmentations) augs, attributes.getAugmentations(a));
+                        }
+                    }
+                    namespaceContext.pushContext();
+                    int count = ints[i++];
+                    for (int n = 0; n < count; ++n) {
+                        String prefix = (String) objects[o++];
+                        String uri = (String) objects[o++];
+                        namespaceContext.declarePrefix(prefix, uri);
+                    }
+                    if (events[e] == START_ELEMENT) {
+                        handler.startElement(element, attributes,
+                            copyAugmentations(objects[o++]));
+                    }
+                    else {
+                        handler.emptyElement(element, attributes,
+                            copyAugmentations(objects[o++]));
+                        namespaceContext.popContext();
+                    }
+                    break;
+                }
+                case END_ELEMENT: {
+                    element.setValues((QName) objects[o++]);
+                    handler.endElement(element, copyAugmentations(objects[o++]));
+                    namespaceContext.popContext();
+                    break;
+                }
+                case START_GENERAL_ENTITY: {
+                    String name = (String) objects[o++];
+                    XMLResourceIdentifier identifier = (XMLResourceIdentifier) objects[o++];
+                    String encoding = (String) objects[o++];
+                    handler.startGeneralEntity(name, identifier, encoding,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+                case TEXT_DECL: {
+                    String version = (String) objects[o++];
+                    String encoding = (String) objects[o++];
+                    handler.textDecl(version, encoding, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case END_GENERAL_ENTITY: {
+                    String name = (String) objects[o++];
+                    handler.endGeneralEntity(name, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case CHARACTERS: {
+                    text.setValues(chars, ints[i], ints[i + 1]);
+                    i += 2;
+                    handler.characters(text, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case IGNORABLE_WHITESPACE: {
+                    text.setValues(chars, ints[i], ints[i + 1]);
+                    i += 2;
+                    handler.ignorableWhitespace(text, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case START_CDATA: {
+                    handler.startCDATA(copyAugmentations(objects[o++]));
+                    break;
+                }
+                case END_CDATA: {
+                    handler.endCDATA(copyAugmentations(objects[o++]));
+                    break;
+                }
+                case END_DOCUMENT: {
+                    handler.endDocument(copyAugmentations(objects[o++]));
+                    break;
+                }
+                case NOTATION_DECL: {
+                    String name = (String) objects[o++];
+                    XMLResourceIdentifier identifier = (XMLResourceIdentifier) objects[o++];
+                    handler.notationDecl(name, identifier, copyAugmentations(objects[o++]));
+                    break;
+                }
+                case UNPARSED_ENTITY_DECL: {
+                    String name = (String) objects[o++];
+                    XMLResourceIdentifier identifier = (XMLResourceIdentifier) objects[o++];
+                    String notation = (String) objects[o++];
+                    handler.unparsedEntityDecl(name, identifier, notation,
+                        copyAugmentations(objects[o++]));
+                    break;
+                }
+            }
+        }
+    } // replay(XIncludeHandler,XMLInputSource,String,NamespaceContext)
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Adds an event at the current location and returns true, or returns
+     * false if the recording has been abandoned.
+     */
+    private boolean addEvent(byte event) {
+        if (fEvents == null) {
+            return false;
+        }
+        if (getSize() > fLimit) {
+            abandon();
+            return false;
+        }
+        if (fEventCount == fEvents.length) {
+            byte[] events = new byte[fEventCount << 1];
+            System.arraycopy(fEvents, 0, events, 0, fEventCount);
+            fEvents = events;
+        }
+        fEvents[fEventCount++] = event;
+        addInt(fLocator.getLineNumber());
+        addInt(fLocator.getColumnNumber());
+        return true;
+    }
+
+    private void addElement(QName element, XMLAttributes attributes,
+            NamespaceContext namespaceContext, Augmentations augs) {
+        addObject(getName(element));
+        int length = attributes.getLength();
+        addInt(length);
+        for (int i = 0; i < length; ++i) {
+            attributes.getName(i, fAttributeName);
+            String value = attributes.getValue(i);
+            String nonNormalizedValue = attributes.getNonNormalizedValue(i);
+            addObject(getName(fAttributeName));
+            addObject(attributes.getType(i));
+            addObject(value);
+            fObjectSize += OBJECT_SIZE + (value.length() << 1);
+            if (nonNormalizedValue != null && !nonNormalizedValue.equals(value)) {
+                addObject(nonNormalizedValue);
+                fObjectSize += OBJECT_SIZE + (nonNormalizedValue.length() << 1);
+            }
+            else {
+                addObject(value);
+            }
+            addObject(attributes.isSpecified(i) ? Boolean.TRUE : Boolean.FALSE);
+            addAugmentations(attributes.getAugmentations(i));
+        }
+        int count = namespaceContext.getDeclaredPrefixCount();
+        addInt(count);
+        for (int i = 0; i < count; ++i) {
+            String prefix = namespaceContext.getDeclaredPrefixAt(i);
+            addObject(prefix);
+            addObject(namespaceContext.getURI(prefix));
+        }
+        addAugmentations(augs);
+    }
+
+    /**
+     * Returns a copy of the given name, shared with the earlier
+     * occurrences of the name in the record.
+     */
+    private QName getName(QName name) {
+        QName copy = (QName) fNames.get(name.rawname);
+        if (copy == null || copy.uri != name.uri ||
+            copy.localpart != name.localpart || copy.prefix != name.prefix) {
+            copy = new QName(name);
+            fNames.put(copy.rawname, copy);
+            fObjectSize += OBJECT_SIZE;
+        }
+        return copy;
+    }
+
+    private XMLResourceIdentifier copyIdentifier(XMLResourceIdentifier identifier) {
+        fObjectSize += OBJECT_SIZE;
+        return new XMLResourceIdentifierImpl(identifier.getPublicId(),
+            identifier.getLiteralSystemId(), identifier.getBaseSystemId(),
+            identifier.getExpandedSystemId(), identifier.getNamespace());
+    }
+
+    private void addString(XMLString text) {
+        if (fCharCount + text.length > fChars.length) {
+            char[] chars = new char[Math.max(fChars.length << 1, fCharCount + text.length)];
+            System.arraycopy(fChars, 0, chars, 0, fCharCount);
+            fChars = chars;
+        }
+        System.arraycopy(text.ch, text.offset, fChars, fCharCount, text.length);
+        addInt(fCharCount);
+        addInt(text.length);
+        fCharCount += text.length;
+    }
+
+    private void addInt(int value) {
+        if (fIntCount == fInts.length) {
+            int[] ints = new int[fIntCount << 1];
+            System.arraycopy(fInts, 0, ints, 0, fIntCount);
+            fInts = ints;
+        }
+        fInts[fIntCount++] = value;
+    }
+
+    private void addObject(Object value) {
+        if (fObjectCount == fObjects.length) {
+            Object[] objects = new Object[fObjectCount << 1];
+            System.arraycopy(fObjects, 0, objects, 0, fObjectCount);
+            fObjects = objects;
+        }
+        fObjects[fObjectCount++] = value;
+    }
+
+    /**
+     * Adds a copy of the given augmentations, or null if there are no
+     * augmentations, since the sender may reuse them.
+     */
+    private void addAugmentations(Augmentations augs) {
+        Augmentations copy = null;
+        if (augs != null) {
+            Enumeration keys = augs.keys();
+            while (keys.hasMoreElements()) {
+                String key = (String) keys.nextElement();
+                if (copy == null) {
+                    copy = new AugmentationsImpl();
+                    fObjectSize += OBJECT_SIZE;
+                }
+                copy.putItem(key, augs.getItem(key));
+            }
+        }
+        addObject(copy);
+    }
+
+    /** Abandons the recording and releases the recorded events. */
+    private void abandon() {
+        fEvents = null;
+        fInts = null;
+        fChars = null;
+        fObjects = null;
+        fEventCount = 0;
+        fIntCount = 0;
+        fCharCount = 0;
+        fObjectCount = 0;
+        fNames = null;
+    }
+
+    /** Returns true if the identifier refers to an external entity. */
+    private static boolean isExternal(XMLResourceIdentifier identifier) {
+        return identifier != null && identifier.getLiteralSystemId() != null;
+    }
+
+    /**
+     * Returns a copy of recorded augmentations, since the handler
+     * may add items to the augmentations it receives.
+     */
+    private static Augmentations copyAugmentations(Object augs) {
+        if (augs == null) {
+            return null;
+        }
+        Augmentations copy = new AugmentationsImpl();
+        copyItems((Augmentations) augs, copy);
+        return copy;
+    }
+
+    private static void copyItems(Augmentations from, Augmentations to) {
+        Enumeration keys = from.keys();
+        while (keys.hasMoreElements()) {
+            String key = (String) keys.nextElement();
+            to.putItem(key, from.getItem(key));
+        }
+    }
+
+    //
+    // Classes
+    //
+
+    /**
+     * The locator of a replayed document, which reports the recorded
+     * line and column of each event.
+     */
+    private static final class Locator implements XMLLocator {
+
+        private final String fPublicId;
+        private final String fLiteralSystemId;
+        private final String fBaseSystemId;
+        private final String fExpandedSystemId;
+        private final String fEncoding;
+        private final String fXMLVersion;
+        int fLineNumber;
+        int fColumnNumber;
+
+        Locator(String publicId, String literalSystemId, String baseSystemId,
+                String expandedSystemId, String encoding, String xmlVersion) {
+            fPublicId = publicId;
+            fLiteralSystemId = literalSystemId;
+            fBaseSystemId = baseSystemId;
+            fExpandedSystemId = expandedSystemId;
+            fEncoding = encoding;
+            fXMLVersion = xmlVersion;
+        }
+
+        public String getPublicId() {
+            return fPublicId;
+        }
+
+        public String getLiteralSystemId() {
+            return fLiteralSystemId;
+        }
+
+        public String getBaseSystemId() {
+            return fBaseSystemId;
+        }
+
+        public String getExpandedSystemId() {
+            return fExpandedSystemId;
+        }
+
+        public int getLineNumber() {
+            return fLineNumber;
+        }
+
+        public int getColumnNumber() {
+            return fColumnNumber;
+        }
+
+        public int getCharacterOffset() {
+            return -1;
+        }
+
+        public String getEncoding() {
+            return fEncoding;
+        }
+
+        public String getXMLVersion() {
+            return fXMLVersion;
+        }
+
+    } // class Locator
+
+} // class XIncludeEventBuffer
@@ -21,6 +21,7 @@ import java.io.CharConversionException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Stack;
 import java.util.StringTokenizer;
@@ -63,6 +64,7 @@ import org.apache.xerces.xni.parser.XMLDocumentSource;
 import org.apache.xerces.xni.parser.XMLEntityResolver;
 import org.apache.xerces.xni.parser.XMLInputSource;
 import org.apache.xerces.xni.parser.XMLParserConfiguration;
+import org.apache.xerces.xni.parser.XMLPullParserConfiguration;
 import org.apache.xerces.xpointer.XPointerHandler;
 import org.apache.xerces.xpointer.XPointerProcessor;
 
@@ -96,6 +98,7 @@ import org.apache.xerces.xpointer.XPointerProcessor;
  * Optional property:
  * <ul>
  *  <li>http://apache.org/xml/properties/input-buffer-size</li>
+ *  <li>http://apache.org/xml/properties/xinclude/document-cache</li>
  * </ul>
  * 
  * Furthermore, the <code>NamespaceContext</code> used in the pipeline is required
@@ -191,6 +194,34 @@ public class XIncludeHandler
     protected static final String DYNAMIC_VALIDATION = 
         Constants.XERCES_FEATURE_PREFIX + Constants.DYNAMIC_VALIDATION_FEATURE;
 
+    /** Feature identifier: namespaces. */
+    protected static final String NAMESPACES =
+        Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE;
+    
+    /** Feature identifier: continue after fatal error. */
+    protected static final String CONTINUE_AFTER_FATAL_ERROR =
+        Constants.XERCES_FEATURE_PREFIX + Constants.CONTINUE_AFTER_FATAL_ERROR_FEATURE;
+    
+    /** Feature identifier: disallow doctype declaration. */
+    protected static final String DISALLOW_DOCTYPE_DECL =
+        Constants.XERCES_FEATURE_PREFIX + Constants.DISALLOW_DOCTYPE_DECL_FEATURE;
+    
+    /** Feature identifier: notify character references. */
+    protected static final String NOTIFY_CHAR_REFS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_CHAR_REFS_FEATURE;
+    
+    /** Feature identifier: notify built-in references. */
+    protected static final String NOTIFY_BUILTIN_REFS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_BUILTIN_REFS_FEATURE;
+    
+    /** Feature identifier: coalesce characters. */
+    protected static final String COALESCE_CHARACTERS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.COALESCE_CHARACTERS_FEATURE;
+    
+    /** Feature identifier: standard URI conformant. */
+    protected static final String STANDARD_URI_CONFORMANT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.STANDARD_URI_CONFORMANT_FEATURE;
+    
     /** Feature identifier: allow notation and unparsed entity events to be sent out of order. */
     protected static final String ALLOW_UE_AND_NOTATION_EVENTS =
         Constants.SAX_FEATURE_PREFIX
@@ -204,6 +235,10 @@ public class XIncludeHandler
     protected static final String XINCLUDE_FIXUP_LANGUAGE =
         Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_FIXUP_LANGUAGE_FEATURE;
     
+    /** Feature identifier: stop after the fragment an XPointer identifies. */
+    protected static final String XINCLUDE_STOP_AFTER_FRAGMENT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_STOP_AFTER_FRAGMENT_FEATURE;
+    
     /** Property identifier: JAXP schema language. */
     protected static final String JAXP_SCHEMA_LANGUAGE =
         Constants.JAXP_PROPERTY_PREFIX + Constants.SCHEMA_LANGUAGE;
@@ -228,22 +263,33 @@ public class XIncludeHandler
     protected static final String BUFFER_SIZE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.BUFFER_SIZE_PROPERTY;
     
+    /** property identifier: XInclude document cache. */
+    protected static final String DOCUMENT_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XINCLUDE_DOCUMENT_CACHE_PROPERTY;
+    
     protected static final String PARSER_SETTINGS = 
         Constants.XERCES_FEATURE_PREFIX + Constants.PARSER_SETTINGS;
 
     /** Recognized features. */
     private static final String[] RECOGNIZED_FEATURES =
-        { ALLOW_UE_AND_NOTATION_EVENTS, XINCLUDE_FIXUP_BASE_URIS, XINCLUDE_FIXUP_LANGUAGE };
+        { ALLOW_UE_AND_NOTATION_EVENTS, XINCLUDE_FIXUP_BASE_URIS, XINCLUDE_FIXUP_LANGUAGE,
+          XINCLUDE_STOP_AFTER_FRAGMENT };
 
     /** Feature defaults. */
-    private static final Boolean[] FEATURE_DEFAULTS = { Boolean.TRUE, Boolean.TRUE, Boolean.TRUE };
+    private static final Boolean[] FEATURE_DEFAULTS =
+        { Boolean.TRUE, Boolean.TRUE, Boolean.TRUE, Boolean.FALSE };
 
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES =
-        { ERROR_REPORTER, ENTITY_RESOLVER, SECURITY_MANAGER, BUFFER_SIZE };
+        { ERROR_REPORTER, ENTITY_RESOLVER, SECURITY_MANAGER, BUFFER_SIZE, DOCUMENT_CACHE };
 
     /** Property defaults. */
-    private static final Object[] PROPERTY_DEFAULTS = { null, null, null, new Integer(XMLEntityManager.DEFAULT_BUFFER_SIZE) };
+    private static final Object[] PROPERTY_DEFAULTS = { null, null, null, new Integer(XMLEntityManager.DEFAULT_BUFFER_SIZE), null };
+
+    /** The features of the child configuration which change the events of an included document. */
+    private static final String[] DOCUMENT_CACHE_FEATURES =
+        { NAMESPACES, DISALLOW_DOCTYPE_DECL, NOTIFY_CHAR_REFS, NOTIFY_BUILTIN_REFS,
+          COALESCE_CHARACTERS, STANDARD_URI_CONFORMANT };
 
     // instance variables
 
@@ -291,6 +337,25 @@ public class XIncludeHandler
     protected XIncludeTextReader fXInclude10TextReader;
     protected XIncludeTextReader fXInclude11TextReader;
 
+    // The largest text include kept in the text include cache and the
+    // total size of the cache, in characters.
+    private static final int TEXT_CACHE_ENTRY_LIMIT = 1 << 16;
+    private static final int TEXT_CACHE_LIMIT = 1 << 20;
+
+    // The text of the parse="text" includes read in the current parse,
+    // keyed by resource, encoding and XML version. Only the handler of the
+    // root document holds the cache; the handlers of included documents use it.
+    private HashMap fTextCache;
+    private int fTextCacheSize;
+
+    // The cache of parse="xml" includes shared across parses, which is set on
+    // the handler of the root document. While an included document is parsed
+    // for the cache, its events are recorded in the event buffer of its handler
+    // and the handler is the recording handler of the including document.
+    private XIncludeDocumentCache fDocumentCache;
+    private XIncludeEventBuffer fEventBuffer;
+    private XIncludeHandler fRecordingHandler;
+
     // these are needed for XML Base processing
     protected final XMLResourceIdentifier fCurrentBaseURI;
     protected final IntStack fBaseURIScope;
@@ -339,6 +404,9 @@ public class XIncludeHandler
     // flags which control whether base URI or language fixup is performed.
     private boolean fFixupBaseURIs = true;
     private boolean fFixupLanguage = true;
+    
+    // whether the rest of a document included with an XPointer is skipped
+    private boolean fStopAfterFragment = false;
 
     // for SAX compatibility.
     // Has the value of the ALLOW_UE_AND_NOTATION_EVENTS feature
@@ -394,6 +462,8 @@ public class XIncludeHandler
         fIsXML11 = false;
         fInDTD = false;
         fSeenRootElement = false;
+        fTextCache = null;
+        fTextCacheSize = 0;
 
         fBaseURIScope.clear();
         fBaseURI.clear();
@@ -467,6 +537,19 @@ public class XIncludeHandler
             fFixupLanguage = true;
         }
         
+        try {
+            fStopAfterFragment =
+                componentManager.getFeature(XINCLUDE_STOP_AFTER_FRAGMENT);
+            if (fChildConfig != null) {
+                fChildConfig.setFeature(
+                    XINCLUDE_STOP_AFTER_FRAGMENT,
+                    fStopAfterFragment);
+            }
+        }
+        catch (XMLConfigurationException e) {
+            fStopAfterFragment = false;
+        }
+        
         // Get symbol table.
         try {
             SymbolTable value =
@@ -551,6 +634,16 @@ public class XIncludeHandler
         	fBufferSize = ((Integer)getPropertyDefault(BUFFER_SIZE)).intValue();
         }
         
+        // Get document cache.
+        try {
+            fDocumentCache =
+                (XIncludeDocumentCache)componentManager.getProperty(
+                    DOCUMENT_CACHE);
+        }
+        catch (XMLConfigurationException e) {
+            fDocumentCache = null;
+        }
+        
         // Reset XML 1.0 text reader.
         if (fXInclude10TextReader != null) {
         	fXInclude10TextReader.setBufferSize(fBufferSize);
@@ -696,6 +789,10 @@ public class XIncludeHandler
             }
             return;
         }
+        if (propertyId.equals(DOCUMENT_CACHE)) {
+            fDocumentCache = (XIncludeDocumentCache)value;
+            return;
+        }
 
     } // setProperty(String,Object)
 
@@ -768,6 +865,10 @@ public class XIncludeHandler
         Augmentations augs)
         throws XNIException {
 
+        if (fEventBuffer != null) {
+            fEventBuffer.startDocument(locator, encoding, augs);
+        }
+
         // we do this to ensure that the proper location is reported in errors
         // otherwise, the locator from the root document would always be used
         fErrorReporter.setDocumentLocator(locator);
@@ -817,6 +918,9 @@ public class XIncludeHandler
         String standalone,
         Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.xmlDecl(version, encoding, standalone, augs);
+        }
         fIsXML11 = "1.1".equals(version);
         if (isRootDocument() && fDocumentHandler != null) {
             fDocumentHandler.xmlDecl(version, encoding, standalone, augs);
@@ -829,6 +933,9 @@ public class XIncludeHandler
         String systemId,
         Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.doctypeDecl(rootElement, publicId, systemId, augs);
+        }
         if (isRootDocument() && fDocumentHandler != null) {
             fDocumentHandler.doctypeDecl(rootElement, publicId, systemId, augs);
         }
@@ -837,6 +944,9 @@ public class XIncludeHandler
     public void comment(XMLString text, Augmentations augs)
         throws XNIException {
         if (!fInDTD) {
+            if (fEventBuffer != null) {
+                fEventBuffer.comment(text, augs);
+            }
             if (fDocumentHandler != null
                 && getState() == STATE_NORMAL_PROCESSING) {
                 fDepth++;
@@ -856,6 +966,9 @@ public class XIncludeHandler
         Augmentations augs)
         throws XNIException {
         if (!fInDTD) {
+            if (fEventBuffer != null) {
+                fEventBuffer.processingInstruction(target, data, augs);
+            }
             if (fDocumentHandler != null
                 && getState() == STATE_NORMAL_PROCESSING) {
                 // we need to change the depth like this so that modifyAugmentations() works
@@ -875,6 +988,9 @@ public class XIncludeHandler
         XMLAttributes attributes,
         Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.startElement(element, attributes, fNamespaceContext, augs);
+        }
         fDepth++;
         int lastState = getState(fDepth - 1);
         // If the last two states were fallback then this must be a descendant of an include
@@ -895,7 +1011,7 @@ public class XIncludeHandler
         }
 
         if (isIncludeElement(element)) {
-            boolean success = this.handleIncludeElement(attributes);
+            boolean success = includeElement(attributes);
             if (success) {
                 setState(STATE_IGNORE);
             }
@@ -945,6 +1061,9 @@ public class XIncludeHandler
         XMLAttributes attributes,
         Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.emptyElement(element, attributes, fNamespaceContext, augs);
+        }
         fDepth++;
         int lastState = getState(fDepth - 1);
         // If the last two states were fallback then this must be a descendant of an include
@@ -965,7 +1084,7 @@ public class XIncludeHandler
         }
 
         if (isIncludeElement(element)) {
-            boolean success = this.handleIncludeElement(attributes);
+            boolean success = includeElement(attributes);
             if (success) {
                 setState(STATE_IGNORE);
             }
@@ -1022,6 +1141,9 @@ public class XIncludeHandler
 
     public void endElement(QName element, Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.endElement(element, augs);
+        }
 
         if (isIncludeElement(element)) {
             // if we're ending an include element, and we were expecting a fallback
@@ -1070,6 +1192,9 @@ public class XIncludeHandler
         String encoding,
         Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.startGeneralEntity(name, resId, encoding, augs);
+        }
         if (getState() == STATE_NORMAL_PROCESSING) {
             if (fResultDepth == 0) {
                 if (augs != null && Boolean.TRUE.equals(augs.getItem(Constants.ENTITY_SKIPPED))) {
@@ -1084,6 +1209,9 @@ public class XIncludeHandler
 
     public void textDecl(String version, String encoding, Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.textDecl(version, encoding, augs);
+        }
         if (fDocumentHandler != null
             && getState() == STATE_NORMAL_PROCESSING) {
             fDocumentHandler.textDecl(version, encoding, augs);
@@ -1092,6 +1220,9 @@ public class XIncludeHandler
 
     public void endGeneralEntity(String name, Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.endGeneralEntity(name, augs);
+        }
         if (fDocumentHandler != null
             && getState() == STATE_NORMAL_PROCESSING
             && fResultDepth != 0) {
@@ -1101,6 +1232,9 @@ public class XIncludeHandler
 
     public void characters(XMLString text, Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.characters(text, augs);
+        }
         if (getState() == STATE_NORMAL_PROCESSING) {
             if (fResultDepth == 0) {
                 checkWhitespace(text);
@@ -1117,6 +1251,9 @@ public class XIncludeHandler
 
     public void ignorableWhitespace(XMLString text, Augmentations augs)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.ignorableWhitespace(text, augs);
+        }
         if (fDocumentHandler != null
             && getState() == STATE_NORMAL_PROCESSING
             && fResultDepth != 0) {
@@ -1125,6 +1262,9 @@ public class XIncludeHandler
     }
 
     public void startCDATA(Augmentations augs) throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.startCDATA(augs);
+        }
         if (fDocumentHandler != null
             && getState() == STATE_NORMAL_PROCESSING
             && fResultDepth != 0) {
@@ -1133,6 +1273,9 @@ public class XIncludeHandler
     }
 
     public void endCDATA(Augmentations augs) throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.endCDATA(augs);
+        }
         if (fDocumentHandler != null
             && getState() == STATE_NORMAL_PROCESSING
             && fResultDepth != 0) {
@@ -1141,6 +1284,9 @@ public class XIncludeHandler
     }
 
     public void endDocument(Augmentations augs) throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.endDocument(augs);
+        }
         if (isRootDocument()) {
             if (!fSeenRootElement) {
                 reportFatalError("RootElementRequired");
@@ -1307,6 +1453,9 @@ public class XIncludeHandler
         XMLResourceIdentifier identifier,
         Augmentations augmentations)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.notationDecl(name, identifier, augmentations);
+        }
         this.addNotation(name, identifier, augmentations);
         if (fDTDHandler != null) {
             fDTDHandler.notationDecl(name, identifier, augmentations);
@@ -1372,6 +1521,9 @@ public class XIncludeHandler
         String encoding,
         Augmentations augmentations)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.startParameterEntity(identifier);
+        }
         if (fDTDHandler != null) {
             fDTDHandler.startParameterEntity(
                 name,
@@ -1390,6 +1542,9 @@ public class XIncludeHandler
         String notation,
         Augmentations augmentations)
         throws XNIException {
+        if (fEventBuffer != null) {
+            fEventBuffer.unparsedEntityDecl(name, identifier, notation, augmentations);
+        }
         this.addUnparsedEntity(name, identifier, notation, augmentations);
         if (fDTDHandler != null) {
             fDTDHandler.unparsedEntityDecl(
@@ -1454,6 +1609,22 @@ public class XIncludeHandler
         }
     }
 
+    /**
+     * Handles an include element. The text of a parse="text" include is
+     * reported by this handler but is not part of the events of this
+     * document, so it is not recorded for the document cache.
+     */
+    private boolean includeElement(XMLAttributes attributes) {
+        XIncludeEventBuffer eventBuffer = fEventBuffer;
+        fEventBuffer = null;
+        try {
+            return this.handleIncludeElement(attributes);
+        }
+        finally {
+            fEventBuffer = eventBuffer;
+        }
+    }
+
     protected boolean handleIncludeElement(XMLAttributes attributes)
         throws XNIException {
         if (getSawInclude(fDepth - 1)) {
@@ -1621,6 +1792,10 @@ public class XIncludeHandler
                             XINCLUDE_FIXUP_LANGUAGE,
                             fFixupLanguage);
                 
+                fChildConfig.setFeature(
+                            XINCLUDE_STOP_AFTER_FRAGMENT,
+                            fStopAfterFragment);
+                
                
                 // If the xpointer attribute is present
                 if (xpointer != null ) {
@@ -1697,7 +1872,13 @@ public class XIncludeHandler
                 fHasIncludeReportedContent = false;
                 fNamespaceContext.pushScope();
 
-                fChildConfig.parse(includedSource);
+                if (xpointer != null) {
+                    parseXPointerDocument(includedSource);
+                }
+                else if (!includeCachedDocument(includedSource)) {
+                    fChildConfig.parse(includedSource);
+                    cacheRecordedDocument();
+                }
                 // necessary to make sure proper location is reported to the application and in errors
                 fXIncludeLocator.setLocator(fDocLocation);
                 if (fErrorReporter != null) {
@@ -1746,6 +1927,7 @@ public class XIncludeHandler
                 return false;
             }
             finally {
+                stopRecording();
                 fNamespaceContext.popScope();
             }
         }
@@ -1755,6 +1937,20 @@ public class XIncludeHandler
             includedSource.setEncoding(encoding);
             XIncludeTextReader textReader = null;
             
+            // include the text of a resource read earlier in this parse
+            // without reading it again
+            String cacheKey = getTextCacheKey(includedSource);
+            if (cacheKey != null) {
+                char[] text = getRootHandler().getCachedText(cacheKey);
+                if (text != null) {
+                    if (text.length > 0) {
+                        characters(new XMLString(text, 0, text.length),
+                            modifyAugmentations(null, true));
+                    }
+                    return true;
+                }
+            }
+            
             try {
                 fHasIncludeReportedContent = false;
                 
@@ -1778,7 +1974,14 @@ public class XIncludeHandler
                     textReader = fXInclude11TextReader;
                 }
                 textReader.setErrorReporter(fErrorReporter);
+                textReader.setTextLimit(cacheKey != null ? TEXT_CACHE_ENTRY_LIMIT : 0);
                 textReader.parse();
+                if (cacheKey != null) {
+                    char[] text = textReader.getText();
+                    if (text != null) {
+                        getRootHandler().cacheText(cacheKey, text);
+                    }
+                }
             }
             // encoding errors
             catch (MalformedByteSequenceException ex) {
@@ -2425,6 +2628,199 @@ public class XIncludeHandler
         return fParentXIncludeHandler == null;
     }
 
+    /**
+     * Returns the handler of the root document.
+     */
+    private XIncludeHandler getRootHandler() {
+        XIncludeHandler handler = this;
+        while (handler.fParentXIncludeHandler != null) {
+            handler = handler.fParentXIncludeHandler;
+        }
+        return handler;
+    }
+
+    /**
+     * Returns the key of a parse="text" include in the text include cache,
+     * or null if the source cannot be cached because it is not identified
+     * by its system identifier alone.
+     */
+    private String getTextCacheKey(XMLInputSource source) {
+        if (source.getSystemId() == null ||
+            source.getByteStream() != null ||
+            source.getCharacterStream() != null ||
+            source instanceof HTTPInputSource) {
+            return null;
+        }
+        try {
+            String expandedSystemId = XMLEntityManager.expandSystemId(
+                source.getSystemId(), source.getBaseSystemId(), false);
+            return expandedSystemId + ' ' + source.getEncoding() + ' ' + (fIsXML11 ? "1.1" : "1.0");
+        }
+        catch (MalformedURIException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the text of a parse="text" include read earlier
+     * in this parse, or null.
+     */
+    private char[] getCachedText(String key) {
+        return (fTextCache != null) ? (char[]) fTextCache.get(key) : null;
+    }
+
+    /**
+     * Caches the text of a parse="text" include for the rest of
+     * this parse, unless the cache is full.
+     */
+    private void cacheText(String key, char[] text) {
+        if (fTextCacheSize + text.length > TEXT_CACHE_LIMIT) {
+            return;
+        }
+        if (fTextCache == null) {
+            fTextCache = new HashMap();
+        }
+        if (fTextCache.put(key, text) == null) {
+            fTextCacheSize += text.length;
+        }
+    }
+
+    /**
+     * Parses a document included with an xpointer attribute. Both the
+     * shorthand pointer and the element() scheme identify at most one
+     * element, so if the stop after fragment feature is on and the
+     * document is not validated, scanning stops as soon as that element
+     * and its content have been included, instead of filtering out the
+     * events of the rest of the document. Well-formedness errors after
+     * the element are then not reported, so by default the whole
+     * document is parsed.
+     */
+    private void parseXPointerDocument(XMLInputSource source) throws IOException {
+        if (!fStopAfterFragment ||
+            !(fChildConfig instanceof XMLPullParserConfiguration) ||
+            getChildFeature(VALIDATION) ||
+            getChildFeature(DYNAMIC_VALIDATION)) {
+            fChildConfig.parse(source);
+            return;
+        }
+        XMLPullParserConfiguration pullConfig = (XMLPullParserConfiguration) fChildConfig;
+        XPointerHandler handler = (XPointerHandler) fXPtrProcessor;
+        try {
+            pullConfig.setInputSource(source);
+            while (pullConfig.parse(false)) {
+                if (handler.isFragmentComplete()) {
+                    break;
+                }
+            }
+        }
+        finally {
+            // close the streams of a document which was not read to the end
+            pullConfig.cleanup();
+        }
+    }
+
+    /**
+     * Includes a document with the events recorded in the document cache,
+     * if there is a cache and it holds the current version of the document,
+     * and returns true. Otherwise, if the document can be cached, makes the
+     * handler of the included document record its events while it is parsed,
+     * and returns false.
+     */
+    private boolean includeCachedDocument(XMLInputSource source) {
+        XIncludeDocumentCache cache = getRootHandler().fDocumentCache;
+        if (cache == null || source.getSystemId() == null ||
+            source instanceof HTTPInputSource ||
+            !(fChildConfig instanceof XMLComponentManager)) {
+            return false;
+        }
+        String settings = getDocumentCacheSettings();
+        if (settings == null) {
+            return false;
+        }
+        String expandedSystemId;
+        String version;
+        try {
+            expandedSystemId = XMLEntityManager.expandSystemId(
+                source.getSystemId(), source.getBaseSystemId(), false);
+            version = cache.getVersion(source, expandedSystemId);
+        }
+        catch (IOException e) {
+            // the document is parsed and any error is reported then
+            return false;
+        }
+        if (version == null) {
+            return false;
+        }
+        String key = settings + ' ' + expandedSystemId;
+        XIncludeHandler handler =
+            (XIncludeHandler)fChildConfig.getProperty(
+                Constants.XERCES_PROPERTY_PREFIX
+                    + Constants.XINCLUDE_HANDLER_PROPERTY);
+        XIncludeEventBuffer buffer = cache.get(key, version);
+        if (buffer != null) {
+            // the handler is reset as it would be by the configuration
+            handler.reset((XMLComponentManager)fChildConfig);
+            buffer.replay(handler, source, expandedSystemId, fNamespaceContext);
+            return true;
+        }
+        handler.fEventBuffer =
+            new XIncludeEventBuffer(key, version, cache.getMaxDocumentSize());
+        fRecordingHandler = handler;
+        return false;
+    }
+
+    /**
+     * Returns the values of the features of the child configuration
+     * which change the events of an included document, or null if the
+     * included documents cannot be cached because they are validated
+     * or may have errors.
+     */
+    private String getDocumentCacheSettings() {
+        if (getChildFeature(VALIDATION) ||
+            getChildFeature(DYNAMIC_VALIDATION) ||
+            getChildFeature(CONTINUE_AFTER_FATAL_ERROR)) {
+            return null;
+        }
+        StringBuffer settings = new StringBuffer();
+        for (int i = 0; i < DOCUMENT_CACHE_FEATURES.length; ++i) {
+            settings.append(getChildFeature(DOCUMENT_CACHE_FEATURES[i]) ? '1' : '0');
+        }
+        if (fSecurityManager != null) {
+            settings.append('/').append(fSecurityManager.getEntityExpansionLimit());
+        }
+        return settings.toString();
+    }
+
+    private boolean getChildFeature(String featureId) {
+        try {
+            return fChildConfig.getFeature(featureId);
+        }
+        catch (XMLConfigurationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the document recorded while it was parsed to the document
+     * cache, if the whole document was recorded.
+     */
+    private void cacheRecordedDocument() {
+        if (fRecordingHandler != null) {
+            XIncludeEventBuffer buffer = fRecordingHandler.fEventBuffer;
+            stopRecording();
+            if (buffer.isComplete()) {
+                getRootHandler().fDocumentCache.put(buffer);
+            }
+        }
+    }
+
+    private void stopRecording() {
+        if (fRecordingHandler != null) {
+            fRecordingHandler.fEventBuffer = null;
+            fRecordingHandler = null;
+        }
+    }
+
     /**
      * Caches an unparsed entity.
      * @param name the name of the unparsed entity
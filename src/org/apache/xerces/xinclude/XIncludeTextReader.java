@@ -71,6 +71,13 @@ public class XIncludeTextReader {
     private XMLInputSource fSource;
     private XMLErrorReporter fErrorReporter;
     private XMLString fTempString = new XMLString();
+    
+    // the characters of the resource retained for the caller, if it
+    // does not exceed fTextLimit characters and contains no errors
+    private char[] fText;
+    private int fTextLength;
+    private int fTextLimit;
+    private boolean fRetainText;
  
     /**
      * Construct the XIncludeReader using the XMLInputSource and XIncludeHandler.
@@ -445,11 +452,17 @@ public class XIncludeTextReader {
     public void parse() throws IOException {
         fReader = getReader(fSource);
         fSource = null;
-        int readSize = fReader.read(fTempString.ch, 0, fTempString.ch.length - 1);
+        fTextLength = 0;
+        fRetainText = fTextLimit > 0;
+        int readSize = fill();
         fHandler.fHasIncludeReportedContent = true;
         while (readSize != -1) {
             for (int i = 0; i < readSize; ++i) {
                 char ch = fTempString.ch[i];
+                // characters valid in both XML 1.0 and XML 1.1
+                if ((ch >= 0x20 && ch < 0xD800) || ch == 0x0A || ch == 0x09 || ch == 0x0D) {
+                    continue;
+                }
                 if (!isValid(ch)) {
                     if (XMLChar.isHighSurrogate(ch)) {
                         int ch2;
@@ -468,6 +481,7 @@ public class XIncludeTextReader {
                             // convert surrogates to a supplemental character
                             int sup = XMLChar.supplemental(ch, (char)ch2);
                             if (!isValid(sup)) {
+                                fRetainText = false;
                                 fErrorReporter.reportError(XMLMessageFormatter.XML_DOMAIN,
                                                            "InvalidCharInContent", 
                                                            new Object[] { Integer.toString(sup, 16) },
@@ -475,6 +489,7 @@ public class XIncludeTextReader {
                             }
                         }
                         else {
+                            fRetainText = false;
                             fErrorReporter.reportError(XMLMessageFormatter.XML_DOMAIN,
                                                        "InvalidCharInContent", 
                                                        new Object[] { Integer.toString(ch2, 16) },
@@ -482,6 +497,7 @@ public class XIncludeTextReader {
                         }
                     }
                     else {
+                        fRetainText = false;
                         fErrorReporter.reportError(XMLMessageFormatter.XML_DOMAIN,
                                                    "InvalidCharInContent", 
                                                    new Object[] { Integer.toString(ch, 16) },
@@ -489,6 +505,9 @@ public class XIncludeTextReader {
                     }
                 }
             }
+            if (fRetainText) {
+                retain(fTempString.ch, readSize);
+            }
             if (fHandler != null && readSize > 0) {
                 fTempString.offset = 0;
                 fTempString.length = readSize;
@@ -496,11 +515,87 @@ public class XIncludeTextReader {
                     fTempString,
                     fHandler.modifyAugmentations(null, true));
             }
-            readSize = fReader.read(fTempString.ch, 0, fTempString.ch.length - 1);
+            readSize = fill();
         }
         
     }
     
+    /**
+     * Reads characters until the buffer is full or the end of the
+     * resource is reached, so that the handler receives the text in
+     * chunks of the buffer size rather than in the pieces returned
+     * by each read of the reader.
+     * 
+     * @return the number of characters read, or -1 at the end of the resource
+     */
+    private int fill() throws IOException {
+        final char[] ch = fTempString.ch;
+        final int capacity = ch.length - 1;
+        int count = fReader.read(ch, 0, capacity);
+        if (count == -1) {
+            return -1;
+        }
+        while (count < capacity) {
+            int readSize = fReader.read(ch, count, capacity - count);
+            if (readSize == -1) {
+                break;
+            }
+            count += readSize;
+        }
+        return count;
+    }
+    
+    /**
+     * Appends a chunk to the retained text, or stops retaining
+     * it if it exceeds the limit.
+     */
+    private void retain(char[] ch, int length) {
+        final int newLength = fTextLength + length;
+        if (newLength > fTextLimit) {
+            fRetainText = false;
+            return;
+        }
+        if (fText == null || fText.length < newLength) {
+            char[] text = new char[Math.min(fTextLimit, Math.max(newLength, fTextLength << 1))];
+            if (fTextLength > 0) {
+                System.arraycopy(fText, 0, text, 0, fTextLength);
+            }
+            fText = text;
+        }
+        System.arraycopy(ch, 0, fText, fTextLength, length);
+        fTextLength = newLength;
+    }
+    
+    /**
+     * Sets the largest number of characters of the next resources this
+     * reader retains so that they can be returned by {@link #getText()}.
+     * A limit of 0 disables retaining the text.
+     * 
+     * @param limit The largest number of characters to retain
+     */
+    void setTextLimit(int limit) {
+        fTextLimit = limit;
+        if (limit == 0) {
+            fText = null;
+        }
+    }
+    
+    /**
+     * Returns the text of the last resource read by {@link #parse()}, if
+     * it was read completely, did not exceed the limit set by {@link
+     * #setTextLimit(int)} and contained no invalid characters, or null.
+     */
+    char[] getText() {
+        if (!fRetainText) {
+            return null;
+        }
+        char[] text = new char[fTextLength];
+        if (fTextLength > 0) {
+            System.arraycopy(fText, 0, text, 0, fTextLength);
+        }
+        return text;
+    }
+    
     /**
      * Sets the input source on this text reader.
      * 
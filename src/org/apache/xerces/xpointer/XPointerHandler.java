@@ -87,6 +87,12 @@ public final class XPointerHandler extends XIncludeHandler implements
 
    // Has the XPointer resolved the subresource
     protected boolean fIsXPointerResolved = false;
+
+    // The depth of the resolved subresource while it is included
+    protected int fFragmentDepth = 0;
+
+    // Has the resolved subresource been included up to its end
+    protected boolean fIsFragmentComplete = false;
     
     // Fixup xml:base and xml:lang attributes
     protected boolean fFixupBase = false;
@@ -322,6 +328,22 @@ public final class XPointerHandler extends XIncludeHandler implements
             fIsXPointerResolved = resolved;
         }
 
+        // A pointer part identifies a single element, so nothing else in
+        // the document is included after the end of its subtree.
+        if (resolved) {
+            if (event == XPointerPart.EVENT_ELEMENT_START) {
+                fFragmentDepth++;
+            }
+            else if (event == XPointerPart.EVENT_ELEMENT_END) {
+                if (fFragmentDepth > 0 && --fFragmentDepth == 0) {
+                    fIsFragmentComplete = true;
+                }
+            }
+            else if (fFragmentDepth == 0) {
+                fIsFragmentComplete = true;
+            }
+        }
+
         return resolved;
     }
 
@@ -362,6 +384,17 @@ public final class XPointerHandler extends XIncludeHandler implements
     public boolean isXPointerResolved() throws XNIException {
         return fIsXPointerResolved;
     }
+
+    /**
+     * Returns true if the subresource identified by the XPointer has been
+     * included up to its end. No further events of the document can be
+     * part of the result, so the rest of the document need not be scanned.
+     * 
+     * @return True if the resolved subresource has been completely included.
+     */
+    public boolean isFragmentComplete() {
+        return fIsFragmentComplete;
+    }
     
     /**
      * Returns the pointer part used to resolve the document fragment.
@@ -427,6 +460,8 @@ public final class XPointerHandler extends XIncludeHandler implements
         fXPointerPart = null;
         fFoundMatchingPtrPart = false;
         fIsXPointerResolved = false;
+        fFragmentDepth = 0;
+        fIsFragmentComplete = false;
         //fFixupBase = false;
         //fFixupLang = false;
 
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A writer which encodes characters in UTF-8, US-ASCII or ISO-8859-1
+ * directly into a byte buffer, and writes the buffer to an output stream
+ * or a channel when it is full. Characters which cannot be encoded, and
+ * unpaired surrogates, are written as '?', like
+ * <code>OutputStreamWriter</code> does; the serializers only write such
+ * characters where they cannot be escaped.
+ *
+ * @version $Id$
+ */
+final class ByteEncodingWriter extends Writer {
+
+    //
+    // Constants
+    //
+
+    /** UTF-8 encoding. */
+    static final int UTF8 = 0;
+
+    /** US-ASCII encoding. */
+    static final int ASCII = 1;
+
+    /** ISO-8859-1 encoding. */
+    static final int LATIN1 = 2;
+
+    /** Default byte buffer size (8192). */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    //
+    // Data
+    //
+
+    /** Output stream, or null if writing to a channel. */
+    private final OutputStream fOutputStream;
+
+    /** Channel, or null if writing to an output stream. */
+    private final WritableByteChannel fChannel;
+
+    /** The encoding. */
+    private final int fEncoding;
+
+    /** The last character written as a single byte. */
+    private final int fLastSingleByte;
+
+    /** Byte buffer. */
+    private final byte[] fBuffer;
+
+    /** Byte buffer wrapping the array, when writing to a channel. */
+    private final ByteBuffer fByteBuffer;
+
+    /** Number of bytes in the buffer. */
+    private int fLength;
+
+    /** High surrogate waiting for the next character, or 0. */
+    private char fHighSurrogate;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a writer to the given output stream. */
+    ByteEncodingWriter(OutputStream outputStream, int encoding) {
+        this(outputStream, null, encoding);
+    } // <init>(OutputStream,int)
+
+    /** Constructs a writer to the given blocking channel. */
+    ByteEncodingWriter(WritableByteChannel channel, int encoding) {
+        this(null, channel, encoding);
+    } // <init>(WritableByteChannel,int)
+
+    private ByteEncodingWriter(OutputStream outputStream,
+            WritableByteChannel channel, int encoding) {
+        fOutputStream = outputStream;
+        fChannel = channel;
+        fEncoding = encoding;
+        fLastSingleByte = (encoding == LATIN1) ? 0xFF : 0x7F;
+        fBuffer = new byte[DEFAULT_BUFFER_SIZE];
+        fByteBuffer = (channel != null) ? ByteBuffer.wrap(fBuffer) : null;
+    } // <init>(OutputStream,WritableByteChannel,int)
+
+    /**
+     * Returns the encoding written by this class for the given Java
+     * encoding name, or -1 if it is not supported.
+     */
+    static int getEncoding(String javaName) {
+        if ("UTF8".equals(javaName)) {
+            return UTF8;
+        }
+        if ("ASCII".equals(javaName)) {
+            return ASCII;
+        }
+        if ("ISO8859_1".equals(javaName)) {
+            return LATIN1;
+        }
+        return -1;
+    } // getEncoding(String):int
+
+    //
+    // Writer methods
+    //
+
+    public void write(int c) throws IOException {
+        if (fLength + 4 > fBuffer.length) {
+            drain();
+        }
+        encode((char) c);
+    } // write(int)
+
+    public void write(char[] ch, int offset, int length) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            // encode the longest run of single byte characters which fits
+            int count = Math.min(end - offset, fBuffer.length - fLength);
+            final byte[] buffer = fBuffer;
+            int out = fLength;
+            if (fHighSurrogate == 0) {
+                final int last = fLastSingleByte;
+                final int runEnd = offset + count;
+                char c;
+                while (offset < runEnd && (c = ch[offset]) <= last) {
+                    buffer[out++] = (byte) c;
+                    ++offset;
+                }
+                fLength = out;
+            }
+            // then at most one character which needs more work
+            if (offset < end) {
+                if (fLength + 4 > fBuffer.length) {
+                    drain();
+                }
+                else {
+                    encode(ch[offset++]);
+                }
+            }
+        }
+    } // write(char[],int,int)
+
+    public void write(String str, int offset, int length) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            if (fLength + 4 > fBuffer.length) {
+                drain();
+            }
+            final int runEnd = Math.min(end, offset + (fBuffer.length - fLength) / 4);
+            while (offset < runEnd) {
+                encode(str.charAt(offset++));
+            }
+        }
+    } // write(String,int,int)
+
+    public void flush() throws IOException {
+        drain();
+        if (fOutputStream != null) {
+            fOutputStream.flush();
+        }
+    } // flush()
+
+    public void close() throws IOException {
+        if (fHighSurrogate != 0) {
+            fHighSurrogate = 0;
+            write('?');
+        }
+        drain();
+        if (fOutputStream != null) {
+            fOutputStream.close();
+        }
+        else {
+            fChannel.close();
+        }
+    } // close()
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Encodes one character. The buffer must have room for four bytes.
+     */
+    private void encode(char c) {
+        final byte[] buffer = fBuffer;
+        if (fHighSurrogate != 0) {
+            final char high = fHighSurrogate;
+            fHighSurrogate = 0;
+            if (c >= 0xDC00 && c <= 0xDFFF && fEncoding == UTF8) {
+                int scalar = ((high - 0xD800) << 10) + (c - 0xDC00) + 0x10000;
+                buffer[fLength++] = (byte) (0xF0 | (scalar >> 18));
+                buffer[fLength++] = (byte) (0x80 | ((scalar >> 12) & 0x3F));
+                buffer[fLength++] = (byte) (0x80 | ((scalar >> 6) & 0x3F));
+                buffer[fLength++] = (byte) (0x80 | (scalar & 0x3F));
+                return;
+            }
+            buffer[fLength++] = (byte) '?';
+            if (c >= 0xDC00 && c <= 0xDFFF) {
+                // the pair is written as a single '?'
+                return;
+            }
+        }
+        if (c <= fLastSingleByte) {
+            buffer[fLength++] = (byte) c;
+        }
+        else if (c >= 0xD800 && c <= 0xDBFF) {
+            fHighSurrogate = c;
+        }
+        else if (fEncoding != UTF8 || (c >= 0xDC00 && c <= 0xDFFF)) {
+            buffer[fLength++] = (byte) '?';
+        }
+        else if (c < 0x800) {
+            buffer[fLength++] = (byte) (0xC0 | (c >> 6));
+            buffer[fLength++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else {
+            buffer[fLength++] = (byte) (0xE0 | (c >> 12));
+            buffer[fLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[fLength++] = (byte) (0x80 | (c & 0x3F));
+        }
+    } // encode(char)
+
+    /** Writes the content of the buffer. */
+    private void drain() throws IOException {
+        if (fLength > 0) {
+            if (fOutputStream != null) {
+                fOutputStream.write(fBuffer, 0, fLength);
+            }
+            else {
+                fByteBuffer.clear();
+                fByteBuffer.limit(fLength);
+                while (fByteBuffer.hasRemaining()) {
+                    fChannel.write(fByteBuffer);
+                }
+            }
+            fLength = 0;
+        }
+    } // drain()
+
+} // class ByteEncodingWriter
@@ -21,6 +21,8 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.xerces.util.EncodingMap;
 
@@ -84,6 +86,10 @@ public class EncodingInfo {
      */
     public Writer getWriter(OutputStream output)
         throws UnsupportedEncodingException {
+        // encode the most common encodings without a charset encoder
+        int encoding = ByteEncodingWriter.getEncoding(javaName);
+        if (encoding != -1)
+            return new ByteEncodingWriter(output, encoding);
         // this should always be true!
         if (javaName != null) 
             return new OutputStreamWriter(output, javaName);
@@ -94,6 +100,22 @@ public class EncodingInfo {
         return new OutputStreamWriter(output, javaName);
     }
     
+    /**
+     * Returns a writer for this encoding based on
+     * a blocking channel.
+     *
+     * @return A suitable writer
+     * @exception UnsupportedEncodingException There is no convertor
+     *  to support this encoding
+     */
+    public Writer getWriter(WritableByteChannel channel)
+        throws UnsupportedEncodingException {
+        int encoding = ByteEncodingWriter.getEncoding(javaName);
+        if (encoding != -1)
+            return new ByteEncodingWriter(channel, encoding);
+        return getWriter(Channels.newOutputStream(channel));
+    }
+    
     /**
      * Checks whether the specified character is printable or not in this encoding.
      *
@@ -47,6 +47,8 @@ public class Encodings
 
     // last printable character for Unicode-compatible encodings
     static final int LAST_PRINTABLE_UNICODE = 0xffff;
+    // last printable character for ISO-8859-1
+    static final int LAST_PRINTABLE_LATIN1 = 0xff;
     // unicode-compliant encodings; can express plane 0
     static final String[] UNICODE_ENCODINGS = {
         "Unicode", "UnicodeBig", "UnicodeLittle", "GB2312", "UTF8", "UTF-16",
@@ -89,7 +91,7 @@ public class Encodings
                     }
                 }
                 if(i == UNICODE_ENCODINGS.length) {
-                    eInfo = new EncodingInfo(EncodingMap.getJava2IANAMapping(encoding), encoding, DEFAULT_LAST_PRINTABLE);
+                    eInfo = new EncodingInfo(EncodingMap.getJava2IANAMapping(encoding), encoding, getLastPrintable(encoding));
                 }
                 _encodings.put(encoding, eInfo); 
                 return eInfo;
@@ -108,12 +110,17 @@ public class Encodings
             }
         }
         if(i == UNICODE_ENCODINGS.length) {
-            eInfo = new EncodingInfo(encoding, jName, DEFAULT_LAST_PRINTABLE);
+            eInfo = new EncodingInfo(encoding, jName, getLastPrintable(jName));
         }
         _encodings.put(jName, eInfo); 
         return eInfo;
     }
 
+    // last printable character of an encoding which is not Unicode-compatible
+    private static int getLastPrintable(String javaName) {
+        return "ISO8859_1".equalsIgnoreCase(javaName) ? LAST_PRINTABLE_LATIN1 : DEFAULT_LAST_PRINTABLE;
+    }
+
     static final String JIS_DANGER_CHARS
     = "\\\u007e\u007f\u00a2\u00a3\u00a5\u00ac"
     +"\u2014\u2015\u2016\u2026\u203e\u203e\u2225\u222f\u301c"
@@ -55,6 +55,12 @@ public class IndentPrinter
     private StringBuffer    _text;
 
 
+    /**
+     * Holds the characters of {@link #_line} while it is written.
+     */
+    private char[]          _chars;
+
+
     /**
      * Counts how many white spaces come between the accumulated line and the
      * current accumulated text. Multiple spaces at the end of the a line
@@ -83,6 +89,7 @@ public class IndentPrinter
         // Initialize everything for a first/second run.
         _line = new StringBuffer( 80 );
         _text = new StringBuffer( 20 );
+        _chars = new char[ 80 ];
         _spaces = 0;
         _thisIndent = _nextIndent = 0;
     }
@@ -102,7 +109,7 @@ public class IndentPrinter
         // state, can no longer re-enter it.
         if ( _dtdWriter == null ) {
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
             flushLine( false );
             _dtdWriter = new StringWriter();
             _docWriter = _writer;
@@ -121,7 +128,7 @@ public class IndentPrinter
         // Only works if we're going out of DTD mode.
         if ( _writer == _dtdWriter ) {
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
             flushLine( false );
             _writer = _docWriter;
             return _dtdWriter.toString();
@@ -213,7 +220,7 @@ public class IndentPrinter
                 --_spaces;
             }
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
         }
         // Starting a new word: accumulate the text between the line
         // and this new word; not a new word: just add another space.
@@ -243,7 +250,7 @@ public class IndentPrinter
                 --_spaces;
             }
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
         }
         flushLine( preserveSpace );
         try {
@@ -290,9 +297,13 @@ public class IndentPrinter
                 // they are simply stripped and replaced with a single line
                 // separator.
                 _spaces = 0;
-                _writer.write( _line.toString() );
+                int length = _line.length();
+                if ( _chars.length < length )
+                    _chars = new char[ length ];
+                _line.getChars( 0, length, _chars, 0 );
+                _writer.write( _chars, 0, length );
                 
-                _line = new StringBuffer( 40 );
+                _line.setLength( 0 );
             } catch ( IOException except ) {
                 // We don't throw an exception, but hold it
                 // until the end of the document.
@@ -167,13 +167,16 @@ public class Printer
     {
         try {
             int length = text.length();
-            for ( int i = 0 ; i < length ; ++i ) {
+            int start = 0;
+            while ( start < length ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = text.charAt( i );
-                ++_pos;
+                int count = Math.min( length - start, BufferSize - _pos );
+                text.getChars( start, start + count, _buffer, _pos );
+                start += count;
+                _pos += count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
@@ -190,13 +193,16 @@ public class Printer
     {
         try {
             int length = text.length();
-            for ( int i = 0 ; i < length ; ++i ) {
+            int start = 0;
+            while ( start < length ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = text.charAt( i );
-                ++_pos;
+                int count = Math.min( length - start, BufferSize - _pos );
+                text.getChars( start, start + count, _buffer, _pos );
+                start += count;
+                _pos += count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
@@ -212,14 +218,16 @@ public class Printer
         throws IOException
     {
         try {
-            while ( length-- > 0 ) {
+            while ( length > 0 ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = chars[ start ];
-                ++start;
-                ++_pos;
+                int count = Math.min( length, BufferSize - _pos );
+                System.arraycopy( chars, start, _buffer, _pos, count );
+                start += count;
+                length -= count;
+                _pos += count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
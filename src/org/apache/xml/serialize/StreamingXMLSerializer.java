@@ -0,0 +1,1124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.xerces.util.XMLChar;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * A serializer which writes SAX or XNI document events as XML as soon
+ * as it receives them. Unlike {@link XMLSerializer}, it keeps no element
+ * state objects, does not hold back the content which comes before the
+ * root element, and does not accumulate text to break it into lines. The
+ * memory it uses is a fixed output buffer plus, for each open element,
+ * its space preserving flag and the namespaces it declares, so that
+ * documents of any size can be serialized from a stream of events.
+ * <p>
+ * The serializer is a SAX {@link ContentHandler} and {@link LexicalHandler},
+ * and an XNI {@link XMLDocumentHandler} which can be placed at the end of
+ * a parser pipeline.
+ * <p>
+ * The encoding, XML declaration, document type, indenting, line separator
+ * and space preserving are taken from the output format. When indenting,
+ * an element is placed on a new line only if it is not preceded by text
+ * in its parent; text is always written as it is received, and is never
+ * broken into lines. The CDATA and non-escaping elements and the line
+ * width of the output format are not supported.
+ * <p>
+ * If an I/O exception occurs while serializing, it is thrown from the
+ * current event wrapped in a <code>SAXException</code> or an
+ * <code>XNIException</code>.
+ * <p>
+ * This class belongs to this package because it is configured by an
+ * {@link OutputFormat} and writes through the same encoders as
+ * {@link XMLSerializer}. Unlike the other serializers of the package, it
+ * is not deprecated: the DOM Level 3 LSSerializer only serializes DOM
+ * nodes, and Xerces offers no other way to serialize a stream of SAX or
+ * XNI events without building a tree.
+ *
+ * @version $Id$
+ * @see XMLSerializer
+ */
+public class StreamingXMLSerializer
+    implements ContentHandler, LexicalHandler, XMLDocumentHandler {
+
+    //
+    // Constants
+    //
+
+    /** Size of the output buffer in characters. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** Size of the buffer holding attribute values while escaping. */
+    private static final int VALUE_BUFFER_SIZE = 256;
+
+    /** Escaping mode of element content. */
+    private static final int CONTENT = 0;
+
+    /** Escaping mode of attribute values. */
+    private static final int ATTRIBUTE = 1;
+
+    /** Escaping mode of CDATA sections. */
+    private static final int CDATA = 2;
+
+    //
+    // Data
+    //
+
+    /** The output format. */
+    private final OutputFormat fFormat;
+
+    /** The encoding of the output. */
+    private final EncodingInfo fEncodingInfo;
+
+    /** The writer receiving the output. */
+    private Writer fWriter;
+
+    /** True if indenting. */
+    private final boolean fIndenting;
+
+    /** The line separator. */
+    private final String fLineSeparator;
+
+    /** Output buffer. */
+    private final char[] fBuffer = new char[BUFFER_SIZE];
+
+    /** Number of characters in the output buffer. */
+    private int fLength;
+
+    /** Buffer holding part of an attribute value. */
+    private final char[] fValueBuffer = new char[VALUE_BUFFER_SIZE];
+
+    /** Number of open elements. */
+    private int fDepth;
+
+    /**
+     * Space preserving of each open element; the entry at index 0
+     * is that of the document.
+     */
+    private boolean[] fPreserveSpace = new boolean[16];
+
+    /** Prefixes of the namespaces declared by the open elements. */
+    private String[] fPrefixes = new String[16];
+
+    /** URIs of the namespaces declared by the open elements. */
+    private String[] fURIs = new String[16];
+
+    /** Number of namespace declarations in scope or pending. */
+    private int fNamespaceCount;
+
+    /** Number of namespace declarations made by the open elements. */
+    private int fDeclaredCount;
+
+    /** Number of namespace declarations in scope before each open element. */
+    private int[] fNamespaceContexts = new int[16];
+
+    /** True if the start tag of the current element is not closed. */
+    private boolean fStartTagOpen;
+
+    /** True if the last content of the current element is text. */
+    private boolean fAfterText;
+
+    /** True if the root element has ended. */
+    private boolean fAfterRoot;
+
+    /** True if the XML declaration has been written. */
+    private boolean fStarted;
+
+    /** True if the document type declaration has been written. */
+    private boolean fDocTypeWritten;
+
+    /** True if inside the DTD. */
+    private boolean fInDTD;
+
+    /** True if inside a CDATA section. */
+    private boolean fInCDATA;
+
+    /** Number of ']' which end the text written in the CDATA section. */
+    private int fCDATABrackets;
+
+    /** High surrogate waiting for the next character, or 0. */
+    private char fHighSurrogate;
+
+    /** The document source. */
+    private XMLDocumentSource fDocumentSource;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a serializer that writes to the specified output
+     * stream using the specified output format. If <tt>format</tt>
+     * is null, will use a default output format.
+     *
+     * @param output The output stream to use
+     * @param format The output format to use, null for the default
+     * @exception UnsupportedEncodingException The encoding of the output
+     *  format is not supported
+     */
+    public StreamingXMLSerializer(OutputStream output, OutputFormat format)
+        throws UnsupportedEncodingException {
+        this(getFormat(format));
+        fWriter = fEncodingInfo.getWriter(output);
+    } // <init>(OutputStream,OutputFormat)
+
+    /**
+     * Constructs a serializer that writes to the specified blocking
+     * channel using the specified output format. If <tt>format</tt>
+     * is null, will use a default output format.
+     *
+     * @param channel The channel to use
+     * @param format The output format to use, null for the default
+     * @exception UnsupportedEncodingException The encoding of the output
+     *  format is not supported
+     */
+    public StreamingXMLSerializer(WritableByteChannel channel, OutputFormat format)
+        throws UnsupportedEncodingException {
+        this(getFormat(format));
+        fWriter = fEncodingInfo.getWriter(channel);
+    } // <init>(WritableByteChannel,OutputFormat)
+
+    /**
+     * Constructs a serializer that writes to the specified writer
+     * using the specified output format. If <tt>format</tt> is null,
+     * will use a default output format. The writer must use the
+     * encoding of the output format.
+     *
+     * @param writer The writer to use
+     * @param format The output format to use, null for the default
+     * @exception UnsupportedEncodingException The encoding of the output
+     *  format is not supported
+     */
+    public StreamingXMLSerializer(Writer writer, OutputFormat format)
+        throws UnsupportedEncodingException {
+        this(getFormat(format));
+        fWriter = writer;
+    } // <init>(Writer,OutputFormat)
+
+    private StreamingXMLSerializer(OutputFormat format)
+        throws UnsupportedEncodingException {
+        fFormat = format;
+        fEncodingInfo = format.getEncodingInfo();
+        fIndenting = format.getIndenting() && format.getIndent() > 0;
+        fLineSeparator = format.getLineSeparator();
+    } // <init>(OutputFormat)
+
+    //
+    // ContentHandler methods
+    //
+
+    public void setDocumentLocator(Locator locator) {
+    } // setDocumentLocator(Locator)
+
+    public void startDocument() throws SAXException {
+        try {
+            startDocumentIO();
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // startDocument()
+
+    public void endDocument() throws SAXException {
+        try {
+            endDocumentIO();
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // endDocument()
+
+    public void startPrefixMapping(String prefix, String uri) {
+        // declared on the next element
+        if (fNamespaceCount == fPrefixes.length) {
+            String[] prefixes = new String[fNamespaceCount * 2];
+            System.arraycopy(fPrefixes, 0, prefixes, 0, fNamespaceCount);
+            fPrefixes = prefixes;
+            String[] uris = new String[fNamespaceCount * 2];
+            System.arraycopy(fURIs, 0, uris, 0, fNamespaceCount);
+            fURIs = uris;
+        }
+        fPrefixes[fNamespaceCount] = prefix != null ? prefix : "";
+        fURIs[fNamespaceCount] = uri != null ? uri : "";
+        ++fNamespaceCount;
+    } // startPrefixMapping(String,String)
+
+    public void endPrefixMapping(String prefix) {
+        // the declarations go out of scope with their element
+    } // endPrefixMapping(String)
+
+    public void startElement(String uri, String localName, String qName,
+            Attributes attributes) throws SAXException {
+        try {
+            if (qName == null || qName.length() == 0) {
+                qName = getQName(uri, localName, true);
+            }
+            startTag(qName);
+            // write the namespace declarations which are not among the
+            // attributes, then the attributes
+            for (int i = fDeclaredCount; i < fNamespaceCount; ++i) {
+                String name = fPrefixes[i].length() == 0 ? "xmlns" : "xmlns:" + fPrefixes[i];
+                if (attributes == null || attributes.getIndex(name) < 0) {
+                    writeAttribute(name, fURIs[i]);
+                }
+            }
+            fDeclaredCount = fNamespaceCount;
+            if (attributes != null) {
+                final int length = attributes.getLength();
+                for (int i = 0; i < length; ++i) {
+                    String name = attributes.getQName(i);
+                    if (name == null || name.length() == 0) {
+                        name = getQName(attributes.getURI(i), attributes.getLocalName(i), false);
+                    }
+                    writeAttribute(name, attributes.getValue(i));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // startElement(String,String,String,Attributes)
+
+    public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+        try {
+            if (qName == null || qName.length() == 0) {
+                qName = getQName(uri, localName, true);
+            }
+            endTag(qName);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // endElement(String,String,String)
+
+    public void characters(char[] ch, int start, int length)
+        throws SAXException {
+        try {
+            text(ch, start, length);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // characters(char[],int,int)
+
+    public void ignorableWhitespace(char[] ch, int start, int length)
+        throws SAXException {
+        try {
+            whitespace(ch, start, length);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // ignorableWhitespace(char[],int,int)
+
+    public void processingInstruction(String target, String data)
+        throws SAXException {
+        try {
+            if (data != null) {
+                writeProcessingInstruction(target, data.toCharArray(), 0, data.length());
+            }
+            else {
+                writeProcessingInstruction(target, null, 0, 0);
+            }
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // processingInstruction(String,String)
+
+    public void skippedEntity(String name) throws SAXException {
+        try {
+            if (fDepth > 0 && name.charAt(0) != '%' && !name.equals("[dtd]")) {
+                startContent();
+                write('&');
+                write(name);
+                write(';');
+                fAfterText = true;
+            }
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // skippedEntity(String)
+
+    //
+    // LexicalHandler methods
+    //
+
+    public void startDTD(String name, String publicId, String systemId)
+        throws SAXException {
+        try {
+            writeDocType(name, publicId, systemId);
+            fInDTD = true;
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // startDTD(String,String,String)
+
+    public void endDTD() {
+        fInDTD = false;
+    } // endDTD()
+
+    public void startEntity(String name) {
+    } // startEntity(String)
+
+    public void endEntity(String name) {
+    } // endEntity(String)
+
+    public void startCDATA() throws SAXException {
+        try {
+            startCDATAIO();
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // startCDATA()
+
+    public void endCDATA() throws SAXException {
+        try {
+            endCDATAIO();
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // endCDATA()
+
+    public void comment(char[] ch, int start, int length)
+        throws SAXException {
+        try {
+            writeComment(ch, start, length);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    } // comment(char[],int,int)
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    public void startDocument(XMLLocator locator, String encoding,
+            NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        try {
+            startDocumentIO();
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    public void xmlDecl(String version, String encoding, String standalone,
+            Augmentations augs) throws XNIException {
+        // the declaration is written from the output format
+    } // xmlDecl(String,String,String,Augmentations)
+
+    public void doctypeDecl(String rootElement, String publicId,
+            String systemId, Augmentations augs) throws XNIException {
+        try {
+            writeDocType(rootElement, publicId, systemId);
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // doctypeDecl(String,String,String,Augmentations)
+
+    public void comment(XMLString text, Augmentations augs)
+        throws XNIException {
+        try {
+            writeComment(text.ch, text.offset, text.length);
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // comment(XMLString,Augmentations)
+
+    public void processingInstruction(String target, XMLString data,
+            Augmentations augs) throws XNIException {
+        try {
+            if (data != null) {
+                writeProcessingInstruction(target, data.ch, data.offset, data.length);
+            }
+            else {
+                writeProcessingInstruction(target, null, 0, 0);
+            }
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    public void startElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        try {
+            // namespace declarations are among the attributes
+            startTag(element.rawname);
+            if (attributes != null) {
+                final int length = attributes.getLength();
+                for (int i = 0; i < length; ++i) {
+                    writeAttribute(attributes.getQName(i), attributes.getValue(i));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    public void emptyElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        startElement(element, attributes, augs);
+        endElement(element, augs);
+    } // emptyElement(QName,XMLAttributes,Augmentations)
+
+    public void startGeneralEntity(String name,
+            XMLResourceIdentifier identifier, String encoding,
+            Augmentations augs) throws XNIException {
+    } // startGeneralEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+    } // textDecl(String,String,Augmentations)
+
+    public void endGeneralEntity(String name, Augmentations augs)
+        throws XNIException {
+    } // endGeneralEntity(String,Augmentations)
+
+    public void characters(XMLString text, Augmentations augs)
+        throws XNIException {
+        try {
+            text(text.ch, text.offset, text.length);
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // characters(XMLString,Augmentations)
+
+    public void ignorableWhitespace(XMLString text, Augmentations augs)
+        throws XNIException {
+        try {
+            whitespace(text.ch, text.offset, text.length);
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    public void endElement(QName element, Augmentations augs)
+        throws XNIException {
+        try {
+            endTag(element.rawname);
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // endElement(QName,Augmentations)
+
+    public void startCDATA(Augmentations augs) throws XNIException {
+        try {
+            startCDATAIO();
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // startCDATA(Augmentations)
+
+    public void endCDATA(Augmentations augs) throws XNIException {
+        try {
+            endCDATAIO();
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // endCDATA(Augmentations)
+
+    public void endDocument(Augmentations augs) throws XNIException {
+        try {
+            endDocumentIO();
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // endDocument(Augmentations)
+
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    } // setDocumentSource(XMLDocumentSource)
+
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    } // getDocumentSource():XMLDocumentSource
+
+    //
+    // Private methods
+    //
+
+    /** Returns the given output format, or a default one. */
+    private static OutputFormat getFormat(OutputFormat format) {
+        return format != null ? format : new OutputFormat(Method.XML, null, false);
+    } // getFormat(OutputFormat):OutputFormat
+
+    /** Starts a document, writing the XML declaration. */
+    private void startDocumentIO() throws IOException {
+        fLength = 0;
+        fDepth = 0;
+        fPreserveSpace[0] = fFormat.getPreserveSpace();
+        fNamespaceCount = fDeclaredCount = 0;
+        fStartTagOpen = fAfterText = fAfterRoot = false;
+        fDocTypeWritten = fInDTD = fInCDATA = false;
+        fHighSurrogate = 0;
+        fStarted = true;
+        if (!fFormat.getOmitXMLDeclaration()) {
+            write("<?xml version=\"");
+            write(fFormat.getVersion() != null ? fFormat.getVersion() : "1.0");
+            write('"');
+            if (fFormat.getEncoding() != null) {
+                write(" encoding=\"");
+                write(fFormat.getEncoding());
+                write('"');
+            }
+            if (fFormat.getStandalone() && fFormat.getDoctypeSystem() == null
+                    && fFormat.getDoctypePublic() == null) {
+                write(" standalone=\"yes\"");
+            }
+            write("?>");
+            write(fLineSeparator);
+        }
+    } // startDocumentIO()
+
+    /** Ends a document, flushing the output. */
+    private void endDocumentIO() throws IOException {
+        checkSurrogate();
+        flushBuffer();
+        fWriter.flush();
+        fStarted = false;
+    } // endDocumentIO()
+
+    /**
+     * Writes the document type declaration, if it is the first one
+     * and has a system identifier.
+     */
+    private void writeDocType(String rootElement, String publicId, String systemId)
+        throws IOException {
+        if (!fStarted) {
+            startDocumentIO();
+        }
+        if (fDocTypeWritten || fDepth > 0 || fAfterRoot || fFormat.getOmitDocumentType()) {
+            return;
+        }
+        fDocTypeWritten = true;
+        if (systemId == null) {
+            return;
+        }
+        write("<!DOCTYPE ");
+        write(rootElement);
+        if (publicId != null) {
+            write(" PUBLIC ");
+            writeDoctypeURL(publicId);
+            write(' ');
+        }
+        else {
+            write(" SYSTEM ");
+        }
+        writeDoctypeURL(systemId);
+        write('>');
+        write(fLineSeparator);
+    } // writeDocType(String,String,String)
+
+    /** Writes a public or system identifier. */
+    private void writeDoctypeURL(String url) throws IOException {
+        write('"');
+        final int length = url.length();
+        for (int i = 0; i < length; ++i) {
+            char c = url.charAt(i);
+            if (c == '"' || c < 0x20 || c > 0x7F) {
+                write('%');
+                write(Integer.toHexString(c));
+            }
+            else {
+                write(c);
+            }
+        }
+        write('"');
+    } // writeDoctypeURL(String)
+
+    /** Writes the start of a start tag, and enters the element. */
+    private void startTag(String name) throws IOException {
+        if (!fStarted) {
+            startDocumentIO();
+        }
+        if (fDepth == 0) {
+            if (fAfterRoot) {
+                write(fLineSeparator);
+            }
+            else if (!fDocTypeWritten) {
+                writeDocType(name, fFormat.getDoctypePublic(), fFormat.getDoctypeSystem());
+            }
+        }
+        else {
+            startContent();
+            if (fIndenting && !fAfterText && !fPreserveSpace[fDepth]) {
+                breakLine(fDepth);
+            }
+        }
+        // enter the element
+        ++fDepth;
+        if (fDepth == fPreserveSpace.length) {
+            boolean[] preserveSpace = new boolean[fDepth * 2];
+            System.arraycopy(fPreserveSpace, 0, preserveSpace, 0, fDepth);
+            fPreserveSpace = preserveSpace;
+            int[] contexts = new int[fDepth * 2];
+            System.arraycopy(fNamespaceContexts, 0, contexts, 0, fDepth);
+            fNamespaceContexts = contexts;
+        }
+        fPreserveSpace[fDepth] = fPreserveSpace[fDepth - 1];
+        fNamespaceContexts[fDepth] = fDeclaredCount;
+        write('<');
+        write(name);
+        fStartTagOpen = true;
+        fAfterText = false;
+    } // startTag(String)
+
+    /** Writes an attribute of the current start tag. */
+    private void writeAttribute(String name, String value) throws IOException {
+        if (value == null) {
+            value = "";
+        }
+        write(' ');
+        write(name);
+        write("=\"");
+        final int length = value.length();
+        for (int offset = 0; offset < length; offset += VALUE_BUFFER_SIZE) {
+            int count = Math.min(VALUE_BUFFER_SIZE, length - offset);
+            value.getChars(offset, offset + count, fValueBuffer, 0);
+            writeEscaped(fValueBuffer, 0, count, ATTRIBUTE);
+        }
+        checkSurrogate();
+        write('"');
+        // If the attribute xml:space exists, determine whether
+        // to preserve spaces in this and child nodes based on
+        // its value.
+        if (name.equals("xml:space")) {
+            fPreserveSpace[fDepth] = value.equals("preserve") || fFormat.getPreserveSpace();
+        }
+    } // writeAttribute(String,String)
+
+    /** Writes an end tag, and leaves the element. */
+    private void endTag(String name) throws IOException {
+        checkSurrogate();
+        if (fStartTagOpen) {
+            write("/>");
+            fStartTagOpen = false;
+        }
+        else {
+            if (fInCDATA) {
+                endCDATAIO();
+            }
+            if (fIndenting && !fAfterText && !fPreserveSpace[fDepth]) {
+                breakLine(fDepth - 1);
+            }
+            write("</");
+            write(name);
+            write('>');
+        }
+        fNamespaceCount = fDeclaredCount = fNamespaceContexts[fDepth];
+        --fDepth;
+        fAfterText = false;
+        if (fDepth == 0) {
+            fAfterRoot = true;
+            flushBuffer();
+        }
+    } // endTag(String)
+
+    /**
+     * Closes the start tag of the current element before its content.
+     */
+    private void startContent() throws IOException {
+        if (fStartTagOpen) {
+            write('>');
+            fStartTagOpen = false;
+        }
+    } // startContent()
+
+    /** Writes character data. */
+    private void text(char[] ch, int offset, int length) throws IOException {
+        if (fDepth == 0) {
+            // only white space may appear outside of the root element
+            return;
+        }
+        startContent();
+        writeEscaped(ch, offset, length, fInCDATA ? CDATA : CONTENT);
+        fAfterText = true;
+    } // text(char[],int,int)
+
+    /** Writes ignorable white space, unless indenting. */
+    private void whitespace(char[] ch, int offset, int length) throws IOException {
+        if (!fIndenting || fPreserveSpace[fDepth]) {
+            text(ch, offset, length);
+        }
+    } // whitespace(char[],int,int)
+
+    /** Starts a CDATA section. */
+    private void startCDATAIO() throws IOException {
+        checkSurrogate();
+        if (fDepth > 0 && !fInCDATA) {
+            startContent();
+            write("<![CDATA[");
+            fInCDATA = true;
+            fCDATABrackets = 0;
+            fAfterText = true;
+        }
+    } // startCDATAIO()
+
+    /** Ends a CDATA section. */
+    private void endCDATAIO() throws IOException {
+        checkSurrogate();
+        if (fInCDATA) {
+            write("]]>");
+            fInCDATA = false;
+        }
+    } // endCDATAIO()
+
+    /**
+     * Writes a comment. As in {@link BaseMarkupSerializer}, the comment
+     * ends before any "-->" in its text.
+     */
+    private void writeComment(char[] ch, int offset, int length) throws IOException {
+        if (fInDTD || fFormat.getOmitComments()) {
+            return;
+        }
+        startMarkup();
+        write("<!--");
+        write(ch, offset, indexOf(ch, offset, length, '-', '-', '>') - offset);
+        write("-->");
+        endMarkup();
+    } // writeComment(char[],int,int)
+
+    /**
+     * Writes a processing instruction. As in {@link BaseMarkupSerializer},
+     * the target and data end before any "?>" in their text.
+     */
+    private void writeProcessingInstruction(String target, char[] ch, int offset, int length)
+        throws IOException {
+        if (fInDTD) {
+            return;
+        }
+        startMarkup();
+        write("<?");
+        int index = target.indexOf("?>");
+        write(index >= 0 ? target.substring(0, index) : target);
+        if (ch != null) {
+            write(' ');
+            write(ch, offset, indexOf(ch, offset, length, '?', '>', '\0') - offset);
+        }
+        write("?>");
+        endMarkup();
+    } // writeProcessingInstruction(String,char[],int,int)
+
+    /** Prepares to write a comment or a processing instruction. */
+    private void startMarkup() throws IOException {
+        if (!fStarted) {
+            startDocumentIO();
+        }
+        checkSurrogate();
+        if (fDepth > 0) {
+            if (fInCDATA) {
+                endCDATAIO();
+            }
+            startContent();
+            if (fIndenting && !fAfterText && !fPreserveSpace[fDepth]) {
+                breakLine(fDepth);
+            }
+        }
+        else if (fAfterRoot) {
+            write(fLineSeparator);
+        }
+    } // startMarkup()
+
+    /** Completes a comment or a processing instruction. */
+    private void endMarkup() throws IOException {
+        if (fDepth == 0 && !fAfterRoot) {
+            write(fLineSeparator);
+        }
+        fAfterText = false;
+    } // endMarkup()
+
+    /**
+     * Returns the index of the first occurrence of the given two or
+     * three characters (if the third is not 0), or the end of the range.
+     */
+    private static int indexOf(char[] ch, int offset, int length, char c1, char c2, char c3) {
+        final int end = offset + length;
+        final int last = end - (c3 != '\0' ? 2 : 1);
+        for (int i = offset; i < last; ++i) {
+            if (ch[i] == c1 && ch[i + 1] == c2 && (c3 == '\0' || ch[i + 2] == c3)) {
+                return i;
+            }
+        }
+        return end;
+    } // indexOf(char[],int,int,char,char,char):int
+
+    /**
+     * Returns the qualified name of an element or attribute from the
+     * namespaces in scope, when the event does not supply it.
+     */
+    private String getQName(String uri, String localName, boolean element) {
+        if (uri == null || uri.length() == 0) {
+            return localName;
+        }
+        // the most recent declaration of the URI, unless its prefix
+        // has been declared again
+        for (int i = fNamespaceCount - 1; i >= 0; --i) {
+            if (uri.equals(fURIs[i])) {
+                String prefix = fPrefixes[i];
+                int j = fNamespaceCount - 1;
+                while (j > i && !prefix.equals(fPrefixes[j])) {
+                    --j;
+                }
+                if (j == i && (prefix.length() > 0 || element)) {
+                    return prefix.length() > 0 ? prefix + ':' + localName : localName;
+                }
+            }
+        }
+        return localName;
+    } // getQName(String,String,boolean):String
+
+    /** Breaks the line and indents it to the given depth. */
+    private void breakLine(int depth) throws IOException {
+        write(fLineSeparator);
+        for (int i = depth * fFormat.getIndent(); i > 0; --i) {
+            write(' ');
+        }
+    } // breakLine(int)
+
+    /**
+     * Writes character data, escaping the characters which cannot
+     * appear literally in the given context, in runs of characters
+     * that need no escaping.
+     */
+    private void writeEscaped(char[] ch, int offset, int length, int mode)
+        throws IOException {
+        final int end = offset + length;
+        final int last = mode == CDATA ? 0xD7FF : Math.min(fEncodingInfo.lastPrintable, 0xD7FF);
+        if (fHighSurrogate != 0 && offset < end) {
+            writeSurrogates(fHighSurrogate, ch[offset++], mode);
+            fHighSurrogate = 0;
+        }
+        while (offset < end) {
+            int run = offset;
+            char c;
+            if (mode == CONTENT) {
+                while (run < end && ((c = ch[run]) >= ' ' ?
+                        c <= last && c != '<' && c != '&' && c != '>' :
+                        c == '\n' || c == '\t')) {
+                    ++run;
+                }
+            }
+            else if (mode == ATTRIBUTE) {
+                while (run < end && (c = ch[run]) >= ' ' && c <= last
+                        && c != '<' && c != '&' && c != '"') {
+                    ++run;
+                }
+            }
+            else {
+                while (run < end && ((c = ch[run]) >= ' ' ?
+                        c <= last && c <= fEncodingInfo.lastPrintable && c != '>' :
+                        c == '\n' || c == '\t' || c == '\r')) {
+                    ++run;
+                }
+            }
+            if (run > offset) {
+                if (mode == CDATA) {
+                    fCDATABrackets = (ch[run - 1] != ']') ? 0 :
+                        (run - offset > 1 && ch[run - 2] == ']') ? 2 : Math.min(fCDATABrackets + 1, 2);
+                }
+                write(ch, offset, run - offset);
+                offset = run;
+                if (offset == end) {
+                    break;
+                }
+            }
+            c = ch[offset++];
+            if (XMLChar.isHighSurrogate(c)) {
+                if (offset == end) {
+                    // the low surrogate comes with the next characters
+                    fHighSurrogate = c;
+                    break;
+                }
+                writeSurrogates(c, ch[offset++], mode);
+            }
+            else if (!XMLChar.isValid(c)) {
+                throw invalidCharacter(c);
+            }
+            else if (mode == CDATA) {
+                if (c == '>') {
+                    // split "]]>" between two sections
+                    write(fCDATABrackets == 2 ? "]]><![CDATA[>" : ">");
+                }
+                else if (fEncodingInfo.isPrintable(c)) {
+                    write(c);
+                }
+                else {
+                    write("]]>");
+                    writeCharRef(c);
+                    write("<![CDATA[");
+                }
+                fCDATABrackets = 0;
+            }
+            else if (c == '<') {
+                write("&lt;");
+            }
+            else if (c == '&') {
+                write("&amp;");
+            }
+            else if (c == '>') {
+                write("&gt;");
+            }
+            else if (c == '"') {
+                write("&quot;");
+            }
+            else if (c >= ' ' && fEncodingInfo.isPrintable(c)) {
+                write(c);
+            }
+            else {
+                // CR, and NL and TAB in attribute values
+                writeCharRef(c);
+            }
+        }
+    } // writeEscaped(char[],int,int,int)
+
+    /** Writes a surrogate pair. */
+    private void writeSurrogates(char high, char low, int mode) throws IOException {
+        if (!XMLChar.isLowSurrogate(low)) {
+            throw invalidCharacter(low);
+        }
+        int supplemental = XMLChar.supplemental(high, low);
+        if (!XMLChar.isValid(supplemental)) {
+            throw invalidCharacter(supplemental);
+        }
+        if (fEncodingInfo.lastPrintable >= 0xFFFF) {
+            write(high);
+            write(low);
+        }
+        else if (mode == CDATA) {
+            write("]]>");
+            writeCharRef(supplemental);
+            write("<![CDATA[");
+        }
+        else {
+            writeCharRef(supplemental);
+        }
+        if (mode == CDATA) {
+            fCDATABrackets = 0;
+        }
+    } // writeSurrogates(char,char,int)
+
+    /** Fails on a high surrogate which is not followed by a low surrogate. */
+    private void checkSurrogate() throws IOException {
+        if (fHighSurrogate != 0) {
+            char c = fHighSurrogate;
+            fHighSurrogate = 0;
+            throw invalidCharacter(c);
+        }
+    } // checkSurrogate()
+
+    /** Returns the exception reporting an invalid XML character. */
+    private static IOException invalidCharacter(int c) {
+        return new IOException("The character '&#x" + Integer.toHexString(c)
+                + ";' is an invalid XML character");
+    } // invalidCharacter(int):IOException
+
+    /** Writes a character reference. */
+    private void writeCharRef(int c) throws IOException {
+        write("&#x");
+        write(Integer.toHexString(c));
+        write(';');
+    } // writeCharRef(int)
+
+    //
+    // Output methods
+    //
+
+    /** Writes a character. */
+    private void write(char c) throws IOException {
+        if (fLength == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        fBuffer[fLength++] = c;
+    } // write(char)
+
+    /** Writes a string. */
+    private void write(String s) throws IOException {
+        final int length = s.length();
+        int offset = 0;
+        while (offset < length) {
+            if (fLength == BUFFER_SIZE) {
+                flushBuffer();
+            }
+            int count = Math.min(length - offset, BUFFER_SIZE - fLength);
+            s.getChars(offset, offset + count, fBuffer, fLength);
+            fLength += count;
+            offset += count;
+        }
+    } // write(String)
+
+    /** Writes characters. */
+    private void write(char[] ch, int offset, int length) throws IOException {
+        if (length > BUFFER_SIZE - fLength) {
+            flushBuffer();
+            if (length >= BUFFER_SIZE) {
+                fWriter.write(ch, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(ch, offset, fBuffer, fLength, length);
+        fLength += length;
+    } // write(char[],int,int)
+
+    /** Writes the content of the output buffer to the writer. */
+    private void flushBuffer() throws IOException {
+        if (fLength > 0) {
+            fWriter.write(fBuffer, 0, fLength);
+            fLength = 0;
+        }
+    } // flushBuffer()
+
+} // class StreamingXMLSerializer
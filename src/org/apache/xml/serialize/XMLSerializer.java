@@ -136,6 +136,9 @@ extends BaseMarkupSerializer {
 
     private boolean fPreserveSpace;
 
+    /** Characters of the string being printed, reused between strings. */
+    private char[] fCharBuffer = new char[64];
+
 
     /**
      * Constructs a new serializer. The serializer cannot be used without
@@ -1226,14 +1229,32 @@ extends BaseMarkupSerializer {
     //
     protected void printEscaped(String source) throws IOException {
         int length = source.length();
-        for (int i = 0; i < length; ++i) {
-            int ch = source.charAt(i);
+        char[] chars = getChars(source);
+        int i = 0;
+        while (i < length) {
+            // print the characters which need neither escaping nor checking at once
+            int run = i;
+            int last = _encodingInfo.lastPrintable;
+            char c;
+            while (run < length && (c = chars[run]) >= ' ' && c < 0xD800 && c <= last
+                    && c != '<' && c != '&' && c != '"') {
+                ++run;
+            }
+            if (run > i) {
+                _printer.printText(chars, i, run - i);
+                i = run;
+                if (i == length) {
+                    break;
+                }
+            }
+            int ch = chars[i];
             if (!XMLChar.isValid(ch)) {
                 if (++i < length) {
-                    surrogates(ch, source.charAt(i), false);
+                    surrogates(ch, chars[i], false);
                 } else {
                     fatalError("The character '" + (char) ch + "' is an invalid XML character");
                 }
+                ++i;
                 continue;
             }
             // escape NL, CR, TAB
@@ -1250,6 +1271,7 @@ extends BaseMarkupSerializer {
             } else {
                 printHex(ch);
             }
+            ++i;
         }
     }
 
@@ -1275,111 +1297,73 @@ extends BaseMarkupSerializer {
 
     protected void printText( String text, boolean preserveSpace, boolean unescaped )
     throws IOException {
-        int index;
-        char ch;
-        int length = text.length();
-        if ( preserveSpace ) {
-            // Preserving spaces: the text must print exactly as it is,
-            // without breaking when spaces appear in the text and without
-            // consolidating spaces. If a line terminator is used, a line
-            // break will occur.
-            for ( index = 0 ; index < length ; ++index ) {
-                ch = text.charAt( index );
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if (++index <length) {
-                        surrogates(ch, text.charAt(index), true);
-                    } else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
-                }
-                if ( unescaped ) {
-                    _printer.printText( ch );
-                } else
-                    printXMLChar( ch );
-            }
-        } else {
-            // Not preserving spaces: print one part at a time, and
-            // use spaces between parts to break them into different
-            // lines. Spaces at beginning of line will be stripped
-            // by printing mechanism. Line terminator is treated
-            // no different than other text part.
-            for ( index = 0 ; index < length ; ++index ) {
-                ch = text.charAt( index );
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if (++index <length) {
-                        surrogates(ch, text.charAt(index), true);
-                    } else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
-                }
-
-				if ( unescaped )
-                    _printer.printText( ch );
-                else
-                    printXMLChar( ch);
-            }
-        }
+        printChars( getChars( text ), 0, text.length(), unescaped );
     }
 
 
 
     protected void printText( char[] chars, int start, int length,
                               boolean preserveSpace, boolean unescaped ) throws IOException {
+        printChars( chars, start, length, unescaped );
+    }
 
-        if ( preserveSpace ) {
-            // Preserving spaces: the text must print exactly as it is,
-            // without breaking when spaces appear in the text and without
-            // consolidating spaces. If a line terminator is used, a line
-            // break will occur.
-            while ( length-- > 0 ) {
-                char ch = chars[start++];
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if ( length-- > 0 ) {
-                        surrogates(ch, chars[start++], true);
-                    } 
-                    else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
-                }
-                if ( unescaped ) {
-                    _printer.printText( ch );
-                } 
-                else {
-                    printXMLChar( ch );
-                }
+    /**
+     * Prints text data, whether spaces are preserved or not: the
+     * indenting printer only breaks lines at the spaces printed
+     * between parts of the text.
+     */
+    private void printChars( char[] chars, int start, int length, boolean unescaped )
+    throws IOException {
+        final int end = start + length;
+        while ( start < end ) {
+            // print the characters which need neither escaping nor
+            // checking at once
+            int run = start;
+            int last = unescaped ? 0xD7FF : _encodingInfo.lastPrintable;
+            char c;
+            while ( run < end && ( ( c = chars[run] ) >= ' ' ?
+                    c < 0xD800 && c <= last && ( unescaped || ( c != '<' && c != '&' && c != '>' ) ) :
+                    c == '\n' || c == '\t' || ( unescaped && c == '\r' ) ) ) {
+                ++run;
             }
-        } else {
-            // Not preserving spaces: print one part at a time, and
-            // use spaces between parts to break them into different
-            // lines. Spaces at beginning of line will be stripped
-            // by printing mechanism. Line terminator is treated
-            // no different than other text part.
-            while ( length-- > 0 ) {
-                char ch = chars[start++];
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if ( length-- > 0 ) {
-                        surrogates(ch, chars[start++], true);
-                    } 
-                    else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
+            if ( run > start ) {
+                _printer.printText( chars, start, run - start );
+                start = run;
+                if ( start == end ) {
+                    break;
                 }
-                if ( unescaped ) {
-                    _printer.printText( ch );
+            }
+            char ch = chars[start++];
+            if (!XMLChar.isValid(ch)) {
+                // check if it is surrogate
+                if ( start < end ) {
+                    surrogates(ch, chars[start++], true);
                 } 
                 else {
-                    printXMLChar( ch );
+                    fatalError("The character '"+ch+"' is an invalid XML character"); 
                 }
+                continue;
             }
+            if ( unescaped ) {
+                _printer.printText( ch );
+            } 
+            else {
+                printXMLChar( ch );
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer holding the characters of the given string. The
+     * buffer is reused by the next call.
+     */
+    private char[] getChars( String text ) {
+        int length = text.length();
+        if ( fCharBuffer.length < length ) {
+            fCharBuffer = new char[ Math.max( length, fCharBuffer.length * 2 ) ];
         }
+        text.getChars( 0, length, fCharBuffer, 0 );
+        return fCharBuffer;
     }
 
 
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.deferred;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.apache.xerces.dom.DeferredDocumentImpl;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.util.SecurityManager;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Entity;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Notation;
+import org.w3c.dom.Text;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Parses documents with deferred node expansion on and off, and checks
+ * that both trees are the same, with and without entity reference nodes
+ * and ignorable whitespace. The documents are the XML files found under
+ * the directories given on the command line (by default, the tests and
+ * data directories) and a few documents whose text ends up in adjacent
+ * text nodes of the deferred document. Once a deferred tree has been
+ * read completely, its text arena must have been released.
+ *
+ * @version $Id$
+ */
+public class Test {
+
+    /** Documents whose text is split into adjacent text nodes. */
+    private static final String[] DOCUMENTS = {
+        "<!DOCTYPE r [<!ENTITY e 'b'>]><r>a&e;c</r>",
+        "<!DOCTYPE r [<!ENTITY e 'b<x/>c'>]><r>a&e;d&e;&e;e</r>",
+        "<!DOCTYPE r [<!ENTITY e 'b'><!ENTITY f '&e;&e;'>]><r><s>a&f;c</s>&f;</r>",
+        "<!DOCTYPE r [<!ELEMENT r (s)*><!ELEMENT s (#PCDATA)><!ENTITY e '\n '>]><r>&e;<s>a</s>\n&e;</r>",
+    };
+
+    public static void main(String argv[]) {
+
+        System.out.println("Running dom.deferred.Test...");
+        String[] dirs = argv.length > 0 ? argv : new String[] { "tests", "data" };
+
+        try {
+            Vector files = new Vector();
+            for (int i = 0; i < dirs.length; i++) {
+                findFiles(new File(dirs[i]), files);
+            }
+            int compared = 0;
+            for (int options = 0; options < 4; options++) {
+                boolean entityRefs = (options & 1) != 0;
+                boolean whitespace = (options & 2) != 0;
+                for (int i = 0; i < files.size(); i++) {
+                    String uri = ((File) files.elementAt(i)).toURI().toString();
+                    if (compare(uri, new InputSource(uri), new InputSource(uri), entityRefs, whitespace)) {
+                        compared++;
+                    }
+                }
+                for (int i = 0; i < DOCUMENTS.length; i++) {
+                    if (!compare("document " + i,
+                            new InputSource(new StringReader(DOCUMENTS[i])),
+                            new InputSource(new StringReader(DOCUMENTS[i])),
+                            entityRefs, whitespace)) {
+                        fail("document " + i + " could not be parsed");
+                    }
+                }
+            }
+            if (compared == 0) {
+                fail("no documents found");
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.println("done.");
+
+    } // main(String[])
+
+    /**
+     * Parses a document with and without deferred node expansion, and
+     * checks that the trees, or the errors, are the same. Returns false
+     * if the document could not be parsed.
+     */
+    private static boolean compare(String name, InputSource deferredSource, InputSource source,
+            boolean entityRefs, boolean whitespace) throws Exception {
+        String expected;
+        try {
+            expected = dump(parse(source, false, entityRefs, whitespace));
+        }
+        catch (Exception e) {
+            expected = "exception " + e.getMessage();
+        }
+        String actual;
+        Document document = null;
+        try {
+            document = parse(deferredSource, true, entityRefs, whitespace);
+            actual = dump(document);
+        }
+        catch (Exception e) {
+            actual = "exception " + e.getMessage();
+        }
+        if (!expected.equals(actual)) {
+            System.err.println(name + ", entity reference nodes " + entityRefs
+                    + ", ignorable whitespace " + whitespace + ":");
+            System.err.println("expanded:\n" + expected);
+            System.err.println("deferred:\n" + actual);
+            fail(name + ": the deferred document differs");
+        }
+        if (document instanceof DeferredDocumentImpl) {
+            Field arena = DeferredDocumentImpl.class.getDeclaredField("fTextArena");
+            arena.setAccessible(true);
+            if (arena.get(document) != null) {
+                fail(name + ": the text arena was not released");
+            }
+        }
+        return document != null;
+    } // compare(String,InputSource,InputSource,boolean,boolean):boolean
+
+    private static Document parse(InputSource source, boolean deferred,
+            boolean entityRefs, boolean whitespace) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", deferred);
+        parser.setFeature("http://apache.org/xml/features/dom/create-entity-ref-nodes", entityRefs);
+        parser.setFeature("http://apache.org/xml/features/dom/include-ignorable-whitespace", whitespace);
+        // documents which expand entities without end fail the same way
+        parser.setProperty("http://apache.org/xml/properties/security-manager", new SecurityManager());
+        // only local documents are read
+        parser.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                if (systemId != null && !systemId.startsWith("file:")) {
+                    return new InputSource(new StringReader(""));
+                }
+                return null;
+            }
+        });
+        parser.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException e) {}
+            public void error(SAXParseException e) {}
+            public void fatalError(SAXParseException e) throws SAXParseException {
+                throw e;
+            }
+        });
+        parser.parse(source);
+        return parser.getDocument();
+    } // parse(InputSource,boolean,boolean,boolean):Document
+
+    private static void findFiles(File dir, Vector files) {
+        File[] list = dir.listFiles();
+        if (list == null) {
+            return;
+        }
+        Arrays.sort(list);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i].isDirectory()) {
+                findFiles(list[i], files);
+            }
+            else if (list[i].getName().endsWith(".xml")) {
+                files.addElement(list[i]);
+            }
+        }
+    } // findFiles(File,Vector)
+
+    /** Returns a description of the tree under a node. */
+    private static String dump(Node node) {
+        StringBuffer buffer = new StringBuffer();
+        dump(node, 0, buffer);
+        return buffer.toString();
+    } // dump(Node):String
+
+    private static void dump(Node node, int depth, StringBuffer buffer) {
+        for (int i = 0; i < depth; i++) {
+            buffer.append("  ");
+        }
+        buffer.append(node.getNodeType()).append(' ').append(node.getNodeName());
+        if (node.getNamespaceURI() != null) {
+            buffer.append(" {").append(node.getNamespaceURI()).append('}');
+        }
+        if (node.getNodeValue() != null) {
+            buffer.append(" [").append(node.getNodeValue()).append(']');
+        }
+        if (node instanceof Text && ((Text) node).isElementContentWhitespace()) {
+            buffer.append(" ignorable");
+        }
+        buffer.append('\n');
+        if (node instanceof Element) {
+            dumpMap(node.getAttributes(), depth + 1, buffer);
+        }
+        else if (node instanceof DocumentType) {
+            DocumentType doctype = (DocumentType) node;
+            buffer.append(doctype.getPublicId()).append(' ').append(doctype.getSystemId()).append('\n');
+            buffer.append(doctype.getInternalSubset()).append('\n');
+            dumpMap(doctype.getEntities(), depth + 1, buffer);
+            dumpMap(doctype.getNotations(), depth + 1, buffer);
+        }
+        else if (node instanceof Entity) {
+            Entity entity = (Entity) node;
+            buffer.append(entity.getPublicId()).append(' ').append(entity.getSystemId())
+                  .append(' ').append(entity.getNotationName()).append('\n');
+        }
+        else if (node instanceof Notation) {
+            Notation notation = (Notation) node;
+            buffer.append(notation.getPublicId()).append(' ').append(notation.getSystemId()).append('\n');
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            dump(child, depth + 1, buffer);
+        }
+    } // dump(Node,int,StringBuffer)
+
+    /** Dumps the nodes of a map sorted by name, attributes with their specified flag. */
+    private static void dumpMap(NamedNodeMap map, int depth, StringBuffer buffer) {
+        String[] dumps = new String[map.getLength()];
+        for (int i = 0; i < dumps.length; i++) {
+            StringBuffer item = new StringBuffer();
+            Node node = map.item(i);
+            dump(node, depth, item);
+            if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+                item.append(((org.w3c.dom.Attr) node).getSpecified()).append('\n');
+            }
+            dumps[i] = item.toString();
+        }
+        Arrays.sort(dumps);
+        for (int i = 0; i < dumps.length; i++) {
+            buffer.append(dumps[i]);
+        }
+    } // dumpMap(NamedNodeMap,int,StringBuffer)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class Test
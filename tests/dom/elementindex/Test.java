@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.elementindex;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.xerces.dom.CoreDocumentImpl;
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that the lists returned by <code>getElementsByTagName</code>
+ * and <code>getElementsByTagNameNS</code> on a document agree with a
+ * walk of the document, with element indexing on and off. Lists are
+ * kept while the document is changed at random, by inserting, moving,
+ * replacing and removing elements, renaming them, changing their
+ * prefix, and turning indexing on and off, and are checked after every
+ * change along with lists requested again. The documents mix elements
+ * with and without namespaces, and are built both through the DOM and
+ * by the deferred parser.
+ *
+ * @version $Id$
+ */
+public class Test {
+
+    private static final String NS1 = "urn:ns1";
+
+    private static final String NS2 = "urn:ns2";
+
+    /** Tag names queried. */
+    private static final String[] TAG_NAMES = {
+        "*", "a", "b", "p:a", "q:b", "p:c", "none"
+    };
+
+    /** Namespace URIs and local names queried. */
+    private static final String[][] NAMES = {
+        { "*", "*" }, { "*", "a" }, { "*", "b" }, { "*", "none" },
+        { NS1, "a" }, { NS1, "b" }, { NS2, "b" }, { NS2, "c" }, { NS1, "none" },
+        { null, "a" }, { "", "b" }, { NS1, "*" }, { null, "*" }, { "", "*" },
+    };
+
+    /** Number of changes to each document. */
+    private static final int CHANGES = 250;
+
+    public static void main(String argv[]) {
+
+        System.out.println("Running dom.elementindex.Test...");
+
+        try {
+            Random random = new Random(7);
+            CoreDocumentImpl document = new DocumentImpl();
+            Element root = document.createElementNS(NS1, "p:root");
+            document.appendChild(root);
+            for (int i = 0; i < 60; i++) {
+                List elements = elements(document);
+                Element parent = (Element) elements.get(random.nextInt(elements.size()));
+                parent.appendChild(createElement(document, random));
+                if (random.nextInt(3) == 0) {
+                    parent.appendChild(document.createTextNode("text"));
+                }
+            }
+            run("new document", document, random);
+
+            StringBuffer xml = new StringBuffer();
+            xml.append("<root xmlns:p='").append(NS1).append("' xmlns:q='").append(NS2).append("'>");
+            for (int i = 0; i < 30; i++) {
+                xml.append("<a><p:a><b xmlns='").append(NS2).append("'><q:c/>text</b></p:a></a><p:b/>");
+            }
+            xml.append("</root>");
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", true);
+            parser.parse(new InputSource(new StringReader(xml.toString())));
+            run("parsed document", (CoreDocumentImpl) parser.getDocument(), random);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.println("done.");
+
+    } // main(String[])
+
+    /**
+     * Queries a document with indexing on and off, then changes it at
+     * random, checking the lists kept and new ones after every change.
+     */
+    private static void run(String name, CoreDocumentImpl document, Random random) {
+        List lists = new ArrayList();
+        List queries = new ArrayList();
+        for (int indexing = 0; indexing < 2; indexing++) {
+            document.setElementIndexing(indexing == 1);
+            query(document, lists, queries);
+        }
+        verify(name + ", before any change", document, lists, queries, random);
+        for (int i = 0; i < CHANGES; i++) {
+            String change = change(document, random);
+            String message = name + ", change " + i + " (" + change + ")";
+            verify(message, document, lists, queries, random);
+            if (random.nextInt(20) == 0) {
+                // keep lists requested with the current setting too
+                query(document, lists, queries);
+            }
+            // new lists
+            List newLists = new ArrayList();
+            List newQueries = new ArrayList();
+            query(document, newLists, newQueries);
+            verify(message + ", new lists", document, newLists, newQueries, random);
+        }
+    } // run(String,CoreDocumentImpl,Random)
+
+    /** Requests a list for every query. */
+    private static void query(CoreDocumentImpl document, List lists, List queries) {
+        for (int i = 0; i < TAG_NAMES.length; i++) {
+            lists.add(document.getElementsByTagName(TAG_NAMES[i]));
+            queries.add(new String[] { TAG_NAMES[i] });
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            lists.add(document.getElementsByTagNameNS(NAMES[i][0], NAMES[i][1]));
+            queries.add(NAMES[i]);
+        }
+    } // query(CoreDocumentImpl,List,List)
+
+    /** Makes one random change to a document, and returns its description. */
+    private static String change(CoreDocumentImpl document, Random random) {
+        List elements = elements(document);
+        Element root = document.getDocumentElement();
+        Element element = (Element) elements.get(random.nextInt(elements.size()));
+        switch (random.nextInt(9)) {
+        case 0: {
+            Node child = createElement(document, random);
+            element.insertBefore(child, element.getFirstChild());
+            if (random.nextBoolean()) {
+                child.appendChild(createElement(document, random));
+            }
+            return "insert";
+        }
+        case 1: {
+            // move an element, but not into itself
+            Element moved = (Element) elements.get(random.nextInt(elements.size()));
+            for (Node n = element; n != null; n = n.getParentNode()) {
+                if (n == moved) {
+                    return "no move";
+                }
+            }
+            element.appendChild(moved);
+            return "move";
+        }
+        case 2:
+            if (element == root) {
+                return "no replacement";
+            }
+            element.getParentNode().replaceChild(createElement(document, random), element);
+            return "replace";
+        case 3:
+            if (element == root || elements.size() < 20) {
+                return "no removal";
+            }
+            element.getParentNode().removeChild(element);
+            return "remove";
+        case 4: {
+            String[] names = { "a", "p:a", "b", "q:b", "c" };
+            String qualifiedName = names[random.nextInt(names.length)];
+            String namespaceURI = qualifiedName.startsWith("p:") ? NS1
+                : qualifiedName.startsWith("q:") ? NS2
+                : random.nextBoolean() ? null : NS2;
+            document.renameNode(element, namespaceURI, qualifiedName);
+            return "rename to {" + namespaceURI + "}" + qualifiedName;
+        }
+        case 5:
+            if (element.getNamespaceURI() == null) {
+                return "no prefix";
+            }
+            element.setPrefix(random.nextBoolean() ? null : "p");
+            return "prefix of " + element.getNodeName();
+        case 6:
+            document.setElementIndexing(!document.getElementIndexing());
+            return "indexing " + document.getElementIndexing();
+        case 7:
+            element.setAttribute("a", "b");
+            return "attribute";
+        default:
+            element.appendChild(document.createTextNode("text"));
+            return "text";
+        }
+    } // change(CoreDocumentImpl,Random):String
+
+    /** Creates an element with or without a namespace. */
+    private static Element createElement(CoreDocumentImpl document, Random random) {
+        switch (random.nextInt(6)) {
+        case 0:
+            return document.createElement("a");
+        case 1:
+            return document.createElement("b");
+        case 2:
+            return document.createElementNS(NS1, "p:a");
+        case 3:
+            return document.createElementNS(NS1, "b");
+        case 4:
+            return document.createElementNS(NS2, "q:b");
+        default:
+            return document.createElementNS(NS2, "c");
+        }
+    } // createElement(CoreDocumentImpl,Random):Element
+
+    /** Checks the lists against a walk of the document. */
+    private static void verify(String message, CoreDocumentImpl document, List lists,
+            List queries, Random random) {
+        List elements = elements(document);
+        for (int i = 0; i < lists.size(); i++) {
+            String[] query = (String[]) queries.get(i);
+            List expected = new ArrayList();
+            for (int j = 0; j < elements.size(); j++) {
+                Element element = (Element) elements.get(j);
+                if (query.length == 1 ? matches(element, query[0])
+                                      : matches(element, query[0], query[1])) {
+                    expected.add(element);
+                }
+            }
+            NodeList list = (NodeList) lists.get(i);
+            String name = message + ", list " + i + " for " + describe(query);
+            // read at random first, then in order
+            for (int j = 0; j < 3; j++) {
+                int index = random.nextInt(expected.size() + 1);
+                Node node = index < expected.size() ? (Node) expected.get(index) : null;
+                check(list.item(index) == node, name + ": item(" + index + ")");
+            }
+            check(list.getLength() == expected.size(),
+                  name + ": getLength() is " + list.getLength() + " rather than " + expected.size());
+            for (int j = 0; j < expected.size(); j++) {
+                check(list.item(j) == expected.get(j), name + ": item(" + j + ")");
+            }
+            check(list.item(expected.size()) == null, name + ": item(" + expected.size() + ")");
+        }
+    } // verify(String,CoreDocumentImpl,List,List,Random)
+
+    /** Returns the elements of a document, in document order. */
+    private static List elements(CoreDocumentImpl document) {
+        List elements = new ArrayList();
+        addElements(document, elements);
+        return elements;
+    } // elements(CoreDocumentImpl):List
+
+    private static void addElements(Node node, List elements) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                elements.add(child);
+                addElements(child, elements);
+            }
+        }
+    } // addElements(Node,List)
+
+    private static boolean matches(Element element, String tagName) {
+        return tagName.equals("*") || tagName.equals(element.getTagName());
+    } // matches(Element,String):boolean
+
+    /** Matches an element the way DOM Level 2 does, with "" as no namespace. */
+    private static boolean matches(Element element, String namespaceURI, String localName) {
+        if (!localName.equals("*") && !localName.equals(element.getLocalName())) {
+            return false;
+        }
+        if ("*".equals(namespaceURI)) {
+            return true;
+        }
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            return element.getNamespaceURI() == null;
+        }
+        return namespaceURI.equals(element.getNamespaceURI());
+    } // matches(Element,String,String):boolean
+
+    private static String describe(String[] query) {
+        return query.length == 1 ? query[0] : "{" + query[0] + "}" + query[1];
+    } // describe(String[]):String
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAIL: " + message);
+            System.exit(1);
+        }
+    } // check(boolean,String)
+
+} // class Test
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.frozen;
+
+import java.lang.reflect.Field;
+
+import org.apache.xerces.dom.CoreDocumentImpl;
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ranges.DocumentRange;
+import org.w3c.dom.ranges.Range;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.NodeIterator;
+
+import dom.util.Assertion;
+
+/**
+ * Reads a frozen deferred document from several threads at the same time,
+ * and checks that each thread sees the same tree as a single thread
+ * reading an unfrozen copy of the document, also through node iterators
+ * and ranges, which must not be registered with the frozen document, and
+ * that the frozen document cannot be modified.
+ *
+ * @version $Id$
+ */
+public class Test {
+
+    /** Number of reading threads. */
+    private static final int THREADS = 8;
+
+    public static void main(String argv[]) {
+
+        System.out.println("Running dom.frozen.Test...");
+        String uri = argv.length > 0 ? argv[0] : "data/personal.xml";
+
+        try {
+            final String expected = dump(parse(uri));
+            final Document document = parse(uri);
+            ((CoreDocumentImpl) document).freeze();
+            Assertion.verify(((CoreDocumentImpl) document).isFrozen());
+
+            final String[] results = new String[THREADS];
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        results[index] = dump(document);
+                    }
+                };
+            }
+            for (int i = 0; i < THREADS; i++) {
+                threads[i].start();
+            }
+            for (int i = 0; i < THREADS; i++) {
+                threads[i].join();
+            }
+            for (int i = 0; i < THREADS; i++) {
+                check(Assertion.equals(results[i], expected), "thread " + i + " saw another tree");
+            }
+            check(getList(document, "iterators") == null, "node iterators were registered");
+            check(getList(document, "ranges") == null, "ranges were registered");
+
+            // error checking stays on
+            ((CoreDocumentImpl) document).setStrictErrorChecking(false);
+            Element root = document.getDocumentElement();
+            try {
+                root.setAttribute("frozen", "true");
+                check(false, "setAttribute succeeded");
+            }
+            catch (DOMException e) {
+                check(e.code == DOMException.NO_MODIFICATION_ALLOWED_ERR, "setAttribute");
+            }
+            try {
+                root.appendChild(document.createElement("frozen"));
+                check(false, "appendChild succeeded");
+            }
+            catch (DOMException e) {
+                check(e.code == DOMException.NO_MODIFICATION_ALLOWED_ERR, "appendChild");
+            }
+            try {
+                document.removeChild(root);
+                check(false, "removeChild succeeded");
+            }
+            catch (DOMException e) {
+                check(e.code == DOMException.NO_MODIFICATION_ALLOWED_ERR, "removeChild");
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /** Exits with an error if the condition is false. */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAIL: " + message);
+            System.exit(1);
+        }
+    }
+
+    /** Returns a list of live objects which a document keeps. */
+    private static Object getList(Document document, String name) throws Exception {
+        Field field = DocumentImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(document);
+    }
+
+    /** Parses the given document with deferred node expansion. */
+    private static Document parse(String uri) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", true);
+        parser.parse(uri);
+        return parser.getDocument();
+    }
+
+    /** Returns a description of the given node and its descendants. */
+    private static String dump(Node node) {
+        StringBuffer buffer = new StringBuffer();
+        dump(node, buffer, 0);
+        NodeList elements = ((Document) node).getElementsByTagName("*");
+        buffer.append(elements.getLength()).append(" elements\n");
+        NodeIterator iterator = ((DocumentTraversal) node).createNodeIterator(node,
+                NodeFilter.SHOW_ELEMENT | NodeFilter.SHOW_TEXT, null, true);
+        int count = 0;
+        while (iterator.nextNode() != null) {
+            count++;
+        }
+        iterator.detach();
+        buffer.append(count).append(" elements and texts\n");
+        Range range = ((DocumentRange) node).createRange();
+        range.selectNodeContents(((Document) node).getDocumentElement());
+        buffer.append(range.toString().length()).append(" characters\n");
+        range.detach();
+        return buffer.toString();
+    }
+
+    private static void dump(Node node, StringBuffer buffer, int depth) {
+        for (int i = 0; i < depth; i++) {
+            buffer.append(' ');
+        }
+        buffer.append(node.getNodeType()).append(' ')
+              .append(node.getNodeName()).append(" [")
+              .append(node.getNodeValue()).append("]\n");
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                dump(attributes.item(i), buffer, depth + 2);
+            }
+        }
+        NodeList children = node.getChildNodes();
+        int length = children.getLength();
+        int i = 0;
+        for (Node child = node.getFirstChild(); child != null;
+             child = child.getNextSibling(), i++) {
+            if (children.item(i) != child) {
+                buffer.append("item(" + i + ") differs\n");
+            }
+            dump(child, buffer, depth + 1);
+        }
+        if (i != length) {
+            buffer.append("getLength() differs\n");
+        }
+    }
+}
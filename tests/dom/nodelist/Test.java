@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.nodelist;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+import org.xml.sax.InputSource;
+
+/**
+ * Inserts, removes, replaces, moves and splits children of two nodes
+ * whose number of children repeatedly grows well past and shrinks
+ * below the number from which a node keeps its children in an array
+ * (32), and checks after every change that <code>item(int)</code> and
+ * <code>getLength()</code> of the child list agree with a list of the
+ * expected children, reading it in order, in reverse and at scattered
+ * positions. The nodes are read alternately, so that they compete for
+ * the document's child list caches, and are taken from both a new
+ * document and a deferred parsed document.
+ *
+ * @version $Id$
+ */
+public class Test {
+
+    /** Number of children read at random positions after each change. */
+    private static final int READS = 12;
+
+    /** Number of children up to which the nodes grow. */
+    private static final int MAX_CHILDREN = 90;
+
+    /** Number of times the nodes grow and shrink. */
+    private static final int CYCLES = 4;
+
+    public static void main(String argv[]) {
+
+        System.out.println("Running dom.nodelist.Test...");
+
+        try {
+            Document document = new DocumentImpl();
+            Element root = document.createElement("root");
+            document.appendChild(root);
+            Element first = document.createElement("first");
+            Element second = document.createElement("second");
+            root.appendChild(first);
+            root.appendChild(second);
+            run(document, first, second, new ArrayList(), new ArrayList(), new Random(1));
+
+            // a deferred document starts with children which have not been read
+            StringBuffer xml = new StringBuffer("<root><first>");
+            List firstModel = new ArrayList();
+            List secondModel = new ArrayList();
+            for (int i = 0; i < 50; i++) {
+                xml.append("<e").append(i).append("/>");
+            }
+            xml.append("</first><second>");
+            for (int i = 0; i < 40; i++) {
+                xml.append("<f").append(i).append("/>text").append(i);
+            }
+            xml.append("</second></root>");
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", true);
+            parser.parse(new InputSource(new StringReader(xml.toString())));
+            document = parser.getDocument();
+            first = (Element) document.getDocumentElement().getFirstChild();
+            second = (Element) first.getNextSibling();
+            // read scattered positions first, then build the models
+            check(first.getChildNodes().item(45).getNodeName().equals("e45"), "deferred item(45)");
+            check(second.getChildNodes().item(79).getNodeValue().equals("text39"), "deferred item(79)");
+            for (Node n = first.getFirstChild(); n != null; n = n.getNextSibling()) {
+                firstModel.add(n);
+            }
+            for (Node n = second.getFirstChild(); n != null; n = n.getNextSibling()) {
+                secondModel.add(n);
+            }
+            verify(first, firstModel, new Random(2));
+            verify(second, secondModel, new Random(3));
+            run(document, first, second, firstModel, secondModel, new Random(4));
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.println("done.");
+
+    } // main(String[])
+
+    /**
+     * Changes the children of the two nodes at random, growing and
+     * shrinking them in turns, and checks them after every change.
+     */
+    private static void run(Document document, Element first, Element second,
+            List firstModel, List secondModel, Random random) {
+        int created = 0;
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            for (int grow = 1; grow >= 0; grow--) {
+                while (grow == 1 ? firstModel.size() < MAX_CHILDREN || secondModel.size() < MAX_CHILDREN
+                                 : firstModel.size() > 0 || secondModel.size() > 0) {
+                    boolean useFirst = random.nextBoolean();
+                    Element parent = useFirst ? first : second;
+                    List model = useFirst ? firstModel : secondModel;
+                    Element other = useFirst ? second : first;
+                    List otherModel = useFirst ? secondModel : firstModel;
+                    // growing adds more often than it removes, shrinking the
+                    // reverse, and only growing inserts large fragments
+                    boolean add = random.nextInt(10) < (grow == 1 ? 7 : 3);
+                    int fragment = grow == 1 ? 40 : 2;
+                    change(document, parent, model, other, otherModel, add, fragment, random, created++);
+                    verify(parent, model, random);
+                    verify(other, otherModel, random);
+                }
+            }
+        }
+    } // run(Document,Element,Element,List,List,Random)
+
+    /** Makes one random change to the children of a node, and to its model. */
+    private static void change(Document document, Element parent, List model,
+            Element other, List otherModel, boolean add, int fragmentSize, Random random, int serial) {
+        int size = model.size();
+        if (add || size == 0) {
+            switch (random.nextInt(4)) {
+            case 0: {
+                // insert a new node anywhere, or append it
+                Node child = random.nextBoolean() ? (Node) document.createElement("n" + serial)
+                                                  : document.createTextNode("text" + serial);
+                int index = random.nextInt(size + 1);
+                parent.insertBefore(child, index == size ? null : (Node) model.get(index));
+                model.add(index, child);
+                break;
+            }
+            case 1: {
+                // insert the children of a fragment
+                DocumentFragment fragment = document.createDocumentFragment();
+                int count = 1 + random.nextInt(fragmentSize);
+                List children = new ArrayList();
+                for (int i = 0; i < count; i++) {
+                    Node child = document.createElement("f" + serial + "." + i);
+                    fragment.appendChild(child);
+                    children.add(child);
+                }
+                int index = random.nextInt(size + 1);
+                parent.insertBefore(fragment, index == size ? null : (Node) model.get(index));
+                model.addAll(index, children);
+                break;
+            }
+            case 2: {
+                // move a child of the other node here
+                if (otherModel.isEmpty()) {
+                    parent.appendChild(document.createElement("n" + serial));
+                    model.add(parent.getLastChild());
+                    break;
+                }
+                Node child = (Node) otherModel.remove(random.nextInt(otherModel.size()));
+                int index = random.nextInt(size + 1);
+                parent.insertBefore(child, index == size ? null : (Node) model.get(index));
+                model.add(index, child);
+                break;
+            }
+            default: {
+                // split a text child, or add one
+                for (int i = 0; i < size; i++) {
+                    Node child = (Node) model.get(i);
+                    if (child instanceof Text && ((Text) child).getLength() > 1) {
+                        Node rest = ((Text) child).splitText(1);
+                        model.add(i + 1, rest);
+                        return;
+                    }
+                }
+                parent.appendChild(document.createTextNode("text" + serial));
+                model.add(parent.getLastChild());
+            }
+            }
+        }
+        else {
+            switch (random.nextInt(3)) {
+            case 0: {
+                Node child = (Node) model.remove(random.nextInt(size));
+                parent.removeChild(child);
+                break;
+            }
+            case 1: {
+                // replace a child by a new node
+                int index = random.nextInt(size);
+                Node child = document.createElement("r" + serial);
+                parent.replaceChild(child, (Node) model.get(index));
+                model.set(index, child);
+                break;
+            }
+            default: {
+                // move a child to another position, then remove another one
+                int from = random.nextInt(size);
+                Node child = (Node) model.remove(from);
+                int to = random.nextInt(size);
+                parent.insertBefore(child, to == size - 1 ? null : (Node) model.get(to));
+                model.add(to == size - 1 ? size - 1 : to, child);
+                parent.removeChild((Node) model.remove(random.nextInt(size)));
+            }
+            }
+        }
+    } // change(Document,Element,List,Element,List,boolean,int,Random,int)
+
+    /** Checks the child list of a node against the expected children. */
+    private static void verify(Element parent, List model, Random random) {
+        NodeList children = parent.getChildNodes();
+        int size = model.size();
+        String name = parent.getNodeName() + " with " + size + " children";
+        check(children.getLength() == size, name + ": getLength() is " + children.getLength());
+        for (int i = 0; i < READS; i++) {
+            int index = random.nextInt(size + 2) - 1;
+            Node expected = index >= 0 && index < size ? (Node) model.get(index) : null;
+            check(children.item(index) == expected, name + ": item(" + index + ")");
+        }
+        if (random.nextInt(4) == 0) {
+            for (int i = 0; i < size; i++) {
+                check(children.item(i) == model.get(i), name + ": item(" + i + ") in order");
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                check(children.item(i) == model.get(i), name + ": item(" + i + ") in reverse order");
+            }
+            int i = 0;
+            for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling(), i++) {
+                check(i < size && n == model.get(i), name + ": sibling " + i);
+            }
+            check(i == size, name + ": number of siblings");
+        }
+        check(children.item(size) == null, name + ": item(" + size + ")");
+        check(children.getLength() == size, name + ": getLength() after item()");
+    } // verify(Element,List,Random)
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAIL: " + message);
+            System.exit(1);
+        }
+    } // check(boolean,String)
+
+} // class Test
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dtd;
+
+import java.io.StringReader;
+
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLAttributeDecl;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program checks the attribute declarations DTDGrammar finds
+ * through its index against a scan of the attribute list of each
+ * element. The DTD declares enough elements and attributes for the
+ * tables to grow many times, declares attributes of elements before
+ * the elements themselves, and declares some attributes again with
+ * other defaults, in which case the first declaration is binding.
+ * A document is then validated against the DTD to check that the
+ * validator applies the defaults of the first declarations.
+ *
+ * @version $Id$
+ */
+public class AttributeIndexTest {
+
+    //
+    // Constants
+    //
+
+    /** Number of elements. */
+    private static final int ELEMENTS = 300;
+
+    /** Number of attributes of each element. */
+    private static final int ATTRIBUTES = 40;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        String dtd = createDTD();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_DTD, null);
+        DTDGrammar grammar = (DTDGrammar) preparser.preparseGrammar(XMLGrammarDescription.XML_DTD,
+                new XMLInputSource(null, "test.dtd", null, new StringReader(dtd), null));
+
+        XMLAttributeDecl decl = new XMLAttributeDecl();
+        for (int e = 0; e < ELEMENTS; ++e) {
+            int element = grammar.getElementDeclIndex(element(e));
+            if (element == -1) {
+                fail("element " + element(e) + " not found");
+            }
+            for (int a = 0; a <= ATTRIBUTES; ++a) {
+                // a new instance, so that the name is not the symbol
+                String name = new String(attribute(e, a).toCharArray());
+                int index = grammar.getAttributeDeclIndex(element, name);
+                if (index != scan(grammar, element, name)) {
+                    fail(element(e) + "/@" + name + ": the index and the scan differ");
+                }
+                if (a == ATTRIBUTES) {
+                    if (index != -1) {
+                        fail(element(e) + "/@" + name + " was never declared");
+                    }
+                    continue;
+                }
+                if (index == -1 || !grammar.getAttributeDecl(index, decl)) {
+                    fail(element(e) + "/@" + name + " not found");
+                }
+                if (!firstDefault(e, a).equals(decl.simpleType.defaultValue)) {
+                    fail(element(e) + "/@" + name + ": a later declaration was used");
+                }
+            }
+        }
+        if (grammar.getAttributeDeclIndex(-1, attribute(0, 0)) != -1) {
+            fail("attribute found for an undeclared element");
+        }
+
+        // the validator uses the same index
+        final int[] checked = new int[1];
+        SAXParser parser = new SAXParser();
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException e) {
+                fail("validation error: " + e.getMessage());
+            }
+        });
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes attrs) {
+                if (qName.equals("root")) {
+                    return;
+                }
+                int e = Integer.parseInt(qName.substring(1));
+                for (int a = 0; a < ATTRIBUTES; ++a) {
+                    String value = attrs.getValue(attribute(e, a));
+                    if (!firstDefault(e, a).equals(value)) {
+                        fail(qName + "/@" + attribute(e, a) + " was " + value);
+                    }
+                    ++checked[0];
+                }
+            }
+        });
+        parser.parse(new InputSource(new StringReader(createDocument(dtd))));
+        if (checked[0] != ELEMENTS * ATTRIBUTES) {
+            fail("not all attributes were reported");
+        }
+        System.out.println("All DTD attribute index tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Creates a DTD whose odd elements have their attributes declared
+     * before the elements, and whose attributes are declared twice when
+     * their number is a multiple of three.
+     */
+    private static String createDTD() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("<!ELEMENT root (");
+        for (int e = 0; e < ELEMENTS; ++e) {
+            buffer.append(e == 0 ? "" : "|").append(element(e));
+        }
+        buffer.append(")*>\n");
+        for (int e = 0; e < ELEMENTS; ++e) {
+            if (e % 2 == 0) {
+                buffer.append("<!ELEMENT ").append(element(e)).append(" EMPTY>\n");
+            }
+            buffer.append("<!ATTLIST ").append(element(e));
+            for (int a = 0; a < ATTRIBUTES; ++a) {
+                buffer.append("\n  ").append(attribute(e, a)).append(" CDATA '")
+                      .append(firstDefault(e, a)).append('\'');
+            }
+            buffer.append(">\n");
+            // declared again, in another list and in the same list
+            buffer.append("<!ATTLIST ").append(element(e));
+            for (int a = 0; a < ATTRIBUTES; a += 3) {
+                buffer.append("\n  ").append(attribute(e, a)).append(" CDATA 'later'")
+                      .append("\n  ").append(attribute(e, a)).append(" NMTOKEN 'latest'");
+            }
+            buffer.append(">\n");
+            if (e % 2 == 1) {
+                buffer.append("<!ELEMENT ").append(element(e)).append(" EMPTY>\n");
+            }
+        }
+        return buffer.toString();
+    } // createDTD():String
+
+    /** Creates a document with every element once and no attributes. */
+    private static String createDocument(String dtd) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("<!DOCTYPE root [\n").append(dtd).append("]>\n<root>");
+        for (int e = 0; e < ELEMENTS; ++e) {
+            buffer.append('<').append(element(e)).append("/>");
+        }
+        buffer.append("</root>");
+        return buffer.toString();
+    } // createDocument(String):String
+
+    /**
+     * Returns the index of the first declaration of the attribute in
+     * the attribute list of the element, or -1.
+     */
+    private static int scan(DTDGrammar grammar, int element, String name) {
+        XMLAttributeDecl decl = new XMLAttributeDecl();
+        for (int index = grammar.getFirstAttributeDeclIndex(element); index != -1;
+             index = grammar.getNextAttributeDeclIndex(index)) {
+            grammar.getAttributeDecl(index, decl);
+            if (decl.name.rawname.equals(name)) {
+                return index;
+            }
+        }
+        return -1;
+    } // scan(DTDGrammar,int,String):int
+
+    private static String element(int e) {
+        return "e" + e;
+    } // element(int):String
+
+    /** Attribute names are shared between elements. */
+    private static String attribute(int e, int a) {
+        return "a" + ((e + a) % (ATTRIBUTES + 7));
+    } // attribute(int,int):String
+
+    private static String firstDefault(int e, int a) {
+        return "first" + e + "." + a;
+    } // firstDefault(int,int):String
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class AttributeIndexTest
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.xerces.impl.io.ByteBufferInputStream;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.ByteBufferInputSource;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program checks that documents read from byte buffers and file
+ * channels through <code>ByteBufferInputSource</code> are parsed the
+ * same as the same bytes read from an ordinary stream, that the buffer
+ * passed in is not modified and the channel is closed after the parse,
+ * and that a channel read in small mapped regions returns the same
+ * bytes as the file, also across regions and after mark and reset.
+ *
+ * @version $Id$
+ */
+public class ByteBufferTest {
+
+    //
+    // Constants
+    //
+
+    /** Bytes placed before and after the document in buffers and files. */
+    private static final byte[] PADDING = "padding which is not part of the document".getBytes();
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        byte[] document = createDocument();
+        String expected = trace(new XMLInputSource(null, "doc.xml", null,
+                new ByteArrayInputStream(document), null));
+
+        // heap buffer, read from its position to its limit
+        ByteBuffer heap = ByteBuffer.allocate(document.length + 2 * PADDING.length);
+        heap.put(PADDING).put(document).put(PADDING);
+        heap.position(PADDING.length).limit(PADDING.length + document.length);
+        ByteBufferInputSource source = new ByteBufferInputSource(null, "doc.xml", null, heap, null);
+        check("heap buffer", expected, trace(source));
+        if (heap.position() != PADDING.length || heap.limit() != PADDING.length + document.length) {
+            fail("the position or limit of the buffer changed");
+        }
+
+        // the stream is used up; setting the buffer again allows another parse
+        source.setByteBuffer(heap);
+        check("heap buffer parsed again", expected, trace(source));
+
+        // direct buffer
+        ByteBuffer direct = ByteBuffer.allocateDirect(document.length);
+        direct.put(document).flip();
+        check("direct buffer", expected,
+                trace(new ByteBufferInputSource(null, "doc.xml", null, direct, "UTF-8")));
+
+        // file channel, read from its current position
+        File file = File.createTempFile("bytebuffer", ".xml");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(PADDING);
+        out.write(document);
+        out.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        channel.position(PADDING.length);
+        check("file channel", expected,
+                trace(new ByteBufferInputSource(null, "doc.xml", null, channel, null)));
+        if (channel.isOpen()) {
+            fail("the channel was not closed by the parser");
+        }
+
+        // small regions, so that the document spans many mappings
+        int[] regionSizes = { 1021, 4096, 65537 };
+        for (int i = 0; i < regionSizes.length; ++i) {
+            raf = new RandomAccessFile(file, "r");
+            InputStream stream = new ByteBufferInputStream(raf.getChannel(),
+                    PADDING.length, document.length, regionSizes[i]);
+            check("regions of " + regionSizes[i] + " bytes", expected,
+                    trace(new XMLInputSource(null, "doc.xml", null, stream, null)));
+            raf = new RandomAccessFile(file, "r");
+            stream = new ByteBufferInputStream(raf.getChannel(),
+                    PADDING.length, document.length, regionSizes[i]);
+            checkStream("regions of " + regionSizes[i] + " bytes", document, stream);
+            stream.close();
+        }
+        System.out.println("All byte buffer tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Creates a document with characters of all UTF-8 lengths. */
+    private static byte[] createDocument() throws Exception {
+        StringBuffer buffer = new StringBuffer("<?xml version='1.0' encoding='UTF-8'?>\n<doc>\n");
+        for (int i = 0; i < 5000; ++i) {
+            buffer.append("<item n='").append(i).append("'>ascii \u00E9\u00E8 \u4E2D\u6587 \uD801\uDC00 ")
+                  .append(i).append("</item>\n");
+        }
+        buffer.append("</doc>\n");
+        return buffer.toString().getBytes("UTF-8");
+    } // createDocument():byte[]
+
+    /** Reads the stream in various ways and compares it with the document. */
+    private static void checkStream(String name, byte[] document, InputStream stream) throws Exception {
+        byte[] bytes = new byte[document.length];
+        int length = 0;
+        int step = 1;
+        while (length < bytes.length) {
+            if (length % 3 == 0) {
+                int b = stream.read();
+                if (b == -1) {
+                    break;
+                }
+                bytes[length++] = (byte) b;
+                continue;
+            }
+            // read a little, go back and read it again
+            stream.mark(step);
+            int count = stream.read(bytes, length, Math.min(step, bytes.length - length));
+            if (count == -1) {
+                break;
+            }
+            stream.reset();
+            if (stream.skip(count) != count) {
+                fail(name + ": skip after reset");
+            }
+            length += count;
+            step = (step * 3) % 10007 + 1;
+        }
+        if (stream.read() != -1 || stream.available() != 0) {
+            fail(name + ": the stream does not end with the document");
+        }
+        for (int i = 0; i < document.length; ++i) {
+            if (bytes[i] != document[i]) {
+                fail(name + ": byte " + i + " differs");
+            }
+        }
+    } // checkStream(String,byte[],InputStream)
+
+    /** Returns a trace of the SAX events of the given document. */
+    private static String trace(XMLInputSource source) throws Exception {
+        final StringBuffer trace = new StringBuffer();
+        SAXParser parser = new SAXParser();
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes attrs) {
+                trace.append('<').append(qName);
+                for (int i = 0; i < attrs.getLength(); ++i) {
+                    trace.append(' ').append(attrs.getQName(i)).append("='").append(attrs.getValue(i)).append('\'');
+                }
+                trace.append('>');
+            }
+            public void endElement(String uri, String localName, String qName) {
+                trace.append("</").append(qName).append('>');
+            }
+            public void characters(char[] ch, int start, int length) {
+                trace.append(ch, start, length);
+            }
+        });
+        parser.parse(source);
+        return trace.toString();
+    } // trace(XMLInputSource):String
+
+    private static void check(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            fail(name + ": the document was parsed differently");
+        }
+    } // check(String,String,String)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class ByteBufferTest
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xml.serialize.EncodingInfo;
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.XMLSerializer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This program checks that the writers the serializers use for the
+ * UTF-8, US-ASCII and ISO-8859-1 encodings write the same bytes as an
+ * <code>OutputStreamWriter</code>, to an output stream and to a
+ * channel. The text mixes characters of every UTF-8 length, characters
+ * which cannot be encoded, surrogate pairs and unpaired surrogates, and
+ * is written in pieces of random length through the three write
+ * methods, so that pairs are split across calls and across the byte
+ * buffer. Documents serialized to an output stream, to a channel and
+ * to an <code>OutputStreamWriter</code> must also be the same.
+ *
+ * @version $Id$
+ */
+public class EncodingWriterTest {
+
+    //
+    // Constants
+    //
+
+    /** Encodings written without a charset encoder. */
+    private static final String[] ENCODINGS = { "UTF-8", "US-ASCII", "ISO-8859-1" };
+
+    /** Pieces of text. */
+    private static final String[] PIECES = {
+        "ascii ", "<&>\"'", "]]>", "\n", "\u007F", "\u0080", "\u00E9\u00FF", "\u0100",
+        "\u07FF", "\u0800", "\u20AC", "\u4E2D\u6587", "\uFFFD", "\uFFFF",
+        "\uD800\uDC00", "\uD801\uDC37", "\uDBFF\uDFFF",
+        "\uD800", "\uDC00", "\uD800\uD800\uDC00", "\uDC00\uD800",
+    };
+
+    /** Number of random texts for each encoding. */
+    private static final int TEXTS = 200;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        Random random = new Random(11);
+        for (int e = 0; e < ENCODINGS.length; ++e) {
+            EncodingInfo info = new OutputFormat("xml", ENCODINGS[e], false).getEncodingInfo();
+            for (int t = 0; t < TEXTS; ++t) {
+                // long texts fill the byte buffer several times
+                String text = createText(random, t % 10 == 0 ? 20000 : 1 + random.nextInt(200));
+                byte[] expected = text.getBytes(ENCODINGS[e]);
+                String name = ENCODINGS[e] + ", text " + t;
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Writer writer = info.getWriter(out);
+                if (writer instanceof OutputStreamWriter) {
+                    fail(ENCODINGS[e] + " is written through an OutputStreamWriter");
+                }
+                write(writer, text, random);
+                check(name + ", output stream", expected, out.toByteArray());
+
+                Channel channel = new Channel(1 + random.nextInt(5000));
+                write(info.getWriter(channel), text, random);
+                check(name + ", channel", expected, channel.fOutput.toByteArray());
+                if (channel.isOpen()) {
+                    fail(name + ": the channel was not closed");
+                }
+            }
+        }
+
+        // documents
+        for (int e = 0; e < ENCODINGS.length; ++e) {
+            for (int indenting = 0; indenting < 2; ++indenting) {
+                Document document = createDocument(random);
+                OutputFormat format = new OutputFormat(document, ENCODINGS[e], indenting == 1);
+                String name = "document in " + ENCODINGS[e] + (indenting == 1 ? ", indented" : "");
+
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                XMLSerializer serializer = new XMLSerializer(format);
+                Writer writer = new OutputStreamWriter(expected, ENCODINGS[e]);
+                serializer.setOutputCharStream(writer);
+                serializer.serialize(document);
+                writer.close();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                serializer = new XMLSerializer(out, format);
+                serializer.serialize(document);
+                check(name + ", output stream", expected.toByteArray(), out.toByteArray());
+
+                Channel channel = new Channel(100);
+                serializer = new XMLSerializer(format);
+                serializer.setOutputByteChannel(channel);
+                serializer.serialize(document);
+                check(name + ", channel", expected.toByteArray(), channel.fOutput.toByteArray());
+            }
+        }
+        System.out.println("All encoding writer tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Creates a text made of random pieces. */
+    private static String createText(Random random, int length) {
+        StringBuffer buffer = new StringBuffer();
+        while (buffer.length() < length) {
+            buffer.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return buffer.toString();
+    } // createText(Random,int):String
+
+    /**
+     * Writes a text in pieces of random length, through the three
+     * write methods, then closes the writer.
+     */
+    private static void write(Writer writer, String text, Random random) throws Exception {
+        char[] ch = text.toCharArray();
+        int offset = 0;
+        while (offset < ch.length) {
+            int length = Math.min(ch.length - offset, 1 + random.nextInt(random.nextBoolean() ? 3 : 10000));
+            switch (random.nextInt(3)) {
+            case 0:
+                writer.write(ch[offset]);
+                length = 1;
+                break;
+            case 1:
+                writer.write(ch, offset, length);
+                break;
+            default:
+                writer.write(text, offset, length);
+            }
+            offset += length;
+            if (random.nextInt(50) == 0) {
+                writer.flush();
+            }
+        }
+        writer.close();
+    } // write(Writer,String,Random)
+
+    /**
+     * Creates a document whose text, attributes and CDATA sections
+     * contain random pieces, without unpaired surrogates.
+     */
+    private static Document createDocument(Random random) {
+        Document document = new DocumentImpl();
+        Element root = document.createElement("root");
+        document.appendChild(root);
+        root.appendChild(document.createComment(" comment "));
+        for (int i = 0; i < 300; ++i) {
+            Element element = document.createElement(i % 2 == 0 ? "item" : "other");
+            element.setAttribute("value", createPairedText(random));
+            element.appendChild(document.createTextNode(createPairedText(random)));
+            if (i % 3 == 0) {
+                Element child = document.createElement("child");
+                child.appendChild(document.createCDATASection(createPairedText(random)));
+                element.appendChild(child);
+            }
+            root.appendChild(element);
+        }
+        return document;
+    } // createDocument(Random):Document
+
+    /** Creates a text without unpaired surrogates. */
+    private static String createPairedText(Random random) {
+        StringBuffer buffer = new StringBuffer();
+        int count = random.nextInt(30);
+        for (int i = 0; i < count; ++i) {
+            String piece = PIECES[random.nextInt(PIECES.length)];
+            boolean paired = true;
+            for (int j = 0; j < piece.length(); ++j) {
+                char c = piece.charAt(j);
+                if (c >= 0xD800 && c <= 0xDBFF) {
+                    paired = j + 1 < piece.length() && piece.charAt(++j) >= 0xDC00 && piece.charAt(j) <= 0xDFFF;
+                }
+                else if ((c >= 0xDC00 && c <= 0xDFFF) || c == 0xFFFF || c == 0xFFFD) {
+                    paired = false;
+                }
+                if (!paired) {
+                    break;
+                }
+            }
+            if (paired) {
+                buffer.append(piece);
+            }
+        }
+        return buffer.toString();
+    } // createPairedText(Random):String
+
+    private static void check(String name, byte[] expected, byte[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            int i = 0;
+            while (i < expected.length && i < actual.length && expected[i] == actual[i]) {
+                ++i;
+            }
+            fail(name + ": the bytes differ at " + i + " of " + expected.length);
+        }
+    } // check(String,byte[],byte[])
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /** A blocking channel which writes a limited number of bytes per call. */
+    private static final class Channel implements WritableByteChannel {
+
+        final ByteArrayOutputStream fOutput = new ByteArrayOutputStream();
+        final int fMaxWrite;
+        boolean fOpen = true;
+
+        Channel(int maxWrite) {
+            fMaxWrite = maxWrite;
+        }
+
+        public int write(ByteBuffer buffer) {
+            if (!fOpen) {
+                fail("write to a closed channel");
+            }
+            int length = Math.min(buffer.remaining(), fMaxWrite);
+            for (int i = 0; i < length; ++i) {
+                fOutput.write(buffer.get());
+            }
+            return length;
+        }
+
+        public boolean isOpen() {
+            return fOpen;
+        }
+
+        public void close() {
+            fOpen = false;
+        }
+
+    } // class Channel
+
+} // class EncodingWriterTest
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Random;
+
+import org.apache.xerces.impl.io.MalformedByteSequenceException;
+import org.apache.xerces.impl.io.UTF8Reader;
+
+/**
+ * This program checks the ASCII fast paths of the customized UTF-8
+ * reader on payloads with different proportions of ASCII. The input
+ * is delivered in chunks of random size and read into character
+ * buffers of several sizes, so that runs of ASCII start and end at
+ * arbitrary positions in the byte and character buffers. It also
+ * checks that the characters before a malformed byte sequence which
+ * follows a run of ASCII are returned before the error is reported.
+ *
+ * @version $Id$
+ */
+public class UTF8ReaderTest {
+
+    //
+    // Constants
+    //
+
+    /** Size of each payload in characters. */
+    private static final int PAYLOAD_SIZE = 1 << 16;
+
+    /** Sizes of the character buffers read into. */
+    private static final int[] READ_SIZES = { 37, 64, 101, 2048 };
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        final int[] asciiPercentages = { 100, 99, 90, 50, 0 };
+        for (int i = 0; i < asciiPercentages.length; ++i) {
+            final int percent = asciiPercentages[i];
+            final String text = createPayload(percent, PAYLOAD_SIZE, new Random(percent));
+            final byte[] bytes = text.getBytes("UTF-8");
+            for (int j = 0; j < READ_SIZES.length; ++j) {
+                String actual = decode(new UTF8Reader(new ChunkedInputStream(bytes, new Random(j))), READ_SIZES[j]);
+                if (!text.equals(actual)) {
+                    fail(percent + "% ASCII, read size " + READ_SIZES[j] + ": decoded text does not match");
+                }
+            }
+        }
+
+        // malformed sequences after runs of ASCII of various lengths
+        final byte[][] malformed = {
+            { (byte) 0xFF },                          // invalid first byte
+            { (byte) 0xC3, (byte) 0x28 },             // invalid second byte
+            { (byte) 0xE4, (byte) 0xB8 },             // truncated at the end
+        };
+        for (int length = 0; length < 40; ++length) {
+            for (int i = 0; i < malformed.length; ++i) {
+                byte[] bytes = new byte[length + malformed[i].length];
+                for (int j = 0; j < length; ++j) {
+                    bytes[j] = (byte) ('a' + j % 26);
+                }
+                System.arraycopy(malformed[i], 0, bytes, length, malformed[i].length);
+                checkMalformed(bytes, length);
+            }
+        }
+        System.out.println("All UTF-8 reader tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Creates a payload with the given percentage of ASCII characters. */
+    private static String createPayload(int asciiPercent, int size, Random random) {
+        StringBuffer buffer = new StringBuffer(size + 1);
+        while (buffer.length() < size) {
+            if (random.nextInt(100) < asciiPercent) {
+                buffer.append((char) (0x20 + random.nextInt(0x5F)));
+            }
+            else {
+                switch (random.nextInt(3)) {
+                    case 0: buffer.append((char) (0x00A0 + random.nextInt(0x0700))); break;
+                    case 1: buffer.append((char) (0x4E00 + random.nextInt(0x5000))); break;
+                    default: {
+                        int c = 0x10000 + random.nextInt(0xF0000);
+                        buffer.append((char) (0xD800 + ((c - 0x10000) >> 10)));
+                        buffer.append((char) (0xDC00 + ((c - 0x10000) & 0x3FF)));
+                    }
+                }
+            }
+        }
+        return buffer.toString();
+    } // createPayload(int,int,Random):String
+
+    /** Reads all characters from the reader. */
+    private static String decode(Reader reader, int readSize) throws IOException {
+        StringBuffer buffer = new StringBuffer();
+        char[] ch = new char[readSize];
+        int count;
+        while ((count = reader.read(ch, 0, ch.length)) != -1) {
+            buffer.append(ch, 0, count);
+        }
+        reader.close();
+        return buffer.toString();
+    } // decode(Reader,int):String
+
+    /**
+     * Checks that the given number of ASCII characters is returned
+     * before the malformed sequence at the end of the bytes is reported.
+     */
+    private static void checkMalformed(byte[] bytes, int asciiLength) throws IOException {
+        Reader reader = new UTF8Reader(new ChunkedInputStream(bytes, new Random(asciiLength)));
+        char[] ch = new char[64];
+        int length = 0;
+        try {
+            int count;
+            while ((count = reader.read(ch, length, ch.length - length)) != -1) {
+                length += count;
+            }
+            fail("no error after " + asciiLength + " ASCII characters");
+        }
+        catch (MalformedByteSequenceException e) {
+            if (length != asciiLength) {
+                fail(length + " characters returned before the error instead of " + asciiLength);
+            }
+            for (int i = 0; i < length; ++i) {
+                if (ch[i] != (char) bytes[i]) {
+                    fail("character " + i + " differs before the error");
+                }
+            }
+        }
+    } // checkMalformed(byte[],int)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /** An input stream which returns the bytes in chunks of random size. */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final byte[] fBytes;
+        private final Random fRandom;
+        private int fOffset;
+
+        public ChunkedInputStream(byte[] bytes, Random random) {
+            fBytes = bytes;
+            fRandom = random;
+        }
+
+        public int read() throws IOException {
+            return (fOffset < fBytes.length) ? fBytes[fOffset++] & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (fOffset == fBytes.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(len, fBytes.length - fOffset), 1 + fRandom.nextInt(37));
+            System.arraycopy(fBytes, fOffset, b, off, count);
+            fOffset += count;
+            return count;
+        }
+
+    } // class ChunkedInputStream
+
+} // class UTF8ReaderTest
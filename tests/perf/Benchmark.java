@@ -0,0 +1,643 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Vector;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xerces.dom.CoreDocumentImpl;
+import org.apache.xerces.impl.io.UTF8Reader;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.stax.XMLStreamReaderImpl;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.StreamingXMLSerializer;
+import org.apache.xml.serialize.XMLSerializer;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A simple performance harness for the parser. Each benchmark performs
+ * one operation (a parse, a validation, a serialization, a decoding)
+ * per invocation on a document from the {@link Corpus}. The harness
+ * warms up each benchmark, then runs it repeatedly for a fixed period
+ * and reports operations and megabytes of input per second, so that
+ * the numbers of two builds of the parser can be compared.
+ * <p>
+ * Usage: <code>java perf.Benchmark [-size n] [-warmup n] [-iterations n]
+ * [-time ms] [-shape name]* [benchmark]*</code>
+ *
+ * @version $Id$
+ */
+public abstract class Benchmark {
+
+    //
+    // Constants
+    //
+
+    /** Default number of repeated units in each document. */
+    protected static final int DEFAULT_SIZE = 10000;
+
+    /** Default number of warm-up iterations. */
+    protected static final int DEFAULT_WARMUP = 3;
+
+    /** Default number of measured iterations. */
+    protected static final int DEFAULT_ITERATIONS = 5;
+
+    /** Default duration of an iteration in milliseconds. */
+    protected static final int DEFAULT_TIME = 1000;
+
+    //
+    // Data
+    //
+
+    /** The document of the current run. */
+    protected byte[] fDocument;
+
+    /** The shape of the document of the current run. */
+    protected String fShape;
+
+    //
+    // Public methods
+    //
+
+    /** Returns the name of this benchmark. */
+    public abstract String getName();
+
+    /**
+     * Prepares the benchmark for runs over the given document. This
+     * method is not timed.
+     */
+    public void setUp(String shape, byte[] document) throws Exception {
+        fShape = shape;
+        fDocument = document;
+    } // setUp(String,byte[])
+
+    /** Performs one operation. */
+    public abstract void run() throws Exception;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        int size = DEFAULT_SIZE;
+        int warmup = DEFAULT_WARMUP;
+        int iterations = DEFAULT_ITERATIONS;
+        int time = DEFAULT_TIME;
+        Vector shapes = new Vector();
+        Vector names = new Vector();
+        for (int i = 0; i < argv.length; ++i) {
+            String arg = argv[i];
+            if (arg.equals("-size")) {
+                size = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-warmup")) {
+                warmup = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-iterations")) {
+                iterations = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-time")) {
+                time = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-shape")) {
+                shapes.addElement(argv[++i]);
+            }
+            else if (arg.equals("-h")) {
+                printUsage();
+                return;
+            }
+            else {
+                names.addElement(arg);
+            }
+        }
+        if (shapes.isEmpty()) {
+            for (int i = 0; i < Corpus.SHAPES.length; ++i) {
+                shapes.addElement(Corpus.SHAPES[i]);
+            }
+        }
+
+        Benchmark[] benchmarks = createBenchmarks();
+        System.out.println("# size=" + size + " warmup=" + warmup + " iterations=" + iterations + " time=" + time + "ms");
+        System.out.println(pad("benchmark", 20) + pad("shape", 12) + pad("ops/s", 12) + pad("MB/s", 10) + "+/- ops/s");
+        for (int b = 0; b < benchmarks.length; ++b) {
+            Benchmark benchmark = benchmarks[b];
+            if (!names.isEmpty() && !names.contains(benchmark.getName())) {
+                continue;
+            }
+            for (int s = 0; s < shapes.size(); ++s) {
+                String shape = (String) shapes.elementAt(s);
+                byte[] document = Corpus.createDocument(shape, size);
+                benchmark.setUp(shape, document);
+                double[] results = measure(benchmark, warmup, iterations, time);
+                double mean = mean(results);
+                System.out.println(pad(benchmark.getName(), 20) + pad(shape, 12)
+                        + pad(format(mean), 12)
+                        + pad(format(mean * document.length / (1 << 20)), 10)
+                        + format(deviation(results, mean)));
+            }
+        }
+
+    } // main(String[])
+
+    //
+    // Protected static methods
+    //
+
+    /** Returns the benchmarks known to the harness. */
+    protected static Benchmark[] createBenchmarks() {
+        return new Benchmark[] {
+            new SAXParse(false),
+            new SAXParse(true),
+            new StAXRead(),
+            new SchemaValidation(),
+            new DOMBuild(true),
+            new DOMBuild(false),
+            new ChildAccess(),
+            new ElementQuery(false),
+            new ElementQuery(true),
+            new Serialize(),
+            new StreamingSerialize(),
+            new UTF8Decode(true),
+            new UTF8Decode(false),
+        };
+    } // createBenchmarks():Benchmark[]
+
+    /**
+     * Runs the benchmark for the given number of warm-up and measured
+     * iterations and returns the operations per second of each
+     * measured iteration.
+     */
+    protected static double[] measure(Benchmark benchmark, int warmup,
+            int iterations, int time) throws Exception {
+        double[] results = new double[iterations];
+        for (int i = -warmup; i < iterations; ++i) {
+            long start = System.currentTimeMillis();
+            long end = start + time;
+            long now;
+            int ops = 0;
+            do {
+                benchmark.run();
+                ++ops;
+                now = System.currentTimeMillis();
+            }
+            while (now < end);
+            if (i >= 0) {
+                results[i] = ops * 1000.0 / (now - start);
+            }
+        }
+        return results;
+    } // measure(Benchmark,int,int,int):double[]
+
+    /** Returns a new input source for the document of the current run. */
+    protected InputSource createInputSource() {
+        return new InputSource(new ByteArrayInputStream(fDocument));
+    } // createInputSource():InputSource
+
+    //
+    // Private static methods
+    //
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (int i = 0; i < values.length; ++i) {
+            sum += values[i];
+        }
+        return sum / values.length;
+    } // mean(double[]):double
+
+    private static double deviation(double[] values, double mean) {
+        double sum = 0;
+        for (int i = 0; i < values.length; ++i) {
+            sum += (values[i] - mean) * (values[i] - mean);
+        }
+        return Math.sqrt(sum / values.length);
+    } // deviation(double[],double):double
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 10) / 10.0);
+    } // format(double):String
+
+    private static String pad(String s, int width) {
+        StringBuffer buffer = new StringBuffer(s);
+        while (buffer.length() < width) {
+            buffer.append(' ');
+        }
+        return buffer.append(' ').toString();
+    } // pad(String,int):String
+
+    private static void printUsage() {
+        System.err.println("usage: java perf.Benchmark (options) [benchmark ...]");
+        System.err.println();
+        System.err.println("options:");
+        System.err.println("  -size n        Number of repeated units per document (default " + DEFAULT_SIZE + ").");
+        System.err.println("  -warmup n      Number of warm-up iterations (default " + DEFAULT_WARMUP + ").");
+        System.err.println("  -iterations n  Number of measured iterations (default " + DEFAULT_ITERATIONS + ").");
+        System.err.println("  -time ms       Duration of an iteration (default " + DEFAULT_TIME + ").");
+        System.err.println("  -shape name    Document shape; may be repeated (default: all).");
+        System.err.println("  -h             This help screen.");
+        System.err.println();
+        System.err.print("benchmarks:");
+        Benchmark[] benchmarks = createBenchmarks();
+        for (int i = 0; i < benchmarks.length; ++i) {
+            System.err.print(' ');
+            System.err.print(benchmarks[i].getName());
+        }
+        System.err.println();
+        System.err.print("shapes:    ");
+        for (int i = 0; i < Corpus.SHAPES.length; ++i) {
+            System.err.print(' ');
+            System.err.print(Corpus.SHAPES[i]);
+        }
+        System.err.println();
+    } // printUsage()
+
+    //
+    // Classes
+    //
+
+    /** An error handler which fails on any error. */
+    protected static class FailingHandler extends DefaultHandler {
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    } // class FailingHandler
+
+    /** An output stream which discards its output. */
+    protected static final class NullOutputStream extends OutputStream {
+        public long fCount;
+        public void write(int b) {
+            ++fCount;
+        }
+        public void write(byte[] b, int off, int len) {
+            fCount += len;
+        }
+    } // class NullOutputStream
+
+    /**
+     * Namespace-aware SAX parse through the document scanner, optionally
+     * reporting each run of character data with a single callback.
+     */
+    public static class SAXParse extends Benchmark {
+        private final SAXParser fParser = new SAXParser();
+        private final boolean fCoalesce;
+        public SAXParse(boolean coalesce) {
+            fCoalesce = coalesce;
+            try {
+                fParser.setFeature("http://apache.org/xml/features/scanner/coalesce-characters", coalesce);
+            }
+            catch (SAXException e) {
+                throw new RuntimeException(e.toString());
+            }
+            DefaultHandler handler = new FailingHandler();
+            fParser.setContentHandler(handler);
+            fParser.setErrorHandler(handler);
+        }
+        public String getName() {
+            return fCoalesce ? "sax-coalesce" : "sax";
+        }
+        public void run() throws Exception {
+            fParser.parse(createInputSource());
+        }
+    } // class SAXParse
+
+    /** Pull parse with the streaming reader, reading the text of every event. */
+    public static class StAXRead extends Benchmark {
+        private final XML11Configuration fConfiguration = new XML11Configuration();
+        public String getName() {
+            return "stax";
+        }
+        public void run() throws Exception {
+            XMLStreamReader reader = new XMLStreamReaderImpl(fConfiguration,
+                    new XMLInputSource(null, null, null, new ByteArrayInputStream(fDocument), null));
+            int length = 0;
+            while (reader.hasNext()) {
+                int type = reader.next();
+                if (type == XMLStreamConstants.CHARACTERS || type == XMLStreamConstants.SPACE) {
+                    length += reader.getTextLength();
+                }
+                else if (type == XMLStreamConstants.START_ELEMENT) {
+                    length += reader.getAttributeCount();
+                }
+            }
+            reader.close();
+            if (length == 0) {
+                throw new IllegalStateException("no content was read");
+            }
+        }
+    } // class StAXRead
+
+    /** SAX parse with XML Schema validation against a cached grammar. */
+    public static class SchemaValidation extends Benchmark {
+        private final SAXParser fParser;
+        public SchemaValidation() {
+            try {
+                SymbolTable symbolTable = new SymbolTable();
+                XMLGrammarPoolImpl grammarPool = new XMLGrammarPoolImpl();
+                XMLGrammarPreparser preparser = new XMLGrammarPreparser(symbolTable);
+                preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+                preparser.setGrammarPool(grammarPool);
+                preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                        new XMLInputSource(null, "perf.xsd", null, new StringReader(Corpus.SCHEMA), null));
+                grammarPool.lockPool();
+                fParser = new SAXParser(symbolTable, grammarPool);
+                fParser.setFeature("http://xml.org/sax/features/validation", true);
+                fParser.setFeature("http://apache.org/xml/features/validation/schema", true);
+                DefaultHandler handler = new FailingHandler();
+                fParser.setContentHandler(handler);
+                fParser.setErrorHandler(handler);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e.toString());
+            }
+        }
+        public String getName() {
+            return "validate";
+        }
+        public void run() throws Exception {
+            fParser.parse(createInputSource());
+        }
+    } // class SchemaValidation
+
+    /**
+     * DOM build followed by a full traversal, so that the cost of
+     * deferred node expansion is included.
+     */
+    public static class DOMBuild extends Benchmark {
+        private final DOMParser fParser = new DOMParser();
+        private final boolean fDeferred;
+        public DOMBuild(boolean deferred) {
+            fDeferred = deferred;
+            try {
+                fParser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", deferred);
+            }
+            catch (SAXException e) {
+                throw new RuntimeException(e.toString());
+            }
+            fParser.setErrorHandler(new FailingHandler());
+        }
+        public String getName() {
+            return fDeferred ? "dom-deferred" : "dom";
+        }
+        public void run() throws Exception {
+            fParser.parse(createInputSource());
+            traverse(fParser.getDocument());
+            fParser.reset();
+        }
+        static int traverse(Node node) {
+            int count = 1;
+            NamedNodeMap attributes = node.getAttributes();
+            if (attributes != null) {
+                for (int i = 0; i < attributes.getLength(); ++i) {
+                    count += traverse(attributes.item(i));
+                }
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                count += traverse(child);
+            }
+            return count;
+        }
+    } // class DOMBuild
+
+    /**
+     * Access to the children of every node of a DOM through
+     * <code>NodeList.item(int)</code> in a scattered order.
+     */
+    public static class ChildAccess extends Benchmark {
+        private Document fDOM;
+        public String getName() {
+            return "dom-item";
+        }
+        public void setUp(String shape, byte[] document) throws Exception {
+            super.setUp(shape, document);
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            parser.parse(createInputSource());
+            fDOM = parser.getDocument();
+        }
+        public void run() throws Exception {
+            access(fDOM);
+        }
+        static int access(Node node) {
+            int count = 1;
+            NodeList children = node.getChildNodes();
+            int length = children.getLength();
+            // a step prime to the length visits each child once
+            int step = (length % 7919 == 0) ? 1 : 7919;
+            for (int i = 0, index = 0; i < length; ++i, index = (index + step) % length) {
+                count += access(children.item(index));
+            }
+            return count;
+        }
+    } // class ChildAccess
+
+    /**
+     * Repeated <code>getElementsByTagNameNS</code> queries on a DOM, for
+     * each local name found in the document.
+     */
+    public static class ElementQuery extends Benchmark {
+        private final boolean fIndexed;
+        private Document fDOM;
+        private String[] fNames;
+        public ElementQuery(boolean indexed) {
+            fIndexed = indexed;
+        }
+        public String getName() {
+            return fIndexed ? "dom-query-indexed" : "dom-query";
+        }
+        public void setUp(String shape, byte[] document) throws Exception {
+            super.setUp(shape, document);
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            parser.parse(createInputSource());
+            fDOM = parser.getDocument();
+            ((CoreDocumentImpl) fDOM).setElementIndexing(fIndexed);
+            Vector names = new Vector();
+            NodeList elements = fDOM.getElementsByTagName("*");
+            for (int i = 0; i < elements.getLength(); ++i) {
+                String name = elements.item(i).getLocalName();
+                if (!names.contains(name)) {
+                    names.addElement(name);
+                }
+            }
+            fNames = new String[names.size()];
+            names.copyInto(fNames);
+        }
+        public void run() throws Exception {
+            for (int i = 0; i < fNames.length; ++i) {
+                NodeList elements = fDOM.getElementsByTagNameNS("*", fNames[i]);
+                for (int j = 0; j < elements.getLength(); ++j) {
+                    elements.item(j);
+                }
+            }
+        }
+    } // class ElementQuery
+
+    /** Serialization of a DOM with XMLSerializer. */
+    public static class Serialize extends Benchmark {
+        private Document fDOM;
+        public String getName() {
+            return "serialize";
+        }
+        public void setUp(String shape, byte[] document) throws Exception {
+            super.setUp(shape, document);
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            parser.parse(createInputSource());
+            fDOM = parser.getDocument();
+        }
+        public void run() throws Exception {
+            OutputFormat format = new OutputFormat(fDOM, "UTF-8", false);
+            XMLSerializer serializer = new XMLSerializer(new NullOutputStream(), format);
+            serializer.serialize(fDOM);
+        }
+    } // class Serialize
+
+    /** Serialization of SAX events with StreamingXMLSerializer. */
+    public static class StreamingSerialize extends Benchmark {
+        private final SAXParser fParser = new SAXParser();
+        public String getName() {
+            return "serialize-sax";
+        }
+        public void run() throws Exception {
+            OutputFormat format = new OutputFormat("xml", "UTF-8", false);
+            StreamingXMLSerializer serializer = new StreamingXMLSerializer(new NullOutputStream(), format);
+            fParser.setContentHandler(serializer);
+            fParser.setProperty("http://xml.org/sax/properties/lexical-handler", serializer);
+            fParser.parse(createInputSource());
+        }
+    } // class StreamingSerialize
+
+    /**
+     * Decoding of the document from UTF-8, either with UTF8Reader, which
+     * widens runs of ASCII bytes in bulk, or a byte at a time by the loop
+     * UTF8Reader used before, so that the two can be compared in one run.
+     * The text shape is mostly ASCII, while every other word of the mixed
+     * shape is not.
+     */
+    public static class UTF8Decode extends Benchmark {
+        private final boolean fReader;
+        private final byte[] fBytes = new byte[UTF8Reader.DEFAULT_BUFFER_SIZE];
+        private final char[] fChars = new char[UTF8Reader.DEFAULT_BUFFER_SIZE];
+        public UTF8Decode(boolean reader) {
+            fReader = reader;
+        }
+        public String getName() {
+            return fReader ? "utf8-read" : "utf8-read-bytewise";
+        }
+        public void setUp(String shape, byte[] document) throws Exception {
+            super.setUp(shape, document);
+            int expected = new String(document, "UTF-8").length();
+            int count = fReader ? readWithReader() : readBytewise();
+            if (count != expected) {
+                throw new IllegalStateException(getName() + " decoded " + count
+                        + " characters rather than " + expected);
+            }
+        }
+        public void run() throws Exception {
+            if (fReader) {
+                readWithReader();
+            }
+            else {
+                readBytewise();
+            }
+        }
+        private int readWithReader() throws IOException {
+            UTF8Reader reader = new UTF8Reader(new ByteArrayInputStream(fDocument));
+            int count = 0;
+            int length;
+            while ((length = reader.read(fChars, 0, fChars.length)) != -1) {
+                count += length;
+            }
+            return count;
+        }
+        /**
+         * Decodes the document a byte at a time, keeping the bytes of a
+         * character split across two reads for the next one.
+         */
+        private int readBytewise() throws IOException {
+            InputStream stream = new ByteArrayInputStream(fDocument);
+            int count = 0;
+            int kept = 0;
+            int length;
+            while ((length = stream.read(fBytes, kept, fBytes.length - kept)) != -1) {
+                final int total = kept + length;
+                int in = 0;
+                int out = 0;
+                while (in < total) {
+                    int b0 = fBytes[in] & 0xFF;
+                    if (b0 < 0x80) {
+                        fChars[out++] = (char) b0;
+                        ++in;
+                        continue;
+                    }
+                    int size = b0 < 0xE0 ? 2 : b0 < 0xF0 ? 3 : 4;
+                    if (in + size > total) {
+                        break;
+                    }
+                    int c = b0 & (0xFF >> (size + 1));
+                    for (int i = 1; i < size; ++i) {
+                        int b = fBytes[in + i] & 0xFF;
+                        if ((b & 0xC0) != 0x80) {
+                            throw new IOException("invalid byte " + i + " of a " + size + "-byte sequence");
+                        }
+                        c = (c << 6) | (b & 0x3F);
+                    }
+                    if (c < 0x10000) {
+                        fChars[out++] = (char) c;
+                    }
+                    else {
+                        fChars[out++] = (char) (0xD7C0 + (c >> 10));
+                        fChars[out++] = (char) (0xDC00 | (c & 0x3FF));
+                    }
+                    in += size;
+                }
+                count += out;
+                kept = total - in;
+                System.arraycopy(fBytes, in, fBytes, 0, kept);
+            }
+            return count;
+        }
+    } // class UTF8Decode
+
+} // class Benchmark
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package perf;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+/**
+ * Generates the documents used by the benchmarks. Each document has a
+ * distinct shape which stresses a different part of the parser. All
+ * documents are generated from a fixed seed so that runs are comparable.
+ * <p>
+ * Every document has the root element <code>doc</code> in the
+ * namespace {@link #NAMESPACE} and is valid against {@link #SCHEMA}.
+ *
+ * @version $Id$
+ */
+public final class Corpus {
+
+    //
+    // Constants
+    //
+
+    /** The target namespace of the corpus documents. */
+    public static final String NAMESPACE = "http://xml.apache.org/xerces-2j/perf";
+
+    /** Document shapes. */
+    public static final String DEEP = "deep";
+    public static final String WIDE = "wide";
+    public static final String ATTRIBUTES = "attributes";
+    public static final String TEXT = "text";
+    public static final String NAMESPACES = "namespaces";
+    public static final String KEYED = "keyed";
+    public static final String MIXED = "mixed";
+
+    /** All document shapes. */
+    public static final String[] SHAPES = { DEEP, WIDE, ATTRIBUTES, TEXT, NAMESPACES, KEYED, MIXED };
+
+    /**
+     * A schema which all corpus documents are valid against. The
+     * content models are deliberately lax about element order but
+     * type the attributes and text content.
+     */
+    public static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'\n" +
+        "           xmlns:p='" + NAMESPACE + "'\n" +
+        "           targetNamespace='" + NAMESPACE + "'\n" +
+        "           elementFormDefault='qualified'>\n" +
+        " <xs:element name='doc'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:choice minOccurs='0' maxOccurs='unbounded'>\n" +
+        "    <xs:element ref='p:node'/>\n" +
+        "    <xs:element ref='p:item'/>\n" +
+        "    <xs:element ref='p:record'/>\n" +
+        "    <xs:element ref='p:para'/>\n" +
+        "    <xs:element ref='p:row'/>\n" +
+        "    <xs:any namespace='##other' processContents='lax'/>\n" +
+        "   </xs:choice>\n" +
+        "  </xs:complexType>\n" +
+        "  <xs:key name='rowKey'>\n" +
+        "   <xs:selector xpath='p:row'/>\n" +
+        "   <xs:field xpath='@id'/>\n" +
+        "  </xs:key>\n" +
+        "  <xs:unique name='rowCode'>\n" +
+        "   <xs:selector xpath='p:row'/>\n" +
+        "   <xs:field xpath='@code'/>\n" +
+        "   <xs:field xpath='@date'/>\n" +
+        "  </xs:unique>\n" +
+        "  <xs:keyref name='rowRef' refer='p:rowKey'>\n" +
+        "   <xs:selector xpath='p:row'/>\n" +
+        "   <xs:field xpath='@ref'/>\n" +
+        "  </xs:keyref>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='node'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence>\n" +
+        "    <xs:element ref='p:node' minOccurs='0'/>\n" +
+        "   </xs:sequence>\n" +
+        "   <xs:attribute name='level' type='xs:int' use='required'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='item'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:simpleContent>\n" +
+        "    <xs:extension base='xs:string'>\n" +
+        "     <xs:attribute name='id' type='xs:ID' use='required'/>\n" +
+        "    </xs:extension>\n" +
+        "   </xs:simpleContent>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='record'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:attribute name='id' type='xs:long' use='required'/>\n" +
+        "   <xs:attribute name='name' type='xs:string'/>\n" +
+        "   <xs:attribute name='code' type='xs:NMTOKEN'/>\n" +
+        "   <xs:attribute name='amount' type='xs:decimal'/>\n" +
+        "   <xs:attribute name='date' type='xs:date'/>\n" +
+        "   <xs:attribute name='flag' type='xs:boolean'/>\n" +
+        "   <xs:attribute name='note' type='xs:string'/>\n" +
+        "   <xs:attribute name='ref' type='xs:anyURI'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='para' type='xs:string'/>\n" +
+        " <xs:element name='row'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:attribute name='id' type='xs:long' use='required'/>\n" +
+        "   <xs:attribute name='code' type='xs:token' use='required'/>\n" +
+        "   <xs:attribute name='date' type='xs:date' use='required'/>\n" +
+        "   <xs:attribute name='ref' type='xs:long'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        "</xs:schema>\n";
+
+    /** Words used for generated text. */
+    private static final String[] WORDS = {
+        "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+        "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore",
+        "et", "dolore", "magna", "aliqua", "&amp;", "&lt;markup&gt;", "caf\u00e9",
+        "na\u00efve", "\u00fcber", "\u65e5\u672c",
+    };
+
+    /** Words outside ASCII, of two and three bytes in UTF-8. */
+    private static final String[] OTHER_WORDS = {
+        "\u03bb\u03cc\u03b3\u03bf\u03c2", "\u03ba\u03b1\u03b9",
+        "\u0441\u043b\u043e\u0432\u043e", "\u0438", "\u05e9\u05dc\u05d5\u05dd",
+        "\u65e5\u672c\u8a9e", "\u6587\u5b57", "\u3072\u3089\u304c\u306a",
+    };
+
+    //
+    // Constructors
+    //
+
+    /** This class cannot be instantiated. */
+    private Corpus() {}
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Returns the UTF-8 encoded document of the given shape. The size
+     * controls the number of repeated units in the document.
+     *
+     * @param shape One of the shape constants of this class.
+     * @param size  The number of repeated units.
+     */
+    public static byte[] createDocument(String shape, int size) {
+        StringBuffer buffer = new StringBuffer(size * 64);
+        Random random = new Random(size);
+        buffer.append("<?xml version='1.0' encoding='UTF-8'?>\n");
+        if (NAMESPACES.equals(shape)) {
+            buffer.append("<doc xmlns='").append(NAMESPACE).append("'>\n");
+            // namespace declarations on every element, with prefixed names
+            for (int i = 0; i < size; ++i) {
+                int ns = i % 16;
+                buffer.append("<x").append(ns).append(":entry xmlns:x").append(ns)
+                      .append("='urn:perf:ns").append(ns).append("' xmlns:y='urn:perf:y")
+                      .append(i % 7).append("' y:kind='k").append(i % 5).append("'>");
+                buffer.append("<x").append(ns).append(":key>").append(i)
+                      .append("</x").append(ns).append(":key>");
+                buffer.append("<y:value>").append(WORDS[random.nextInt(WORDS.length)])
+                      .append("</y:value>");
+                buffer.append("</x").append(ns).append(":entry>\n");
+            }
+            buffer.append("</doc>\n");
+        }
+        else {
+            buffer.append("<doc xmlns='").append(NAMESPACE).append("'>\n");
+            if (DEEP.equals(shape)) {
+                // one deeply nested chain per 100 units
+                for (int i = 0; i < size; i += 100) {
+                    int depth = Math.min(100, size - i);
+                    for (int d = 0; d < depth; ++d) {
+                        buffer.append("<node level='").append(d).append("'>");
+                    }
+                    for (int d = 0; d < depth; ++d) {
+                        buffer.append("</node>");
+                    }
+                    buffer.append('\n');
+                }
+            }
+            else if (WIDE.equals(shape)) {
+                for (int i = 0; i < size; ++i) {
+                    buffer.append("<item id='i").append(i).append("'>")
+                          .append(WORDS[random.nextInt(WORDS.length)]).append("</item>\n");
+                }
+            }
+            else if (ATTRIBUTES.equals(shape)) {
+                for (int i = 0; i < size; ++i) {
+                    buffer.append("<record id='").append(i)
+                          .append("' name='").append(WORDS[random.nextInt(WORDS.length)])
+                          .append("' code='C").append(random.nextInt(1000))
+                          .append("' amount='").append(random.nextInt(100000)).append('.').append(random.nextInt(100))
+                          .append("' date='20").append(10 + random.nextInt(10)).append("-0")
+                          .append(1 + random.nextInt(9)).append("-1").append(random.nextInt(10))
+                          .append("' flag='").append(random.nextBoolean())
+                          .append("' note='").append(WORDS[random.nextInt(WORDS.length)])
+                          .append(' ').append(WORDS[random.nextInt(WORDS.length)])
+                          .append("' ref='http://example.org/r/").append(i).append("'/>\n");
+                }
+            }
+            else if (TEXT.equals(shape)) {
+                for (int i = 0; i < size; i += 10) {
+                    buffer.append("<para>");
+                    for (int w = 0; w < 100; ++w) {
+                        buffer.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                        if (w % 16 == 15) {
+                            buffer.append('\n');
+                        }
+                    }
+                    buffer.append("</para>\n");
+                }
+            }
+            else if (MIXED.equals(shape)) {
+                // text in which every other word is not ASCII
+                for (int i = 0; i < size; i += 10) {
+                    buffer.append("<para>");
+                    for (int w = 0; w < 100; ++w) {
+                        buffer.append(w % 2 == 0 ? WORDS[random.nextInt(WORDS.length)]
+                                                 : OTHER_WORDS[random.nextInt(OTHER_WORDS.length)]).append(' ');
+                        if (w % 16 == 15) {
+                            buffer.append('\n');
+                        }
+                    }
+                    buffer.append("</para>\n");
+                }
+            }
+            else if (KEYED.equals(shape)) {
+                // one row per unit, unique on id and on (code, date),
+                // each row but the first referring to an earlier row
+                for (int i = 0; i < size; ++i) {
+                    buffer.append("<row id='").append(i)
+                          .append("' code='").append(WORDS[i % 19]).append('-').append(i / 19)
+                          .append("' date='").append(2000 + i % 20).append("-0")
+                          .append(1 + i % 9).append("-1").append(i % 10).append('\'');
+                    if (i > 0) {
+                        buffer.append(" ref='").append(random.nextInt(i)).append('\'');
+                    }
+                    buffer.append("/>\n");
+                }
+            }
+            else {
+                throw new IllegalArgumentException(shape);
+            }
+            buffer.append("</doc>\n");
+        }
+        try {
+            return buffer.toString().getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    } // createDocument(String,int):byte[]
+
+} // class Corpus
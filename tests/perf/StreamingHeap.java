@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package perf;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.StreamingXMLSerializer;
+import org.xml.sax.InputSource;
+
+/**
+ * This program streams a generated document of a given size through
+ * the SAX parser and the streaming serializer, and measures the heap in
+ * use after a garbage collection at regular points of the input. The
+ * document is produced while it is read and the output is discarded,
+ * so the heap of the pipeline should not grow with the document size;
+ * the program fails if it grows by more than the given limit between
+ * the first and the last sample.
+ * <p>
+ * Usage: <code>java perf.StreamingHeap [-mb n] [-limit kb] [-indent]
+ * [-shape name]</code>
+ *
+ * @version $Id$
+ */
+public class StreamingHeap {
+
+    //
+    // Constants
+    //
+
+    /** Default size of the document in megabytes. */
+    private static final int DEFAULT_SIZE = 256;
+
+    /** Default limit of the heap growth in kilobytes. */
+    private static final int DEFAULT_LIMIT = 1024;
+
+    /** Number of heap samples. */
+    private static final int SAMPLES = 10;
+
+    /** Number of units in the block of the document which is repeated. */
+    private static final int BLOCK_UNITS = 1000;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        int size = DEFAULT_SIZE;
+        int limit = DEFAULT_LIMIT;
+        boolean indenting = false;
+        String shape = Corpus.WIDE;
+        for (int i = 0; i < argv.length; ++i) {
+            String arg = argv[i];
+            if (arg.equals("-mb")) {
+                size = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-limit")) {
+                limit = Integer.parseInt(argv[++i]);
+            }
+            else if (arg.equals("-indent")) {
+                indenting = true;
+            }
+            else if (arg.equals("-shape")) {
+                shape = argv[++i];
+            }
+            else {
+                System.err.println("usage: java perf.StreamingHeap [-mb n] [-limit kb] [-indent] [-shape name]");
+                System.exit(1);
+            }
+        }
+
+        GeneratedInputStream input = new GeneratedInputStream(shape, (long) size << 20);
+        NullOutputStream output = new NullOutputStream();
+        OutputFormat format = new OutputFormat("xml", "UTF-8", indenting);
+        StreamingXMLSerializer serializer = new StreamingXMLSerializer(output, format);
+        SAXParser parser = new SAXParser();
+        parser.setContentHandler(serializer);
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", serializer);
+
+        System.out.println("# shape=" + shape + " size=" + size + "MB indenting=" + indenting);
+        long time = System.currentTimeMillis();
+        parser.parse(new InputSource(input));
+        time = System.currentTimeMillis() - time;
+
+        long first = input.fSamples[0];
+        long max = first;
+        for (int i = 0; i < input.fSampleCount; ++i) {
+            System.out.println(pad(((i + 1) * 100 / (SAMPLES + 1)) + "%", 8) + (input.fSamples[i] >> 10) + " KB");
+            max = Math.max(max, input.fSamples[i]);
+        }
+        long growth = (max - first) >> 10;
+        System.out.println("read " + (input.fCount >> 20) + " MB, wrote " + (output.fCount >> 20)
+                + " MB in " + time + " ms; heap growth " + growth + " KB");
+        if (input.fSampleCount < SAMPLES) {
+            System.err.println("FAIL: the document is too small to sample");
+            System.exit(1);
+        }
+        if (growth > limit) {
+            System.err.println("FAIL: heap grew by more than " + limit + " KB");
+            System.exit(1);
+        }
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Returns the heap in use after a garbage collection. */
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    } // usedMemory():long
+
+    /** Pads a string to the given length. */
+    private static String pad(String s, int length) {
+        StringBuffer buffer = new StringBuffer(s);
+        while (buffer.length() < length) {
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    } // pad(String,int):String
+
+    //
+    // Classes
+    //
+
+    /**
+     * An input stream producing a document of about the given size by
+     * repeating a block of units of a corpus document, which samples
+     * the heap in use at regular points.
+     */
+    static final class GeneratedInputStream extends InputStream {
+
+        private final byte[] fHead;
+        private final byte[] fBlock;
+        private final byte[] fTail;
+        private final long fSize;
+        private final long[] fSamples = new long[SAMPLES];
+        private int fSampleCount;
+        private long fCount;
+        private byte[] fCurrent;
+        private int fOffset;
+
+        GeneratedInputStream(String shape, long size) throws Exception {
+            // split a corpus document into the start of the root element,
+            // its content and its end tag
+            String document = new String(Corpus.createDocument(shape, BLOCK_UNITS), "UTF-8");
+            int start = document.indexOf('>', document.indexOf("<doc")) + 1;
+            int end = document.lastIndexOf("</doc>");
+            fHead = document.substring(0, start).getBytes("UTF-8");
+            fBlock = document.substring(start, end).getBytes("UTF-8");
+            fTail = document.substring(end).getBytes("UTF-8");
+            fSize = size;
+            fCurrent = fHead;
+        }
+
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (fOffset == fCurrent.length) {
+                if (fCurrent == fTail) {
+                    return -1;
+                }
+                fCurrent = (fCount + fBlock.length < fSize) ? fBlock : fTail;
+                fOffset = 0;
+            }
+            int count = Math.min(len, fCurrent.length - fOffset);
+            System.arraycopy(fCurrent, fOffset, b, off, count);
+            fOffset += count;
+            long before = fCount;
+            fCount += count;
+            // sample at evenly spaced points before the end of the document
+            long step = fSize / (SAMPLES + 1);
+            if (fSampleCount < SAMPLES && before / step != fCount / step) {
+                fSamples[fSampleCount++] = usedMemory();
+            }
+            return count;
+        }
+
+    } // class GeneratedInputStream
+
+    /** An output stream which counts and discards its bytes. */
+    static final class NullOutputStream extends OutputStream {
+        private long fCount;
+        public void write(int b) {
+            ++fCount;
+        }
+        public void write(byte[] b, int off, int len) {
+            fCount += len;
+        }
+    } // class NullOutputStream
+
+} // class StreamingHeap
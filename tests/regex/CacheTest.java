@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package regex;
+
+import java.util.Locale;
+
+import org.apache.xerces.impl.xpath.regex.ParseException;
+import org.apache.xerces.impl.xpath.regex.REUtil;
+import org.apache.xerces.impl.xpath.regex.RegularExpression;
+import org.apache.xerces.impl.xpath.regex.RegularExpressionCache;
+
+/**
+ * This program checks that the cache of compiled regular expressions
+ * returns the cached instance for the same pattern and options, and
+ * compiles a new one when the options differ, when the least recently
+ * used expression was evicted, or when the pattern is invalid.
+ *
+ * @version $Id$
+ */
+public class CacheTest {
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        RegularExpressionCache cache = new RegularExpressionCache(2);
+        Locale locale = Locale.ENGLISH;
+
+        // hit for the same pattern and options
+        RegularExpression schema = cache.getRegularExpression("[a-z]+", "X", locale);
+        check("same pattern and options", cache.getRegularExpression("[a-z]+", "X", locale) == schema);
+        check("counts after a hit", cache.getHitCount() == 1 && cache.getMissCount() == 1);
+
+        // miss when the options differ
+        RegularExpression ignoreCase = cache.getRegularExpression("[a-z]+", "Xi", locale);
+        check("different options", ignoreCase != schema);
+        check("counts after a miss", cache.getHitCount() == 1 && cache.getMissCount() == 2);
+        check("options applied", schema.matches("abc") && !schema.matches("ABC") && ignoreCase.matches("ABC"));
+
+        // options are compared by value
+        check("same options in another order", cache.getRegularExpression("[a-z]+", "iX", locale) == ignoreCase);
+        check("no options", cache.getRegularExpression("[a-z]+", null, locale)
+                == cache.getRegularExpression("[a-z]+", "", locale));
+
+        // the least recently used expression is evicted
+        cache.clear();
+        RegularExpression a = cache.getRegularExpression("a", "X", locale);
+        RegularExpression b = cache.getRegularExpression("b", "X", locale);
+        cache.getRegularExpression("a", "X", locale);
+        cache.getRegularExpression("c", "X", locale);
+        check("bounded", cache.size() == 2);
+        check("recently used expression kept", cache.getRegularExpression("a", "X", locale) == a);
+        check("least recently used expression evicted", cache.getRegularExpression("b", "X", locale) != b);
+
+        // invalid patterns are not cached
+        int size = cache.size();
+        for (int i = 0; i < 2; ++i) {
+            try {
+                cache.getRegularExpression("[a-", "X", locale);
+                check("invalid pattern rejected", false);
+            }
+            catch (ParseException e) {
+            }
+        }
+        check("invalid pattern not cached", cache.size() == size);
+
+        // REUtil shares compiled expressions through the same kind of cache
+        RegularExpression shared = REUtil.createRegex("\\d+", "X");
+        check("REUtil hit", REUtil.createRegex("\\d+", "X", locale) == shared);
+        check("REUtil miss", REUtil.createRegex("\\d+", null) != shared);
+        check("REUtil matches", REUtil.matches("\\d+", "X", "123") && !REUtil.matches("\\d+", "X", "12a"));
+        System.out.println("All regular expression cache tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    private static void check(String name, boolean condition) {
+        if (!condition) {
+            System.err.println("FAIL: " + name);
+            System.exit(1);
+        }
+    } // check(String,boolean)
+
+} // class CacheTest
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package regex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import org.apache.xerces.impl.xpath.regex.Match;
+import org.apache.xerces.impl.xpath.regex.RegularExpression;
+
+/**
+ * This program checks that XML Schema patterns matched by the
+ * deterministic automaton give the same results as the backtracking
+ * matcher, which is used instead whenever a <code>Match</code> is
+ * passed. Each pattern is tried on strings derived from a few
+ * examples by random insertions, deletions and replacements, both as
+ * compiled and after being serialized and read back.
+ *
+ * @version $Id$
+ */
+public class DFATest {
+
+    //
+    // Constants
+    //
+
+    /** Patterns and strings which match them, in groups. */
+    private static final String[][] PATTERNS = {
+        { "[a-z]+\\d{2,3}", "abc12", "x999" },
+        { "(ab|a)*b", "b", "abab", "aab" },
+        { "(a*)*b", "aaaab", "b" },
+        { "(a|b){3}c?", "aba", "bbbc" },
+        { "a{0}b{1,}c{2}", "bcc", "bbbcc" },
+        { "[^abc]+", "xyz", "\u00E9" },
+        { "[a-z-[aeiou]]*", "bcd", "" },
+        { "\\d+(\\.\\d{1,2})?", "12", "3.14" },
+        { "\\i\\c*", "_x-1", "a.b:c" },
+        { "\\p{Lu}\\p{Ll}*", "Abc", "\u00C9t\u00E9" },
+        { "\\P{L}+", "123 -", "." },
+        { "\\s*x\\S", " xy", "x." },
+        { ".{2,4}", "ab", "\uD800\uDC00a" },
+        { "[\uD800\uDC00-\uDBFF\uDFFF]+", "\uD800\uDC00", "\uDBFF\uDFFF\uD834\uDD1E" },
+        { "(\\w|-)+@(\\w+\\.)+[a-z]{2,3}", "a-b@c.de", "x@y.z.com" },
+        { "((a|b)+c|d?e){1,3}", "abce", "ede" },
+        { "[0-9]{3}-[0-9]{2}-[0-9]{4}", "123-45-6789" },
+    };
+
+    /** Characters inserted into the strings. */
+    private static final String ALPHABET = "abcdexyz019 -_.:@A\u00C9\uD800\u00E9\uD800\uDC00\uDBFF\uDFFF";
+
+    /** Number of strings tried per pattern. */
+    private static final int STRINGS = 2000;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        Field dfa = RegularExpression.class.getDeclaredField("dfa");
+        dfa.setAccessible(true);
+        for (int i = 0; i < PATTERNS.length; ++i) {
+            String pattern = PATTERNS[i][0];
+            RegularExpression regex = new RegularExpression(pattern, "X");
+            RegularExpression copy = copy(regex);
+            Random random = new Random(i);
+            for (int j = 0; j < STRINGS; ++j) {
+                String target = (j < PATTERNS[i].length - 1) ? PATTERNS[i][j + 1] : derive(PATTERNS[i], random);
+                boolean expected = regex.matches(target, new Match());
+                if (j < PATTERNS[i].length - 1 && !expected) {
+                    fail(pattern + ": the example " + escape(target) + " does not match");
+                }
+                if (regex.matches(target) != expected) {
+                    fail(pattern + ": " + escape(target) + " should " + (expected ? "" : "not ") + "match");
+                }
+                if (copy.matches(target.toCharArray()) != expected) {
+                    fail(pattern + ": " + escape(target) + " matched differently after serialization");
+                }
+            }
+            if (dfa.get(regex) == null || dfa.get(copy) == null) {
+                fail(pattern + ": not matched by an automaton");
+            }
+        }
+        System.out.println("All DFA matcher tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Derives a string from one of the examples by a few random edits. */
+    private static String derive(String[] examples, Random random) {
+        StringBuffer buffer = new StringBuffer(examples[1 + random.nextInt(examples.length - 1)]);
+        int edits = random.nextInt(4);
+        for (int i = 0; i < edits; ++i) {
+            int position = random.nextInt(buffer.length() + 1);
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            switch (random.nextInt(3)) {
+                case 0: buffer.insert(position, c); break;
+                case 1: if (position < buffer.length()) buffer.deleteCharAt(position); break;
+                default: if (position < buffer.length()) buffer.setCharAt(position, c);
+            }
+        }
+        return buffer.toString();
+    } // derive(String[],Random):String
+
+    /** Returns a copy of the expression read back from a stream. */
+    private static RegularExpression copy(RegularExpression regex) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(regex);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (RegularExpression) in.readObject();
+    } // copy(RegularExpression):RegularExpression
+
+    /** Escapes the characters outside of printable ASCII. */
+    private static String escape(String s) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x7F) {
+                buffer.append(c);
+            }
+            else {
+                buffer.append("\\u").append(Integer.toHexString(0x10000 | c).substring(1));
+            }
+        }
+        return '"' + buffer.toString() + '"';
+    } // escape(String):String
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class DFATest
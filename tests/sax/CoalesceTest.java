@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sax;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * This program parses documents with the coalesce-characters feature
+ * off and on, and checks that the character data, the other events,
+ * their lines and the errors reported are the same. The documents
+ * are made of random pieces of text with line ends, ']' characters,
+ * "]]&gt;", surrogate pairs, references to internal and external
+ * entities and CDATA sections, and are parsed with small input buffers
+ * and shifted by a few characters, so that every piece falls across a
+ * buffer boundary. A long run of text checks that coalesced runs are
+ * reported in bounded chunks.
+ * <p>
+ * Only line numbers are compared: after a lone carriage return, the
+ * scanner without coalescing counts columns one short.
+ *
+ * @version $Id$
+ */
+public class CoalesceTest {
+
+    //
+    // Constants
+    //
+
+    /** Feature identifier: coalesce characters. */
+    private static final String COALESCE_CHARACTERS =
+        "http://apache.org/xml/features/scanner/coalesce-characters";
+
+    /** Property identifier: input buffer size. */
+    private static final String BUFFER_SIZE =
+        "http://apache.org/xml/properties/input-buffer-size";
+
+    /** Input buffer sizes. */
+    private static final int[] BUFFER_SIZES = { 67, 128, 2048 };
+
+    /** Number of random documents. */
+    private static final int DOCUMENTS = 40;
+
+    /** Pieces of content. */
+    private static final String[] PIECES = {
+        "text ", "\r\n", "\n", "\r", "\r\r\n", "a]b", "]]x", "]]]", "]>", "]",
+        "\uD800\uDC00", "&amp;", "&lt;", "&#13;", "&#x10000;", "&#93;&#93;&gt;",
+        "&int;", "&ends;]>", "&ext;", "<![CDATA[c]]d]]]>", "<!-- c -->",
+        "<?pi data?>", "<e/>", "<e>t\r\nu</e>", "]]>",
+    };
+
+    /** Internal subset, declaring the entities used in the pieces. */
+    private static final String DTD =
+        "<!DOCTYPE root [\n" +
+        "<!ENTITY int 'in]]entity&#13;&#10;text'>\n" +
+        "<!ENTITY ends 'ends]'>\n" +
+        "<!ENTITY ext SYSTEM 'ext.ent'>\n" +
+        "]>\n";
+
+    /** External entity. */
+    private static final String EXTERNAL = "ext\r\nernal\rtext]]x\uD800\uDC00]";
+
+    /** Length of the run of text in the long document. */
+    private static final int LONG_RUN = 300000;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        Random random = new Random(17);
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            StringBuffer content = new StringBuffer();
+            int pieces = 20 + random.nextInt(60);
+            for (int i = 0; i < pieces; ++i) {
+                // "]]>" outside of CDATA sections is an error; keep it rare
+                String piece = PIECES[random.nextInt(PIECES.length)];
+                if (piece.equals("]]>") && random.nextInt(4) != 0) {
+                    continue;
+                }
+                content.append(piece);
+            }
+            for (int b = 0; b < BUFFER_SIZES.length; ++b) {
+                for (int shift = 0; shift < 8; ++shift) {
+                    String document = DTD + "<root>" + "xxxxxxx".substring(shift) + content + "</root>";
+                    compare("document " + d + ", buffer " + BUFFER_SIZES[b] + ", shift " + shift,
+                            document, BUFFER_SIZES[b]);
+                }
+            }
+        }
+
+        // a long run with line ends is reported in bounded chunks
+        StringBuffer content = new StringBuffer();
+        while (content.length() < LONG_RUN) {
+            content.append("line of text ]\r\n");
+        }
+        String document = "<root>" + content + "</root>";
+        for (int b = 0; b < BUFFER_SIZES.length; ++b) {
+            Trace trace = compare("long document, buffer " + BUFFER_SIZES[b], document, BUFFER_SIZES[b]);
+            if (trace.fLongest >= 0x10000 + 2 * 2048) {
+                fail("long document, buffer " + BUFFER_SIZES[b] + ": a run of " + trace.fLongest + " characters");
+            }
+            if (trace.fCallbacks < 2) {
+                fail("long document, buffer " + BUFFER_SIZES[b] + ": the run was not split");
+            }
+        }
+        System.out.println("All coalesce characters tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Parses a document with the feature off and on, checks that the
+     * traces are the same, and returns the trace of the coalesced parse.
+     */
+    private static Trace compare(String name, String document, int bufferSize) throws Exception {
+        Trace expected = parse(document, bufferSize, false);
+        Trace actual = parse(document, bufferSize, true);
+        if (!expected.toString().equals(actual.toString())) {
+            String e = expected.toString();
+            String a = actual.toString();
+            int i = 0;
+            while (i < e.length() && i < a.length() && e.charAt(i) == a.charAt(i)) {
+                ++i;
+            }
+            fail(name + ": the traces differ at " + i + ":\n  "
+                    + e.substring(Math.max(0, i - 40), Math.min(e.length(), i + 40)) + "\n  "
+                    + a.substring(Math.max(0, i - 40), Math.min(a.length(), i + 40)));
+        }
+        if (actual.fCallbacks > expected.fCallbacks) {
+            fail(name + ": more characters callbacks when coalescing");
+        }
+        return actual;
+    } // compare(String,String,int):Trace
+
+    /** Parses a document and returns its trace. */
+    private static Trace parse(String document, int bufferSize, boolean coalesce) throws Exception {
+        SAXParser parser = new SAXParser();
+        parser.setFeature(COALESCE_CHARACTERS, coalesce);
+        parser.setProperty(BUFFER_SIZE, new Integer(bufferSize));
+        Trace trace = new Trace();
+        parser.setContentHandler(trace);
+        parser.setErrorHandler(trace);
+        parser.setEntityResolver(trace);
+        try {
+            parser.parse(new InputSource(new StringReader(document)));
+        }
+        catch (SAXParseException e) {
+            // recorded by the error handler
+        }
+        trace.flush();
+        return trace;
+    } // parse(String,int,boolean):Trace
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /**
+     * Records the events of a parse, with the characters between two
+     * other events as a single string, and the line of every event
+     * other than characters.
+     */
+    private static final class Trace extends DefaultHandler2 {
+
+        final StringBuffer fTrace = new StringBuffer();
+        final StringBuffer fText = new StringBuffer();
+        Locator fLocator;
+        int fCallbacks;
+        int fLongest;
+
+        public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) {
+            InputSource source = new InputSource(new StringReader(EXTERNAL));
+            source.setSystemId(systemId);
+            return source;
+        }
+
+        public void setDocumentLocator(Locator locator) {
+            fLocator = locator;
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            event("<" + qName + ">");
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            event("</" + qName + ">");
+        }
+
+        public void processingInstruction(String target, String data) {
+            event("<?" + target + " " + data + "?>");
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            fText.append(ch, start, length);
+            fCallbacks++;
+            fLongest = Math.max(fLongest, length);
+        }
+
+        public void fatalError(SAXParseException e) throws SAXParseException {
+            event("fatal error " + e.getLineNumber() + " " + e.getMessage());
+            throw e;
+        }
+
+        public void error(SAXParseException e) {
+            event("error " + e.getLineNumber() + " " + e.getMessage());
+        }
+
+        void event(String event) {
+            flush();
+            fTrace.append(event);
+            if (fLocator != null) {
+                fTrace.append(" @").append(fLocator.getLineNumber());
+            }
+            fTrace.append('\n');
+        }
+
+        void flush() {
+            if (fText.length() > 0) {
+                fTrace.append('[').append(fText).append("]\n");
+                fText.setLength(0);
+            }
+        }
+
+        public String toString() {
+            return fTrace.toString();
+        }
+
+    } // class Trace
+
+} // class CoalesceTest
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.StreamingXMLSerializer;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program sends SAX events to <code>StreamingXMLSerializer</code>
+ * and checks the text it writes: the escaping of text and attribute
+ * values, the namespace declarations made by startPrefixMapping, CDATA
+ * sections split around "]]&gt;" and around characters the encoding
+ * cannot represent, surrogate pairs split across two characters calls,
+ * and indenting. Documents parsed into the serializer must then be
+ * parsed back to the same events.
+ *
+ * @version $Id$
+ */
+public class StreamingSerializerTest {
+
+    //
+    // Constants
+    //
+
+    /** No attributes. */
+    private static final Attributes NONE = new AttributesImpl();
+
+    /** Documents parsed into the serializer and back. */
+    private static final String[] DOCUMENTS = {
+        "<r a='&lt;&amp;&gt;&quot;&apos;&#9;&#10;&#13;'>&lt;&amp;&gt;\"'&#13;\n\t]]&gt;</r>",
+        "<r xmlns='urn:d' xmlns:p='urn:p'><p:a p:b='1'><c xmlns='urn:c' xmlns:p='urn:q'>"
+            + "<p:d/></c></p:a><p:e/></r>",
+        "<r><![CDATA[a]]]]><![CDATA[>b\u20AC\uD800\uDC00<&]]></r>",
+        "<r xml:space='preserve'> <a> x </a>\n<b/></r><!-- after -->",
+        "<?pi data?><!DOCTYPE r [<!ELEMENT r ANY>]><r><?pi data?><!--c--><a>\u00E9</a>&#x10FFFF;</r>",
+    };
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        // escaping
+        StreamingXMLSerializer serializer = create("UTF-8", false);
+        start(serializer);
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "a", "a", "CDATA", "<&>\"'\t\n\r");
+        serializer.startElement("", "r", "r", attributes);
+        characters(serializer, "<&>\"'\r\n\t]]>");
+        serializer.endElement("", "r", "r");
+        check("escaping", "<r a=\"&lt;&amp;>&quot;'&#x9;&#xa;&#xd;\">&lt;&amp;&gt;\"'&#xd;\n\t]]&gt;</r>",
+              end(serializer));
+
+        // the XML declaration
+        fOutput = new ByteArrayOutputStream();
+        OutputFormat format = new OutputFormat("xml", "US-ASCII", false);
+        format.setLineSeparator("\n");
+        serializer = new StreamingXMLSerializer(fOutput, format);
+        serializer.startDocument();
+        serializer.startElement("", "r", "r", NONE);
+        serializer.endElement("", "r", "r");
+        serializer.endDocument();
+        check("XML declaration", "<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n<r/>",
+              new String(fOutput.toByteArray(), "US-ASCII"));
+
+        // namespace declarations, with names made from the declarations
+        // in scope when the events have no qualified names
+        serializer = create("UTF-8", false);
+        start(serializer);
+        serializer.startPrefixMapping("", "urn:d");
+        serializer.startPrefixMapping("p", "urn:p");
+        attributes = new AttributesImpl();
+        attributes.addAttribute("urn:p", "a", "", "CDATA", "1");
+        serializer.startElement("urn:d", "r", "", attributes);
+        serializer.startPrefixMapping("p", "urn:q");
+        attributes = new AttributesImpl();
+        // a declaration which is also reported as an attribute is written once
+        attributes.addAttribute("", "", "xmlns:p", "CDATA", "urn:q");
+        serializer.startElement("urn:q", "c", "", attributes);
+        serializer.endElement("urn:q", "c", "");
+        serializer.endPrefixMapping("p");
+        serializer.startElement("urn:p", "e", "", NONE);
+        serializer.endElement("urn:p", "e", "");
+        serializer.startElement("urn:d", "f", "", NONE);
+        serializer.endElement("urn:d", "f", "");
+        serializer.endElement("urn:d", "r", "");
+        serializer.endPrefixMapping("p");
+        serializer.endPrefixMapping("");
+        check("namespaces", "<r xmlns=\"urn:d\" xmlns:p=\"urn:p\" p:a=\"1\"><p:c xmlns:p=\"urn:q\"/>"
+              + "<p:e/><f/></r>", end(serializer));
+
+        // CDATA sections, with "]]>" split across calls
+        String[] encodings = { "UTF-8", "US-ASCII" };
+        String[] expected = {
+            "<r><![CDATA[a]]]]><![CDATA[>b]]]]><![CDATA[>]]]]]><![CDATA[>c\u20AC\uD800\uDC00]]></r>",
+            "<r><![CDATA[a]]]]><![CDATA[>b]]]]><![CDATA[>]]]]]><![CDATA[>c]]>&#x20ac;<![CDATA[]]>"
+                + "&#x10000;<![CDATA[]]></r>",
+        };
+        for (int e = 0; e < encodings.length; ++e) {
+            serializer = create(encodings[e], false);
+            start(serializer);
+            serializer.startElement("", "r", "r", NONE);
+            serializer.startCDATA();
+            characters(serializer, "a]]>b]");
+            characters(serializer, "]");
+            characters(serializer, ">]]]");
+            characters(serializer, ">c\u20AC\uD800");
+            characters(serializer, "\uDC00");
+            serializer.endCDATA();
+            serializer.endElement("", "r", "r");
+            check("CDATA in " + encodings[e], expected[e], end(serializer, encodings[e]));
+        }
+
+        // surrogate pairs split across calls, in text
+        expected = new String[] {
+            "<r>a\uD800\uDC00b\uDBFF\uDFFF</r>",
+            "<r>a&#x10000;b&#x10ffff;</r>",
+        };
+        for (int e = 0; e < encodings.length; ++e) {
+            serializer = create(encodings[e], false);
+            start(serializer);
+            serializer.startElement("", "r", "r", NONE);
+            characters(serializer, "a\uD800");
+            characters(serializer, "\uDC00b\uDBFF");
+            characters(serializer, "\uDFFF");
+            serializer.endElement("", "r", "r");
+            check("surrogate pairs in " + encodings[e], expected[e], end(serializer, encodings[e]));
+        }
+
+        // a high surrogate which is not followed by a low surrogate
+        serializer = create("UTF-8", false);
+        start(serializer);
+        serializer.startElement("", "r", "r", NONE);
+        characters(serializer, "a\uD800");
+        try {
+            serializer.endElement("", "r", "r");
+            fail("an unpaired surrogate was written");
+        }
+        catch (SAXException e) {
+            // expected
+        }
+
+        // indenting
+        serializer = create("UTF-8", true);
+        start(serializer);
+        serializer.startElement("", "r", "r", NONE);
+        serializer.startElement("", "a", "a", NONE);
+        serializer.startElement("", "b", "b", NONE);
+        serializer.endElement("", "b", "b");
+        serializer.comment("c".toCharArray(), 0, 1);
+        serializer.endElement("", "a", "a");
+        characters(serializer, "text");
+        serializer.startElement("", "c", "c", NONE);
+        serializer.endElement("", "c", "c");
+        attributes = new AttributesImpl();
+        attributes.addAttribute("", "", "xml:space", "CDATA", "preserve");
+        serializer.startElement("", "d", "d", attributes);
+        serializer.startElement("", "e", "e", NONE);
+        serializer.endElement("", "e", "e");
+        serializer.endElement("", "d", "d");
+        serializer.startElement("", "f", "f", NONE);
+        serializer.ignorableWhitespace("\n   ".toCharArray(), 0, 4);
+        serializer.startElement("", "g", "g", NONE);
+        serializer.endElement("", "g", "g");
+        serializer.endElement("", "f", "f");
+        serializer.endElement("", "r", "r");
+        check("indenting", "<r>\n  <a>\n    <b/>\n    <!--c-->\n  </a>text<c/>\n"
+              + "  <d xml:space=\"preserve\"><e/></d>\n  <f>\n    <g/>\n  </f>\n</r>", end(serializer));
+
+        // documents parsed into the serializer and back
+        for (int d = 0; d < DOCUMENTS.length; ++d) {
+            for (int e = 0; e < encodings.length; ++e) {
+                String trace = trace(new InputSource(new java.io.StringReader(DOCUMENTS[d])), null);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                format = new OutputFormat("xml", encodings[e], false);
+                trace(new InputSource(new java.io.StringReader(DOCUMENTS[d])),
+                      new StreamingXMLSerializer(output, format));
+                InputSource source = new InputSource(new ByteArrayInputStream(output.toByteArray()));
+                String actual = trace(source, null);
+                if (!trace.equals(actual)) {
+                    fail("document " + d + " in " + encodings[e] + " was parsed back as\n"
+                         + actual + "rather than\n" + trace);
+                }
+            }
+        }
+        System.out.println("All streaming serializer tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** The output of the last serializer created. */
+    private static ByteArrayOutputStream fOutput;
+
+    /** Creates a serializer writing to a new output. */
+    private static StreamingXMLSerializer create(String encoding, boolean indenting) throws Exception {
+        fOutput = new ByteArrayOutputStream();
+        OutputFormat format = new OutputFormat("xml", encoding, indenting);
+        if (indenting) {
+            format.setIndent(2);
+        }
+        format.setLineSeparator("\n");
+        format.setOmitXMLDeclaration(true);
+        return new StreamingXMLSerializer(fOutput, format);
+    } // create(String,boolean):StreamingXMLSerializer
+
+    private static void start(StreamingXMLSerializer serializer) throws Exception {
+        serializer.startDocument();
+    } // start(StreamingXMLSerializer)
+
+    private static String end(StreamingXMLSerializer serializer) throws Exception {
+        return end(serializer, "UTF-8");
+    } // end(StreamingXMLSerializer):String
+
+    /** Ends the document and returns the output. */
+    private static String end(StreamingXMLSerializer serializer, String encoding) throws Exception {
+        serializer.endDocument();
+        return new String(fOutput.toByteArray(), encoding);
+    } // end(StreamingXMLSerializer,String):String
+
+    private static void characters(StreamingXMLSerializer serializer, String text) throws Exception {
+        // surrounded by other characters, which are not part of the text
+        char[] ch = ("x" + text + "x").toCharArray();
+        serializer.characters(ch, 1, text.length());
+    } // characters(StreamingXMLSerializer,String)
+
+    /**
+     * Parses a document and returns a trace of its events, sending them
+     * to the given serializer too, if any.
+     */
+    private static String trace(InputSource source, StreamingXMLSerializer serializer) throws Exception {
+        SAXParser parser = new SAXParser();
+        Trace trace = new Trace(serializer);
+        parser.setContentHandler(trace);
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", trace);
+        parser.parse(source);
+        trace.flush();
+        return trace.fTrace.toString();
+    } // trace(InputSource,StreamingXMLSerializer):String
+
+    private static void check(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            fail(name + ": the output is\n" + actual + "\nrather than\n" + expected);
+        }
+    } // check(String,String,String)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /**
+     * Records the events of a parse, with the characters between two
+     * other events as a single string, and passes them on to a
+     * serializer.
+     */
+    private static final class Trace extends org.xml.sax.ext.DefaultHandler2 {
+
+        final StringBuffer fTrace = new StringBuffer();
+        final StringBuffer fText = new StringBuffer();
+        final StreamingXMLSerializer fSerializer;
+
+        Trace(StreamingXMLSerializer serializer) {
+            fSerializer = serializer;
+        }
+
+        public void startDocument() throws SAXException {
+            if (fSerializer != null) {
+                fSerializer.startDocument();
+            }
+        }
+
+        public void endDocument() throws SAXException {
+            if (fSerializer != null) {
+                fSerializer.endDocument();
+            }
+        }
+
+        public void startPrefixMapping(String prefix, String uri) {
+            event("xmlns " + prefix + "=" + uri);
+            if (fSerializer != null) {
+                fSerializer.startPrefixMapping(prefix, uri);
+            }
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes attrs)
+            throws SAXException {
+            StringBuffer event = new StringBuffer("<{" + uri + "}" + localName);
+            for (int i = 0; i < attrs.getLength(); ++i) {
+                event.append(" {").append(attrs.getURI(i)).append('}').append(attrs.getLocalName(i))
+                     .append("=[").append(attrs.getValue(i)).append(']');
+            }
+            event(event.append('>').toString());
+            if (fSerializer != null) {
+                fSerializer.startElement(uri, localName, qName, attrs);
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            event("</{" + uri + "}" + localName + ">");
+            if (fSerializer != null) {
+                fSerializer.endElement(uri, localName, qName);
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            fText.append(ch, start, length);
+            if (fSerializer != null) {
+                fSerializer.characters(ch, start, length);
+            }
+        }
+
+        public void processingInstruction(String target, String data) throws SAXException {
+            event("<?" + target + " " + data + "?>");
+            if (fSerializer != null) {
+                fSerializer.processingInstruction(target, data);
+            }
+        }
+
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            event("<!--" + new String(ch, start, length) + "-->");
+            if (fSerializer != null) {
+                fSerializer.comment(ch, start, length);
+            }
+        }
+
+        public void startCDATA() throws SAXException {
+            if (fSerializer != null) {
+                fSerializer.startCDATA();
+            }
+        }
+
+        public void endCDATA() throws SAXException {
+            if (fSerializer != null) {
+                fSerializer.endCDATA();
+            }
+        }
+
+        void event(String event) {
+            flush();
+            fTrace.append(event).append('\n');
+        }
+
+        void flush() {
+            if (fText.length() > 0) {
+                fTrace.append('[').append(fText).append("]\n");
+                fText.setLength(0);
+            }
+        }
+
+    } // class Trace
+
+} // class StreamingSerializerTest
@@ -48,6 +48,12 @@ public class AllTests {
         suite.addTestSuite(UseGrammarPoolOnly_False_Test.class);
         suite.addTestSuite(FixedAttrTest.class);
         suite.addTestSuite(FeaturePropagationTest.class);
+        suite.addTestSuite(SchemaLoadingThreadsTest.class);
+        suite.addTestSuite(GrammarSnapshotTest.class);
+        suite.addTestSuite(BoundedGrammarPoolTest.class);
+        suite.addTestSuite(SingleFlightGrammarPoolTest.class);
+        suite.addTestSuite(ContentModelIndexTest.class);
+        suite.addTestSuite(IdentityConstraintValueTest.class);
         return suite;
     }
 }
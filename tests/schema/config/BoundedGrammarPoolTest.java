@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.BoundedXMLGrammarPool;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+
+/**
+ * Checks that a bounded grammar pool evicts the least recently used
+ * grammars to stay within its bounds, and counts hits, misses and
+ * evictions.
+ *
+ * @version $Id$
+ */
+public class BoundedGrammarPoolTest extends TestCase {
+
+    /** Grammar without a target namespace. */
+    private Grammar fBase;
+
+    /** Grammar for "xslt.unittests", importing fBase. */
+    private Grammar fOther;
+
+    /** Grammar for "loading.threads", importing fOther. */
+    private Grammar fLoading;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(BoundedGrammarPoolTest.class);
+    }
+
+    public BoundedGrammarPoolTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        XMLGrammarPool pool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(pool);
+        // loadingThreads.xsd refers to a missing document
+        preparser.setErrorHandler(new XMLErrorHandler() {
+            public void warning(String domain, String key, XMLParseException e) {}
+            public void error(String domain, String key, XMLParseException e) {}
+            public void fatalError(String domain, String key, XMLParseException e) {
+                throw e;
+            }
+        });
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                new XMLInputSource(null, getClass().getResource("loadingThreads.xsd").toExternalForm(), null));
+        Grammar[] grammars = pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+        for (int i = 0; i < grammars.length; ++i) {
+            String namespace = ((SchemaGrammar) grammars[i]).getTargetNamespace();
+            if (namespace == null) {
+                fBase = grammars[i];
+            }
+            else if (namespace.equals("xslt.unittests")) {
+                fOther = grammars[i];
+            }
+            else if (namespace.equals("loading.threads")) {
+                fLoading = grammars[i];
+            }
+        }
+        assertNotNull(fBase);
+        assertNotNull(fOther);
+        assertNotNull(fLoading);
+    }
+
+    public void testEntryBound() {
+        BoundedXMLGrammarPool pool = new BoundedXMLGrammarPool(2);
+        pool.putGrammar(fBase);
+        pool.putGrammar(fLoading);
+        assertSame(fBase, pool.retrieveGrammar(fBase.getGrammarDescription()));
+        pool.putGrammar(fOther);
+
+        assertEquals(2, pool.getGrammarCount());
+        assertTrue(pool.containsGrammar(fBase.getGrammarDescription()));
+        assertTrue(pool.containsGrammar(fOther.getGrammarDescription()));
+        assertNull(pool.retrieveGrammar(fLoading.getGrammarDescription()));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    public void testImportedGrammarsUsed() {
+        BoundedXMLGrammarPool pool = new BoundedXMLGrammarPool(2);
+        pool.putGrammar(fBase);
+        pool.putGrammar(fOther);
+        // Retrieving fOther also uses fBase, which it imports.
+        assertSame(fOther, pool.getGrammar(fOther.getGrammarDescription()));
+        pool.putGrammar(fLoading);
+
+        assertTrue(pool.containsGrammar(fBase.getGrammarDescription()));
+        assertFalse(pool.containsGrammar(fOther.getGrammarDescription()));
+        assertTrue(pool.containsGrammar(fLoading.getGrammarDescription()));
+    }
+
+    public void testSizeBound() {
+        long size = pool().estimateSize(fBase) + pool().estimateSize(fOther);
+        BoundedXMLGrammarPool pool = new BoundedXMLGrammarPool(10, size);
+        pool.putGrammar(fBase);
+        pool.putGrammar(fOther);
+        assertEquals(size, pool.getEstimatedSize());
+        assertEquals(0, pool.getEvictionCount());
+
+        pool.putGrammar(fLoading);
+        assertFalse(pool.containsGrammar(fBase.getGrammarDescription()));
+        assertTrue(pool.getEstimatedSize() <= size);
+        assertEquals(pool.getEstimatedSize(),
+                pool().estimateSize(fOther) + pool().estimateSize(fLoading));
+
+        pool.clear();
+        assertEquals(0, pool.getGrammarCount());
+        assertEquals(0, pool.getEstimatedSize());
+    }
+
+    public void testGrammarLargerThanPool() {
+        BoundedXMLGrammarPool pool = new BoundedXMLGrammarPool(10, 1);
+        pool.putGrammar(fBase);
+        assertEquals(0, pool.getGrammarCount());
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    public void testLockedPool() {
+        BoundedXMLGrammarPool pool = new BoundedXMLGrammarPool(2);
+        pool.lockPool();
+        pool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, new Grammar[] { fBase, fOther });
+        assertEquals(0, pool.getGrammarCount());
+        pool.unlockPool();
+        pool.cacheGrammars(XMLGrammarDescription.XML_SCHEMA, new Grammar[] { fBase, fOther });
+        assertEquals(2, pool.getGrammarCount());
+        assertEquals(0, pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA).length);
+    }
+
+    private BoundedXMLGrammarPool pool() {
+        return new BoundedXMLGrammarPool();
+    }
+}
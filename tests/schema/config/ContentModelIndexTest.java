@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.impl.xs.SubstitutionGroupHandler;
+import org.apache.xerces.impl.xs.XSComplexTypeDecl;
+import org.apache.xerces.impl.xs.XSElementDecl;
+import org.apache.xerces.impl.xs.XSElementDeclHelper;
+import org.apache.xerces.impl.xs.XSWildcardDecl;
+import org.apache.xerces.impl.xs.models.CMBuilder;
+import org.apache.xerces.impl.xs.models.CMNodeFactory;
+import org.apache.xerces.impl.xs.models.XSCMValidator;
+import org.apache.xerces.impl.xs.models.XSDFACM;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLInputSource;
+
+/**
+ * Checks that the transitions XSDFACM finds through its name index
+ * for content models with many element particles, wildcards and
+ * substitution group heads are the ones a linear scan of the
+ * element map in the order of whatCanGoHere finds, with and without
+ * substitution group members from another namespace in scope.
+ *
+ * @version $Id$
+ */
+public class ContentModelIndexTest extends TestCase {
+
+    /** Local names of the elements offered to the content models. */
+    private static final String[] NAMES = {
+        "a0", "a1", "a2", "a3", "a7", "a9", "a11", "a12", "head", "member",
+        "grandMember", "blocked", "blockedMember", "far", "farther", "farBlocked"
+    };
+
+    /** Namespaces of the elements offered to the content models. */
+    private static final String[] URIS = {
+        null, "urn:cm", "urn:cm2", "urn:other"
+    };
+
+    /** Number of elements offered in each walk through a content model. */
+    private static final int STEPS = 2000;
+
+    private SchemaGrammar fGrammar;
+
+    private SchemaGrammar fGrammar2;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ContentModelIndexTest.class);
+    }
+
+    public ContentModelIndexTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        XMLGrammarPool pool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(pool);
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                new XMLInputSource(null, getClass().getResource("contentModel2.xsd").toExternalForm(), null));
+        Grammar[] grammars = pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+        for (int i = 0; i < grammars.length; ++i) {
+            SchemaGrammar grammar = (SchemaGrammar) grammars[i];
+            if ("urn:cm".equals(grammar.getTargetNamespace())) {
+                fGrammar = grammar;
+            }
+            else if ("urn:cm2".equals(grammar.getTargetNamespace())) {
+                fGrammar2 = grammar;
+            }
+        }
+        assertNotNull(fGrammar);
+        assertNotNull(fGrammar2);
+    }
+
+    public void testChoice() {
+        checkContentModel("choice");
+    }
+
+    public void testSequence() {
+        checkContentModel("sequence");
+    }
+
+    public void testAmbiguous() {
+        checkContentModel("ambiguous");
+    }
+
+    private void checkContentModel(String typeName) {
+        XSComplexTypeDecl type = (XSComplexTypeDecl) fGrammar.getGlobalTypeDecl(typeName);
+        XSCMValidator cm = type.getContentModel(new CMBuilder(new CMNodeFactory()));
+        assertTrue(typeName + " is not matched by a DFA.", cm instanceof XSDFACM);
+        XSDFACM dfa = (XSDFACM) cm;
+        for (int scope = 0; scope < 2; ++scope) {
+            final boolean withGrammar2 = scope == 1;
+            SubstitutionGroupHandler handler = new SubstitutionGroupHandler(new XSElementDeclHelper() {
+                public XSElementDecl getGlobalElementDecl(QName element) {
+                    if (element.uri == fGrammar.getTargetNamespace()) {
+                        return fGrammar.getGlobalElementDecl(element.localpart);
+                    }
+                    if (withGrammar2 && element.uri == fGrammar2.getTargetNamespace()) {
+                        return fGrammar2.getGlobalElementDecl(element.localpart);
+                    }
+                    return null;
+                }
+            });
+            Random random = new Random(typeName.hashCode() + scope);
+            int[] state = dfa.startContentModel();
+            for (int step = 0; step < STEPS; ++step) {
+                String uri = URIS[random.nextInt(URIS.length)];
+                String localpart = NAMES[random.nextInt(NAMES.length)].intern();
+                QName element = new QName(null, localpart, localpart, uri != null ? uri.intern() : null);
+                Object expected = scan(dfa, state, element, handler);
+                Object actual = dfa.oneTransition(element, state, handler);
+                String message = typeName + ", step " + step + ", {" + uri + "}" + localpart;
+                if (expected == null) {
+                    assertEquals(message + " should not have matched.", XSCMValidator.FIRST_ERROR, state[0]);
+                    state = dfa.startContentModel();
+                }
+                else {
+                    assertTrue(message + " should have matched.", state[0] >= 0);
+                    assertSame(message + " matched another particle.", expected, actual);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the declaration which a linear scan of the transitions
+     * from the given state finds for the element, or null.
+     */
+    private Object scan(XSDFACM dfa, int[] state, QName element, SubstitutionGroupHandler handler) {
+        Vector candidates = dfa.whatCanGoHere(state);
+        for (int i = 0; i < candidates.size(); ++i) {
+            Object candidate = candidates.elementAt(i);
+            if (candidate instanceof XSElementDecl) {
+                XSElementDecl decl = handler.getMatchingElemDecl(element, (XSElementDecl) candidate);
+                if (decl != null) {
+                    return decl;
+                }
+            }
+            else if (((XSWildcardDecl) candidate).allowNamespace(element.uri)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
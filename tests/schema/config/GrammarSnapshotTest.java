@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.impl.xs.SchemaGrammarSnapshot;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that grammars read from a snapshot validate documents like
+ * the grammars they were written from, that a snapshot is rejected
+ * once one of its schema documents has changed or when it was written
+ * by another version, and that a snapshot which contains classes that
+ * are not part of grammars is not read.
+ *
+ * @version $Id$
+ */
+public class GrammarSnapshotTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(GrammarSnapshotTest.class);
+    }
+
+    public GrammarSnapshotTest(String name) {
+        super(name);
+    }
+
+    public void testSameErrors() throws Exception {
+        XMLGrammarPool pool = preparse(new String[] {
+                getClass().getResource("idc.xsd").toExternalForm(),
+                getClass().getResource("base.xsd").toExternalForm() });
+        XMLGrammarPool snapshotPool = new XMLGrammarPoolImpl();
+        assertTrue(SchemaGrammarSnapshot.load(new ByteArrayInputStream(write(pool)), snapshotPool));
+
+        String[] documents = { "idc.xml", "base.xml" };
+        for (int i = 0; i < documents.length; ++i) {
+            String expected = validate(pool, documents[i]);
+            assertTrue("Expected errors in " + documents[i], expected.length() > 0);
+            assertEquals(expected, validate(snapshotPool, documents[i]));
+        }
+    }
+
+    public void testStaleSnapshot() throws Exception {
+        File schema = File.createTempFile("snapshot", ".xsd");
+        try {
+            copy(getClass().getResourceAsStream("idc.xsd"), schema, "");
+            byte[] snapshot = write(preparse(new String[] { schema.toURI().toString() }));
+            SchemaGrammar[] grammars = SchemaGrammarSnapshot.read(new ByteArrayInputStream(snapshot));
+            assertNotNull(grammars);
+            assertEquals(1, grammars.length);
+
+            copy(getClass().getResourceAsStream("idc.xsd"), schema, "<!-- changed -->");
+            assertNull(SchemaGrammarSnapshot.read(new ByteArrayInputStream(snapshot)));
+            assertFalse(SchemaGrammarSnapshot.load(new ByteArrayInputStream(snapshot), new XMLGrammarPoolImpl()));
+            assertNotNull(SchemaGrammarSnapshot.read(new ByteArrayInputStream(snapshot), false));
+        }
+        finally {
+            schema.delete();
+        }
+    }
+
+    public void testOtherVersion() throws Exception {
+        byte[] snapshot = write(preparse(new String[] {
+                getClass().getResource("idc.xsd").toExternalForm() }));
+        assertNotNull(SchemaGrammarSnapshot.read(new ByteArrayInputStream(snapshot)));
+
+        // the implementation version follows the magic number and the
+        // format version
+        byte[] other = (byte[]) snapshot.clone();
+        other[10] ^= 1;
+        assertNull(SchemaGrammarSnapshot.read(new ByteArrayInputStream(other)));
+        assertFalse(SchemaGrammarSnapshot.load(new ByteArrayInputStream(other), new XMLGrammarPoolImpl()));
+
+        // a class which has changed since the snapshot was written
+        other = (byte[]) snapshot.clone();
+        byte[] name = "org.apache.xerces.impl.xs.SchemaGrammar".getBytes("UTF-8");
+        int index = indexOf(other, name);
+        assertTrue(index > 0);
+        other[index + name.length + 7] ^= 1;
+        assertNull(SchemaGrammarSnapshot.read(new ByteArrayInputStream(other)));
+        assertFalse(SchemaGrammarSnapshot.load(new ByteArrayInputStream(other), new XMLGrammarPoolImpl()));
+    }
+
+    public void testRejectedClass() throws Exception {
+        byte[] empty = write(new XMLGrammarPoolImpl());
+        // keep the header and replace the grammars by another object
+        int header = indexOf(empty, new byte[] { (byte) 0xAC, (byte) 0xED });
+        assertTrue(header > 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(empty, 0, header);
+        ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeObject(new Object[] { new Date() });
+        objects.close();
+        try {
+            SchemaGrammarSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+            fail("A snapshot containing java.util.Date was read.");
+        }
+        catch (InvalidClassException e) {
+            assertEquals("java.util.Date", e.classname);
+        }
+    }
+
+    private XMLGrammarPool preparse(String[] systemIds) throws Exception {
+        XMLGrammarPool pool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(pool);
+        for (int i = 0; i < systemIds.length; ++i) {
+            preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                    new XMLInputSource(null, systemIds[i], null));
+        }
+        return pool;
+    }
+
+    private byte[] write(XMLGrammarPool pool) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchemaGrammarSnapshot.write(pool, out);
+        return out.toByteArray();
+    }
+
+    private String validate(XMLGrammarPool pool, String document) throws Exception {
+        SAXParser parser = new SAXParser(new XML11Configuration(null, pool));
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        parser.setFeature("http://apache.org/xml/features/internal/validation/schema/use-grammar-pool-only", true);
+        final StringBuffer errors = new StringBuffer();
+        parser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException e) {
+                errors.append(e.getLineNumber()).append(' ').append(e.getMessage()).append('\n');
+            }
+        });
+        parser.parse(getClass().getResource(document).toExternalForm());
+        return errors.toString();
+    }
+
+    private int indexOf(byte[] bytes, byte[] sequence) {
+        search: for (int i = 0; i <= bytes.length - sequence.length; ++i) {
+            for (int j = 0; j < sequence.length; ++j) {
+                if (bytes[i + j] != sequence[j]) {
+                    continue search;
+                }
+            }
+            // a class name is preceded by its length
+            if (sequence.length > 2 && bytes[i - 1] != sequence.length) {
+                continue;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void copy(InputStream in, File file, String suffix) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        out.write(suffix.getBytes("UTF-8"));
+        out.close();
+        in.close();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Checks that xs:unique and xs:key report values which are equal in
+ * the value space of their type as duplicates, and that xs:keyref
+ * matches them, however differently they are written, and that values
+ * which are not equal neither collide nor match.
+ *
+ * @version $Id$
+ */
+public class IdentityConstraintValueTest extends TestCase {
+
+    public static final String DUPLICATE_UNIQUE = "cvc-identity-constraint.4.1";
+
+    public static final String DUPLICATE_KEY = "cvc-identity-constraint.4.2.2";
+
+    public static final String INVALID_KEYREF = "cvc-identity-constraint.4.3";
+
+    /** Values which are written before and after the values compared. */
+    private static final String[][] OTHER_VALUES = {
+        { "decimal", "v='2'", "v='-1.5'", "v='100'" },
+        { "duration", "v='P2D'", "v='PT1S'", "v='P1Y1D'" },
+        { "dateTime", "v='2000-01-02T12:00:00Z'", "v='1999-12-31T00:00:00'", "v='2001-01-01T00:00:00+02:00'" },
+        { "QName", "v='p:y'", "v='z'", "v='r:y'" },
+        { "tuple", "a='4' b='P1D'", "a='1' b='P3D'", "a='3' b='P3D'" },
+    };
+
+    private Schema fSchema;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(IdentityConstraintValueTest.class);
+    }
+
+    public IdentityConstraintValueTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        fSchema = sf.newSchema(getClass().getResource("idcValues.xsd"));
+    }
+
+    public void testDecimal() throws Exception {
+        checkEqual("decimal", "v='1.0'", "v='1.00'");
+        checkEqual("decimal", "v='1'", "v='+1.000'");
+        checkEqual("decimal", "v='-0'", "v='0'");
+        checkEqual("decimal", "v='0.0'", "v='-.0'");
+        checkNotEqual("decimal", "v='1.0'", "v='1.01'");
+        checkNotEqual("decimal", "v='1'", "v='-1'");
+    }
+
+    public void testDuration() throws Exception {
+        checkEqual("duration", "v='P1D'", "v='PT24H'");
+        checkEqual("duration", "v='P1Y'", "v='P12M'");
+        checkEqual("duration", "v='PT1M'", "v='PT60.0S'");
+        checkEqual("duration", "v='-P1D'", "v='-PT1440M'");
+        checkNotEqual("duration", "v='P1M'", "v='P30D'");
+        checkNotEqual("duration", "v='P1D'", "v='-P1D'");
+    }
+
+    public void testDateTime() throws Exception {
+        checkEqual("dateTime", "v='2000-01-01T12:00:00Z'", "v='2000-01-01T13:00:00+01:00'");
+        checkEqual("dateTime", "v='2000-01-01T12:00:00Z'", "v='2000-01-01T07:00:00-05:00'");
+        checkEqual("dateTime", "v='2000-01-01T00:30:00+01:00'", "v='1999-12-31T23:30:00Z'");
+        checkEqual("dateTime", "v='2000-01-01T12:00:00'", "v='2000-01-01T12:00:00.000'");
+        checkNotEqual("dateTime", "v='2000-01-01T12:00:00Z'", "v='2000-01-01T12:00:00+01:00'");
+        checkNotEqual("dateTime", "v='2000-01-01T12:00:00Z'", "v='2000-01-01T12:00:00.5Z'");
+    }
+
+    public void testQName() throws Exception {
+        checkEqual("QName", "v='p:x'", "v='q:x'");
+        checkEqual("QName", "v='x'", "v='x'");
+        checkNotEqual("QName", "v='p:x'", "v='r:x'");
+        checkNotEqual("QName", "v='p:x'", "v='x'");
+    }
+
+    public void testTuple() throws Exception {
+        checkEqual("tuple", "a='1.0' b='P1D'", "a='1.00' b='PT24H'");
+        checkEqual("tuple", "a='-0' b='P1Y'", "a='0' b='P12M'");
+        checkNotEqual("tuple", "a='1.0' b='P1D'", "a='1.0' b='P2D'");
+        checkNotEqual("tuple", "a='1.0' b='P1M'", "a='1' b='P30D'");
+        checkNotEqual("tuple", "a='1' b='P1D'", "a='2' b='P1D'");
+    }
+
+    /**
+     * Checks that two values are duplicates for xs:unique and xs:key,
+     * and that a key reference written as the second value matches the
+     * first one.
+     */
+    private void checkEqual(String type, String value1, String value2) throws Exception {
+        String name = type + " " + value1 + " and " + value2;
+        assertTrue(name + " should be a duplicate unique value.",
+                validate(type + "-unique", value1, type + "-unique", value2).contains(DUPLICATE_UNIQUE));
+        assertTrue(name + " should be a duplicate key.",
+                validate(type + "-key", value1, type + "-key", value2).contains(DUPLICATE_KEY));
+        assertFalse(name + " should be a matched key reference.",
+                validate(type + "-key", value1, type + "-ref", value2).contains(INVALID_KEYREF));
+    }
+
+    /**
+     * Checks that two values are not duplicates for xs:unique and
+     * xs:key, and that a key reference written as the second value does
+     * not match the first one.
+     */
+    private void checkNotEqual(String type, String value1, String value2) throws Exception {
+        String name = type + " " + value1 + " and " + value2;
+        List errors = validate(type + "-unique", value1, type + "-unique", value2);
+        assertTrue(name + " should not be a duplicate unique value: " + errors, errors.isEmpty());
+        errors = validate(type + "-key", value1, type + "-key", value2);
+        assertTrue(name + " should not be a duplicate key: " + errors, errors.isEmpty());
+        errors = validate(type + "-key", value1, type + "-ref", value2);
+        assertEquals(name + " should not be a matched key reference.", 1, errors.size());
+        assertEquals(name + " should not be a matched key reference.", INVALID_KEYREF, errors.get(0));
+    }
+
+    /**
+     * Validates a document with other values of the same type, then the
+     * two elements, then other values again, and returns the keys of
+     * the errors reported.
+     */
+    private List validate(String element1, String value1, String element2, String value2) throws Exception {
+        String type = element1.substring(0, element1.indexOf('-'));
+        String[] others = null;
+        for (int i = 0; i < OTHER_VALUES.length; ++i) {
+            if (OTHER_VALUES[i][0].equals(type)) {
+                others = OTHER_VALUES[i];
+            }
+        }
+        StringBuffer document = new StringBuffer();
+        document.append("<values xmlns:p='urn:a' xmlns:q='urn:a' xmlns:r='urn:b'>");
+        for (int i = 1; i < others.length - 1; ++i) {
+            document.append('<').append(type).append("-key ").append(others[i]).append("/>");
+        }
+        document.append('<').append(element1).append(' ').append(value1).append("/>");
+        document.append('<').append(element2).append(' ').append(value2).append("/>");
+        document.append('<').append(type).append("-key ").append(others[others.length - 1]).append("/>");
+        document.append("</values>");
+
+        final List errors = new ArrayList();
+        Validator validator = fSchema.newValidator();
+        validator.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException exception) {
+            }
+            public void error(SAXParseException exception) {
+                String message = exception.getMessage();
+                errors.add(message.substring(0, message.indexOf(':')));
+            }
+            public void fatalError(SAXParseException exception) throws SAXParseException {
+                throw exception;
+            }
+        });
+        validator.validate(new StreamSource(new StringReader(document.toString())));
+        return errors;
+    }
+}
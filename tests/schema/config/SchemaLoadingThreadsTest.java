@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.xs.XMLSchemaLoader;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSModel;
+
+/**
+ * Checks that loading the documents of a schema on several threads
+ * produces the same components and reports the same errors as loading
+ * them one at a time.
+ * 
+ * @version $Id$
+ */
+public class SchemaLoadingThreadsTest extends TestCase {
+    
+    protected final static String LOADING_THREADS = Constants.XERCES_PROPERTY_PREFIX
+        + Constants.SCHEMA_LOADING_THREADS_PROPERTY;
+    
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SchemaLoadingThreadsTest.class);
+    }
+    
+    public SchemaLoadingThreadsTest(String name) {
+        super(name);
+    }
+    
+    public void testSameComponentsAndErrors() throws Exception {
+        StringBuffer expectedErrors = new StringBuffer();
+        String expected = loadSchema("loadingThreads.xsd", 0, expectedErrors);
+        assertTrue("Missing document should have been reported.", 
+                expectedErrors.toString().indexOf("missing.xsd") != -1);
+        for (int threads = 2; threads <= 4; ++threads) {
+            StringBuffer errors = new StringBuffer();
+            String actual = loadSchema("loadingThreads.xsd", threads, errors);
+            assertEquals("Components differ with " + threads + " threads.", expected, actual);
+            assertEquals("Errors differ with " + threads + " threads.", 
+                    expectedErrors.toString(), errors.toString());
+        }
+    }
+    
+    public void testPropertyRecognized() throws Exception {
+        XMLSchemaLoader loader = new XMLSchemaLoader();
+        loader.setProperty(LOADING_THREADS, new Integer(4));
+        assertEquals(new Integer(4), loader.getProperty(LOADING_THREADS));
+        assertTrue(loader.canSetParameter(LOADING_THREADS, new Integer(4)));
+    }
+    
+    private String loadSchema(String name, int threads, final StringBuffer errors) {
+        XMLSchemaLoader loader = new XMLSchemaLoader();
+        loader.setErrorHandler(new XMLErrorHandler() {
+            public void warning(String domain, String key, XMLParseException e) throws XNIException {
+                errors.append("warning ").append(key).append(' ').append(e.getMessage()).append('\n');
+            }
+            public void error(String domain, String key, XMLParseException e) throws XNIException {
+                errors.append("error ").append(key).append(' ').append(e.getMessage()).append('\n');
+            }
+            public void fatalError(String domain, String key, XMLParseException e) throws XNIException {
+                errors.append("fatal ").append(key).append(' ').append(e.getMessage()).append('\n');
+            }
+        });
+        if (threads > 0) {
+            loader.setProperty(LOADING_THREADS, new Integer(threads));
+        }
+        URL url = getClass().getResource(name);
+        XSModel model = loader.loadURI(url.toExternalForm());
+        return model.getNamespaces().getLength() + " namespaces, "
+            + model.getComponents(XSConstants.ELEMENT_DECLARATION).getLength() + " elements, "
+            + model.getComponents(XSConstants.TYPE_DEFINITION).getLength() + " types";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.util.SingleFlightXMLGrammarPool;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that validators sharing a single flight grammar pool load each
+ * schema document once, and share the resulting grammars.
+ *
+ * @version $Id$
+ */
+public class SingleFlightGrammarPoolTest extends TestCase {
+
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SingleFlightGrammarPoolTest.class);
+    }
+
+    public SingleFlightGrammarPoolTest(String name) {
+        super(name);
+    }
+
+    public void testSchemaLoadedOnce() throws Exception {
+        String expected = validate(new XMLGrammarPoolImpl(), new int[1]);
+        final SingleFlightXMLGrammarPool pool = new SingleFlightXMLGrammarPool(new XMLGrammarPoolImpl());
+        final int[] resolved = new int[1];
+        final String[] errors = new String[THREADS];
+        final Throwable[] failures = new Throwable[THREADS];
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; ++i) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        errors[index] = validate(pool, resolved);
+                    }
+                    catch (Throwable e) {
+                        failures[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < THREADS; ++i) {
+            threads[i].join();
+            if (failures[i] != null) {
+                fail(failures[i].toString());
+            }
+            assertEquals(expected, errors[i]);
+        }
+        // otherNamespace.xsd and base.xsd, which it imports
+        assertEquals(2, resolved[0]);
+        assertEquals(2, pool.getLoadCount());
+        assertFalse(pool.isLoading());
+    }
+
+    public void testReleasedLoad() throws Exception {
+        final SingleFlightXMLGrammarPool pool = new SingleFlightXMLGrammarPool(new XMLGrammarPoolImpl());
+        final XSDDescription desc = new XSDDescription();
+        desc.setNamespace("xslt.unittests");
+        assertNull(pool.retrieveGrammar(desc));
+        assertTrue(pool.isLoading());
+
+        final Grammar[] grammar = new Grammar[1];
+        final boolean[] loading = new boolean[1];
+        Thread waiter = new Thread() {
+            public void run() {
+                grammar[0] = pool.retrieveGrammar(desc);
+                loading[0] = pool.isLoading();
+                pool.endLoading();
+            }
+        };
+        waiter.start();
+        waiter.join(200);
+        assertTrue("Expected the second thread to wait.", waiter.isAlive());
+        pool.endLoading();
+        waiter.join();
+        // The grammar was not provided, so the second thread loads it.
+        assertNull(grammar[0]);
+        assertTrue(loading[0]);
+        assertEquals(2, pool.getLoadCount());
+        assertEquals(0, pool.getSharedCount());
+    }
+
+    public void testTimeout() throws Exception {
+        final SingleFlightXMLGrammarPool pool = new SingleFlightXMLGrammarPool(new XMLGrammarPoolImpl(), 100);
+        final XSDDescription desc = new XSDDescription();
+        desc.setNamespace("xslt.unittests");
+        assertNull(pool.retrieveGrammar(desc));
+        final boolean[] loading = new boolean[1];
+        Thread waiter = new Thread() {
+            public void run() {
+                pool.retrieveGrammar(desc);
+                loading[0] = pool.isLoading();
+            }
+        };
+        waiter.start();
+        waiter.join(10000);
+        assertFalse("Expected the second thread to stop waiting.", waiter.isAlive());
+        assertFalse(loading[0]);
+        pool.endLoading();
+    }
+
+    private String validate(XMLGrammarPool pool, final int[] resolved) throws Exception {
+        SAXParser parser = new SAXParser(new XML11Configuration(null, pool));
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        final StringBuffer errors = new StringBuffer();
+        DefaultHandler handler = new DefaultHandler() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                if (systemId != null && systemId.endsWith(".xsd")) {
+                    synchronized (resolved) {
+                        ++resolved[0];
+                    }
+                    try {
+                        // let the other threads ask for the grammar
+                        Thread.sleep(100);
+                    }
+                    catch (InterruptedException e) {
+                    }
+                }
+                return null;
+            }
+            public void error(SAXParseException e) {
+                errors.append(e.getLineNumber()).append(' ').append(e.getMessage()).append('\n');
+            }
+        };
+        parser.setEntityResolver(handler);
+        parser.setErrorHandler(handler);
+        parser.parse(getClass().getResource("otherNamespace.xml").toExternalForm());
+        return errors.toString();
+    }
+}
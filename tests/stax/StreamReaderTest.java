@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stax;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.stax.XMLStreamReaderImpl;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * This program checks that the streaming reader reports the same
+ * elements, attributes, text, comments and processing instructions
+ * as the SAX parser, with and without schema validation, and that
+ * malformed documents are reported as stream exceptions.
+ *
+ * @version $Id$
+ */
+public class StreamReaderTest {
+
+    //
+    // Constants
+    //
+
+    /** Schema validation feature id. */
+    private static final String SCHEMA_VALIDATION_FEATURE_ID =
+        "http://apache.org/xml/features/validation/schema";
+
+    /** Validation feature id. */
+    private static final String VALIDATION_FEATURE_ID =
+        "http://xml.org/sax/features/validation";
+
+    /** Documents parsed from strings. */
+    private static final String[] DOCUMENTS = {
+        "<?xml version='1.0' encoding='UTF-8' standalone='yes'?><a/>",
+        "<!-- c --><?pi data?><a x='1' y='&lt;2&gt;'>text<b/>more<![CDATA[<cdata>]]>&amp;end</a><!--after-->",
+        "<p:a xmlns:p='urn:p' xmlns='urn:d' p:x='1'><b xmlns=''><p:c/></b><d q='2'/></p:a>",
+        "<!DOCTYPE a [<!ENTITY e 'entity &#38;#38; text'><!ATTLIST a d CDATA 'dflt'>]><a>&e;&#x10000;]]&gt;</a>",
+        "<a>\r\n  line\r  two\n</a>",
+    };
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        for (int i = 0; i < DOCUMENTS.length; ++i) {
+            String expected = traceSAX(new InputSource(new StringReader(DOCUMENTS[i])), false);
+            String actual = traceStAX(new XMLInputSource(null, null, null,
+                    new StringReader(DOCUMENTS[i]), null), false);
+            check("document " + i, expected, actual);
+        }
+        String[] files = { "data/personal.xml", "data/personal-schema.xml" };
+        for (int i = 0; i < files.length; ++i) {
+            for (int v = 0; v < 2; ++v) {
+                boolean validate = v == 1;
+                String expected = traceSAX(new InputSource(files[i]), validate);
+                String actual = traceStAX(new XMLInputSource(null, files[i], null), validate);
+                check(files[i] + (validate ? " (validating)" : ""), expected, actual);
+            }
+        }
+
+        // the XML declaration is known before the first event is read
+        XMLStreamReader reader = new XMLStreamReaderImpl(new XMLInputSource(null, null, null,
+                new StringReader(DOCUMENTS[0]), null));
+        if (reader.getEventType() != XMLStreamConstants.START_DOCUMENT
+                || !"1.0".equals(reader.getVersion())
+                || !"UTF-8".equals(reader.getCharacterEncodingScheme())
+                || !reader.isStandalone()) {
+            fail("unexpected XML declaration");
+        }
+
+        // malformed documents fail with a location
+        try {
+            traceStAX(new XMLInputSource(null, null, null, new StringReader("<a><b></a>"), null), false);
+            fail("malformed document was accepted");
+        }
+        catch (XMLStreamException e) {
+            if (e.getLocation() == null || e.getLocation().getLineNumber() != 1) {
+                fail("missing location: " + e);
+            }
+        }
+        System.err.println("PASS");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Returns a trace of the events reported by the SAX parser. */
+    private static String traceSAX(InputSource source, boolean validate) throws Exception {
+        final StringBuffer trace = new StringBuffer();
+        final StringBuffer text = new StringBuffer();
+        DefaultHandler2 handler = new DefaultHandler2() {
+            public void startElement(String uri, String localName, String qName, Attributes attrs) {
+                flush();
+                String[] names = new String[attrs.getLength()];
+                for (int i = 0; i < names.length; ++i) {
+                    names[i] = "{" + attrs.getURI(i) + "}" + attrs.getLocalName(i) + "=" + attrs.getValue(i);
+                }
+                startTag(trace, uri, localName, names);
+            }
+            public void endElement(String uri, String localName, String qName) {
+                flush();
+                trace.append("</{").append(uri).append('}').append(localName).append(">\n");
+            }
+            public void characters(char[] ch, int start, int length) {
+                text.append(ch, start, length);
+            }
+            public void ignorableWhitespace(char[] ch, int start, int length) {
+                text.append(ch, start, length);
+            }
+            public void processingInstruction(String target, String data) {
+                flush();
+                trace.append("<?").append(target).append(' ').append(data).append(">\n");
+            }
+            public void comment(char[] ch, int start, int length) {
+                flush();
+                trace.append("<!--").append(ch, start, length).append("-->\n");
+            }
+            private void flush() {
+                if (text.length() > 0) {
+                    trace.append("text: ").append(text).append('\n');
+                    text.setLength(0);
+                }
+            }
+        };
+        SAXParser parser = new SAXParser();
+        parser.setFeature(VALIDATION_FEATURE_ID, validate);
+        parser.setFeature(SCHEMA_VALIDATION_FEATURE_ID, validate);
+        parser.setContentHandler(handler);
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+        parser.parse(source);
+        return trace.toString();
+    } // traceSAX(InputSource,boolean):String
+
+    /** Returns a trace of the events reported by the streaming reader. */
+    private static String traceStAX(XMLInputSource source, boolean validate) throws Exception {
+        XML11Configuration configuration = new XML11Configuration();
+        configuration.setFeature(VALIDATION_FEATURE_ID, validate);
+        configuration.setFeature(SCHEMA_VALIDATION_FEATURE_ID, validate);
+        XMLStreamReader reader = new XMLStreamReaderImpl(configuration, source);
+        StringBuffer trace = new StringBuffer();
+        StringBuffer text = new StringBuffer();
+        while (reader.hasNext()) {
+            int type = reader.next();
+            if (type == XMLStreamConstants.CHARACTERS || type == XMLStreamConstants.CDATA
+                    || type == XMLStreamConstants.SPACE) {
+                String string = reader.getText();
+                if (!string.equals(new String(reader.getTextCharacters(),
+                        reader.getTextStart(), reader.getTextLength()))) {
+                    fail("text and text characters differ");
+                }
+                text.append(string);
+                continue;
+            }
+            if (text.length() > 0) {
+                trace.append("text: ").append(text).append('\n');
+                text.setLength(0);
+            }
+            switch (type) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    String[] names = new String[reader.getAttributeCount()];
+                    for (int i = 0; i < names.length; ++i) {
+                        String uri = reader.getAttributeNamespace(i);
+                        names[i] = "{" + (uri != null ? uri : "") + "}" + reader.getAttributeLocalName(i)
+                            + "=" + reader.getAttributeValue(i);
+                    }
+                    String uri = reader.getNamespaceURI();
+                    startTag(trace, uri != null ? uri : "", reader.getLocalName(), names);
+                    String prefix = reader.getPrefix();
+                    if (uri != null && !uri.equals(reader.getNamespaceURI(prefix != null ? prefix : ""))) {
+                        fail("namespace context does not bind the element prefix");
+                    }
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    String uri = reader.getNamespaceURI();
+                    trace.append("</{").append(uri != null ? uri : "").append('}')
+                         .append(reader.getLocalName()).append(">\n");
+                    break;
+                }
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    trace.append("<?").append(reader.getPITarget()).append(' ')
+                         .append(reader.getPIData()).append(">\n");
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    trace.append("<!--").append(reader.getText()).append("-->\n");
+                    break;
+            }
+        }
+        reader.close();
+        return trace.toString();
+    } // traceStAX(XMLInputSource,boolean):String
+
+    private static void startTag(StringBuffer trace, String uri, String localName, String[] attrs) {
+        Arrays.sort(attrs);
+        trace.append("<{").append(uri).append('}').append(localName);
+        for (int i = 0; i < attrs.length; ++i) {
+            trace.append(' ').append(attrs[i]);
+        }
+        trace.append(">\n");
+    } // startTag(StringBuffer,String,String,String[])
+
+    private static void check(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            System.err.println("expected:\n" + expected);
+            System.err.println("actual:\n" + actual);
+            fail(name + ": events differ");
+        }
+    } // check(String,String,String)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class StreamReaderTest
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package thread;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.util.ConcurrentXMLGrammarPool;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+
+/**
+ * This program puts, removes and retrieves grammars in a shared
+ * concurrent grammar pool from several threads. Each writing thread
+ * owns a set of target namespaces, so after it has put or removed the
+ * grammar of one of them it must read back exactly that grammar, and
+ * once all writers are done the pool must hold the last grammar each
+ * of them put for each of its namespaces; anything else means an update
+ * was lost. Readers check that every grammar they see belongs to the
+ * description they asked for. The test is run a second time while
+ * another thread clears the pool now and then.
+ *
+ * @version $Id$
+ */
+public class GrammarPoolTest {
+
+    //
+    // Constants
+    //
+
+    /** Number of writing threads. */
+    private static final int WRITERS = 4;
+
+    /** Number of reading threads. */
+    private static final int READERS = 4;
+
+    /** Number of namespaces owned by each writer. */
+    private static final int NAMESPACES = 50;
+
+    /** Number of operations of each writer. */
+    private static final int OPERATIONS = 20000;
+
+    //
+    // Data
+    //
+
+    /** The first failure of any thread. */
+    private static volatile String fFailure;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        for (int round = 0; round < 2; ++round) {
+            runThreads(round == 1);
+        }
+
+        // the pool holds exactly what was put once nobody else modifies it
+        ConcurrentXMLGrammarPool pool = new ConcurrentXMLGrammarPool();
+        for (int w = 0; w < WRITERS; ++w) {
+            for (int n = 0; n < NAMESPACES; ++n) {
+                pool.putGrammar(new TestGrammar(description(w, n)));
+            }
+        }
+        if (pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA).length != WRITERS * NAMESPACES) {
+            fail("wrong number of grammars in the pool");
+        }
+        for (int w = 0; w < WRITERS; ++w) {
+            for (int n = 0; n < NAMESPACES; ++n) {
+                XSDDescription desc = description(w, n);
+                if (!pool.containsGrammar(desc) ||
+                    !desc.equals(pool.retrieveGrammar(desc).getGrammarDescription())) {
+                    fail("grammar of " + desc.getTargetNamespace() + " not found");
+                }
+                if (n % 2 == 0 && pool.removeGrammar(desc) == null) {
+                    fail("grammar of " + desc.getTargetNamespace() + " not removed");
+                }
+            }
+        }
+        if (pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA).length != WRITERS * NAMESPACES / 2) {
+            fail("wrong number of grammars in the pool after removal");
+        }
+        System.out.println("All grammar pool tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Runs the writers and readers on a new pool, with or without
+     * another thread clearing the pool.
+     */
+    private static void runThreads(final boolean clearing) throws Exception {
+        final ConcurrentXMLGrammarPool pool = new ConcurrentXMLGrammarPool(1);
+        final boolean[] done = new boolean[1];
+        final Grammar[][] last = new Grammar[WRITERS][];
+        Thread[] writers = new Thread[WRITERS];
+        for (int i = 0; i < WRITERS; ++i) {
+            final int writer = i;
+            writers[i] = new Thread() {
+                public void run() {
+                    last[writer] = write(pool, writer);
+                }
+            };
+        }
+        Thread[] others = new Thread[READERS + 1];
+        for (int i = 0; i < READERS; ++i) {
+            final long seed = i;
+            others[i] = new Thread() {
+                public void run() {
+                    Random random = new Random(seed);
+                    while (!done[0] && fFailure == null) {
+                        read(pool, random);
+                    }
+                }
+            };
+        }
+        others[READERS] = new Thread() {
+            public void run() {
+                while (clearing && !done[0] && fFailure == null) {
+                    pool.clear();
+                    Thread.yield();
+                }
+            }
+        };
+        for (int i = 0; i < others.length; ++i) {
+            others[i].start();
+        }
+        for (int i = 0; i < WRITERS; ++i) {
+            writers[i].start();
+        }
+        for (int i = 0; i < WRITERS; ++i) {
+            writers[i].join();
+        }
+        done[0] = true;
+        for (int i = 0; i < others.length; ++i) {
+            others[i].join();
+        }
+        if (fFailure != null) {
+            fail(fFailure);
+        }
+        if (!clearing) {
+            for (int w = 0; w < WRITERS; ++w) {
+                for (int n = 0; n < NAMESPACES; ++n) {
+                    XSDDescription desc = description(w, n);
+                    if (pool.retrieveGrammar(desc) != last[w][n]) {
+                        fail("lost update of " + desc.getTargetNamespace());
+                    }
+                }
+            }
+        }
+    } // runThreads(boolean)
+
+    /**
+     * Puts and removes the grammars of the namespaces of a writer, and
+     * returns the grammars last put for each namespace, or null for the
+     * namespaces whose grammar was last removed.
+     */
+    private static Grammar[] write(ConcurrentXMLGrammarPool pool, int writer) {
+        Random random = new Random(writer);
+        Grammar[] last = new Grammar[NAMESPACES];
+        for (int i = 0; i < OPERATIONS && fFailure == null; ++i) {
+            int namespace = random.nextInt(NAMESPACES);
+            XSDDescription desc = description(writer, namespace);
+            if (random.nextInt(4) == 0) {
+                pool.removeGrammar(desc);
+                last[namespace] = null;
+                if (pool.retrieveGrammar(desc) != null) {
+                    failure("removed grammar of " + desc.getTargetNamespace() + " still found");
+                }
+            }
+            else {
+                TestGrammar grammar = new TestGrammar(desc);
+                pool.putGrammar(grammar);
+                last[namespace] = grammar;
+                Grammar found = pool.retrieveGrammar(desc);
+                if (found != null && found != grammar) {
+                    failure("lost update of " + desc.getTargetNamespace());
+                }
+            }
+        }
+        return last;
+    } // write(ConcurrentXMLGrammarPool,int):Grammar[]
+
+
+    /** Retrieves grammars and checks that they match their description. */
+    private static void read(ConcurrentXMLGrammarPool pool, Random random) {
+        XSDDescription desc = description(random.nextInt(WRITERS), random.nextInt(NAMESPACES));
+        Grammar grammar = pool.retrieveGrammar(desc);
+        if (grammar != null && !desc.equals(grammar.getGrammarDescription())) {
+            failure("wrong grammar for " + desc.getTargetNamespace());
+        }
+        Grammar[] grammars = pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+        HashSet namespaces = new HashSet();
+        for (int i = 0; i < grammars.length; ++i) {
+            if (grammars[i] == null ||
+                !namespaces.add(((XSDDescription) grammars[i].getGrammarDescription()).getTargetNamespace())) {
+                failure("inconsistent initial grammar set");
+            }
+        }
+    } // read(ConcurrentXMLGrammarPool,Random)
+
+    /** Returns the description of a namespace of a writer. */
+    private static XSDDescription description(int writer, int namespace) {
+        XSDDescription desc = new XSDDescription();
+        desc.setNamespace("urn:writer" + writer + ":ns" + namespace);
+        return desc;
+    } // description(int,int):XSDDescription
+
+    private static void failure(String message) {
+        if (fFailure == null) {
+            fFailure = message;
+        }
+    } // failure(String)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /** A grammar which only has a description. */
+    private static final class TestGrammar implements Grammar {
+        private final XMLGrammarDescription fDescription;
+        TestGrammar(XMLGrammarDescription description) {
+            fDescription = description;
+        }
+        public XMLGrammarDescription getGrammarDescription() {
+            return fDescription;
+        }
+    } // class TestGrammar
+
+} // class GrammarPoolTest
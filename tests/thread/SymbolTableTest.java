@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package thread;
+
+import java.util.Random;
+
+import org.apache.xerces.util.ConcurrentSymbolTable;
+import org.apache.xerces.util.SymbolTable;
+
+/**
+ * This program adds the same symbols to a shared concurrent symbol
+ * table from several threads at the same time, each thread in its own
+ * order and alternating between strings and character buffers, and
+ * checks that every thread got the same interned reference for each
+ * symbol. The table starts small so that its segments are rehashed
+ * while the threads are adding symbols.
+ *
+ * @version $Id$
+ */
+public class SymbolTableTest {
+
+    //
+    // Constants
+    //
+
+    /** Number of threads. */
+    private static final int THREADS = 8;
+
+    /** Number of distinct symbols. */
+    private static final int SYMBOLS = 20000;
+
+    /** Number of rounds. */
+    private static final int ROUNDS = 5;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        for (int round = 0; round < ROUNDS; ++round) {
+            final SymbolTable table = new ConcurrentSymbolTable(1, 0.75f, 4);
+            final String[][] results = new String[THREADS][];
+            final Throwable[] errors = new Throwable[THREADS];
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < THREADS; ++i) {
+                final int index = i;
+                final long seed = round * THREADS + i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            results[index] = addSymbols(table, seed);
+                        }
+                        catch (Throwable e) {
+                            errors[index] = e;
+                        }
+                    }
+                };
+            }
+            for (int i = 0; i < THREADS; ++i) {
+                threads[i].start();
+            }
+            for (int i = 0; i < THREADS; ++i) {
+                threads[i].join();
+            }
+            for (int i = 0; i < THREADS; ++i) {
+                if (errors[i] != null) {
+                    errors[i].printStackTrace();
+                    fail("thread " + i + " failed");
+                }
+            }
+            for (int s = 0; s < SYMBOLS; ++s) {
+                String expected = symbol(s).intern();
+                for (int i = 0; i < THREADS; ++i) {
+                    if (results[i][s] != expected) {
+                        fail("round " + round + ": thread " + i + " got another reference for " + expected);
+                    }
+                }
+                char[] buffer = ("[" + expected + "]").toCharArray();
+                if (!table.containsSymbol(expected) ||
+                    !table.containsSymbol(buffer, 1, buffer.length - 2)) {
+                    fail("round " + round + ": symbol " + expected + " is missing");
+                }
+            }
+            if (table.containsSymbol(symbol(SYMBOLS))) {
+                fail("round " + round + ": the table contains a symbol which was never added");
+            }
+        }
+        System.out.println("All symbol table tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Adds all the symbols to the table in a random order and returns
+     * the references returned by the table, indexed by symbol number.
+     */
+    private static String[] addSymbols(SymbolTable table, long seed) {
+        Random random = new Random(seed);
+        int[] order = new int[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; ++i) {
+            order[i] = i;
+        }
+        for (int i = SYMBOLS; i-- > 1;) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        String[] results = new String[SYMBOLS];
+        char[] buffer = new char[64];
+        for (int i = 0; i < SYMBOLS; ++i) {
+            int s = order[i];
+            // a new String instance, so that the table has to intern it
+            String symbol = new String(symbol(s).toCharArray());
+            if (random.nextBoolean()) {
+                results[s] = table.addSymbol(symbol);
+            }
+            else {
+                int offset = random.nextInt(buffer.length - symbol.length());
+                symbol.getChars(0, symbol.length(), buffer, offset);
+                results[s] = table.addSymbol(buffer, offset, symbol.length());
+            }
+        }
+        return results;
+    } // addSymbols(SymbolTable,long):String[]
+
+    /** Returns the symbol with the given number. */
+    private static String symbol(int number) {
+        return "sym" + Integer.toString(number, 36) + ":n" + (number % 97);
+    } // symbol(int):String
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+} // class SymbolTableTest
@@ -31,6 +31,7 @@ import java.io.StringWriter;
 import java.util.StringTokenizer;
 
 import org.apache.xerces.parsers.XIncludeParserConfiguration;
+import org.apache.xerces.xinclude.XIncludeDocumentCache;
 import org.apache.xerces.xni.XNIException;
 import org.apache.xerces.xni.parser.XMLErrorHandler;
 import org.apache.xerces.xni.parser.XMLInputSource;
@@ -65,17 +66,21 @@ public class Test implements XMLErrorHandler {
     protected static final String ERROR_HANDLER =
         "http://apache.org/xml/properties/internal/error-handler";
 
+    /** Property identifier: XInclude document cache. */
+    protected static final String DOCUMENT_CACHE =
+        "http://apache.org/xml/properties/xinclude/document-cache";
+
     // this array contains whether the test number NN (contained in file testNN.xml)
     // is meant to be a pass or fail test
     // true means the test should pass
-    private static final int NUM_TESTS = 41;
+    private static final int NUM_TESTS = 43;
     private static final boolean[] TEST_RESULTS = new boolean[] {
         // one value for each test
         true, true, true, true, true, true, false, true, false, true, // 10
         false, false, false, false, true, true, true, false, true, true, // 20
         true, false, true, false, false, false, true, true, false, true, // 30
         true, false, true, true, true, true, true, true, false, false, // 40
-        true, };
+        true, true, true, };
     
     private String fOutputDirectory = "tests/xinclude/output";
 
@@ -99,6 +104,9 @@ public class Test implements XMLErrorHandler {
                             }
                         }
                         break;
+                    case 'c' :
+                        tester.setDocumentCache(new XIncludeDocumentCache());
+                        break;
                     case 'h' :
                         printUsage();
                         return;
@@ -160,6 +168,8 @@ public class Test implements XMLErrorHandler {
         }
     });
 
+    private XMLParserConfiguration fParserConfig;
+    private XIncludeDocumentCache fDocumentCache;
     private Writer fWriter;
     private String fResults;
     private PrintWriter fOutputWriter;
@@ -170,6 +180,7 @@ public class Test implements XMLErrorHandler {
 
     public Test() throws XNIException {
         XMLParserConfiguration parserConfig = new XIncludeParserConfiguration();
+        fParserConfig = parserConfig;
         parserConfig.setFeature(NAMESPACES_FEATURE_ID, true);
         parserConfig.setFeature(SCHEMA_VALIDATION_FEATURE_ID, true);
         parserConfig.setFeature(SCHEMA_FULL_CHECKING_FEATURE_ID, true);
@@ -192,11 +203,28 @@ public class Test implements XMLErrorHandler {
         fLogStream = stream;
     }
 
+    public void setDocumentCache(XIncludeDocumentCache cache) {
+        fDocumentCache = cache;
+        fParserConfig.setProperty(DOCUMENT_CACHE, cache);
+    }
+
     public void runTests() {
         int totalFailures = 0;
 
-        for (int i = 0; i < fNumTests; i++) {
-            if (!runTest(fTests[i])) {
+        // with a document cache the tests are run twice, so that the
+        // included documents of the second run are replayed
+        int runs = (fDocumentCache != null && !fGenerate) ? 2 : 1;
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < fNumTests; i++) {
+                if (!runTest(fTests[i])) {
+                    totalFailures++;
+                }
+            }
+        }
+        if (runs == 2) {
+            fLogStream.println("Included documents replayed: " + fDocumentCache.getHitCount());
+            if (fDocumentCache.getHitCount() == 0) {
+                System.err.println("No included document was replayed from the document cache.");
                 totalFailures++;
             }
         }
@@ -213,7 +241,7 @@ public class Test implements XMLErrorHandler {
                 "Total failures for XInclude: "
                     + totalFailures
                     + "/"
-                    + fNumTests);
+                    + fNumTests * runs);
             printDetailsMessage();
             System.exit(1);
         }
@@ -366,6 +394,9 @@ public class Test implements XMLErrorHandler {
         System.out.println("                   is sure to be correct. The previous expected output files ");
         System.out.println("                   will be overwritten.");
         System.out.println("");
+        System.out.println("  -c :             Runs the tests twice with a shared document cache, so");
+        System.out.println("                   that included documents are replayed the second time.");
+        System.out.println("");
         System.out.println("  -h :             Prints this help message and exits.");
         System.out.println("TESTS:");
         System.out.println(
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xinclude;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program counts how many times the resources of parse="text"
+ * includes are opened, to check that the text of a resource included
+ * several times in a parse is read once and replayed from then on, from
+ * the including document and from included documents, while the entity
+ * resolver is still asked about every include. Resources of more than
+ * 64K characters, resources which the entity resolver returns as byte
+ * streams and the text of an earlier parse are not replayed, and a
+ * resource included with another encoding is read again.
+ *
+ * @version $Id$
+ */
+public class TextCacheTest {
+
+    //
+    // Constants
+    //
+
+    /** XInclude feature id. */
+    private static final String XINCLUDE_FEATURE_ID =
+        "http://apache.org/xml/features/xinclude";
+
+    /** Protocol of the resources whose opens are counted. */
+    private static final String PROTOCOL = "counted";
+
+    /** Base of the system identifiers of the resources. */
+    private static final String BASE = PROTOCOL + ":/xinclude/";
+
+    /** The largest text the cache keeps. */
+    private static final int ENTRY_LIMIT = 1 << 16;
+
+    /**
+     * The text of the byte streams returned by the entity resolver,
+     * followed by their number.
+     */
+    private static final String BYTE_STREAM_TEXT = "byte stream ";
+
+    //
+    // Data
+    //
+
+    /** The text of the resources, by path. */
+    private static final Map fResources = new HashMap();
+
+    /** The number of opens of each resource, by path. */
+    private static final Map fOpens = new HashMap();
+
+    /** The parser, which is reused for every parse. */
+    private static SAXParser fParser;
+
+    /** The number of calls to the entity resolver. */
+    private static int fResolverCalls;
+
+    /** The number of byte streams returned by the entity resolver. */
+    private static int fByteStreams;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        URL.setURLStreamHandlerFactory(new CountingHandlerFactory());
+        fResources.put("/xinclude/small.txt", "small text");
+        fResources.put("/xinclude/limit.txt", repeat("l", ENTRY_LIMIT));
+        fResources.put("/xinclude/large.txt", repeat("L", ENTRY_LIMIT + 1));
+        fResources.put("/xinclude/nested.xml",
+            "<nested xmlns:xi='http://www.w3.org/2001/XInclude'>" +
+            "<xi:include href='small.txt' parse='text'/></nested>");
+
+        String small = include("small.txt");
+        String smallText = (String) fResources.get("/xinclude/small.txt");
+        for (int i = 0; i < 2; ++i) {
+            // a later parse with the same parser reads the resource again
+            check("five includes, parse " + (i + 1), repeat(small, 5),
+                  repeat(smallText, 5), "small.txt", 1);
+            check("five includes, parse " + (i + 1) + ": calls to the resolver", 5, fResolverCalls);
+        }
+        check("includes with two encodings",
+              repeat(include("small.txt", "UTF-8"), 2) + repeat(include("small.txt", "ISO-8859-1"), 2),
+              repeat(smallText, 4), "small.txt", 2);
+        check("includes from an included document",
+              repeat(small + "<xi:include href='nested.xml'/>", 2),
+              repeat(smallText, 4), "small.txt", 1);
+
+        String limitText = (String) fResources.get("/xinclude/limit.txt");
+        check("text of " + ENTRY_LIMIT + " characters", repeat(include("limit.txt"), 3),
+              repeat(limitText, 3), "limit.txt", 1);
+        String largeText = (String) fResources.get("/xinclude/large.txt");
+        check("text of " + (ENTRY_LIMIT + 1) + " characters", repeat(include("large.txt"), 3),
+              repeat(largeText, 3), "large.txt", 3);
+
+        // each stream has another text
+        check("byte streams", repeat(include("bytes.txt"), 3),
+              BYTE_STREAM_TEXT + 1 + BYTE_STREAM_TEXT + 2 + BYTE_STREAM_TEXT + 3, "bytes.txt", 0);
+        check("byte streams: streams returned by the resolver", 3, fByteStreams);
+
+        System.out.println("All text cache tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Parses a document made of the given includes, and checks its text
+     * and the number of opens of a resource.
+     */
+    private static void check(String name, String includes, String expected,
+            String resource, int opens) throws Exception {
+        String text = parse(includes);
+        if (text.length() != expected.length()) {
+            fail(name + ": the text is " + text.length() + " characters long rather than "
+                 + expected.length());
+        }
+        if (!expected.equals(text)) {
+            fail(name + ": the text differs");
+        }
+        Integer count = (Integer) fOpens.get("/xinclude/" + resource);
+        check(name + ": opens of " + resource, opens, count != null ? count.intValue() : 0);
+    } // check(String,String,String,String,int)
+
+    private static void check(String name, int expected, int actual) {
+        if (expected != actual) {
+            fail(name + " is " + actual + " rather than " + expected);
+        }
+    } // check(String,int,int)
+
+    /**
+     * Parses a document made of the given includes, after clearing the
+     * counts, and returns its text.
+     */
+    private static String parse(String includes) throws Exception {
+        fOpens.clear();
+        fResolverCalls = 0;
+        fByteStreams = 0;
+        if (fParser == null) {
+            fParser = new SAXParser();
+            fParser.setFeature(XINCLUDE_FEATURE_ID, true);
+            fParser.setEntityResolver(new Resolver());
+        }
+        TextHandler handler = new TextHandler();
+        fParser.setContentHandler(handler);
+        fParser.setErrorHandler(handler);
+        InputSource source = new InputSource(new StringReader(
+            "<root xmlns:xi='http://www.w3.org/2001/XInclude'>" + includes + "</root>"));
+        source.setSystemId(BASE + "main.xml");
+        fParser.parse(source);
+        return handler.fText.toString();
+    } // parse(String):String
+
+    /** Returns a parse="text" include of a resource. */
+    private static String include(String href) {
+        return "<xi:include href='" + href + "' parse='text'/>";
+    } // include(String):String
+
+    /** Returns a parse="text" include of a resource with an encoding. */
+    private static String include(String href, String encoding) {
+        return "<xi:include href='" + href + "' parse='text' encoding='" + encoding + "'/>";
+    } // include(String,String):String
+
+    private static String repeat(String s, int count) {
+        StringBuffer buffer = new StringBuffer(s.length() * count);
+        for (int i = 0; i < count; ++i) {
+            buffer.append(s);
+        }
+        return buffer.toString();
+    } // repeat(String,int):String
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /** Creates the handler of the resources whose opens are counted. */
+    private static final class CountingHandlerFactory implements URLStreamHandlerFactory {
+
+        public URLStreamHandler createURLStreamHandler(String protocol) {
+            if (!PROTOCOL.equals(protocol)) {
+                return null;
+            }
+            return new URLStreamHandler() {
+                protected URLConnection openConnection(final URL url) {
+                    return new URLConnection(url) {
+                        public void connect() {
+                        }
+                        public InputStream getInputStream() throws IOException {
+                            String path = url.getPath();
+                            String text = (String) fResources.get(path);
+                            if (text == null) {
+                                throw new IOException("no resource " + path);
+                            }
+                            Integer count = (Integer) fOpens.get(path);
+                            fOpens.put(path, new Integer(count != null ? count.intValue() + 1 : 1));
+                            return new ByteArrayInputStream(text.getBytes("UTF-8"));
+                        }
+                    };
+                }
+            };
+        }
+
+    } // class CountingHandlerFactory
+
+    /** Counts its calls, and returns a byte stream for bytes.txt. */
+    private static final class Resolver implements EntityResolver {
+
+        public InputSource resolveEntity(String publicId, String systemId) throws IOException {
+            ++fResolverCalls;
+            if (!(BASE + "bytes.txt").equals(systemId)) {
+                return null;
+            }
+            ++fByteStreams;
+            String text = BYTE_STREAM_TEXT + fByteStreams;
+            InputSource source = new InputSource(new ByteArrayInputStream(text.getBytes("UTF-8")));
+            source.setSystemId(systemId);
+            return source;
+        }
+
+    } // class Resolver
+
+    /** Collects the text of the document; errors are thrown. */
+    private static final class TextHandler extends DefaultHandler {
+
+        final StringBuffer fText = new StringBuffer();
+
+        public void characters(char[] ch, int offset, int length) {
+            fText.append(ch, offset, length);
+        }
+
+        public void error(SAXParseException e) throws SAXParseException {
+            throw e;
+        }
+
+        public void fatalError(SAXParseException e) throws SAXParseException {
+            throw e;
+        }
+
+    } // class TextHandler
+
+} // class TextCacheTest
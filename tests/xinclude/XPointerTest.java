@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xinclude;
+
+import java.io.StringReader;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program includes elements of a document which is malformed
+ * after them, with a shorthand pointer and with the element() scheme,
+ * and checks that the error is reported unless the stop after fragment
+ * feature is on, in which case the rest of the document is not read.
+ * A validating parse reads the whole document whatever the feature.
+ *
+ * @version $Id$
+ */
+public class XPointerTest {
+
+    //
+    // Constants
+    //
+
+    /** XInclude feature id. */
+    private static final String XINCLUDE_FEATURE_ID =
+        "http://apache.org/xml/features/xinclude";
+
+    /** Stop after fragment feature id. */
+    private static final String STOP_AFTER_FRAGMENT_FEATURE_ID =
+        "http://apache.org/xml/features/xinclude/stop-after-fragment";
+
+    /** Validation feature id. */
+    private static final String VALIDATION_FEATURE_ID =
+        "http://xml.org/sax/features/validation";
+
+    /** Base of the system identifiers of the documents. */
+    private static final String BASE = "http://xinclude.test/";
+
+    /** The included document, whose last element is never closed. */
+    private static final String INCLUDED =
+        "<!DOCTYPE doc [<!ELEMENT doc ANY><!ELEMENT a (#PCDATA)>" +
+        "<!ELEMENT unclosed ANY><!ATTLIST a id ID #IMPLIED>]>" +
+        "<doc><a id='t'>target</a><unclosed></doc>";
+
+    /** The pointers to the target element. */
+    private static final String[] POINTERS = { "t", "element(/1/1)", "element(t)" };
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        for (int i = 0; i < POINTERS.length; ++i) {
+            String pointer = POINTERS[i];
+            check(pointer, false, false, true);
+            check(pointer, true, false, false);
+            check(pointer, false, true, true);
+            check(pointer, true, true, true);
+        }
+        System.out.println("All XPointer tests passed.");
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Includes the target element, and checks that it is included and
+     * whether the error in the rest of the document is reported.
+     */
+    private static void check(String pointer, boolean stop, boolean validation,
+            boolean errorExpected) throws Exception {
+        String name = pointer + (stop ? ", stop after fragment" : "")
+            + (validation ? ", validation" : "");
+
+        SAXParser parser = new SAXParser();
+        parser.setFeature(XINCLUDE_FEATURE_ID, true);
+        parser.setFeature(STOP_AFTER_FRAGMENT_FEATURE_ID, stop);
+        parser.setFeature(VALIDATION_FEATURE_ID, validation);
+        parser.setEntityResolver(new Resolver());
+        Handler handler = new Handler();
+        parser.setContentHandler(handler);
+        parser.setErrorHandler(handler);
+        InputSource source = new InputSource(new StringReader(
+            "<root xmlns:xi='http://www.w3.org/2001/XInclude'>" +
+            "<xi:include href='included.xml' xpointer='" + pointer + "'/></root>"));
+        source.setSystemId(BASE + "main.xml");
+        String error = null;
+        try {
+            parser.parse(source);
+        }
+        catch (SAXParseException e) {
+            error = e.getMessage();
+        }
+
+        if (errorExpected && error == null) {
+            fail(name + ": the error after the target was not reported");
+        }
+        if (!errorExpected && error != null) {
+            fail(name + ": unexpected error: " + error);
+        }
+        if (!handler.fText.toString().equals("target")) {
+            fail(name + ": included \"" + handler.fText + "\"");
+        }
+    } // check(String,boolean,boolean,boolean)
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    } // fail(String)
+
+    //
+    // Classes
+    //
+
+    /** Returns the included document. */
+    private static final class Resolver implements EntityResolver {
+
+        public InputSource resolveEntity(String publicId, String systemId) {
+            if (!(BASE + "included.xml").equals(systemId)) {
+                return null;
+            }
+            InputSource source = new InputSource(new StringReader(INCLUDED));
+            source.setSystemId(systemId);
+            return source;
+        }
+
+    } // class Resolver
+
+    /** Collects the text of the target element; fatal errors are thrown. */
+    private static final class Handler extends DefaultHandler {
+
+        final StringBuffer fText = new StringBuffer();
+        boolean fInTarget;
+
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            fInTarget = qName.equals("a");
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            fInTarget = false;
+        }
+
+        public void characters(char[] ch, int offset, int length) {
+            if (fInTarget) {
+                fText.append(ch, offset, length);
+            }
+        }
+
+        public void fatalError(SAXParseException e) throws SAXParseException {
+            throw e;
+        }
+
+    } // class Handler
+
+} // class XPointerTest